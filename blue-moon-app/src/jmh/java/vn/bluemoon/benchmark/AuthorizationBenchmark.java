@@ -0,0 +1,63 @@
+package vn.bluemoon.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.Authorization;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Permission checks done on every request (canCollectFees, hasAccess) with warm PermissionCache snapshots
+ * Chạy với 4 thread để thấy chi phí tra cache khi nhiều request kiểm tra quyền cùng lúc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AuthorizationBenchmark {
+    private User[] users;
+
+    @Setup
+    public void loadPermissions() throws DbException {
+        BenchmarkDatabase.ensureSeeded();
+        users = new User[BenchmarkDatabase.USERS];
+        for (int i = 0; i < users.length; i++) {
+            User user = new User();
+            user.setId(i + 1);
+            users[i] = user;
+            // Nạp snapshot trước, benchmark chỉ đo lần kiểm tra từ cache
+            Authorization.hasAccess(user, BenchmarkDatabase.FUNCTIONS[0]);
+        }
+    }
+
+    @Benchmark
+    public boolean canCollectFees() throws DbException {
+        return Authorization.canCollectFees(randomUser());
+    }
+
+    @Benchmark
+    public boolean hasAccess() throws DbException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String function = BenchmarkDatabase.FUNCTIONS[random.nextInt(BenchmarkDatabase.FUNCTIONS.length)];
+        return Authorization.hasAccess(randomUser(), function);
+    }
+
+    private User randomUser() {
+        return users[ThreadLocalRandom.current().nextInt(users.length)];
+    }
+}
@@ -0,0 +1,244 @@
+package vn.bluemoon.benchmark;
+
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.SchemaCapabilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * In-memory H2 database (chế độ MySQL) seeded with a realistic volume for the benchmarks
+ *
+ * Tạo một lần cho mỗi JVM benchmark (JMH fork): 2.000 hộ, mỗi hộ 3 nhân khẩu và 24 tháng thu phí
+ * (48.000 khoản thu), 200 tài khoản với các vai trò Quản trị viên/Tổ trưởng/Kế toán/Cư dân.
+ */
+final class BenchmarkDatabase {
+    static final int HOUSEHOLDS = 2_000;
+    static final int RESIDENTS_PER_HOUSEHOLD = 3;
+    static final int MONTHS = 24;
+    static final int USERS = 200;
+    static final String[] ROLES = { "Quản trị viên", "Tổ trưởng", "Kế toán", "Cư dân" };
+    static final String[] FUNCTIONS = {
+        "ResidentManagement", "FeeTypeManagement", "FeeCollection", "UserManagement", "Statistics"
+    };
+
+    private static final int BATCH_SIZE = 1_000;
+    private static boolean seeded;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Create and seed the database if this JVM has not done so yet
+     */
+    static synchronized void ensureSeeded() throws DbException {
+        if (seeded) {
+            return;
+        }
+        try (Connection conn = JdbcUtils.getConnection()) {
+            conn.setAutoCommit(false);
+            createSchema(conn);
+            seedUsersAndRoles(conn);
+            seedHouseholds(conn);
+            seedFees(conn);
+            conn.commit();
+            conn.setAutoCommit(true);
+        } catch (SQLException | IOException e) {
+            throw new DbException("Error seeding benchmark database: " + e.getMessage(), e);
+        }
+        SchemaCapabilities.refresh();
+        seeded = true;
+    }
+
+    private static void createSchema(Connection conn) throws SQLException, IOException {
+        String script;
+        try (InputStream input = BenchmarkDatabase.class.getResourceAsStream("/benchmark/schema.sql")) {
+            if (input == null) {
+                throw new IOException("benchmark/schema.sql not found");
+            }
+            script = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : script.replaceAll("(?m)^--.*$", "").split(";")) {
+                if (!sql.isBlank()) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
+    private static void seedUsersAndRoles(Connection conn) throws SQLException {
+        try (PreparedStatement group = conn.prepareStatement("INSERT INTO groups (name) VALUES (?)")) {
+            for (String role : ROLES) {
+                group.setString(1, role);
+                group.addBatch();
+            }
+            group.executeBatch();
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO function_groups (name) VALUES ('Benchmark')");
+        }
+        try (PreparedStatement function = conn.prepareStatement(
+                "INSERT INTO functions (name, function_group_id, boundary_class) VALUES (?, 1, ?)")) {
+            for (String boundaryClass : FUNCTIONS) {
+                function.setString(1, boundaryClass);
+                function.setString(2, boundaryClass);
+                function.addBatch();
+            }
+            function.executeBatch();
+        }
+        // Tổ trưởng (2) có mọi chức năng trừ UserManagement, Kế toán (3) chỉ có FeeCollection và Statistics
+        try (PreparedStatement grant = conn.prepareStatement(
+                "INSERT INTO group_functions (group_id, function_id) VALUES (?, ?)")) {
+            for (int functionId : new int[] { 1, 2, 3, 5 }) {
+                grant.setInt(1, 2);
+                grant.setInt(2, functionId);
+                grant.addBatch();
+            }
+            for (int functionId : new int[] { 3, 5 }) {
+                grant.setInt(1, 3);
+                grant.setInt(2, functionId);
+                grant.addBatch();
+            }
+            grant.executeBatch();
+        }
+        try (PreparedStatement user = conn.prepareStatement(
+                 "INSERT INTO users (username, email, password_hash, full_name, phone) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement role = conn.prepareStatement(
+                 "INSERT INTO user_roles (user_id, group_id) VALUES (?, ?)")) {
+            for (int i = 1; i <= USERS; i++) {
+                user.setString(1, "user" + i);
+                user.setString(2, "user" + i + "@bluemoon.vn");
+                user.setString(3, "$2a$04$benchmarkbenchmarkbenchmarkbenchmarkbenchmarkbench");
+                user.setString(4, "Người dùng " + i);
+                user.setString(5, String.format("09%08d", i));
+                user.addBatch();
+                role.setInt(1, i);
+                role.setInt(2, i % ROLES.length + 1);
+                role.addBatch();
+            }
+            user.executeBatch();
+            role.executeBatch();
+        }
+    }
+
+    private static void seedHouseholds(Connection conn) throws SQLException {
+        LocalDate registered = LocalDate.of(2020, 1, 1);
+        try (PreparedStatement apartment = conn.prepareStatement(
+                 "INSERT INTO apartments (building_number, floor_number, room_number, apartment_code, area) " +
+                 "VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement household = conn.prepareStatement(
+                 "INSERT INTO households (apartment_id, household_code, owner_name, owner_phone, owner_email, " +
+                 "number_of_members, registration_date) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= HOUSEHOLDS; i++) {
+                String building = String.valueOf((char) ('A' + (i - 1) / 500));
+                int floor = (i - 1) % 500 / 20 + 1;
+                String room = String.format("%02d", (i - 1) % 20 + 1);
+                apartment.setString(1, building);
+                apartment.setInt(2, floor);
+                apartment.setString(3, room);
+                apartment.setString(4, building + "-" + floor + room);
+                apartment.setBigDecimal(5, BigDecimal.valueOf(55 + i % 60));
+                apartment.addBatch();
+
+                household.setInt(1, i);
+                household.setString(2, "HK" + String.format("%05d", i));
+                household.setString(3, "Nguyễn Văn " + i);
+                household.setString(4, String.format("09%08d", 10_000 + i));
+                household.setString(5, "hk" + i + "@bluemoon.vn");
+                household.setInt(6, RESIDENTS_PER_HOUSEHOLD);
+                household.setDate(7, Date.valueOf(registered));
+                household.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    apartment.executeBatch();
+                    household.executeBatch();
+                }
+            }
+            apartment.executeBatch();
+            household.executeBatch();
+        }
+
+        try (PreparedStatement resident = conn.prepareStatement(
+                 "INSERT INTO residents (household_id, user_id, full_name, id_card, date_of_birth, gender, " +
+                 "relationship, phone, email) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            int count = 0;
+            for (int h = 1; h <= HOUSEHOLDS; h++) {
+                for (int r = 0; r < RESIDENTS_PER_HOUSEHOLD; r++) {
+                    boolean owner = r == 0;
+                    resident.setInt(1, h);
+                    // Chủ hộ của USERS hộ đầu tiên có tài khoản
+                    if (owner && h <= USERS) {
+                        resident.setInt(2, h);
+                    } else {
+                        resident.setNull(2, java.sql.Types.INTEGER);
+                    }
+                    resident.setString(3, (owner ? "Nguyễn Văn " : "Trần Thị ") + h + "-" + r);
+                    resident.setString(4, String.format("0010%08d", h * 10 + r));
+                    resident.setDate(5, Date.valueOf(LocalDate.of(1960 + (h + r) % 50, r + 1, 1)));
+                    resident.setString(6, r % 2 == 0 ? "Nam" : "Nữ");
+                    resident.setString(7, owner ? "Chủ hộ" : "Con");
+                    resident.setString(8, String.format("09%08d", 20_000 + h * 10 + r));
+                    resident.setString(9, "r" + h + "-" + r + "@bluemoon.vn");
+                    resident.addBatch();
+                    if (++count % BATCH_SIZE == 0) {
+                        resident.executeBatch();
+                    }
+                }
+            }
+            resident.executeBatch();
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO household_owners (household_id, resident_id, owner_name) " +
+                         "SELECT household_id, id, full_name FROM residents WHERE relationship = 'Chủ hộ'");
+        }
+    }
+
+    private static void seedFees(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO fee_types (name, default_amount) VALUES ('Phí quản lý', 350000), " +
+                         "('Phí gửi xe', 120000), ('Phí vệ sinh', 50000)");
+        }
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        try (PreparedStatement fee = conn.prepareStatement(
+                "INSERT INTO fee_collections (household_id, month, year, amount, paid_amount, status, fee_type_id, " +
+                "payment_date, payment_deadline, payment_method) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            int count = 0;
+            for (int m = 0; m < MONTHS; m++) {
+                LocalDate period = start.plusMonths(m);
+                for (int h = 1; h <= HOUSEHOLDS; h++) {
+                    BigDecimal amount = BigDecimal.valueOf(250_000 + (h % 7) * 25_000L);
+                    // Khoảng 70% đã nộp đủ, 10% nộp một phần, còn lại chưa nộp
+                    int bucket = (h + m) % 10;
+                    String status = bucket < 7 ? "paid" : bucket == 7 ? "partial_paid" : "unpaid";
+                    BigDecimal paid = "paid".equals(status) ? amount
+                        : "partial_paid".equals(status) ? amount.divide(BigDecimal.valueOf(2)) : BigDecimal.ZERO;
+                    fee.setInt(1, h);
+                    fee.setInt(2, period.getMonthValue());
+                    fee.setInt(3, period.getYear());
+                    fee.setBigDecimal(4, amount);
+                    fee.setBigDecimal(5, paid);
+                    fee.setString(6, status);
+                    fee.setInt(7, m % 3 + 1);
+                    fee.setDate(8, "unpaid".equals(status) ? null : Date.valueOf(period.plusDays(10)));
+                    fee.setDate(9, Date.valueOf(period.plusDays(15)));
+                    fee.setString(10, "unpaid".equals(status) ? null : "cash");
+                    fee.addBatch();
+                    if (++count % BATCH_SIZE == 0) {
+                        fee.executeBatch();
+                    }
+                }
+            }
+            fee.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package vn.bluemoon.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.bluemoon.model.entity.FeeCollection;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BigDecimal totals over in-memory fee lists, như controller tính tổng tiền/đã nộp/còn lại của danh sách thu phí
+ * So sánh stream().map().reduce() với vòng lặp cộng dồn một lần qua danh sách
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeeAggregationBenchmark {
+    @Param({ "1000", "50000" })
+    public int size;
+
+    private List<FeeCollection> fees;
+
+    @Setup
+    public void createFees() {
+        fees = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            FeeCollection fee = new FeeCollection();
+            BigDecimal amount = BigDecimal.valueOf(250_000 + (i % 7) * 25_000L);
+            int bucket = i % 10;
+            fee.setAmount(amount);
+            fee.setPaidAmount(bucket < 7 ? amount : bucket == 7 ? amount.divide(BigDecimal.valueOf(2)) : BigDecimal.ZERO);
+            fee.setStatus(bucket < 7 ? "paid" : bucket == 7 ? "partial_paid" : "unpaid");
+            fees.add(fee);
+        }
+    }
+
+    /**
+     * Ba lần duyệt bằng stream (tổng tiền, đã nộp, còn lại) như trang thu phí trước khi dùng truy vấn tổng hợp
+     */
+    @Benchmark
+    public BigDecimal[] streamReduce() {
+        BigDecimal total = fees.stream().map(FeeCollection::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal paid = fees.stream().map(FeeCollection::getPaidAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal remaining = fees.stream()
+            .filter(fee -> !"paid".equals(fee.getStatus()))
+            .map(FeeCollection::getRemainingAmount)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return new BigDecimal[] { total, paid, remaining };
+    }
+
+    @Benchmark
+    public BigDecimal[] singleLoop() {
+        BigDecimal total = BigDecimal.ZERO;
+        BigDecimal paid = BigDecimal.ZERO;
+        BigDecimal remaining = BigDecimal.ZERO;
+        for (FeeCollection fee : fees) {
+            total = total.add(fee.getAmount());
+            paid = paid.add(fee.getPaidAmount());
+            if (!"paid".equals(fee.getStatus())) {
+                remaining = remaining.add(fee.getRemainingAmount());
+            }
+        }
+        return new BigDecimal[] { total, paid, remaining };
+    }
+}
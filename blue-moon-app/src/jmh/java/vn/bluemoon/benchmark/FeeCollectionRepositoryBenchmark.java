@@ -0,0 +1,63 @@
+package vn.bluemoon.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.FeeSearchRequest;
+import vn.bluemoon.model.entity.FeeCollection;
+import vn.bluemoon.repository.FeeCollectionRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query and row mapping cost of FeeCollectionRepository over the seeded 48.000 fee collections
+ * findAll() tạo cả danh sách, forEach() đọc bằng cursor; findByUserId() là truy vấn của trang nộp phí
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeeCollectionRepositoryBenchmark {
+    private final FeeCollectionRepository repository = new FeeCollectionRepository();
+    private int userId;
+
+    @Setup
+    public void seed() throws DbException {
+        BenchmarkDatabase.ensureSeeded();
+    }
+
+    @Benchmark
+    public List<FeeCollection> findAll() throws DbException {
+        return repository.findAll();
+    }
+
+    @Benchmark
+    public void forEach(Blackhole blackhole) throws DbException {
+        repository.forEach(500, blackhole::consume);
+    }
+
+    @Benchmark
+    public void forEachMatchingUnpaid(Blackhole blackhole) throws DbException {
+        FeeSearchRequest filter = new FeeSearchRequest(null, null, null, null, null, "unpaid");
+        repository.forEachMatching(filter, 500, blackhole::consume);
+    }
+
+    @Benchmark
+    public List<FeeCollection> findByUserId() throws DbException {
+        // Lần lượt các chủ hộ có tài khoản
+        userId = userId % BenchmarkDatabase.USERS + 1;
+        return repository.findByUserId(userId);
+    }
+}
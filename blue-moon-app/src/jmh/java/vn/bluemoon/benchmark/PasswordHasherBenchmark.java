@@ -0,0 +1,50 @@
+package vn.bluemoon.benchmark;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.bluemoon.util.PasswordHasher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PasswordHasher.verify at different BCrypt costs (security.bcrypt.cost), để chọn cost theo thời gian đăng nhập
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHasherBenchmark {
+    private static final String PASSWORD = "BlueMoon@2024";
+
+    @Param({ "4", "8", "10", "12" })
+    public int cost;
+
+    private String hash;
+
+    @Setup
+    public void hash() {
+        hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(cost));
+    }
+
+    @Benchmark
+    public boolean verifyCorrect() {
+        return PasswordHasher.verify(PASSWORD, hash);
+    }
+
+    @Benchmark
+    public boolean verifyWrong() {
+        return PasswordHasher.verify("wrong-password", hash);
+    }
+}
@@ -0,0 +1,62 @@
+package vn.bluemoon.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.SessionManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionManager.getUser under contention: mọi request đều tra session theo token
+ * "hot" = tất cả thread dùng cùng một token, "spread" = mỗi lần một token ngẫu nhiên trong 1.000 session
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class SessionManagerBenchmark {
+    private static final int SESSIONS = 1_000;
+
+    @Param({ "hot", "spread" })
+    public String tokens;
+
+    private final SessionManager sessionManager = SessionManager.getInstance();
+    private String[] sessionTokens;
+
+    @Setup
+    public void createSessions() throws DbException {
+        BenchmarkDatabase.ensureSeeded();
+        sessionTokens = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            User user = new User();
+            user.setId(i % BenchmarkDatabase.USERS + 1);
+            user.setUsername("user" + user.getId());
+            user.setIsActive(true);
+            sessionTokens[i] = sessionManager.createSession(user);
+        }
+    }
+
+    @Benchmark
+    public User getUser() {
+        String token = "hot".equals(tokens)
+            ? sessionTokens[0]
+            : sessionTokens[ThreadLocalRandom.current().nextInt(SESSIONS)];
+        return sessionManager.getUser(token);
+    }
+}
@@ -0,0 +1,156 @@
+-- Schema cho JMH benchmark (H2, chế độ MySQL): các bảng mà benchmark đọc, cùng cột với schema-postgresql.sql
+
+CREATE TABLE users (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(100) UNIQUE NOT NULL,
+    email VARCHAR(255) UNIQUE NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    full_name VARCHAR(255) NOT NULL,
+    phone VARCHAR(20),
+    address TEXT,
+    is_active BOOLEAN DEFAULT TRUE,
+    must_change_password BOOLEAN DEFAULT FALSE,
+    password_change_required_date DATE NULL,
+    password_change_period_days INT NULL,
+    last_password_change_date DATE NULL,
+    facebook_id VARCHAR(100) NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE function_groups (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) UNIQUE NOT NULL
+);
+
+CREATE TABLE functions (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) UNIQUE NOT NULL,
+    function_group_id INT NOT NULL,
+    boundary_class VARCHAR(255) UNIQUE NOT NULL,
+    FOREIGN KEY (function_group_id) REFERENCES function_groups(id)
+);
+
+CREATE TABLE groups (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) UNIQUE NOT NULL
+);
+
+CREATE TABLE user_roles (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    group_id INT NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(id),
+    FOREIGN KEY (group_id) REFERENCES groups(id)
+);
+
+CREATE TABLE group_functions (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    group_id INT NOT NULL,
+    function_id INT NOT NULL,
+    FOREIGN KEY (group_id) REFERENCES groups(id),
+    FOREIGN KEY (function_id) REFERENCES functions(id)
+);
+
+CREATE TABLE apartments (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    building_number VARCHAR(10) NOT NULL,
+    floor_number INT NOT NULL,
+    room_number VARCHAR(10) NOT NULL,
+    apartment_code VARCHAR(50) UNIQUE NOT NULL,
+    area DECIMAL(10, 2) NOT NULL,
+    number_of_rooms INT DEFAULT 2,
+    status VARCHAR(20) DEFAULT 'available',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE households (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    apartment_id INT NOT NULL,
+    household_code VARCHAR(50) UNIQUE NOT NULL,
+    owner_name VARCHAR(255) NOT NULL,
+    owner_id_card VARCHAR(20),
+    owner_phone VARCHAR(20),
+    owner_email VARCHAR(255),
+    number_of_members INT DEFAULT 1,
+    registration_date DATE NOT NULL,
+    status VARCHAR(20) DEFAULT 'active',
+    notes TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (apartment_id) REFERENCES apartments(id)
+);
+
+CREATE TABLE residents (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    household_id INT NOT NULL,
+    user_id INT NULL UNIQUE,
+    full_name VARCHAR(255) NOT NULL,
+    id_card VARCHAR(20),
+    date_of_birth DATE,
+    gender VARCHAR(10),
+    relationship VARCHAR(50),
+    phone VARCHAR(20),
+    email VARCHAR(255),
+    occupation VARCHAR(255),
+    permanent_address TEXT,
+    temporary_address TEXT,
+    status VARCHAR(20) DEFAULT 'active',
+    notes TEXT,
+    temporary_resident_from DATE,
+    temporary_resident_to DATE,
+    temporary_absent_from DATE,
+    temporary_absent_to DATE,
+    temporary_reason TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (household_id) REFERENCES households(id)
+);
+
+CREATE INDEX idx_residents_household_id ON residents(household_id);
+CREATE INDEX idx_residents_user_id ON residents(user_id);
+
+CREATE TABLE household_owners (
+    household_id INT PRIMARY KEY,
+    resident_id INT,
+    owner_name VARCHAR(255),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (household_id) REFERENCES households(id)
+);
+
+CREATE TABLE fee_types (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) UNIQUE NOT NULL,
+    description TEXT,
+    default_amount DECIMAL(15, 2) DEFAULT 0,
+    is_active BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE fee_collections (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    household_id INT NOT NULL,
+    month INT,
+    year INT,
+    amount DECIMAL(15, 2) NOT NULL DEFAULT 0,
+    paid_amount DECIMAL(15, 2) NOT NULL DEFAULT 0,
+    status VARCHAR(20) DEFAULT 'unpaid',
+    fee_type VARCHAR(20) DEFAULT 'periodic',
+    fee_type_id INT,
+    reason TEXT,
+    payment_date DATE,
+    payment_deadline DATE,
+    reminder_sent_at TIMESTAMP,
+    version INT NOT NULL DEFAULT 0,
+    payment_method VARCHAR(50),
+    notes TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (household_id) REFERENCES households(id),
+    FOREIGN KEY (fee_type_id) REFERENCES fee_types(id)
+);
+
+CREATE INDEX idx_fee_collections_household_id ON fee_collections(household_id);
+CREATE INDEX idx_fee_collections_keyset ON fee_collections(year, month, id);
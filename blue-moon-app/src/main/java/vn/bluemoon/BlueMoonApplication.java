@@ -3,7 +3,10 @@ package vn.bluemoon;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
+import vn.bluemoon.service.FeeReminderScheduler;
+import vn.bluemoon.stats.PopulationHistory;
 import vn.bluemoon.util.DatabaseInitializer;
+import vn.bluemoon.util.EmailDispatcher;
 
 /**
  * Spring Boot main application class
@@ -21,6 +24,11 @@ public class BlueMoonApplication extends SpringBootServletInitializer {
             System.exit(1);
         }
         
+        // Tác vụ nền tự xử lý lỗi database ở mỗi lần chạy, không thuộc bước khởi tạo database
+        EmailDispatcher.start();
+        FeeReminderScheduler.start();
+        PopulationHistory.start();
+        
         SpringApplication.run(BlueMoonApplication.class, args);
     }
 }
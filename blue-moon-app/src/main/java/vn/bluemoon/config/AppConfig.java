@@ -67,6 +67,56 @@ public class AppConfig {
         return getProperty("email.from.password", "");
     }
 
+    public int getEmailSmtpTimeoutMs() {
+        return Integer.parseInt(getProperty("email.smtp.timeout-ms", "10000"));
+    }
+
+    // Email outbox (gửi email trong nền)
+    public int getEmailOutboxPollSeconds() {
+        return Integer.parseInt(getProperty("email.outbox.poll-seconds", "15"));
+    }
+
+    public int getEmailOutboxBatchSize() {
+        return Integer.parseInt(getProperty("email.outbox.batch-size", "20"));
+    }
+
+    public int getEmailOutboxMaxAttempts() {
+        return Integer.parseInt(getProperty("email.outbox.max-attempts", "6"));
+    }
+
+    public int getEmailOutboxRetryBaseSeconds() {
+        return Integer.parseInt(getProperty("email.outbox.retry-base-seconds", "30"));
+    }
+
+    public int getEmailOutboxRetentionDays() {
+        return Integer.parseInt(getProperty("email.outbox.retention-days", "7"));
+    }
+
+    // Nhắc nợ phí (fee reminders)
+    public boolean getFeeReminderEnabled() {
+        return Boolean.parseBoolean(getProperty("fees.reminder.enabled", "true"));
+    }
+
+    public int getFeeReminderIntervalHours() {
+        return Integer.parseInt(getProperty("fees.reminder.interval-hours", "24"));
+    }
+
+    public int getFeeReminderDaysBefore() {
+        return Integer.parseInt(getProperty("fees.reminder.days-before", "3"));
+    }
+
+    public int getFeeReminderRepeatDays() {
+        return Integer.parseInt(getProperty("fees.reminder.repeat-days", "7"));
+    }
+
+    public int getFeeReminderBatchSize() {
+        return Integer.parseInt(getProperty("fees.reminder.batch-size", "100"));
+    }
+
+    public int getFeeReminderFetchSize() {
+        return Integer.parseInt(getProperty("fees.reminder.fetch-size", "500"));
+    }
+
     // Application configuration
     public String getAppName() {
         return getProperty("app.name", "Blue Moon Apartment Management System");
@@ -84,21 +134,87 @@ public class AppConfig {
     public int getSessionExpiryHours() {
         return Integer.parseInt(getProperty("session.expiry.hours", "8"));
     }
-}
 
+    public int getSessionMaxActive() {
+        return Integer.parseInt(getProperty("session.max-active", "10000"));
+    }
 
+    public int getSessionSweepIntervalSeconds() {
+        return Integer.parseInt(getProperty("session.sweep-interval-seconds", "60"));
+    }
 
+    /**
+     * Session store: "jdbc" (bảng sessions, dùng chung giữa các node) hoặc "memory"
+     */
+    public String getSessionStore() {
+        return getProperty("session.store", "jdbc");
+    }
 
+    public int getSessionNearCacheTtlSeconds() {
+        return Integer.parseInt(getProperty("session.near-cache-ttl-seconds", "30"));
+    }
 
+    public int getSessionLastSeenFlushSeconds() {
+        return Integer.parseInt(getProperty("session.last-seen-flush-seconds", "30"));
+    }
 
+    public int getPermissionCacheTtlSeconds() {
+        return Integer.parseInt(getProperty("security.permission-cache-ttl-seconds", "60"));
+    }
 
+    // Login / password hashing configuration
+    public int getBcryptCost() {
+        return Integer.parseInt(getProperty("security.bcrypt.cost", "10"));
+    }
 
+    public int getLoginThreads() {
+        return Integer.parseInt(getProperty("security.login.threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    }
 
+    public int getLoginQueueCapacity() {
+        return Integer.parseInt(getProperty("security.login.queue-capacity", "64"));
+    }
 
+    public long getLoginTimeoutMs() {
+        return Long.parseLong(getProperty("security.login.timeout-ms", "10000"));
+    }
 
+    // Fee listing configuration
+    public int getFeePageDefaultSize() {
+        return Integer.parseInt(getProperty("fees.page.default-size", "50"));
+    }
 
+    public int getFeePageMaxSize() {
+        return Integer.parseInt(getProperty("fees.page.max-size", "200"));
+    }
 
+    public int getFeeExportFetchSize() {
+        return Integer.parseInt(getProperty("fees.export.fetch-size", "1000"));
+    }
 
+    // Nhập nhân khẩu từ CSV
+    public int getResidentImportChunkSize() {
+        return Integer.parseInt(getProperty("residents.import.chunk-size", "500"));
+    }
 
+    public int getResidentImportMaxRows() {
+        return Integer.parseInt(getProperty("residents.import.max-rows", "20000"));
+    }
 
+    public int getSearchMemoryIndexTtlSeconds() {
+        return Integer.parseInt(getProperty("search.memory-index-ttl-seconds", "60"));
+    }
 
+    public int getDashboardReconcileMinutes() {
+        return Integer.parseInt(getProperty("stats.dashboard.reconcile-minutes", "10"));
+    }
+
+    public int getPopulationHistoryMonths() {
+        return Integer.parseInt(getProperty("stats.population.months", "6"));
+    }
+
+    public int getStreamFetchSize() {
+        return Integer.parseInt(getProperty("db.stream.fetch-size", "500"));
+    }
+}
@@ -82,6 +82,40 @@ public class DbConfig {
         return driver;
     }
 
+    // Connection pool configuration
+    public int getPoolMinIdle() {
+        return Integer.parseInt(getProperty("db.pool.min-idle", "2"));
+    }
+
+    public int getPoolMaxSize() {
+        return Integer.parseInt(getProperty("db.pool.max-size", "10"));
+    }
+
+    public long getPoolAcquireTimeoutMs() {
+        return Long.parseLong(getProperty("db.pool.acquire-timeout-ms", "30000"));
+    }
+
+    public long getPoolIdleTimeoutMs() {
+        return Long.parseLong(getProperty("db.pool.idle-timeout-ms", "600000"));
+    }
+
+    public long getPoolMaxLifetimeMs() {
+        return Long.parseLong(getProperty("db.pool.max-lifetime-ms", "1800000"));
+    }
+
+    public long getPoolLeakDetectionMs() {
+        return Long.parseLong(getProperty("db.pool.leak-detection-ms", "60000"));
+    }
+
+    // Query metrics (JDBC được đo thời gian qua JdbcUtils)
+    public boolean getQueryMetricsEnabled() {
+        return Boolean.parseBoolean(getProperty("db.metrics.enabled", "true"));
+    }
+
+    public long getSlowQueryMs() {
+        return Long.parseLong(getProperty("db.metrics.slow-query-ms", "500"));
+    }
+
     private String getProperty(String key) {
         return properties.getProperty(key);
     }
@@ -0,0 +1,52 @@
+package vn.bluemoon.model.dto;
+
+/**
+ * DTO for the result of bulk fee generation (thu phí cho tất cả hộ dân)
+ */
+public class BulkFeeResult {
+    private int householdCount;
+    private int createdCount;
+    private int skippedCount;
+
+    public BulkFeeResult() {
+    }
+
+    public BulkFeeResult(int householdCount, int createdCount) {
+        this.householdCount = householdCount;
+        this.createdCount = createdCount;
+        this.skippedCount = Math.max(0, householdCount - createdCount);
+    }
+
+    /**
+     * Number of households eligible for the fee
+     */
+    public int getHouseholdCount() {
+        return householdCount;
+    }
+
+    public void setHouseholdCount(int householdCount) {
+        this.householdCount = householdCount;
+    }
+
+    /**
+     * Number of fee collections created
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    public void setCreatedCount(int createdCount) {
+        this.createdCount = createdCount;
+    }
+
+    /**
+     * Number of households skipped because they already have this fee for the month
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    public void setSkippedCount(int skippedCount) {
+        this.skippedCount = skippedCount;
+    }
+}
@@ -0,0 +1,123 @@
+package vn.bluemoon.model.dto;
+
+import vn.bluemoon.model.entity.FeeCollection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the dashboard statistics (thay bằng bản mới khi có thay đổi, không sửa tại chỗ)
+ */
+public final class DashboardSnapshot {
+    private final int totalApartments;
+    private final int totalHouseholds;
+    private final int totalResidents;
+    private final long totalFees;
+    private final long paidFees;
+    private final BigDecimal totalAmount;
+    private final BigDecimal paidAmount;
+    private final List<FeeCollection> recentFees;
+    private final LocalDateTime reconciledAt;
+
+    public DashboardSnapshot(int totalApartments, int totalHouseholds, int totalResidents,
+                             FeeSummary feeSummary, List<FeeCollection> recentFees, LocalDateTime reconciledAt) {
+        this(totalApartments, totalHouseholds, totalResidents, feeSummary.getTotalCount(), feeSummary.getPaidCount(),
+            feeSummary.getTotalAmount(), feeSummary.getPaidAmount(), recentFees, reconciledAt);
+    }
+
+    private DashboardSnapshot(int totalApartments, int totalHouseholds, int totalResidents,
+                              long totalFees, long paidFees, BigDecimal totalAmount, BigDecimal paidAmount,
+                              List<FeeCollection> recentFees, LocalDateTime reconciledAt) {
+        this.totalApartments = totalApartments;
+        this.totalHouseholds = totalHouseholds;
+        this.totalResidents = totalResidents;
+        this.totalFees = totalFees;
+        this.paidFees = paidFees;
+        this.totalAmount = totalAmount;
+        this.paidAmount = paidAmount;
+        this.recentFees = Collections.unmodifiableList(recentFees);
+        this.reconciledAt = reconciledAt;
+    }
+
+    /**
+     * Copy with fee totals adjusted by a delta
+     */
+    public DashboardSnapshot withFeeDelta(long feeCount, long paidCount, BigDecimal amount, BigDecimal paid) {
+        return new DashboardSnapshot(totalApartments, totalHouseholds, totalResidents,
+            totalFees + feeCount, paidFees + paidCount, totalAmount.add(amount), paidAmount.add(paid),
+            recentFees, reconciledAt);
+    }
+
+    /**
+     * Copy with recounted fee totals
+     */
+    public DashboardSnapshot withFeeSummary(FeeSummary feeSummary) {
+        return new DashboardSnapshot(totalApartments, totalHouseholds, totalResidents,
+            feeSummary.getTotalCount(), feeSummary.getPaidCount(), feeSummary.getTotalAmount(), feeSummary.getPaidAmount(),
+            recentFees, reconciledAt);
+    }
+
+    /**
+     * Copy with recounted apartments, households and residents
+     */
+    public DashboardSnapshot withCounts(int apartments, int households, int residents) {
+        return new DashboardSnapshot(apartments, households, residents,
+            totalFees, paidFees, totalAmount, paidAmount, recentFees, reconciledAt);
+    }
+
+    public DashboardSnapshot withRecentFees(List<FeeCollection> fees) {
+        return new DashboardSnapshot(totalApartments, totalHouseholds, totalResidents,
+            totalFees, paidFees, totalAmount, paidAmount, fees, reconciledAt);
+    }
+
+    public int getTotalApartments() {
+        return totalApartments;
+    }
+
+    public int getTotalHouseholds() {
+        return totalHouseholds;
+    }
+
+    /**
+     * Number of residents who are household owners ("Chủ hộ")
+     */
+    public int getTotalResidents() {
+        return totalResidents;
+    }
+
+    public long getTotalFees() {
+        return totalFees;
+    }
+
+    public long getPaidFees() {
+        return paidFees;
+    }
+
+    public long getUnpaidFees() {
+        return totalFees - paidFees;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public BigDecimal getPaidAmount() {
+        return paidAmount;
+    }
+
+    /**
+     * Most recently updated fee collections, newest first
+     */
+    public List<FeeCollection> getRecentFees() {
+        return recentFees;
+    }
+
+    /**
+     * Time of the last full recount
+     */
+    public LocalDateTime getReconciledAt() {
+        return reconciledAt;
+    }
+}
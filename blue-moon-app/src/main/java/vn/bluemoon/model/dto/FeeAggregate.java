@@ -0,0 +1,84 @@
+package vn.bluemoon.model.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Fee totals for one group of an aggregate query
+ * Chỉ các trường của chiều nhóm được set, các trường còn lại là null
+ */
+public class FeeAggregate extends FeeSummary {
+    private String status;
+    private Integer year;
+    private Integer month;
+    private Integer feeTypeId;
+    private String feeTypeName;
+
+    public FeeAggregate() {
+    }
+
+    public FeeAggregate(long totalCount, long paidCount, BigDecimal totalAmount, BigDecimal paidAmount) {
+        super(totalCount, paidCount, totalAmount, paidAmount);
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public void setYear(Integer year) {
+        this.year = year;
+    }
+
+    public Integer getMonth() {
+        return month;
+    }
+
+    public void setMonth(Integer month) {
+        this.month = month;
+    }
+
+    public Integer getFeeTypeId() {
+        return feeTypeId;
+    }
+
+    public void setFeeTypeId(Integer feeTypeId) {
+        this.feeTypeId = feeTypeId;
+    }
+
+    public String getFeeTypeName() {
+        return feeTypeName;
+    }
+
+    public void setFeeTypeName(String feeTypeName) {
+        this.feeTypeName = feeTypeName;
+    }
+
+    /**
+     * Display label of the group (dùng cho bảng thống kê)
+     */
+    public String getLabel() {
+        if (month != null && year != null) {
+            return String.format("%02d/%d", month, year);
+        }
+        if (feeTypeName != null) {
+            return feeTypeName;
+        }
+        if (status != null) {
+            switch (status) {
+                case "paid": return "Đã thu phí";
+                case "unpaid": return "Chưa thu phí";
+                case "partial_paid": return "Đã thanh toán 1 phần";
+                case "overpaid": return "Nộp dư";
+                default: return status;
+            }
+        }
+        return "-";
+    }
+}
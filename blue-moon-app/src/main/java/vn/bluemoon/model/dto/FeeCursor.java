@@ -0,0 +1,66 @@
+package vn.bluemoon.model.dto;
+
+import vn.bluemoon.model.entity.FeeCollection;
+
+/**
+ * Keyset position in the fee listing, ordered by (year, month, id) descending
+ * Thu phí không định kỳ (month/year NULL) được xếp như năm 0, tháng 0
+ * Dạng chuỗi trên URL: "year.month.id"
+ */
+public class FeeCursor {
+    private final int year;
+    private final int month;
+    private final int id;
+
+    public FeeCursor(int year, int month, int id) {
+        this.year = year;
+        this.month = month;
+        this.id = id;
+    }
+
+    /**
+     * Cursor pointing at a fee collection row
+     */
+    public static FeeCursor of(FeeCollection fee) {
+        return new FeeCursor(
+            fee.getYear() != null ? fee.getYear() : 0,
+            fee.getMonth() != null ? fee.getMonth() : 0,
+            fee.getId());
+    }
+
+    /**
+     * Parse a cursor from its URL form
+     * @return FeeCursor, or null if the value is missing or malformed
+     */
+    public static FeeCursor parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String[] parts = value.trim().split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new FeeCursor(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return year + "." + month + "." + id;
+    }
+}
@@ -0,0 +1,27 @@
+package vn.bluemoon.model.dto;
+
+import vn.bluemoon.model.entity.FeeCollection;
+
+/**
+ * DTO for one fee collection row streamed by FeeCollectionRepository.streamSearch for export
+ */
+public class FeeExportRow {
+    private final FeeCollection fee;
+    private final String feeTypeName;
+
+    public FeeExportRow(FeeCollection fee, String feeTypeName) {
+        this.fee = fee;
+        this.feeTypeName = feeTypeName;
+    }
+
+    public FeeCollection getFee() {
+        return fee;
+    }
+
+    /**
+     * Fee type name, null if the fee has no fee type
+     */
+    public String getFeeTypeName() {
+        return feeTypeName;
+    }
+}
@@ -0,0 +1,13 @@
+package vn.bluemoon.model.dto;
+
+/**
+ * Grouping dimension for fee aggregate queries
+ */
+public enum FeeGroupBy {
+    /** Theo trạng thái (paid, unpaid, partial_paid, overpaid) */
+    STATUS,
+    /** Theo tháng/năm thu phí */
+    MONTH,
+    /** Theo loại phí dịch vụ (fee_types) */
+    FEE_TYPE
+}
@@ -0,0 +1,52 @@
+package vn.bluemoon.model.dto;
+
+import vn.bluemoon.model.entity.FeeCollection;
+
+import java.util.List;
+
+/**
+ * One page of the fee listing with cursors to the neighbouring pages
+ */
+public class FeePage {
+    private final List<FeeCollection> items;
+    private final int pageSize;
+    private final String nextCursor;
+    private final String prevCursor;
+
+    public FeePage(List<FeeCollection> items, int pageSize, String nextCursor, String prevCursor) {
+        this.items = items;
+        this.pageSize = pageSize;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+    }
+
+    public List<FeeCollection> getItems() {
+        return items;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Cursor for the next (older) page, null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Cursor for the previous (newer) page, null if this is the first page
+     */
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public boolean isHasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean isHasPrev() {
+        return prevCursor != null;
+    }
+}
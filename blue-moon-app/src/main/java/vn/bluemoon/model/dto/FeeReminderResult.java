@@ -0,0 +1,84 @@
+package vn.bluemoon.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for the result of one fee-due reminder run
+ */
+public class FeeReminderResult {
+    private int ownerCount;
+    private int feeCount;
+    private int skippedFeeCount;
+    private int claimedElsewhereFeeCount;
+    private int batchCount;
+    private long durationMillis;
+    private LocalDateTime finishedAt;
+
+    /**
+     * Number of owners a reminder email was queued for
+     */
+    public int getOwnerCount() {
+        return ownerCount;
+    }
+
+    public void setOwnerCount(int ownerCount) {
+        this.ownerCount = ownerCount;
+    }
+
+    /**
+     * Number of fees included in the reminders
+     */
+    public int getFeeCount() {
+        return feeCount;
+    }
+
+    public void setFeeCount(int feeCount) {
+        this.feeCount = feeCount;
+    }
+
+    /**
+     * Number of due fees skipped because the owner has no email
+     */
+    public int getSkippedFeeCount() {
+        return skippedFeeCount;
+    }
+
+    public void setSkippedFeeCount(int skippedFeeCount) {
+        this.skippedFeeCount = skippedFeeCount;
+    }
+
+    /**
+     * Number of due fees left out because another node reminded them first
+     */
+    public int getClaimedElsewhereFeeCount() {
+        return claimedElsewhereFeeCount;
+    }
+
+    public void setClaimedElsewhereFeeCount(int claimedElsewhereFeeCount) {
+        this.claimedElsewhereFeeCount = claimedElsewhereFeeCount;
+    }
+
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    public void setBatchCount(int batchCount) {
+        this.batchCount = batchCount;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
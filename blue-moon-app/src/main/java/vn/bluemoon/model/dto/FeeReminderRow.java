@@ -0,0 +1,36 @@
+package vn.bluemoon.model.dto;
+
+import vn.bluemoon.model.entity.FeeCollection;
+
+/**
+ * DTO for one fee due for a reminder, streamed by FeeCollectionRepository.streamDueForReminder
+ */
+public class FeeReminderRow {
+    private final FeeCollection fee;
+    private final String feeTypeName;
+    private final String ownerEmail;
+
+    public FeeReminderRow(FeeCollection fee, String feeTypeName, String ownerEmail) {
+        this.fee = fee;
+        this.feeTypeName = feeTypeName;
+        this.ownerEmail = ownerEmail;
+    }
+
+    public FeeCollection getFee() {
+        return fee;
+    }
+
+    /**
+     * Fee type name, null if the fee has no fee type
+     */
+    public String getFeeTypeName() {
+        return feeTypeName;
+    }
+
+    /**
+     * Email of the household owner (user, resident, hoặc households.owner_email), null if unknown
+     */
+    public String getOwnerEmail() {
+        return ownerEmail;
+    }
+}
@@ -0,0 +1,86 @@
+package vn.bluemoon.model.dto;
+
+/**
+ * DTO for fee collection search filters (dùng chung cho danh sách, phân trang và thống kê)
+ * Giá trị null hoặc rỗng nghĩa là không lọc theo trường đó
+ */
+public class FeeSearchRequest {
+    private String apartmentCode;
+    private String householdCode;
+    private String ownerName;
+    private Integer month;
+    private Integer year;
+    private String status;
+
+    public FeeSearchRequest() {
+    }
+
+    public FeeSearchRequest(String apartmentCode, String householdCode, String ownerName,
+                            Integer month, Integer year, String status) {
+        setApartmentCode(apartmentCode);
+        setHouseholdCode(householdCode);
+        setOwnerName(ownerName);
+        this.month = month;
+        this.year = year;
+        setStatus(status);
+    }
+
+    public String getApartmentCode() {
+        return apartmentCode;
+    }
+
+    public void setApartmentCode(String apartmentCode) {
+        this.apartmentCode = trimToNull(apartmentCode);
+    }
+
+    public String getHouseholdCode() {
+        return householdCode;
+    }
+
+    public void setHouseholdCode(String householdCode) {
+        this.householdCode = trimToNull(householdCode);
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    public void setOwnerName(String ownerName) {
+        this.ownerName = trimToNull(ownerName);
+    }
+
+    public Integer getMonth() {
+        return month;
+    }
+
+    public void setMonth(Integer month) {
+        this.month = month;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public void setYear(Integer year) {
+        this.year = year;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Set status filter ("all" nghĩa là không lọc)
+     */
+    public void setStatus(String status) {
+        String value = trimToNull(status);
+        this.status = "all".equals(value) ? null : value;
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim();
+    }
+}
@@ -0,0 +1,59 @@
+package vn.bluemoon.model.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregate totals of a set of fee collections (tính bằng SQL, không load từng dòng)
+ */
+public class FeeSummary {
+    private long totalCount;
+    private long paidCount;
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+    private BigDecimal paidAmount = BigDecimal.ZERO;
+
+    public FeeSummary() {
+    }
+
+    public FeeSummary(long totalCount, long paidCount, BigDecimal totalAmount, BigDecimal paidAmount) {
+        this.totalCount = totalCount;
+        this.paidCount = paidCount;
+        this.totalAmount = totalAmount != null ? totalAmount : BigDecimal.ZERO;
+        this.paidAmount = paidAmount != null ? paidAmount : BigDecimal.ZERO;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public long getPaidCount() {
+        return paidCount;
+    }
+
+    public void setPaidCount(long paidCount) {
+        this.paidCount = paidCount;
+    }
+
+    public long getUnpaidCount() {
+        return totalCount - paidCount;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public BigDecimal getPaidAmount() {
+        return paidAmount;
+    }
+
+    public void setPaidAmount(BigDecimal paidAmount) {
+        this.paidAmount = paidAmount;
+    }
+}
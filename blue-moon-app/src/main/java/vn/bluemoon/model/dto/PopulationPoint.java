@@ -0,0 +1,49 @@
+package vn.bluemoon.model.dto;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for one day of population history (một dòng của bảng population_history)
+ */
+public class PopulationPoint {
+    private final LocalDate date;
+    private final int householdCount;
+    private final int residentCount;
+    private final int temporaryResidentCount;
+    private final int temporaryAbsentCount;
+
+    public PopulationPoint(LocalDate date, int householdCount, int residentCount,
+                           int temporaryResidentCount, int temporaryAbsentCount) {
+        this.date = date;
+        this.householdCount = householdCount;
+        this.residentCount = residentCount;
+        this.temporaryResidentCount = temporaryResidentCount;
+        this.temporaryAbsentCount = temporaryAbsentCount;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Households with an owner (cùng cách đếm với HouseholdRepository.countAll)
+     */
+    public int getHouseholdCount() {
+        return householdCount;
+    }
+
+    /**
+     * All residents, including temporary residents and temporarily absent residents
+     */
+    public int getResidentCount() {
+        return residentCount;
+    }
+
+    public int getTemporaryResidentCount() {
+        return temporaryResidentCount;
+    }
+
+    public int getTemporaryAbsentCount() {
+        return temporaryAbsentCount;
+    }
+}
@@ -0,0 +1,25 @@
+package vn.bluemoon.model.dto;
+
+/**
+ * DTO for one rejected row of a resident import
+ */
+public class ResidentImportError {
+    private final int lineNumber;
+    private final String message;
+
+    public ResidentImportError(int lineNumber, String message) {
+        this.lineNumber = lineNumber;
+        this.message = message;
+    }
+
+    /**
+     * Line number in the CSV file (dòng tiêu đề là dòng 1)
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,77 @@
+package vn.bluemoon.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for the result of a bulk resident/household import (nhập nhân khẩu từ file CSV)
+ */
+public class ResidentImportResult {
+    private int totalRows;
+    private int importedCount;
+    private int householdsCreated;
+    private int apartmentsCreated;
+    private long durationMillis;
+    private final List<ResidentImportError> errors = new ArrayList<>();
+
+    /**
+     * Number of data rows in the file (không tính dòng tiêu đề)
+     */
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(int totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    /**
+     * Number of residents inserted
+     */
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public void setImportedCount(int importedCount) {
+        this.importedCount = importedCount;
+    }
+
+    public int getHouseholdsCreated() {
+        return householdsCreated;
+    }
+
+    public void setHouseholdsCreated(int householdsCreated) {
+        this.householdsCreated = householdsCreated;
+    }
+
+    public int getApartmentsCreated() {
+        return apartmentsCreated;
+    }
+
+    public void setApartmentsCreated(int apartmentsCreated) {
+        this.apartmentsCreated = apartmentsCreated;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Rejected rows, in file order
+     */
+    public List<ResidentImportError> getErrors() {
+        return errors;
+    }
+
+    public int getErrorCount() {
+        return errors.size();
+    }
+
+    public void addError(int lineNumber, String message) {
+        errors.add(new ResidentImportError(lineNumber, message));
+    }
+}
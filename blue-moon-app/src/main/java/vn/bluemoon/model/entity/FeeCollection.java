@@ -23,6 +23,7 @@ public class FeeCollection {
     private String notes;
     private LocalDate createdAt;
     private LocalDate updatedAt;
+    private Integer version; // Tăng sau mỗi lần ghi, update() chỉ ghi khi version chưa đổi
     
     // Thông tin từ household và apartment (join)
     private String apartmentCode;
@@ -157,6 +158,14 @@ public class FeeCollection {
         this.updatedAt = updatedAt;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public String getApartmentCode() {
         return apartmentCode;
     }
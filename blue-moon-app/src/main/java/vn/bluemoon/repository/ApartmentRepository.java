@@ -3,10 +3,16 @@ package vn.bluemoon.repository;
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.util.JdbcUtils;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Repository for Apartment entity
@@ -31,9 +37,81 @@ public class ApartmentRepository {
         }
         return 0;
     }
+    
+    /**
+     * Find apartment IDs by code (truy vấn IN theo từng nhóm)
+     * @return Map of apartment_code to id, only for codes that exist
+     */
+    public Map<String, Integer> findIdsByCodes(Collection<String> codes) throws DbException {
+        Map<String, Integer> ids = new HashMap<>();
+        String sql = "SELECT id, apartment_code FROM apartments WHERE apartment_code IN (";
+        try (Connection conn = JdbcUtils.getConnection()) {
+            for (List<String> chunk : JdbcUtils.inChunks(codes)) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql + JdbcUtils.placeholders(chunk.size()) + ")")) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setString(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.put(rs.getString("apartment_code"), rs.getInt("id"));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error finding apartments: " + e.getMessage(), e);
+        }
+        return ids;
+    }
+    
+    /**
+     * Create apartments with default attributes for codes that do not exist yet (một JDBC batch)
+     * Giá trị mặc định giống khi thêm chủ hộ từ màn hình nhân khẩu
+     * @return Number of apartments created
+     */
+    public int createDefaults(Collection<String> codes) throws DbException {
+        if (codes.isEmpty()) {
+            return 0;
+        }
+        String sql = isPostgreSQL()
+            ? "INSERT INTO apartments (building_number, floor_number, room_number, apartment_code, area, number_of_rooms, status) " +
+              "VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (apartment_code) DO NOTHING"
+            : "INSERT IGNORE INTO apartments (building_number, floor_number, room_number, apartment_code, area, number_of_rooms, status) " +
+              "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (String code : codes) {
+                stmt.setString(1, "A");
+                stmt.setInt(2, 1);
+                stmt.setString(3, "01");
+                stmt.setString(4, code);
+                stmt.setBigDecimal(5, new BigDecimal("60.00"));
+                stmt.setInt(6, 2);
+                stmt.setString(7, "occupied");
+                stmt.addBatch();
+            }
+            int created = 0;
+            for (int count : stmt.executeBatch()) {
+                // SUCCESS_NO_INFO (-2): driver không trả số dòng, coi như đã tạo
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    created++;
+                }
+            }
+            return created;
+        } catch (SQLException e) {
+            throw new DbException("Error creating apartments: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Check if using PostgreSQL
+     */
+    private boolean isPostgreSQL() {
+        try {
+            String driver = vn.bluemoon.config.DbConfig.getInstance().getDriver();
+            return driver != null && driver.contains("postgresql");
+        } catch (Exception e) {
+            return false;
+        }
+    }
 }
-
-
-
-
-
@@ -0,0 +1,76 @@
+package vn.bluemoon.repository;
+
+import vn.bluemoon.config.DbConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.ResultColumns;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Forward-only cursor queries shared by the streaming repository methods (forEach/stream*)
+ * Các dòng được đọc từng đợt fetch size và giao cho handler, không nạp cả danh sách vào bộ nhớ
+ */
+final class CursorQuery {
+    private CursorQuery() {
+    }
+
+    /**
+     * Run a query with a forward-only cursor and pass each row to the handler
+     * PostgreSQL chỉ dùng cursor khi autoCommit = false; MySQL Connector/J chỉ stream từng dòng
+     * với fetch size Integer.MIN_VALUE
+     * @param fetchSize Rows fetched per round trip (MySQL luôn stream từng dòng)
+     * @param handlers Creates the row handler once the columns are known (vị trí cột được tra một lần)
+     */
+    static void stream(String sql, List<Object> params, int fetchSize, HandlerFactory handlers)
+            throws SQLException, DbException {
+        Connection conn = JdbcUtils.getConnection();
+        try {
+            boolean autoCommit = conn.getAutoCommit();
+            if (autoCommit) {
+                conn.setAutoCommit(false);
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(sql,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(isMySQL() ? Integer.MIN_VALUE : Math.max(1, fetchSize));
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    ResultSetHandler handler = handlers.prepare(ResultColumns.of(rs));
+                    while (rs.next()) {
+                        handler.handle(rs);
+                    }
+                }
+            } finally {
+                if (autoCommit) {
+                    conn.commit();
+                    conn.setAutoCommit(true);
+                }
+            }
+        } finally {
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private static boolean isMySQL() {
+        try {
+            String driver = DbConfig.getInstance().getDriver();
+            return driver != null && driver.contains("mysql");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    interface ResultSetHandler {
+        void handle(ResultSet rs) throws SQLException, DbException;
+    }
+
+    interface HandlerFactory {
+        ResultSetHandler prepare(ResultColumns columns) throws SQLException;
+    }
+}
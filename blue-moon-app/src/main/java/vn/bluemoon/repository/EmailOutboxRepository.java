@@ -0,0 +1,223 @@
+package vn.bluemoon.repository;
+
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.OutboxEmail;
+import vn.bluemoon.util.JdbcUtils;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository for OutboxEmail entity (bảng email_outbox)
+ * Web request chỉ ghi vào outbox, EmailDispatcher gửi trong nền
+ */
+public class EmailOutboxRepository {
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    /**
+     * Queue an email for sending
+     */
+    public OutboxEmail enqueue(OutboxEmail email) throws DbException {
+        String sql = "INSERT INTO email_outbox (to_email, subject, body, status, attempts, next_attempt_at) " +
+                     "VALUES (?, ?, ?, ?, 0, ?)";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, email.getToEmail());
+            stmt.setString(2, email.getSubject());
+            stmt.setString(3, email.getBody());
+            stmt.setString(4, OutboxEmail.STATUS_PENDING);
+            stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.executeUpdate();
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    email.setId(generatedKeys.getLong(1));
+                }
+            }
+            return email;
+        } catch (SQLException e) {
+            throw new DbException("Error queueing email: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Queue several emails in one JDBC batch (không lấy id sinh ra)
+     */
+    public void enqueueAll(List<OutboxEmail> emails) throws DbException {
+        if (emails.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO email_outbox (to_email, subject, body, status, attempts, next_attempt_at) " +
+                     "VALUES (?, ?, ?, ?, 0, ?)";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            for (OutboxEmail email : emails) {
+                stmt.setString(1, email.getToEmail());
+                stmt.setString(2, email.getSubject());
+                stmt.setString(3, email.getBody());
+                stmt.setString(4, OutboxEmail.STATUS_PENDING);
+                stmt.setTimestamp(5, now);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            throw new DbException("Error queueing emails: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claim up to limit due emails for this dispatcher
+     * Mỗi dòng được nhận bằng UPDATE có điều kiện (status, next_attempt_at) nên hai node không gửi trùng;
+     * dòng SENDING quá thời hạn lease (node chết giữa chừng) được nhận lại.
+     * @param limit Maximum number of emails
+     * @param leaseUntil Time after which an unfinished claim can be taken again
+     * @return Claimed emails
+     */
+    public List<OutboxEmail> claimDue(int limit, LocalDateTime leaseUntil) throws DbException {
+        List<OutboxEmail> due = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String selectSql = "SELECT * FROM email_outbox " +
+                           "WHERE status IN (?, ?) AND next_attempt_at <= ? " +
+                           "ORDER BY next_attempt_at, id LIMIT ?";
+        String claimSql = "UPDATE email_outbox SET status = ?, next_attempt_at = ? " +
+                          "WHERE id = ? AND status IN (?, ?) AND next_attempt_at <= ?";
+
+        try (Connection conn = JdbcUtils.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                stmt.setString(1, OutboxEmail.STATUS_PENDING);
+                stmt.setString(2, OutboxEmail.STATUS_SENDING);
+                stmt.setTimestamp(3, now);
+                stmt.setInt(4, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        due.add(mapResultSetToEmail(rs));
+                    }
+                }
+            }
+
+            List<OutboxEmail> claimed = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(claimSql)) {
+                for (OutboxEmail email : due) {
+                    stmt.setString(1, OutboxEmail.STATUS_SENDING);
+                    stmt.setTimestamp(2, Timestamp.valueOf(leaseUntil));
+                    stmt.setLong(3, email.getId());
+                    stmt.setString(4, OutboxEmail.STATUS_PENDING);
+                    stmt.setString(5, OutboxEmail.STATUS_SENDING);
+                    stmt.setTimestamp(6, now);
+                    if (stmt.executeUpdate() > 0) {
+                        email.setStatus(OutboxEmail.STATUS_SENDING);
+                        claimed.add(email);
+                    }
+                }
+            }
+            return claimed;
+        } catch (SQLException e) {
+            throw new DbException("Error claiming queued emails: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Mark an email as sent
+     */
+    public void markSent(Long id) throws DbException {
+        String sql = "UPDATE email_outbox SET status = ?, attempts = attempts + 1, sent_at = ?, last_error = NULL WHERE id = ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, OutboxEmail.STATUS_SENT);
+            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setLong(3, id);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error marking email as sent: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Record a failed attempt
+     * @param nextAttemptAt Time of the next attempt, or null to give up (FAILED)
+     */
+    public void markAttemptFailed(Long id, String error, LocalDateTime nextAttemptAt) throws DbException {
+        String sql = "UPDATE email_outbox SET status = ?, attempts = attempts + 1, last_error = ?, " +
+                     "next_attempt_at = COALESCE(?, next_attempt_at) WHERE id = ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, nextAttemptAt != null ? OutboxEmail.STATUS_PENDING : OutboxEmail.STATUS_FAILED);
+            stmt.setString(2, truncate(error));
+            stmt.setTimestamp(3, nextAttemptAt != null ? Timestamp.valueOf(nextAttemptAt) : null);
+            stmt.setLong(4, id);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error recording email failure: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete sent emails older than a cutoff (giữ outbox gọn)
+     * @return Number of rows deleted
+     */
+    public int deleteSentBefore(LocalDateTime cutoff) throws DbException {
+        String sql = "DELETE FROM email_outbox WHERE status = ? AND sent_at < ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, OutboxEmail.STATUS_SENT);
+            stmt.setTimestamp(2, Timestamp.valueOf(cutoff));
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error deleting sent emails: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Count emails by status (cho metrics)
+     */
+    public Map<String, Long> countByStatus() throws DbException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        String sql = "SELECT status, COUNT(*) FROM email_outbox GROUP BY status";
+        try (Connection conn = JdbcUtils.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getLong(2));
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error counting queued emails: " + e.getMessage(), e);
+        }
+        return counts;
+    }
+
+    private String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private OutboxEmail mapResultSetToEmail(ResultSet rs) throws SQLException {
+        OutboxEmail email = new OutboxEmail();
+        email.setId(rs.getLong("id"));
+        email.setToEmail(rs.getString("to_email"));
+        email.setSubject(rs.getString("subject"));
+        email.setBody(rs.getString("body"));
+        email.setStatus(rs.getString("status"));
+        email.setAttempts(rs.getInt("attempts"));
+        Timestamp nextAttemptAt = rs.getTimestamp("next_attempt_at");
+        if (nextAttemptAt != null) {
+            email.setNextAttemptAt(nextAttemptAt.toLocalDateTime());
+        }
+        email.setLastError(rs.getString("last_error"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        if (createdAt != null) {
+            email.setCreatedAt(createdAt.toLocalDateTime());
+        }
+        Timestamp sentAt = rs.getTimestamp("sent_at");
+        if (sentAt != null) {
+            email.setSentAt(sentAt.toLocalDateTime());
+        }
+        return email;
+    }
+}
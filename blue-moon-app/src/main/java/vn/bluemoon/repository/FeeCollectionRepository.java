@@ -1,19 +1,40 @@
 package vn.bluemoon.repository;
 
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.FeeAggregate;
+import vn.bluemoon.model.dto.FeeCursor;
+import vn.bluemoon.model.dto.FeeExportRow;
+import vn.bluemoon.model.dto.FeeGroupBy;
+import vn.bluemoon.model.dto.FeeReminderRow;
+import vn.bluemoon.model.dto.FeeSearchRequest;
+import vn.bluemoon.model.dto.FeeSummary;
 import vn.bluemoon.model.entity.FeeCollection;
+import vn.bluemoon.search.HouseholdSearch;
+import vn.bluemoon.stats.DashboardStatistics;
+import vn.bluemoon.util.AppLogger;
 import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.ResultColumns;
+import vn.bluemoon.util.SchemaCapabilities;
+import vn.bluemoon.util.UnitOfWork;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Repository for FeeCollection entity
  */
 public class FeeCollectionRepository {
+    // Tên chủ hộ: lấy từ projection household_owners, fallback về households.owner_name
+    private static final String OWNER_NAME = "COALESCE(ho.owner_name, h.owner_name)";
+    
+    private final FeeRevenueRollupRepository rollupRepository = new FeeRevenueRollupRepository();
     
     /**
      * Find all fee collections with household and apartment info
@@ -23,16 +44,50 @@ public class FeeCollectionRepository {
      */
     public List<FeeCollection> findAll() throws DbException {
         List<FeeCollection> fees = new ArrayList<>();
-        boolean isPostgreSQL = isPostgreSQL();
+        String sql = findAllSql(isPostgreSQL());
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            FeeCollectionMapper mapper = new FeeCollectionMapper(ResultColumns.of(rs));
+            while (rs.next()) {
+                fees.add(mapper.map(rs));
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error finding all fee collections: " + e.getMessage(), e);
+        }
+        return fees;
+    }
+    
+    /**
+     * Stream all fee collections (cùng dữ liệu và thứ tự với findAll()) without building a list
+     * Đọc bằng cursor (fetch size) nên bộ nhớ không phụ thuộc số dòng, dùng cho job/xuất dữ liệu
+     * @param fetchSize Rows fetched per round trip
+     * @param handler Called once per row
+     */
+    public void forEach(int fetchSize, RowHandler<FeeCollection> handler) throws DbException {
+        try {
+            CursorQuery.stream(findAllSql(isPostgreSQL()), Collections.emptyList(), fetchSize, columns -> {
+                FeeCollectionMapper mapper = new FeeCollectionMapper(columns);
+                return rs -> handler.handle(mapper.map(rs));
+            });
+        } catch (SQLException e) {
+            throw new DbException("Error streaming fee collections: " + e.getMessage(), e);
+        }
+    }
+    
+    private String findAllSql(boolean isPostgreSQL) {
         String sql;
         
         if (isPostgreSQL) {
             sql = "SELECT DISTINCT ON (fc.id) fc.*, " +
                  "a.apartment_code, " +
                  "h.household_code, " +
-                 "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                 "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                  "FROM fee_collections fc " +
                  "JOIN households h ON fc.household_id = h.id " +
+                 "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                  "JOIN apartments a ON h.apartment_id = a.id " +
                  "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' " +
                  "ORDER BY fc.id, fc.year DESC, fc.month DESC, fc.created_at DESC";
@@ -41,45 +96,71 @@ public class FeeCollectionRepository {
             sql = "SELECT fc.*, " +
                  "a.apartment_code, " +
                  "h.household_code, " +
-                 "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                 "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                  "FROM fee_collections fc " +
                  "JOIN households h ON fc.household_id = h.id " +
+                 "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                  "JOIN apartments a ON h.apartment_id = a.id " +
                  "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' " +
                  "ORDER BY fc.year DESC, fc.month DESC, fc.created_at DESC";
         }
+        return sql;
+    }
+    
+    /**
+     * Find fee collections by user ID (through resident)
+     * CHỈ LẤY CÁC FEE_COLLECTIONS CỦA CHỦ HỘ
+     * Lấy owner_name từ residents table để đảm bảo đồng bộ
+     * Tìm trực tiếp qua household_id của resident có user_id
+     */
+    public List<FeeCollection> findByUserId(Integer userId) throws DbException {
+        List<FeeCollection> fees = new ArrayList<>();
+        String sql = findByUserIdSql(isPostgreSQL());
         
         try (Connection conn = JdbcUtils.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            FeeCollectionMapper mapper = new FeeCollectionMapper(ResultColumns.of(rs));
             while (rs.next()) {
-                fees.add(mapResultSetToFeeCollection(rs));
+                fees.add(mapper.map(rs));
             }
+            
+            AppLogger.debug("Found {} fee collections for user {}", fees.size(), userId);
         } catch (SQLException e) {
-            throw new DbException("Error finding all fee collections: " + e.getMessage(), e);
+            throw new DbException("Error finding fee collections by user: " + e.getMessage(), e);
         }
         return fees;
     }
     
     /**
-     * Find fee collections by user ID (through resident)
-     * CHỈ LẤY CÁC FEE_COLLECTIONS CỦA CHỦ HỘ
-     * Lấy owner_name từ residents table để đảm bảo đồng bộ
-     * Tìm trực tiếp qua household_id của resident có user_id
+     * Stream the fee collections of a user's household (cùng dữ liệu và thứ tự với findByUserId())
+     * @param userId User ID
+     * @param fetchSize Rows fetched per round trip
+     * @param handler Called once per row
      */
-    public List<FeeCollection> findByUserId(Integer userId) throws DbException {
-        List<FeeCollection> fees = new ArrayList<>();
-        boolean isPostgreSQL = isPostgreSQL();
+    public void forEachByUserId(Integer userId, int fetchSize, RowHandler<FeeCollection> handler) throws DbException {
+        try {
+            CursorQuery.stream(findByUserIdSql(isPostgreSQL()), Collections.singletonList(userId), fetchSize, columns -> {
+                FeeCollectionMapper mapper = new FeeCollectionMapper(columns);
+                return rs -> handler.handle(mapper.map(rs));
+            });
+        } catch (SQLException e) {
+            throw new DbException("Error streaming fee collections for user: " + e.getMessage(), e);
+        }
+    }
+    
+    private String findByUserIdSql(boolean isPostgreSQL) {
         String sql;
         
         if (isPostgreSQL) {
             sql = "SELECT DISTINCT ON (fc.id) fc.*, " +
                  "a.apartment_code, " +
                  "h.household_code, " +
-                 "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                 "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                  "FROM fee_collections fc " +
                  "JOIN households h ON fc.household_id = h.id " +
+                 "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                  "JOIN apartments a ON h.apartment_id = a.id " +
                  "WHERE fc.household_id IN (SELECT household_id FROM residents WHERE user_id = ? AND relationship = 'Chủ hộ') " +
                  "ORDER BY fc.id, fc.year DESC, fc.month DESC";
@@ -87,61 +168,15 @@ public class FeeCollectionRepository {
             sql = "SELECT fc.*, " +
                  "a.apartment_code, " +
                  "h.household_code, " +
-                 "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                 "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                  "FROM fee_collections fc " +
                  "JOIN households h ON fc.household_id = h.id " +
+                 "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                  "JOIN apartments a ON h.apartment_id = a.id " +
                  "WHERE fc.household_id IN (SELECT household_id FROM residents WHERE user_id = ? AND relationship = 'Chủ hộ') " +
                  "ORDER BY fc.year DESC, fc.month DESC";
         }
-        
-        try (Connection conn = JdbcUtils.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                fees.add(mapResultSetToFeeCollection(rs));
-            }
-            
-            // Debug log
-            System.out.println("Query fee collections for user ID: " + userId);
-            System.out.println("Found " + fees.size() + " fee collections");
-            if (fees.size() > 0) {
-                System.out.println("First fee: household_id=" + fees.get(0).getHouseholdId() + 
-                                 ", month=" + fees.get(0).getMonth() + 
-                                 ", year=" + fees.get(0).getYear() + 
-                                 ", status=" + fees.get(0).getStatus());
-            } else {
-                System.out.println("No fee collections found. Checking if user has resident record...");
-                // Kiểm tra xem user có resident record không
-                String checkResidentSql = "SELECT household_id FROM residents WHERE user_id = ? AND relationship = 'Chủ hộ'";
-                try (PreparedStatement checkStmt = conn.prepareStatement(checkResidentSql)) {
-                    checkStmt.setInt(1, userId);
-                    ResultSet checkRs = checkStmt.executeQuery();
-                    if (checkRs.next()) {
-                        int householdId = checkRs.getInt("household_id");
-                        System.out.println("User has resident record with household_id: " + householdId);
-                        // Kiểm tra xem có fee collections nào cho household này không
-                        String checkFeeSql = "SELECT COUNT(*) FROM fee_collections WHERE household_id = ?";
-                        try (PreparedStatement feeStmt = conn.prepareStatement(checkFeeSql)) {
-                            feeStmt.setInt(1, householdId);
-                            ResultSet feeRs = feeStmt.executeQuery();
-                            if (feeRs.next()) {
-                                int feeCount = feeRs.getInt(1);
-                                System.out.println("Found " + feeCount + " fee collections for household " + householdId);
-                            }
-                        }
-                    } else {
-                        System.out.println("User does NOT have resident record with relationship = 'Chủ hộ'");
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error in findByUserId query: " + e.getMessage());
-            e.printStackTrace();
-            throw new DbException("Error finding fee collections by user: " + e.getMessage(), e);
-        }
-        return fees;
+        return sql;
     }
     
     /**
@@ -152,9 +187,10 @@ public class FeeCollectionRepository {
         String sql = "SELECT fc.*, " +
                      "a.apartment_code, " +
                      "h.household_code, " +
-                     "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                     "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                      "FROM fee_collections fc " +
                      "JOIN households h ON fc.household_id = h.id " +
+                     "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                      "JOIN apartments a ON h.apartment_id = a.id " +
                      "WHERE fc.id = ? " +
                      "AND a.apartment_code NOT LIKE 'DEFAULT-%'";
@@ -164,7 +200,7 @@ public class FeeCollectionRepository {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return mapResultSetToFeeCollection(rs);
+                return new FeeCollectionMapper(ResultColumns.of(rs)).map(rs);
             }
         } catch (SQLException e) {
             throw new DbException("Error finding fee collection by ID: " + e.getMessage(), e);
@@ -186,9 +222,10 @@ public class FeeCollectionRepository {
             sql = "SELECT DISTINCT ON (fc.id) fc.*, " +
                  "a.apartment_code, " +
                  "h.household_code, " +
-                 "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                 "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                  "FROM fee_collections fc " +
                  "JOIN households h ON fc.household_id = h.id " +
+                 "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                  "JOIN apartments a ON h.apartment_id = a.id " +
                  "WHERE fc.household_id = ? " +
                  "AND EXISTS (SELECT 1 FROM residents r2 WHERE r2.household_id = h.id AND r2.relationship = 'Chủ hộ') " +
@@ -197,9 +234,10 @@ public class FeeCollectionRepository {
             sql = "SELECT fc.*, " +
                  "a.apartment_code, " +
                  "h.household_code, " +
-                 "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                 "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                  "FROM fee_collections fc " +
                  "JOIN households h ON fc.household_id = h.id " +
+                 "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                  "JOIN apartments a ON h.apartment_id = a.id " +
                  "WHERE fc.household_id = ? " +
                  "AND a.apartment_code NOT LIKE 'DEFAULT-%' " +
@@ -210,8 +248,9 @@ public class FeeCollectionRepository {
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, householdId);
             ResultSet rs = stmt.executeQuery();
+            FeeCollectionMapper mapper = new FeeCollectionMapper(ResultColumns.of(rs));
             while (rs.next()) {
-                fees.add(mapResultSetToFeeCollection(rs));
+                fees.add(mapper.map(rs));
             }
         } catch (SQLException e) {
             throw new DbException("Error finding fee collections by household: " + e.getMessage(), e);
@@ -233,9 +272,10 @@ public class FeeCollectionRepository {
             sql = "SELECT DISTINCT ON (fc.id) fc.*, " +
                  "a.apartment_code, " +
                  "h.household_code, " +
-                 "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                 "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                  "FROM fee_collections fc " +
                  "JOIN households h ON fc.household_id = h.id " +
+                 "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                  "JOIN apartments a ON h.apartment_id = a.id " +
                  "WHERE fc.month = ? AND fc.year = ? " +
                  "AND a.apartment_code NOT LIKE 'DEFAULT-%' " +
@@ -244,9 +284,10 @@ public class FeeCollectionRepository {
             sql = "SELECT fc.*, " +
                  "a.apartment_code, " +
                  "h.household_code, " +
-                 "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                 "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                  "FROM fee_collections fc " +
                  "JOIN households h ON fc.household_id = h.id " +
+                 "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                  "JOIN apartments a ON h.apartment_id = a.id " +
                  "WHERE fc.month = ? AND fc.year = ? " +
                  "AND a.apartment_code NOT LIKE 'DEFAULT-%' " +
@@ -258,8 +299,9 @@ public class FeeCollectionRepository {
             stmt.setInt(1, month);
             stmt.setInt(2, year);
             ResultSet rs = stmt.executeQuery();
+            FeeCollectionMapper mapper = new FeeCollectionMapper(ResultColumns.of(rs));
             while (rs.next()) {
-                fees.add(mapResultSetToFeeCollection(rs));
+                fees.add(mapper.map(rs));
             }
         } catch (SQLException e) {
             throw new DbException("Error finding fee collections by month/year: " + e.getMessage(), e);
@@ -291,9 +333,10 @@ public class FeeCollectionRepository {
             sql.append(
                 "a.apartment_code, " +
                 "h.household_code, " +
-                "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                 "FROM fee_collections fc " +
                 "JOIN households h ON fc.household_id = h.id " +
+                "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                 "JOIN apartments a ON h.apartment_id = a.id " +
                 "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' "
             );
@@ -301,108 +344,383 @@ public class FeeCollectionRepository {
             sql.append(
                 "a.apartment_code, " +
                 "h.household_code, " +
-                "COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC, r.created_at DESC LIMIT 1), h.owner_name) as owner_name " +
+                "COALESCE(ho.owner_name, h.owner_name) as owner_name " +
                 "FROM fee_collections fc " +
                 "JOIN households h ON fc.household_id = h.id " +
+                "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                 "JOIN apartments a ON h.apartment_id = a.id " +
                 "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' "
             );
         }
         
-        // Thêm điều kiện tìm kiếm theo tên chủ hộ - filter trên calculated owner_name
-        // Sử dụng HAVING hoặc subquery để filter trên calculated field
-        if (ownerName != null && !ownerName.trim().isEmpty()) {
-            String searchPattern = "%" + ownerName.trim() + "%";
-            if (isPostgreSQL) {
-                // Filter trên COALESCE result bằng cách dùng subquery trong WHERE
-                sql.append(" AND (COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1), h.owner_name) ILIKE ?)");
-            } else {
-                sql.append(" AND (COALESCE((SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' ORDER BY r.user_id DESC, r.created_at DESC LIMIT 1), h.owner_name) LIKE ?)");
+        appendSearchFilters(sql, params,
+            new FeeSearchRequest(apartmentCode, householdCode, ownerName, month, year, status));
+        
+        if (isPostgreSQL) {
+            sql.append(" ORDER BY fc.id, fc.year DESC, fc.month DESC, fc.created_at DESC");
+        } else {
+            sql.append(" ORDER BY fc.year DESC, fc.month DESC, fc.created_at DESC");
+        }
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            
+            ResultSet rs = stmt.executeQuery();
+            FeeCollectionMapper mapper = new FeeCollectionMapper(ResultColumns.of(rs));
+            while (rs.next()) {
+                fees.add(mapper.map(rs));
             }
-            params.add(searchPattern);
+        } catch (SQLException e) {
+            throw new DbException("Error searching fee collections: " + e.getMessage(), e);
         }
+        return fees;
+    }
+    
+    /**
+     * Find one page of fee collections using keyset pagination on (year, month, id) descending
+     * CHỈ LẤY CÁC HỘ KHÔNG THUỘC CĂN HỘ MẶC ĐỊNH, cùng bộ lọc với search()
+     * @param filter Search filters
+     * @param cursor Keyset position, null for the first page
+     * @param backward true to read the rows before the cursor (trang trước)
+     * @param limit Maximum number of rows
+     * @return Rows in display order (mới nhất trước)
+     */
+    public List<FeeCollection> findPage(FeeSearchRequest filter, FeeCursor cursor, boolean backward, int limit) 
+            throws DbException {
+        List<FeeCollection> fees = new ArrayList<>();
+        boolean isPostgreSQL = isPostgreSQL();
+        List<Object> params = new ArrayList<>();
         
-        // Các điều kiện tìm kiếm khác
-        if (apartmentCode != null && !apartmentCode.trim().isEmpty()) {
+        StringBuilder sql = new StringBuilder(
+            "SELECT fc.*, " +
+            "a.apartment_code, " +
+            "h.household_code, " +
+            OWNER_NAME + " as owner_name " +
+            "FROM fee_collections fc " +
+            "JOIN households h ON fc.household_id = h.id " +
+            "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
+            "JOIN apartments a ON h.apartment_id = a.id " +
+            "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' "
+        );
+        appendSearchFilters(sql, params, filter);
+        
+        if (cursor != null) {
+            String op = backward ? ">" : "<";
             if (isPostgreSQL) {
-                sql.append(" AND a.apartment_code ILIKE ?");
+                // Row comparison dùng được index idx_fee_collections_keyset
+                sql.append(" AND (COALESCE(fc.year, 0), COALESCE(fc.month, 0), fc.id) ").append(op).append(" (?, ?, ?)");
+                params.add(cursor.getYear());
+                params.add(cursor.getMonth());
+                params.add(cursor.getId());
             } else {
-                sql.append(" AND a.apartment_code LIKE ?");
+                sql.append(" AND (COALESCE(fc.year, 0) ").append(op).append(" ?")
+                   .append(" OR (COALESCE(fc.year, 0) = ? AND (COALESCE(fc.month, 0) ").append(op).append(" ?")
+                   .append(" OR (COALESCE(fc.month, 0) = ? AND fc.id ").append(op).append(" ?))))");
+                params.add(cursor.getYear());
+                params.add(cursor.getYear());
+                params.add(cursor.getMonth());
+                params.add(cursor.getMonth());
+                params.add(cursor.getId());
             }
-            params.add("%" + apartmentCode.trim() + "%");
         }
-        if (householdCode != null && !householdCode.trim().isEmpty()) {
-            if (isPostgreSQL) {
-                sql.append(" AND h.household_code ILIKE ?");
-            } else {
-                sql.append(" AND h.household_code LIKE ?");
+        
+        String direction = backward ? "ASC" : "DESC";
+        sql.append(" ORDER BY COALESCE(fc.year, 0) ").append(direction)
+           .append(", COALESCE(fc.month, 0) ").append(direction)
+           .append(", fc.id ").append(direction)
+           .append(" LIMIT ?");
+        params.add(limit);
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                FeeCollectionMapper mapper = new FeeCollectionMapper(ResultColumns.of(rs));
+                while (rs.next()) {
+                    fees.add(mapper.map(rs));
+                }
             }
-            params.add("%" + householdCode.trim() + "%");
+        } catch (SQLException e) {
+            throw new DbException("Error loading fee collection page: " + e.getMessage(), e);
         }
-        if (month != null) {
-            sql.append(" AND fc.month = ?");
-            params.add(month);
+        
+        if (backward) {
+            Collections.reverse(fees);
         }
-        if (year != null) {
-            sql.append(" AND fc.year = ?");
-            params.add(year);
+        return fees;
+    }
+    
+    /**
+     * Count and sum fee collections matching the filters in one aggregate query
+     * @param filter Search filters (cùng bộ lọc với search())
+     * @return Totals: count, paid count, total amount, paid amount
+     */
+    public FeeSummary summarize(FeeSearchRequest filter) throws DbException {
+        if (rollupRepository.canAnswer(filter)) {
+            return rollupRepository.summarize(filter);
         }
-        if (status != null && !status.trim().isEmpty()) {
-            sql.append(" AND fc.status = ?");
-            params.add(status);
+        return summarizeFromTable(filter);
+    }
+    
+    /**
+     * Totals computed from fee_collections, never from the rollup
+     * (dùng để đối soát định kỳ, để sai lệch của rollup không lan sang dashboard)
+     */
+    public FeeSummary summarizeFromTable(FeeSearchRequest filter) throws DbException {
+        List<Object> params = new ArrayList<>();
+        
+        StringBuilder sql = new StringBuilder(
+            "SELECT COUNT(*) AS total_count, " +
+            "SUM(CASE WHEN fc.status = 'paid' THEN 1 ELSE 0 END) AS paid_count, " +
+            "COALESCE(SUM(fc.amount), 0) AS total_amount, " +
+            "COALESCE(SUM(fc.paid_amount), 0) AS paid_amount " +
+            "FROM fee_collections fc " +
+            "JOIN households h ON fc.household_id = h.id " +
+            "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
+            "JOIN apartments a ON h.apartment_id = a.id " +
+            "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' "
+        );
+        appendSearchFilters(sql, params, filter);
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new FeeSummary(
+                        rs.getLong("total_count"),
+                        rs.getLong("paid_count"),
+                        rs.getBigDecimal("total_amount"),
+                        rs.getBigDecimal("paid_amount"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error summarizing fee collections: " + e.getMessage(), e);
+        }
+        return new FeeSummary();
+    }
+    
+    /**
+     * Aggregate fee collections matching the filters, grouped by status, month or fee type
+     * @param filter Search filters (cùng bộ lọc với search())
+     * @param groupBy Grouping dimension
+     * @return One row per group: count, paid count, total amount, paid amount
+     */
+    public List<FeeAggregate> aggregate(FeeSearchRequest filter, FeeGroupBy groupBy) throws DbException {
+        if (rollupRepository.canAnswer(filter)) {
+            return rollupRepository.aggregate(filter, groupBy);
         }
+        List<FeeAggregate> result = new ArrayList<>();
+        boolean isPostgreSQL = isPostgreSQL();
+        boolean hasFeeTypeIdColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type_id");
+        List<Object> params = new ArrayList<>();
         
-        if (isPostgreSQL) {
-            sql.append(" ORDER BY fc.id, fc.year DESC, fc.month DESC, fc.created_at DESC");
+        String groupColumns;
+        String orderBy;
+        switch (groupBy) {
+            case MONTH:
+                groupColumns = "fc.year, fc.month";
+                orderBy = "fc.year DESC, fc.month DESC";
+                break;
+            case FEE_TYPE:
+                groupColumns = "fc.fee_type_id, ft.name";
+                orderBy = "total_amount DESC";
+                break;
+            default:
+                groupColumns = "fc.status";
+                orderBy = "fc.status";
+                break;
+        }
+        
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (groupBy == FeeGroupBy.FEE_TYPE) {
+            sql.append(hasFeeTypeIdColumn ? "fc.fee_type_id AS fee_type_id, ft.name AS fee_type_name, " : "");
         } else {
-            sql.append(" ORDER BY fc.year DESC, fc.month DESC, fc.created_at DESC");
+            sql.append(groupColumns).append(", ");
+        }
+        sql.append(
+            "COUNT(*) AS total_count, " +
+            "SUM(CASE WHEN fc.status = 'paid' THEN 1 ELSE 0 END) AS paid_count, " +
+            "COALESCE(SUM(fc.amount), 0) AS total_amount, " +
+            "COALESCE(SUM(fc.paid_amount), 0) AS paid_amount " +
+            "FROM fee_collections fc " +
+            "JOIN households h ON fc.household_id = h.id " +
+            "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
+            "JOIN apartments a ON h.apartment_id = a.id "
+        );
+        if (groupBy == FeeGroupBy.FEE_TYPE && hasFeeTypeIdColumn) {
+            sql.append("LEFT JOIN fee_types ft ON fc.fee_type_id = ft.id ");
+        }
+        sql.append("WHERE a.apartment_code NOT LIKE 'DEFAULT-%' ");
+        appendSearchFilters(sql, params, filter);
+        if (groupBy != FeeGroupBy.FEE_TYPE || hasFeeTypeIdColumn) {
+            sql.append(" GROUP BY ").append(groupColumns);
         }
+        sql.append(" ORDER BY ").append(orderBy);
         
         try (Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            
-            // Debug log
-            System.out.println("DEBUG: FeeCollectionRepository.search()");
-            System.out.println("  SQL: " + sql.toString());
-            System.out.println("  Parameters: " + params);
-            System.out.println("  apartmentCode: " + apartmentCode);
-            System.out.println("  householdCode: " + householdCode);
-            System.out.println("  ownerName: " + ownerName);
-            System.out.println("  month: " + month);
-            System.out.println("  year: " + year);
-            System.out.println("  status: " + status);
-            
             for (int i = 0; i < params.size(); i++) {
                 stmt.setObject(i + 1, params.get(i));
             }
-            
-            ResultSet rs = stmt.executeQuery();
-            int count = 0;
-            while (rs.next()) {
-                fees.add(mapResultSetToFeeCollection(rs));
-                count++;
-                if (count <= 5) {
-                    System.out.println("  Found fee #" + count + ": id=" + rs.getInt("id") + 
-                                     ", owner_name=" + rs.getString("owner_name") + 
-                                     ", status=" + rs.getString("status"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    FeeAggregate row = new FeeAggregate(
+                        rs.getLong("total_count"),
+                        rs.getLong("paid_count"),
+                        rs.getBigDecimal("total_amount"),
+                        rs.getBigDecimal("paid_amount"));
+                    switch (groupBy) {
+                        case MONTH:
+                            row.setYear(rs.getObject("year", Integer.class));
+                            row.setMonth(rs.getObject("month", Integer.class));
+                            break;
+                        case FEE_TYPE:
+                            if (hasFeeTypeIdColumn) {
+                                row.setFeeTypeId(rs.getObject("fee_type_id", Integer.class));
+                                row.setFeeTypeName(rs.getString("fee_type_name"));
+                            }
+                            if (row.getFeeTypeName() == null) {
+                                row.setFeeTypeName("Khác");
+                            }
+                            break;
+                        default:
+                            row.setStatus(rs.getString("status"));
+                            break;
+                    }
+                    result.add(row);
                 }
             }
-            System.out.println("  Total found: " + count);
         } catch (SQLException e) {
-            System.err.println("ERROR in search: " + e.getMessage());
-            e.printStackTrace();
-            throw new DbException("Error searching fee collections: " + e.getMessage(), e);
+            throw new DbException("Error aggregating fee collections: " + e.getMessage(), e);
+        }
+        return result;
+    }
+    
+    /**
+     * Find the most recently updated fee collections
+     * @param limit Maximum number of rows
+     */
+    public List<FeeCollection> findRecentlyUpdated(int limit) throws DbException {
+        List<FeeCollection> fees = new ArrayList<>();
+        boolean isPostgreSQL = isPostgreSQL();
+        String sql = "SELECT fc.*, " +
+                     "a.apartment_code, " +
+                     "h.household_code, " +
+                     OWNER_NAME + " as owner_name " +
+                     "FROM fee_collections fc " +
+                     "JOIN households h ON fc.household_id = h.id " +
+                     "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
+                     "JOIN apartments a ON h.apartment_id = a.id " +
+                     "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' " +
+                     (isPostgreSQL
+                         ? "ORDER BY fc.updated_at DESC NULLS LAST, fc.id DESC "
+                         : "ORDER BY fc.updated_at IS NULL, fc.updated_at DESC, fc.id DESC ") +
+                     "LIMIT ?";
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                FeeCollectionMapper mapper = new FeeCollectionMapper(ResultColumns.of(rs));
+                while (rs.next()) {
+                    fees.add(mapper.map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error finding recent fee collections: " + e.getMessage(), e);
         }
         return fees;
     }
     
+    /**
+     * Lock one fee and load its amount, paid amount and status (giá trị trước khi sửa/xóa, cho thống kê dashboard)
+     * Gọi trong UnitOfWork trước khi trừ phần đóng góp cũ khỏi rollup: dòng bị khóa đến khi commit nên
+     * không lần ghi đồng thời nào (applyPayment, update, delete) làm phần bị trừ trở nên cũ
+     * @return Fee with only those fields set, or null if not found
+     */
+    private FeeCollection lockTotals(Integer id) throws DbException {
+        String sql = "SELECT household_id, amount, paid_amount, status FROM fee_collections WHERE id = ? FOR UPDATE";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                FeeCollection fee = new FeeCollection();
+                fee.setHouseholdId(rs.getInt("household_id"));
+                fee.setAmount(rs.getBigDecimal("amount"));
+                fee.setPaidAmount(rs.getBigDecimal("paid_amount"));
+                fee.setStatus(rs.getString("status"));
+                return fee;
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error loading fee collection: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Check if a household's fees count towards the dashboard totals (căn hộ không phải DEFAULT-, giống summarize())
+     */
+    private boolean isCounted(Integer householdId) throws DbException {
+        if (householdId == null) {
+            return false;
+        }
+        String sql = "SELECT 1 FROM households h JOIN apartments a ON h.apartment_id = a.id " +
+                     "WHERE h.id = ? AND a.apartment_code NOT LIKE 'DEFAULT-%'";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, householdId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error loading household: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Append the search() filter conditions to a query over fc/h/a/ho
+     */
+    private void appendSearchFilters(StringBuilder sql, List<Object> params, FeeSearchRequest filter) throws DbException {
+        if (filter == null) {
+            return;
+        }
+        
+        // Tên chủ hộ, mã căn hộ, mã hộ: tìm không phân biệt dấu qua HouseholdSearch
+        HouseholdSearch.appendFilters(sql, params,
+            filter.getOwnerName(), filter.getApartmentCode(), filter.getHouseholdCode());
+        
+        // Các điều kiện tìm kiếm khác
+        if (filter.getMonth() != null) {
+            sql.append(" AND fc.month = ?");
+            params.add(filter.getMonth());
+        }
+        if (filter.getYear() != null) {
+            sql.append(" AND fc.year = ?");
+            params.add(filter.getYear());
+        }
+        if (filter.getStatus() != null) {
+            sql.append(" AND fc.status = ?");
+            params.add(filter.getStatus());
+        }
+    }
+    
     /**
      * Create fee collection
      */
     public FeeCollection create(FeeCollection fee) throws DbException {
         // Kiểm tra xem database có các cột mới chưa
-        boolean hasFeeTypeColumn = checkColumnExists("fee_collections", "fee_type");
-        boolean hasFeeTypeIdColumn = checkColumnExists("fee_collections", "fee_type_id");
+        boolean hasFeeTypeColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type");
+        boolean hasFeeTypeIdColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type_id");
         
         StringBuilder sql = new StringBuilder("INSERT INTO fee_collections (household_id, month, year, amount, paid_amount, status, ");
         List<String> columns = new ArrayList<>();
@@ -417,7 +735,7 @@ public class FeeCollectionRepository {
             columns.add("reason");
         }
         columns.add("payment_date");
-        boolean hasPaymentDeadlineColumn = checkColumnExists("fee_collections", "payment_deadline");
+        boolean hasPaymentDeadlineColumn = SchemaCapabilities.hasColumn("fee_collections", "payment_deadline");
         if (hasPaymentDeadlineColumn) {
             columns.add("payment_deadline");
         }
@@ -431,7 +749,8 @@ public class FeeCollectionRepository {
         }
         sql.append(") RETURNING id");
         
-        try (Connection conn = JdbcUtils.getConnection();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
             int paramIndex = 1;
             stmt.setInt(paramIndex++, fee.getHouseholdId());
@@ -484,47 +803,46 @@ public class FeeCollectionRepository {
             if (rs.next()) {
                 fee.setId(rs.getInt(1));
             }
+            rollupRepository.addFee(fee.getId());
+            if (isCounted(fee.getHouseholdId())) {
+                DashboardStatistics.feeChanged(null, fee);
+            }
+            uow.commit();
             return fee;
         } catch (SQLException e) {
             throw new DbException("Error creating fee collection: " + e.getMessage(), e);
         }
     }
     
-    /**
-     * Kiểm tra xem cột có tồn tại trong bảng không
-     */
-    private boolean checkColumnExists(String tableName, String columnName) {
-        try (Connection conn = JdbcUtils.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                 "SELECT COUNT(*) FROM information_schema.columns " +
-                 "WHERE table_name = ? AND column_name = ?")) {
-            stmt.setString(1, tableName);
-            stmt.setString(2, columnName);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-        } catch (Exception e) {
-            // Nếu không kiểm tra được, giả sử cột không tồn tại
-            return false;
-        }
-        return false;
-    }
-    
     /**
      * Update fee collection
+     * Có cột version thì chỉ ghi khi dòng chưa bị ai sửa kể từ lúc đọc (fee.getVersion() là version đã đọc)
+     * @throws DbException if the row was changed or deleted since it was read
      */
     public void update(FeeCollection fee) throws DbException {
-        boolean hasPaymentDeadlineColumn = checkColumnExists("fee_collections", "payment_deadline");
+        boolean hasPaymentDeadlineColumn = SchemaCapabilities.hasColumn("fee_collections", "payment_deadline");
+        boolean hasVersionColumn = SchemaCapabilities.hasColumn("fee_collections", "version");
         
         StringBuilder sql = new StringBuilder("UPDATE fee_collections SET amount = ?, paid_amount = ?, status = ?, fee_type = ?, reason = ?, ");
         if (hasPaymentDeadlineColumn) {
             sql.append("payment_deadline = ?, ");
         }
+        if (hasVersionColumn) {
+            sql.append("version = version + 1, ");
+        }
         sql.append("payment_date = ?, payment_method = ?, notes = ? WHERE id = ?");
+        if (hasVersionColumn) {
+            if (fee.getVersion() == null) {
+                throw new DbException("Fee collection version is required for update");
+            }
+            sql.append(" AND version = ?");
+        }
         
-        try (Connection conn = JdbcUtils.getConnection();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            FeeCollection before = lockTotals(fee.getId());
+            rollupRepository.removeFee(fee.getId());
             int paramIndex = 1;
             stmt.setBigDecimal(paramIndex++, fee.getAmount());
             stmt.setBigDecimal(paramIndex++, fee.getPaidAmount() != null ? fee.getPaidAmount() : BigDecimal.ZERO);
@@ -549,36 +867,175 @@ public class FeeCollectionRepository {
             stmt.setString(paramIndex++, fee.getPaymentMethod());
             stmt.setString(paramIndex++, fee.getNotes());
             stmt.setInt(paramIndex++, fee.getId());
+            if (hasVersionColumn) {
+                stmt.setInt(paramIndex++, fee.getVersion());
+            }
             
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() == 0) {
+                // Thoát khỏi unit of work không commit: phần trừ rollup ở trên cũng được rollback
+                throw new DbException(before == null
+                    ? "Fee collection not found"
+                    : "Khoản thu phí đã được cập nhật bởi người khác, vui lòng tải lại");
+            }
+            if (hasVersionColumn) {
+                fee.setVersion(fee.getVersion() + 1);
+            }
+            rollupRepository.addFee(fee.getId());
+            if (before != null && isCounted(before.getHouseholdId())) {
+                DashboardStatistics.feeChanged(before, fee);
+            }
+            uow.commit();
         } catch (SQLException e) {
             throw new DbException("Error updating fee collection: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Mark as paid
+     * Mark as paid (paid_amount = amount)
      */
     public void markAsPaid(Integer id, LocalDate paymentDate, String paymentMethod) throws DbException {
-        // First get the fee to get the amount
-        FeeCollection fee = findById(id);
-        if (fee == null) {
+        if (applyPayment(id, null, paymentDate, paymentMethod) == null) {
             throw new DbException("Fee collection not found");
         }
+    }
+    
+    /**
+     * Add a payment to a fee collection atomically (paid_amount = paid_amount + ?, trạng thái tính trong SQL)
+     * Hai lần nộp đồng thời cho cùng một khoản đều được cộng, không lần nào bị mất
+     * @param id Fee collection ID
+     * @param amount Amount paid
+     * @return Fee after the payment (chỉ các cột của fee_collections, không có thông tin hộ), null if not found
+     */
+    public FeeCollection addPayment(Integer id, BigDecimal amount, LocalDate paymentDate, String paymentMethod) 
+            throws DbException {
+        return applyPayment(id, amount != null ? amount : BigDecimal.ZERO, paymentDate, paymentMethod);
+    }
+    
+    /**
+     * Set paid_amount (cộng thêm increment, hoặc bằng amount nếu increment null) and derive status in one UPDATE
+     * PostgreSQL: một câu lệnh, CTE khóa dòng và trả về giá trị cũ cho rollup/thống kê;
+     * MySQL không có UPDATE ... RETURNING nên khóa dòng, cập nhật và đọc lại trong cùng transaction
+     */
+    private FeeCollection applyPayment(Integer id, BigDecimal increment, LocalDate paymentDate, String paymentMethod) 
+            throws DbException {
+        boolean hasVersionColumn = SchemaCapabilities.hasColumn("fee_collections", "version");
+        boolean hasFeeTypeIdColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type_id");
+        String newPaid = increment != null ? "fc.paid_amount + ?" : "fc.amount";
+        // status được gán trước paid_amount: MySQL tính các phép gán từ trái sang phải
+        String set = "status = CASE WHEN " + newPaid + " = fc.amount THEN 'paid' " +
+                     "WHEN " + newPaid + " < fc.amount THEN 'partial_paid' ELSE 'overpaid' END, " +
+                     "paid_amount = " + newPaid + ", payment_date = ?, payment_method = ?" +
+                     (hasVersionColumn ? ", version = fc.version + 1" : "");
+        String columns = "fc.id, fc.household_id, fc.month, fc.year, fc.amount, fc.paid_amount, fc.status, " +
+                         "fc.payment_date, fc.payment_method" +
+                         (hasFeeTypeIdColumn ? ", fc.fee_type_id" : "") +
+                         (hasVersionColumn ? ", fc.version" : "") +
+                         ", EXISTS (SELECT 1 FROM households h JOIN apartments a ON h.apartment_id = a.id " +
+                         "WHERE h.id = fc.household_id AND a.apartment_code NOT LIKE 'DEFAULT-%') AS counted";
         
-        // Update status to paid and set paid_amount = amount
-        String sql = "UPDATE fee_collections SET status = 'paid', paid_amount = amount, payment_date = ?, " +
-                     "payment_method = ? WHERE id = ?";
-        
-        try (Connection conn = JdbcUtils.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setDate(1, Date.valueOf(paymentDate));
-            stmt.setString(2, paymentMethod);
-            stmt.setInt(3, id);
-            stmt.executeUpdate();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection()) {
+            FeeCollection before = new FeeCollection();
+            FeeCollection after;
+            boolean counted;
+            if (isPostgreSQL()) {
+                String sql = "WITH old AS (SELECT id, paid_amount, status FROM fee_collections WHERE id = ? FOR UPDATE) " +
+                             "UPDATE fee_collections fc SET " + set + " FROM old WHERE fc.id = old.id " +
+                             "RETURNING " + columns + ", old.paid_amount AS old_paid_amount, old.status AS old_status";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, id);
+                    setPaymentParams(stmt, 2, increment, paymentDate, paymentMethod);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            return null;
+                        }
+                        after = mapPayment(rs, hasFeeTypeIdColumn, hasVersionColumn);
+                        counted = rs.getBoolean("counted");
+                        before.setPaidAmount(rs.getBigDecimal("old_paid_amount"));
+                        before.setStatus(rs.getString("old_status"));
+                    }
+                }
+            } else {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                         "SELECT paid_amount, status FROM fee_collections WHERE id = ? FOR UPDATE")) {
+                    stmt.setInt(1, id);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            return null;
+                        }
+                        before.setPaidAmount(rs.getBigDecimal("paid_amount"));
+                        before.setStatus(rs.getString("status"));
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(
+                         "UPDATE fee_collections fc SET " + set + " WHERE fc.id = ?")) {
+                    int paramIndex = setPaymentParams(stmt, 1, increment, paymentDate, paymentMethod);
+                    stmt.setInt(paramIndex, id);
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(
+                         "SELECT " + columns + " FROM fee_collections fc WHERE fc.id = ?")) {
+                    stmt.setInt(1, id);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        rs.next();
+                        after = mapPayment(rs, hasFeeTypeIdColumn, hasVersionColumn);
+                        counted = rs.getBoolean("counted");
+                    }
+                }
+            }
+            before.setAmount(after.getAmount());
+            
+            if (counted) {
+                rollupRepository.changePayment(after.getYear(), after.getMonth(), after.getFeeTypeId(),
+                    before.getStatus(), after.getStatus(), after.getAmount(), before.getPaidAmount(), after.getPaidAmount());
+                DashboardStatistics.feeChanged(before, after);
+            }
+            uow.commit();
+            return after;
         } catch (SQLException e) {
-            throw new DbException("Error marking fee as paid: " + e.getMessage(), e);
+            throw new DbException("Error recording payment: " + e.getMessage(), e);
+        }
+    }
+    
+    private int setPaymentParams(PreparedStatement stmt, int paramIndex, BigDecimal increment,
+                                 LocalDate paymentDate, String paymentMethod) throws SQLException {
+        if (increment != null) {
+            // newPaid xuất hiện ba lần: hai lần trong CASE và một lần trong paid_amount
+            for (int i = 0; i < 3; i++) {
+                stmt.setBigDecimal(paramIndex++, increment);
+            }
+        }
+        if (paymentDate != null) {
+            stmt.setDate(paramIndex++, Date.valueOf(paymentDate));
+        } else {
+            stmt.setNull(paramIndex++, Types.DATE);
+        }
+        stmt.setString(paramIndex++, paymentMethod);
+        return paramIndex;
+    }
+    
+    private FeeCollection mapPayment(ResultSet rs, boolean hasFeeTypeIdColumn, boolean hasVersionColumn) 
+            throws SQLException {
+        FeeCollection fee = new FeeCollection();
+        fee.setId(rs.getInt("id"));
+        fee.setHouseholdId(rs.getInt("household_id"));
+        fee.setMonth(rs.getObject("month", Integer.class));
+        fee.setYear(rs.getObject("year", Integer.class));
+        fee.setAmount(rs.getBigDecimal("amount"));
+        fee.setPaidAmount(rs.getBigDecimal("paid_amount"));
+        fee.setStatus(rs.getString("status"));
+        Date paymentDate = rs.getDate("payment_date");
+        if (paymentDate != null) {
+            fee.setPaymentDate(paymentDate.toLocalDate());
+        }
+        fee.setPaymentMethod(rs.getString("payment_method"));
+        if (hasFeeTypeIdColumn) {
+            fee.setFeeTypeId(rs.getObject("fee_type_id", Integer.class));
+        }
+        if (hasVersionColumn) {
+            fee.setVersion(rs.getInt("version"));
         }
+        return fee;
     }
     
     /**
@@ -587,13 +1044,20 @@ public class FeeCollectionRepository {
     public void delete(Integer id) throws DbException {
         String sql = "DELETE FROM fee_collections WHERE id = ?";
         
-        try (Connection conn = JdbcUtils.getConnection();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
+            FeeCollection before = lockTotals(id);
+            rollupRepository.removeFee(id);
             stmt.setInt(1, id);
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected == 0) {
                 throw new DbException("Fee collection not found");
             }
+            if (isCounted(before.getHouseholdId())) {
+                DashboardStatistics.feeChanged(before, null);
+            }
+            uow.commit();
         } catch (SQLException e) {
             throw new DbException("Error deleting fee collection: " + e.getMessage(), e);
         }
@@ -605,88 +1069,323 @@ public class FeeCollectionRepository {
     public void deleteByHouseholdId(Integer householdId) throws DbException {
         String sql = "DELETE FROM fee_collections WHERE household_id = ?";
         
-        try (Connection conn = JdbcUtils.getConnection();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
+            // Khóa các dòng trước khi trừ khỏi rollup (xem lockTotals)
+            try (PreparedStatement lock = conn.prepareStatement(
+                     "SELECT id FROM fee_collections WHERE household_id = ? FOR UPDATE")) {
+                lock.setInt(1, householdId);
+                try (ResultSet rs = lock.executeQuery()) {
+                    while (rs.next()) {
+                        // chỉ cần khóa
+                    }
+                }
+            }
+            rollupRepository.removeHousehold(householdId);
             stmt.setInt(1, householdId);
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) {
+                DashboardStatistics.feesChanged();
+            }
+            uow.commit();
         } catch (SQLException e) {
             throw new DbException("Error deleting fee collections by household: " + e.getMessage(), e);
         }
     }
     
-    private FeeCollection mapResultSetToFeeCollection(ResultSet rs) throws SQLException {
-        FeeCollection fee = new FeeCollection();
-        fee.setId(rs.getInt("id"));
-        fee.setHouseholdId(rs.getInt("household_id"));
-        
-        // Month và year có thể NULL cho thu phí không định kỳ
-        int month = rs.getInt("month");
-        if (!rs.wasNull()) {
-            fee.setMonth(month);
+    /**
+     * Prepare deleting a fee type: chuyển phần đóng góp của các khoản thu thuộc loại phí này sang
+     * nhóm "không có loại phí" trong rollup (FK ON DELETE SET NULL sẽ đặt fee_type_id = NULL)
+     * Gọi trong cùng unit of work với câu DELETE FROM fee_types
+     */
+    public void detachFeeType(Integer feeTypeId) throws DbException {
+        if (!SchemaCapabilities.hasColumn("fee_collections", "fee_type_id")) {
+            return;
         }
-        
-        int year = rs.getInt("year");
-        if (!rs.wasNull()) {
-            fee.setYear(year);
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
+             PreparedStatement lock = conn.prepareStatement(
+                 "SELECT id FROM fee_collections WHERE fee_type_id = ? FOR UPDATE")) {
+            // Khóa các dòng để thanh toán đang chạy không ghi vào nhóm loại phí cũ sau khi đã chuyển
+            lock.setInt(1, feeTypeId);
+            try (ResultSet rs = lock.executeQuery()) {
+                while (rs.next()) {
+                    // chỉ cần khóa
+                }
+            }
+            rollupRepository.moveFeeType(feeTypeId);
+            uow.commit();
+        } catch (SQLException e) {
+            throw new DbException("Error detaching fee type: " + e.getMessage(), e);
         }
+    }
+    
+    // Hộ được thu phí: có chủ hộ và không thuộc căn hộ mặc định (giống findAll của ResidentRepository)
+    private static final String BILLABLE_HOUSEHOLDS =
+        "FROM households h " +
+        "JOIN apartments a ON h.apartment_id = a.id " +
+        "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' " +
+        "AND EXISTS (SELECT 1 FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ') ";
+    
+    /**
+     * Count households that a bulk fee applies to
+     */
+    public int countBillableHouseholds() throws DbException {
+        String sql = "SELECT COUNT(*) " + BILLABLE_HOUSEHOLDS;
         
-        BigDecimal amount = rs.getBigDecimal("amount");
-        fee.setAmount(amount != null ? amount : BigDecimal.ZERO);
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            throw new DbException("Error counting households: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Create one unpaid fee collection per billable household in a single INSERT ... SELECT
+     * Bỏ qua các hộ đã có thu phí cùng fee_type_id trong tháng/năm này
+     * (nếu database chưa có cột fee_type_id thì không kiểm tra trùng, giống createFeeCollection)
+     * @return Number of fee collections created
+     */
+    public int createForAllHouseholds(Integer feeTypeId, Integer month, Integer year,
+                                      BigDecimal amount, LocalDate paymentDeadline) throws DbException {
+        boolean hasFeeTypeColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type");
+        boolean hasFeeTypeIdColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type_id");
+        boolean hasPaymentDeadlineColumn = SchemaCapabilities.hasColumn("fee_collections", "payment_deadline");
+        boolean withFeeTypeId = hasFeeTypeIdColumn && feeTypeId != null;
         
-        BigDecimal paidAmount = rs.getBigDecimal("paid_amount");
-        fee.setPaidAmount(paidAmount != null ? paidAmount : BigDecimal.ZERO);
+        StringBuilder columns = new StringBuilder("household_id, month, year, amount, paid_amount, status");
+        StringBuilder values = new StringBuilder("h.id, ?, ?, ?, 0, 'unpaid'");
+        if (hasFeeTypeColumn) {
+            columns.append(", fee_type");
+            values.append(", 'periodic'");
+        }
+        if (withFeeTypeId) {
+            columns.append(", fee_type_id");
+            values.append(", ?");
+        }
+        if (hasPaymentDeadlineColumn) {
+            columns.append(", payment_deadline");
+            values.append(", ?");
+        }
         
-        fee.setStatus(rs.getString("status"));
+        StringBuilder sql = new StringBuilder("INSERT INTO fee_collections (")
+            .append(columns).append(") SELECT ").append(values).append(" ")
+            .append(BILLABLE_HOUSEHOLDS);
+        if (withFeeTypeId) {
+            sql.append("AND NOT EXISTS (SELECT 1 FROM fee_collections fc " +
+                       "WHERE fc.household_id = h.id AND fc.month = ? AND fc.year = ? AND fc.fee_type_id = ?)");
+        }
         
-        // Fee type và reason
-        try {
-            fee.setFeeType(rs.getString("fee_type"));
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int paramIndex = 1;
+            stmt.setInt(paramIndex++, month);
+            stmt.setInt(paramIndex++, year);
+            stmt.setBigDecimal(paramIndex++, amount != null ? amount : BigDecimal.ZERO);
+            if (withFeeTypeId) {
+                stmt.setInt(paramIndex++, feeTypeId);
+            }
+            if (hasPaymentDeadlineColumn) {
+                if (paymentDeadline != null) {
+                    stmt.setDate(paramIndex++, Date.valueOf(paymentDeadline));
+                } else {
+                    stmt.setNull(paramIndex++, Types.DATE);
+                }
+            }
+            if (withFeeTypeId) {
+                stmt.setInt(paramIndex++, month);
+                stmt.setInt(paramIndex++, year);
+                stmt.setInt(paramIndex++, feeTypeId);
+            }
+            int created = stmt.executeUpdate();
+            if (created > 0) {
+                // Các dòng vừa tạo giống hệt nhau nên biết trước phần cộng vào rollup/thống kê
+                BigDecimal total = (amount != null ? amount : BigDecimal.ZERO).multiply(BigDecimal.valueOf(created));
+                rollupRepository.add(year, month, withFeeTypeId ? feeTypeId : null, "unpaid",
+                    created, total, BigDecimal.ZERO);
+                DashboardStatistics.feeDelta(created, 0, total, BigDecimal.ZERO);
+            }
+            uow.commit();
+            return created;
         } catch (SQLException e) {
-            // Column might not exist in older databases
-            fee.setFeeType("periodic");
+            throw new DbException("Error creating fee collections for all households: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Stream unpaid/partially paid fees whose deadline is on or before a date, ordered by owner email
+     * Đọc bằng cursor (fetch size) thay vì nạp cả danh sách, bộ nhớ không phụ thuộc số dòng
+     * @param dueOnOrBefore Include fees with payment_deadline <= this date
+     * @param remindedBefore Skip fees reminded on or after this time (null = không lọc)
+     * @param fetchSize Rows fetched per round trip
+     * @param handler Called once per row, in order (owner_email, household_id, payment_deadline)
+     */
+    public void streamDueForReminder(LocalDate dueOnOrBefore, LocalDateTime remindedBefore, int fetchSize,
+                                     RowHandler<FeeReminderRow> handler) throws DbException {
+        boolean hasReminderColumn = SchemaCapabilities.hasColumn("fee_collections", "reminder_sent_at");
+        boolean hasFeeTypeIdColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type_id");
+        String ownerEmail = "COALESCE(u.email, r.email, h.owner_email)";
+        StringBuilder sql = new StringBuilder(
+            "SELECT fc.*, a.apartment_code, h.household_code, " + OWNER_NAME + " as owner_name, " +
+            (hasFeeTypeIdColumn ? "ft.name" : "NULL") + " as fee_type_name, " + ownerEmail + " as owner_email " +
+            "FROM fee_collections fc " +
+            "JOIN households h ON fc.household_id = h.id " +
+            "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
+            "JOIN apartments a ON h.apartment_id = a.id " +
+            "LEFT JOIN residents r ON r.id = ho.resident_id " +
+            "LEFT JOIN users u ON u.id = r.user_id " +
+            (hasFeeTypeIdColumn ? "LEFT JOIN fee_types ft ON ft.id = fc.fee_type_id " : "") +
+            "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' " +
+            "AND fc.status IN ('unpaid', 'partial_paid') " +
+            "AND fc.payment_deadline IS NOT NULL AND fc.payment_deadline <= ?");
+        if (hasReminderColumn && remindedBefore != null) {
+            sql.append(" AND (fc.reminder_sent_at IS NULL OR fc.reminder_sent_at < ?)");
+        }
+        sql.append(" ORDER BY ").append(ownerEmail).append(", fc.household_id, fc.payment_deadline, fc.id");
+
+        List<Object> params = new ArrayList<>();
+        params.add(Date.valueOf(dueOnOrBefore));
+        if (hasReminderColumn && remindedBefore != null) {
+            params.add(Timestamp.valueOf(remindedBefore));
         }
         
         try {
-            fee.setReason(rs.getString("reason"));
+            CursorQuery.stream(sql.toString(), params, fetchSize, columns -> {
+                FeeCollectionMapper mapper = new FeeCollectionMapper(columns);
+                int feeTypeNameColumn = columns.indexOf("fee_type_name");
+                int ownerEmailColumn = columns.indexOf("owner_email");
+                return rs -> handler.handle(new FeeReminderRow(
+                    mapper.map(rs), rs.getString(feeTypeNameColumn), rs.getString(ownerEmailColumn)));
+            });
         } catch (SQLException e) {
-            // Column might not exist in older databases
-            fee.setReason(null);
-        }
-        
-        Date paymentDate = rs.getDate("payment_date");
-        if (paymentDate != null) {
-            fee.setPaymentDate(paymentDate.toLocalDate());
+            throw new DbException("Error streaming fees due for reminder: " + e.getMessage(), e);
         }
+    }
+    
+    /**
+     * Stream fee collections matching the filters, newest first (cùng bộ lọc với search())
+     * Đọc bằng cursor (fetch size) nên bộ nhớ không phụ thuộc số dòng, dùng cho xuất file
+     * @param filter Search filters
+     * @param fetchSize Rows fetched per round trip
+     * @param handler Called once per row
+     */
+    public void streamSearch(FeeSearchRequest filter, int fetchSize, RowHandler<FeeExportRow> handler) throws DbException {
+        boolean hasFeeTypeIdColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type_id");
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+            "SELECT fc.*, a.apartment_code, h.household_code, " + OWNER_NAME + " as owner_name, " +
+            (hasFeeTypeIdColumn ? "ft.name" : "NULL") + " as fee_type_name " +
+            "FROM fee_collections fc " +
+            "JOIN households h ON fc.household_id = h.id " +
+            "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
+            "JOIN apartments a ON h.apartment_id = a.id " +
+            (hasFeeTypeIdColumn ? "LEFT JOIN fee_types ft ON ft.id = fc.fee_type_id " : "") +
+            "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' "
+        );
+        appendSearchFilters(sql, params, filter);
+        // Cùng thứ tự với danh sách phân trang (index idx_fee_collections_keyset)
+        sql.append(" ORDER BY COALESCE(fc.year, 0) DESC, COALESCE(fc.month, 0) DESC, fc.id DESC");
         
         try {
-            Date paymentDeadline = rs.getDate("payment_deadline");
-            if (paymentDeadline != null) {
-                fee.setPaymentDeadline(paymentDeadline.toLocalDate());
-            }
+            CursorQuery.stream(sql.toString(), params, fetchSize, columns -> {
+                FeeCollectionMapper mapper = new FeeCollectionMapper(columns);
+                int feeTypeNameColumn = columns.indexOf("fee_type_name");
+                return rs -> handler.handle(new FeeExportRow(mapper.map(rs), rs.getString(feeTypeNameColumn)));
+            });
         } catch (SQLException e) {
-            // Column might not exist in older databases
-            fee.setPaymentDeadline(null);
+            throw new DbException("Error streaming fee collections: " + e.getMessage(), e);
         }
-        
-        fee.setPaymentMethod(rs.getString("payment_method"));
-        fee.setNotes(rs.getString("notes"));
-        
-        Timestamp createdAt = rs.getTimestamp("created_at");
-        if (createdAt != null) {
-            fee.setCreatedAt(createdAt.toLocalDateTime().toLocalDate());
+    }
+    
+    /**
+     * Stream fee collections matching the filters (thay cho search() khi chỉ cần duyệt một lần)
+     * @param filter Search filters
+     * @param fetchSize Rows fetched per round trip
+     * @param handler Called once per row, newest first
+     */
+    public void forEachMatching(FeeSearchRequest filter, int fetchSize, RowHandler<FeeCollection> handler) 
+            throws DbException {
+        streamSearch(filter, fetchSize, row -> handler.handle(row.getFee()));
+    }
+    
+    /**
+     * Claim fees for a reminder: set reminder_sent_at only where no one reminded them since remindedBefore
+     * Gọi trong cùng transaction với việc ghi email vào outbox. Khi nhiều node cùng chạy lịch nhắc phí,
+     * mỗi khoản chỉ được một node nhận (PostgreSQL: UPDATE ... RETURNING có điều kiện; MySQL: khóa dòng
+     * còn thỏa điều kiện bằng SELECT ... FOR UPDATE rồi UPDATE)
+     * @param feeIds Fees read by this run
+     * @param remindedAt Reminder time to record
+     * @param remindedBefore Fees reminded at or after this time belong to another run
+     * @return IDs this run claimed (tất cả nếu database chưa có cột reminder_sent_at)
+     */
+    public Set<Integer> claimForReminder(List<Integer> feeIds, LocalDateTime remindedAt, LocalDateTime remindedBefore)
+            throws DbException {
+        Set<Integer> claimed = new HashSet<>();
+        if (feeIds.isEmpty()) {
+            return claimed;
         }
-        
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
-        if (updatedAt != null) {
-            fee.setUpdatedAt(updatedAt.toLocalDateTime().toLocalDate());
+        if (!SchemaCapabilities.hasColumn("fee_collections", "reminder_sent_at")) {
+            claimed.addAll(feeIds);
+            return claimed;
         }
-        
-        // Join fields
-        fee.setApartmentCode(rs.getString("apartment_code"));
-        fee.setHouseholdCode(rs.getString("household_code"));
-        fee.setOwnerName(rs.getString("owner_name"));
-        
-        return fee;
+        String unclaimed = "(reminder_sent_at IS NULL OR reminder_sent_at < ?)";
+        try (Connection conn = JdbcUtils.getConnection()) {
+            for (List<Integer> chunk : JdbcUtils.inChunks(feeIds)) {
+                String ids = "id IN (" + JdbcUtils.placeholders(chunk.size()) + ")";
+                if (isPostgreSQL()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                             "UPDATE fee_collections SET reminder_sent_at = ? WHERE " + ids + " AND " + unclaimed +
+                             " RETURNING id")) {
+                        int paramIndex = 1;
+                        stmt.setTimestamp(paramIndex++, Timestamp.valueOf(remindedAt));
+                        for (Integer feeId : chunk) {
+                            stmt.setInt(paramIndex++, feeId);
+                        }
+                        stmt.setTimestamp(paramIndex, Timestamp.valueOf(remindedBefore));
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                claimed.add(rs.getInt(1));
+                            }
+                        }
+                    }
+                    continue;
+                }
+                List<Integer> locked = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(
+                         "SELECT id FROM fee_collections WHERE " + ids + " AND " + unclaimed + " FOR UPDATE")) {
+                    int paramIndex = 1;
+                    for (Integer feeId : chunk) {
+                        stmt.setInt(paramIndex++, feeId);
+                    }
+                    stmt.setTimestamp(paramIndex, Timestamp.valueOf(remindedBefore));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            locked.add(rs.getInt(1));
+                        }
+                    }
+                }
+                if (locked.isEmpty()) {
+                    continue;
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(
+                         "UPDATE fee_collections SET reminder_sent_at = ? WHERE id IN (" +
+                         JdbcUtils.placeholders(locked.size()) + ")")) {
+                    int paramIndex = 1;
+                    stmt.setTimestamp(paramIndex++, Timestamp.valueOf(remindedAt));
+                    for (Integer feeId : locked) {
+                        stmt.setInt(paramIndex++, feeId);
+                    }
+                    stmt.executeUpdate();
+                }
+                claimed.addAll(locked);
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error claiming fees for reminder: " + e.getMessage(), e);
+        }
+        return claimed;
     }
     
     /**
@@ -700,6 +1399,87 @@ public class FeeCollectionRepository {
             return false;
         }
     }
-}
 
+    /**
+     * Maps fee_collections rows (fc.* cùng apartment_code, household_code, owner_name nếu có)
+     * Vị trí các cột được tra một lần cho mỗi ResultSet; cột không có trong database cũ có index 0
+     */
+    private static final class FeeCollectionMapper {
+        private final int id;
+        private final int householdId;
+        private final int month;
+        private final int year;
+        private final int amount;
+        private final int paidAmount;
+        private final int status;
+        private final int feeType;
+        private final int feeTypeId;
+        private final int reason;
+        private final int paymentDate;
+        private final int paymentDeadline;
+        private final int paymentMethod;
+        private final int notes;
+        private final int createdAt;
+        private final int updatedAt;
+        private final int version;
+        private final int apartmentCode;
+        private final int householdCode;
+        private final int ownerName;
+
+        FeeCollectionMapper(ResultColumns columns) {
+            id = columns.indexOf("id");
+            householdId = columns.indexOf("household_id");
+            month = columns.indexOf("month");
+            year = columns.indexOf("year");
+            amount = columns.indexOf("amount");
+            paidAmount = columns.indexOf("paid_amount");
+            status = columns.indexOf("status");
+            feeType = columns.indexOf("fee_type");
+            feeTypeId = columns.indexOf("fee_type_id");
+            reason = columns.indexOf("reason");
+            paymentDate = columns.indexOf("payment_date");
+            paymentDeadline = columns.indexOf("payment_deadline");
+            paymentMethod = columns.indexOf("payment_method");
+            notes = columns.indexOf("notes");
+            createdAt = columns.indexOf("created_at");
+            updatedAt = columns.indexOf("updated_at");
+            version = columns.indexOf("version");
+            apartmentCode = columns.indexOf("apartment_code");
+            householdCode = columns.indexOf("household_code");
+            ownerName = columns.indexOf("owner_name");
+        }
 
+        FeeCollection map(ResultSet rs) throws SQLException {
+            FeeCollection fee = new FeeCollection();
+            fee.setId(rs.getInt(id));
+            fee.setHouseholdId(rs.getInt(householdId));
+            // Month và year có thể NULL cho thu phí không định kỳ
+            fee.setMonth(ResultColumns.getInteger(rs, month));
+            fee.setYear(ResultColumns.getInteger(rs, year));
+            
+            BigDecimal amountValue = ResultColumns.getBigDecimal(rs, amount);
+            fee.setAmount(amountValue != null ? amountValue : BigDecimal.ZERO);
+            BigDecimal paidAmountValue = ResultColumns.getBigDecimal(rs, paidAmount);
+            fee.setPaidAmount(paidAmountValue != null ? paidAmountValue : BigDecimal.ZERO);
+            fee.setStatus(ResultColumns.getString(rs, status));
+            
+            // Database cũ chưa có fee_type: mặc định định kỳ
+            fee.setFeeType(feeType > 0 ? rs.getString(feeType) : "periodic");
+            fee.setFeeTypeId(ResultColumns.getInteger(rs, feeTypeId));
+            fee.setReason(ResultColumns.getString(rs, reason));
+            fee.setPaymentDate(ResultColumns.getLocalDate(rs, paymentDate));
+            fee.setPaymentDeadline(ResultColumns.getLocalDate(rs, paymentDeadline));
+            fee.setPaymentMethod(ResultColumns.getString(rs, paymentMethod));
+            fee.setNotes(ResultColumns.getString(rs, notes));
+            fee.setCreatedAt(ResultColumns.getTimestampDate(rs, createdAt));
+            fee.setUpdatedAt(ResultColumns.getTimestampDate(rs, updatedAt));
+            fee.setVersion(version > 0 ? rs.getInt(version) : null);
+            
+            // Join fields
+            fee.setApartmentCode(ResultColumns.getString(rs, apartmentCode));
+            fee.setHouseholdCode(ResultColumns.getString(rs, householdCode));
+            fee.setOwnerName(ResultColumns.getString(rs, ownerName));
+            return fee;
+        }
+    }
+}
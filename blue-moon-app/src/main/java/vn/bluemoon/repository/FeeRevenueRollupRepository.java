@@ -0,0 +1,379 @@
+package vn.bluemoon.repository;
+
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.FeeAggregate;
+import vn.bluemoon.model.dto.FeeGroupBy;
+import vn.bluemoon.model.dto.FeeSearchRequest;
+import vn.bluemoon.model.dto.FeeSummary;
+import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.SchemaCapabilities;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository for fee_revenue_rollup - tổng thu phí theo (year, month, fee_type_id, status)
+ *
+ * FeeCollectionRepository cập nhật bảng này trong cùng transaction với mỗi lần ghi fee_collections
+ * (khóa dòng bằng SELECT ... FOR UPDATE, trừ phần đóng góp cũ, ghi, cộng phần đóng góp mới),
+ * kể cả khi xóa hộ (ON DELETE CASCADE) hoặc xóa loại phí (ON DELETE SET NULL).
+ * Thống kê không lọc theo hộ/căn hộ/chủ hộ đọc từ đây thay vì quét fee_collections.
+ * rebuild() tính lại toàn bộ (chạy khi khởi động hoặc theo yêu cầu).
+ *
+ * Thu phí không định kỳ (month/year NULL) và không có loại phí được lưu với 0 vì các cột này thuộc khóa chính.
+ * Chỉ tính thu phí của căn hộ không phải DEFAULT-, giống summarize()/aggregate().
+ */
+public class FeeRevenueRollupRepository {
+    private static final String TABLE = "fee_revenue_rollup";
+
+    /**
+     * Check if the rollup table exists (database chưa chạy migration thì vẫn đọc trực tiếp fee_collections)
+     */
+    public boolean isAvailable() {
+        return SchemaCapabilities.hasTable(TABLE);
+    }
+
+    /**
+     * Check if a filter can be answered from the rollup (chỉ lọc theo tháng/năm/trạng thái)
+     */
+    public boolean canAnswer(FeeSearchRequest filter) {
+        return isAvailable() && (filter == null ||
+            (filter.getApartmentCode() == null && filter.getHouseholdCode() == null && filter.getOwnerName() == null));
+    }
+
+    /**
+     * Add one fee collection's current values to the rollup
+     */
+    public void addFee(Integer feeId) throws DbException {
+        applyGrouped("fc.id = ?", feeId, 1);
+    }
+
+    /**
+     * Subtract one fee collection's current values from the rollup (gọi trước khi sửa/xóa dòng)
+     */
+    public void removeFee(Integer feeId) throws DbException {
+        applyGrouped("fc.id = ?", feeId, -1);
+    }
+
+    /**
+     * Subtract all fee collections of a household from the rollup (gọi trước khi xóa)
+     */
+    public void removeHousehold(Integer householdId) throws DbException {
+        applyGrouped("fc.household_id = ?", householdId, -1);
+    }
+
+    /**
+     * Move the rows of a fee type to "no fee type" (gọi trước khi xóa loại phí: fee_type_id của
+     * các khoản thu bị đặt NULL, tức nhóm 0 trong rollup)
+     */
+    public void moveFeeType(Integer feeTypeId) throws DbException {
+        if (!isAvailable() || feeTypeId == null) {
+            return;
+        }
+        String select = "SELECT year, month, 0, status, fee_count, total_amount, paid_amount " +
+                        "FROM fee_revenue_rollup WHERE fee_type_id = ?";
+        String sql = "INSERT INTO fee_revenue_rollup (year, month, fee_type_id, status, fee_count, total_amount, paid_amount) " +
+                     (isPostgreSQL() ? select + " " : "SELECT * FROM (" + select + ") d ") +
+                     upsert();
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement insert = conn.prepareStatement(sql);
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM fee_revenue_rollup WHERE fee_type_id = ?")) {
+            insert.setInt(1, feeTypeId);
+            insert.executeUpdate();
+            delete.setInt(1, feeTypeId);
+            delete.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error updating fee revenue rollup: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Add a known delta to one rollup row (dùng khi tạo thu phí hàng loạt, không cần đọc lại các dòng vừa tạo)
+     */
+    public void add(Integer year, Integer month, Integer feeTypeId, String status,
+                    long count, BigDecimal amount, BigDecimal paidAmount) throws DbException {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { status, count, amount, paidAmount });
+        addRows(year, month, feeTypeId, rows);
+    }
+
+    /**
+     * Move one fee collection's contribution after a payment (paid_amount và có thể cả status thay đổi)
+     */
+    public void changePayment(Integer year, Integer month, Integer feeTypeId, String oldStatus, String newStatus,
+                              BigDecimal amount, BigDecimal oldPaidAmount, BigDecimal newPaidAmount) throws DbException {
+        String from = oldStatus != null ? oldStatus : "unpaid";
+        String to = newStatus != null ? newStatus : "unpaid";
+        List<Object[]> rows = new ArrayList<>();
+        if (from.equals(to)) {
+            rows.add(new Object[] { to, 0L, BigDecimal.ZERO, newPaidAmount.subtract(oldPaidAmount) });
+        } else {
+            rows.add(new Object[] { from, -1L, amount.negate(), oldPaidAmount.negate() });
+            rows.add(new Object[] { to, 1L, amount, newPaidAmount });
+        }
+        addRows(year, month, feeTypeId, rows);
+    }
+
+    /**
+     * Upsert deltas (status, count, amount, paid amount) for one (year, month, fee_type_id) in one batch
+     */
+    private void addRows(Integer year, Integer month, Integer feeTypeId, List<Object[]> rows) throws DbException {
+        if (!isAvailable()) {
+            return;
+        }
+        String sql = "INSERT INTO fee_revenue_rollup (year, month, fee_type_id, status, fee_count, total_amount, paid_amount) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?) " + upsert();
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Object[] row : rows) {
+                stmt.setInt(1, year != null ? year : 0);
+                stmt.setInt(2, month != null ? month : 0);
+                stmt.setInt(3, feeTypeId != null ? feeTypeId : 0);
+                stmt.setString(4, row[0] != null ? (String) row[0] : "unpaid");
+                stmt.setLong(5, (Long) row[1]);
+                stmt.setBigDecimal(6, (BigDecimal) row[2]);
+                stmt.setBigDecimal(7, (BigDecimal) row[3]);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            throw new DbException("Error updating fee revenue rollup: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recompute the whole rollup from fee_collections in one transaction
+     * @return Number of rollup rows
+     */
+    public int rebuild() throws DbException {
+        try (Connection conn = JdbcUtils.getConnection();
+             Statement stmt = conn.createStatement()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                stmt.executeUpdate("DELETE FROM fee_revenue_rollup");
+                int count = stmt.executeUpdate(
+                    "INSERT INTO fee_revenue_rollup (year, month, fee_type_id, status, fee_count, total_amount, paid_amount) " +
+                    groupedSelect("1 = 1", 1));
+                if (autoCommit) {
+                    conn.commit();
+                }
+                return count;
+            } catch (SQLException e) {
+                if (autoCommit) {
+                    conn.rollback();
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    conn.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error rebuilding fee revenue rollup: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Totals for a month/year/status filter, read from the rollup
+     * @param filter Filter (chỉ dùng month, year, status; xem canAnswer)
+     */
+    public FeeSummary summarize(FeeSearchRequest filter) throws DbException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+            "SELECT COALESCE(SUM(fee_count), 0) AS total_count, " +
+            "COALESCE(SUM(CASE WHEN status = 'paid' THEN fee_count ELSE 0 END), 0) AS paid_count, " +
+            "COALESCE(SUM(total_amount), 0) AS total_amount, " +
+            "COALESCE(SUM(paid_amount), 0) AS paid_amount " +
+            "FROM fee_revenue_rollup r WHERE 1 = 1");
+        appendFilters(sql, params, filter);
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return new FeeSummary(
+                        rs.getLong("total_count"),
+                        rs.getLong("paid_count"),
+                        rs.getBigDecimal("total_amount"),
+                        rs.getBigDecimal("paid_amount"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error summarizing fee revenue rollup: " + e.getMessage(), e);
+        }
+        return new FeeSummary();
+    }
+
+    /**
+     * Totals grouped by status, month or fee type, read from the rollup
+     * Cùng thứ tự và cách đặt tên nhóm với FeeCollectionRepository.aggregate()
+     */
+    public List<FeeAggregate> aggregate(FeeSearchRequest filter, FeeGroupBy groupBy) throws DbException {
+        List<FeeAggregate> result = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+
+        String groupColumns;
+        String orderBy;
+        switch (groupBy) {
+            case MONTH:
+                groupColumns = "r.year, r.month";
+                orderBy = "r.year DESC, r.month DESC";
+                break;
+            case FEE_TYPE:
+                groupColumns = "r.fee_type_id, ft.name";
+                orderBy = "total_amount DESC";
+                break;
+            default:
+                groupColumns = "r.status";
+                orderBy = "r.status";
+                break;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+            .append(groupBy == FeeGroupBy.FEE_TYPE ? "r.fee_type_id AS fee_type_id, ft.name AS fee_type_name" : groupColumns)
+            .append(", SUM(r.fee_count) AS total_count, " +
+                    "SUM(CASE WHEN r.status = 'paid' THEN r.fee_count ELSE 0 END) AS paid_count, " +
+                    "SUM(r.total_amount) AS total_amount, " +
+                    "SUM(r.paid_amount) AS paid_amount " +
+                    "FROM fee_revenue_rollup r ");
+        if (groupBy == FeeGroupBy.FEE_TYPE) {
+            sql.append("LEFT JOIN fee_types ft ON r.fee_type_id = ft.id ");
+        }
+        sql.append("WHERE 1 = 1");
+        appendFilters(sql, params, filter);
+        // Các dòng về 0 sau khi trừ (thu phí đã bị xóa hoặc đổi trạng thái) không phải là một nhóm
+        sql.append(" GROUP BY ").append(groupColumns)
+           .append(" HAVING SUM(r.fee_count) <> 0")
+           .append(" ORDER BY ").append(orderBy);
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    FeeAggregate row = new FeeAggregate(
+                        rs.getLong("total_count"),
+                        rs.getLong("paid_count"),
+                        rs.getBigDecimal("total_amount"),
+                        rs.getBigDecimal("paid_amount"));
+                    switch (groupBy) {
+                        case MONTH:
+                            row.setYear(nullIfZero(rs.getInt("year")));
+                            row.setMonth(nullIfZero(rs.getInt("month")));
+                            break;
+                        case FEE_TYPE:
+                            row.setFeeTypeId(nullIfZero(rs.getInt("fee_type_id")));
+                            row.setFeeTypeName(rs.getString("fee_type_name"));
+                            if (row.getFeeTypeName() == null) {
+                                row.setFeeTypeName("Khác");
+                            }
+                            break;
+                        default:
+                            row.setStatus(rs.getString("status"));
+                            break;
+                    }
+                    result.add(row);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error aggregating fee revenue rollup: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Add (sign = 1) or subtract (sign = -1) the fee collections matching a condition
+     */
+    private void applyGrouped(String condition, Integer param, int sign) throws DbException {
+        if (!isAvailable() || param == null) {
+            return;
+        }
+        String sql = "INSERT INTO fee_revenue_rollup (year, month, fee_type_id, status, fee_count, total_amount, paid_amount) " +
+                     (isPostgreSQL()
+                         ? groupedSelect(condition, sign)
+                         // MySQL: bọc SELECT ... GROUP BY để ON DUPLICATE KEY UPDATE chỉ thấy cột của bảng đích
+                         : "SELECT * FROM (" + groupedSelect(condition, sign) + ") d ") +
+                     upsert();
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, param);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error updating fee revenue rollup: " + e.getMessage(), e);
+        }
+    }
+
+    private String groupedSelect(String condition, int sign) {
+        String feeTypeId = SchemaCapabilities.hasColumn("fee_collections", "fee_type_id")
+            ? "COALESCE(fc.fee_type_id, 0)" : "0";
+        String multiplier = sign < 0 ? "-1 * " : "";
+        return "SELECT COALESCE(fc.year, 0), COALESCE(fc.month, 0), " + feeTypeId + ", COALESCE(fc.status, 'unpaid'), " +
+               multiplier + "COUNT(*), " +
+               multiplier + "COALESCE(SUM(fc.amount), 0), " +
+               multiplier + "COALESCE(SUM(fc.paid_amount), 0) " +
+               "FROM fee_collections fc " +
+               "JOIN households h ON fc.household_id = h.id " +
+               "JOIN apartments a ON h.apartment_id = a.id " +
+               "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' AND " + condition + " " +
+               "GROUP BY COALESCE(fc.year, 0), COALESCE(fc.month, 0), " + feeTypeId + ", COALESCE(fc.status, 'unpaid') ";
+    }
+
+    private String upsert() {
+        if (isPostgreSQL()) {
+            return "ON CONFLICT (year, month, fee_type_id, status) DO UPDATE SET " +
+                   "fee_count = fee_revenue_rollup.fee_count + EXCLUDED.fee_count, " +
+                   "total_amount = fee_revenue_rollup.total_amount + EXCLUDED.total_amount, " +
+                   "paid_amount = fee_revenue_rollup.paid_amount + EXCLUDED.paid_amount";
+        }
+        return "ON DUPLICATE KEY UPDATE " +
+               "fee_count = fee_revenue_rollup.fee_count + VALUES(fee_count), " +
+               "total_amount = fee_revenue_rollup.total_amount + VALUES(total_amount), " +
+               "paid_amount = fee_revenue_rollup.paid_amount + VALUES(paid_amount)";
+    }
+
+    private void appendFilters(StringBuilder sql, List<Object> params, FeeSearchRequest filter) {
+        if (filter == null) {
+            return;
+        }
+        if (filter.getMonth() != null) {
+            sql.append(" AND r.month = ?");
+            params.add(filter.getMonth());
+        }
+        if (filter.getYear() != null) {
+            sql.append(" AND r.year = ?");
+            params.add(filter.getYear());
+        }
+        if (filter.getStatus() != null) {
+            sql.append(" AND r.status = ?");
+            params.add(filter.getStatus());
+        }
+    }
+
+    private static Integer nullIfZero(int value) {
+        return value != 0 ? value : null;
+    }
+
+    private boolean isPostgreSQL() {
+        try {
+            String driver = vn.bluemoon.config.DbConfig.getInstance().getDriver();
+            return driver != null && driver.contains("postgresql");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package vn.bluemoon.repository;
 
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.Function;
+import vn.bluemoon.security.PermissionCache;
 import vn.bluemoon.util.JdbcUtils;
 
 import java.sql.*;
@@ -126,6 +127,7 @@ public class FunctionRepository {
         } catch (SQLException e) {
             throw new DbException("Error updating function: " + e.getMessage(), e);
         }
+        PermissionCache.invalidateAll();
     }
 
     /**
@@ -140,6 +142,7 @@ public class FunctionRepository {
         } catch (SQLException e) {
             throw new DbException("Error deleting function: " + e.getMessage(), e);
         }
+        PermissionCache.invalidateAll();
     }
 
     /**
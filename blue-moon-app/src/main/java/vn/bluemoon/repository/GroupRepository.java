@@ -2,6 +2,7 @@ package vn.bluemoon.repository;
 
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.Group;
+import vn.bluemoon.security.PermissionCache;
 import vn.bluemoon.util.JdbcUtils;
 
 import java.sql.*;
@@ -113,6 +114,7 @@ public class GroupRepository {
         } catch (SQLException e) {
             throw new DbException("Error updating group: " + e.getMessage(), e);
         }
+        PermissionCache.invalidateAll();
     }
 
     /**
@@ -127,6 +129,7 @@ public class GroupRepository {
         } catch (SQLException e) {
             throw new DbException("Error deleting group: " + e.getMessage(), e);
         }
+        PermissionCache.invalidateAll();
     }
 
     private Group mapResultSetToGroup(ResultSet rs) throws SQLException {
@@ -0,0 +1,154 @@
+package vn.bluemoon.repository;
+
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.search.HouseholdSearch;
+import vn.bluemoon.stats.DashboardStatistics;
+import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.UnitOfWork;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for the household_owners projection
+ * Mỗi hộ có một dòng chứa chủ hộ hiện tại (ưu tiên resident có user_id, mới nhất trước),
+ * NULL nếu hộ chưa có resident là chủ hộ. Được cập nhật mỗi khi ResidentRepository ghi dữ liệu,
+ * để các truy vấn thu phí join trực tiếp thay vì chạy subquery cho từng dòng.
+ * Fallback về households.owner_name được tính lúc đọc (COALESCE(ho.owner_name, h.owner_name)),
+ * không lưu ở đây, nên đổi households.owner_name không làm projection lỗi thời.
+ */
+public class HouseholdOwnerRepository {
+
+    /**
+     * Recompute the owner of one household
+     */
+    public void refresh(Integer householdId) throws DbException {
+        if (householdId == null) {
+            return;
+        }
+        boolean isPostgreSQL = isPostgreSQL();
+        String sql = "INSERT INTO household_owners (household_id, resident_id, owner_name, updated_at) " +
+                     selectOwners(isPostgreSQL) +
+                     "WHERE h.id = ? " +
+                     (isPostgreSQL
+                         ? "ON CONFLICT (household_id) DO UPDATE SET resident_id = EXCLUDED.resident_id, " +
+                           "owner_name = EXCLUDED.owner_name, updated_at = EXCLUDED.updated_at"
+                         : "ON DUPLICATE KEY UPDATE resident_id = VALUES(resident_id), " +
+                           "owner_name = VALUES(owner_name), updated_at = VALUES(updated_at)");
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, householdId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error refreshing household owner: " + e.getMessage(), e);
+        }
+        UnitOfWork.afterCommit(() -> HouseholdSearch.householdChanged(householdId));
+        DashboardStatistics.householdsChanged();
+    }
+
+    /**
+     * Recompute the owners of several households (sau khi nhập hàng loạt)
+     */
+    public void refreshAll(Collection<Integer> householdIds) throws DbException {
+        if (householdIds.isEmpty()) {
+            return;
+        }
+        boolean isPostgreSQL = isPostgreSQL();
+        try (Connection conn = JdbcUtils.getConnection()) {
+            for (List<Integer> chunk : JdbcUtils.inChunks(householdIds)) {
+                String sql = "INSERT INTO household_owners (household_id, resident_id, owner_name, updated_at) " +
+                             selectOwners(isPostgreSQL) +
+                             "WHERE h.id IN (" + JdbcUtils.placeholders(chunk.size()) + ") " +
+                             (isPostgreSQL
+                                 ? "ON CONFLICT (household_id) DO UPDATE SET resident_id = EXCLUDED.resident_id, " +
+                                   "owner_name = EXCLUDED.owner_name, updated_at = EXCLUDED.updated_at"
+                                 : "ON DUPLICATE KEY UPDATE resident_id = VALUES(resident_id), " +
+                                   "owner_name = VALUES(owner_name), updated_at = VALUES(updated_at)");
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setInt(i + 1, chunk.get(i));
+                    }
+                    stmt.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error refreshing household owners: " + e.getMessage(), e);
+        }
+        UnitOfWork.afterCommit(HouseholdSearch::invalidate);
+        DashboardStatistics.householdsChanged();
+    }
+
+    /**
+     * Find households whose projection currently points at this resident
+     * (gọi trước khi xóa/chuyển hộ resident, vì sau đó không còn biết hộ cũ)
+     * @return Household IDs that were owned by the resident
+     */
+    public List<Integer> findHouseholdsOwnedBy(Integer residentId) throws DbException {
+        List<Integer> householdIds = new ArrayList<>();
+        String sql = "SELECT household_id FROM household_owners WHERE resident_id = ?";
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, residentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    householdIds.add(rs.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error finding households owned by resident: " + e.getMessage(), e);
+        }
+        return householdIds;
+    }
+
+    /**
+     * Rebuild the whole projection from residents/households (chạy khi khởi động)
+     * @return Number of households in the projection
+     */
+    public int rebuildAll() throws DbException {
+        String sql = "INSERT INTO household_owners (household_id, resident_id, owner_name, updated_at) " +
+                     selectOwners(isPostgreSQL());
+
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM household_owners");
+            int count = stmt.executeUpdate(sql);
+            UnitOfWork.afterCommit(HouseholdSearch::invalidate);
+            DashboardStatistics.householdsChanged();
+            uow.commit();
+            return count;
+        } catch (SQLException e) {
+            throw new DbException("Error rebuilding household owners: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * SELECT producing (household_id, resident_id, owner_name, updated_at) for households h
+     */
+    private String selectOwners(boolean isPostgreSQL) {
+        String ownerOrder = isPostgreSQL
+            ? "ORDER BY r.user_id DESC NULLS LAST, r.created_at DESC LIMIT 1"
+            : "ORDER BY r.user_id DESC, r.created_at DESC LIMIT 1";
+        return "SELECT h.id, " +
+               "(SELECT r.id FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' " + ownerOrder + "), " +
+               "(SELECT r.full_name FROM residents r WHERE r.household_id = h.id AND r.relationship = 'Chủ hộ' " + ownerOrder + "), " +
+               "CURRENT_TIMESTAMP " +
+               "FROM households h ";
+    }
+
+    /**
+     * Check if using PostgreSQL
+     */
+    private boolean isPostgreSQL() {
+        try {
+            String driver = vn.bluemoon.config.DbConfig.getInstance().getDriver();
+            return driver != null && driver.contains("postgresql");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
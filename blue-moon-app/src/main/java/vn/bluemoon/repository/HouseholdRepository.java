@@ -1,12 +1,24 @@
 package vn.bluemoon.repository;
 
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.Resident;
+import vn.bluemoon.search.HouseholdSearch;
 import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.UnitOfWork;
 
 import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Repository for Household entity
@@ -52,6 +64,96 @@ public class HouseholdRepository {
         return 0;
     }
     
+    /**
+     * Find household IDs by code (truy vấn IN theo từng nhóm)
+     * @return Map of household_code to id, only for codes that exist
+     */
+    public Map<String, Integer> findIdsByCodes(Collection<String> codes) throws DbException {
+        Map<String, Integer> ids = new HashMap<>();
+        String sql = "SELECT id, household_code FROM households WHERE household_code IN (";
+        try (Connection conn = JdbcUtils.getConnection()) {
+            for (List<String> chunk : JdbcUtils.inChunks(codes)) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql + JdbcUtils.placeholders(chunk.size()) + ")")) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setString(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.put(rs.getString("household_code"), rs.getInt("id"));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error finding households: " + e.getMessage(), e);
+        }
+        return ids;
+    }
+    
+    /**
+     * Find which apartments already have an active "Chủ hộ"
+     * @param apartmentCodes Apartment codes to check
+     * @return Codes among apartmentCodes that already have an owner
+     */
+    public Set<String> findApartmentCodesWithOwner(Collection<String> apartmentCodes) throws DbException {
+        Set<String> occupied = new HashSet<>();
+        String sql = "SELECT DISTINCT a.apartment_code FROM residents r " +
+                     "JOIN households h ON r.household_id = h.id " +
+                     "JOIN apartments a ON h.apartment_id = a.id " +
+                     "WHERE r.relationship = 'Chủ hộ' AND r.status = 'active' " +
+                     "AND a.apartment_code IN (";
+        try (Connection conn = JdbcUtils.getConnection()) {
+            for (List<String> chunk : JdbcUtils.inChunks(apartmentCodes)) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql + JdbcUtils.placeholders(chunk.size()) + ")")) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setString(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            occupied.add(rs.getString(1));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error checking apartment occupancy: " + e.getMessage(), e);
+        }
+        return occupied;
+    }
+    
+    /**
+     * Create one household per owner in one JDBC batch
+     * @param owners Owner residents; householdCode, apartmentCode, fullName, phone, email, idCard are used
+     * @param apartmentIds Map of apartment_code to id, must contain every owner's apartment
+     */
+    public void createAll(List<Resident> owners, Map<String, Integer> apartmentIds) throws DbException {
+        if (owners.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO households (apartment_id, household_code, owner_name, owner_id_card, owner_phone, " +
+                     "owner_email, registration_date, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            Date today = Date.valueOf(LocalDate.now());
+            for (Resident owner : owners) {
+                stmt.setInt(1, apartmentIds.get(owner.getApartmentCode()));
+                stmt.setString(2, owner.getHouseholdCode());
+                stmt.setString(3, owner.getFullName());
+                stmt.setString(4, owner.getIdCard());
+                stmt.setString(5, owner.getPhone());
+                stmt.setString(6, owner.getEmail());
+                stmt.setDate(7, today);
+                stmt.setString(8, "active");
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            throw new DbException("Error creating households: " + e.getMessage(), e);
+        }
+        // Không biết id các hộ vừa tạo, nạp lại index tìm kiếm ở lần tìm sau
+        UnitOfWork.afterCommit(HouseholdSearch::invalidate);
+    }
+    
     /**
      * Check if database is PostgreSQL
      */
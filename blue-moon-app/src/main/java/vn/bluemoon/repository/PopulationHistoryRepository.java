@@ -0,0 +1,100 @@
+package vn.bluemoon.repository;
+
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.PopulationPoint;
+import vn.bluemoon.util.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository for population_history - số hộ/nhân khẩu/tạm trú/tạm vắng theo ngày
+ * Mỗi ngày một dòng; chỉ dòng của ngày hiện tại được ghi đè, các ngày trước không bao giờ bị sửa.
+ */
+public class PopulationHistoryRepository {
+
+    /**
+     * Count households and residents now and store them as the row for this date
+     * @param date Day to record (thường là hôm nay)
+     */
+    public void record(LocalDate date) throws DbException {
+        boolean isPostgreSQL = isPostgreSQL();
+        String sql = "INSERT INTO population_history (snapshot_date, household_count, resident_count, " +
+                     "temporary_resident_count, temporary_absent_count, recorded_at) " +
+                     "SELECT ?, " +
+                     "(SELECT COUNT(DISTINCT h.id) FROM households h " +
+                     "JOIN apartments a ON h.apartment_id = a.id " +
+                     "JOIN residents r ON r.household_id = h.id AND r.relationship = 'Chủ hộ' " +
+                     "WHERE a.apartment_code NOT LIKE 'DEFAULT-%'), " +
+                     "(SELECT COUNT(*) FROM residents), " +
+                     "(SELECT COUNT(*) FROM residents WHERE status = 'temporary_resident'), " +
+                     "(SELECT COUNT(*) FROM residents WHERE status = 'temporary_absent'), " +
+                     "? " +
+                     (isPostgreSQL
+                         ? "ON CONFLICT (snapshot_date) DO UPDATE SET household_count = EXCLUDED.household_count, " +
+                           "resident_count = EXCLUDED.resident_count, " +
+                           "temporary_resident_count = EXCLUDED.temporary_resident_count, " +
+                           "temporary_absent_count = EXCLUDED.temporary_absent_count, recorded_at = EXCLUDED.recorded_at"
+                         : "ON DUPLICATE KEY UPDATE household_count = VALUES(household_count), " +
+                           "resident_count = VALUES(resident_count), " +
+                           "temporary_resident_count = VALUES(temporary_resident_count), " +
+                           "temporary_absent_count = VALUES(temporary_absent_count), recorded_at = VALUES(recorded_at)");
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(date));
+            stmt.setObject(2, LocalDateTime.now());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error recording population history: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find the recorded days in a date range (range scan trên khóa chính snapshot_date)
+     * @param from First day, inclusive
+     * @param to Last day, inclusive
+     * @return Points ordered by date
+     */
+    public List<PopulationPoint> findBetween(LocalDate from, LocalDate to) throws DbException {
+        String sql = "SELECT snapshot_date, household_count, resident_count, temporary_resident_count, " +
+                     "temporary_absent_count FROM population_history " +
+                     "WHERE snapshot_date BETWEEN ? AND ? ORDER BY snapshot_date";
+        List<PopulationPoint> points = new ArrayList<>();
+
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    points.add(new PopulationPoint(
+                        rs.getDate("snapshot_date").toLocalDate(),
+                        rs.getInt("household_count"),
+                        rs.getInt("resident_count"),
+                        rs.getInt("temporary_resident_count"),
+                        rs.getInt("temporary_absent_count")));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error loading population history: " + e.getMessage(), e);
+        }
+        return points;
+    }
+
+    private boolean isPostgreSQL() {
+        try {
+            String driver = vn.bluemoon.config.DbConfig.getInstance().getDriver();
+            return driver != null && driver.contains("postgresql");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -2,16 +2,23 @@ package vn.bluemoon.repository;
 
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.Resident;
+import vn.bluemoon.search.HouseholdSearch;
+import vn.bluemoon.stats.PopulationHistory;
+import vn.bluemoon.util.AppLogger;
 import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.ResultColumns;
+import vn.bluemoon.util.UnitOfWork;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Repository for Resident entity
  */
 public class ResidentRepository {
+    private final HouseholdOwnerRepository householdOwnerRepository = new HouseholdOwnerRepository();
     
     /**
      * Find all residents with household and apartment info
@@ -20,10 +27,54 @@ public class ResidentRepository {
      */
     public List<Resident> findAll() throws DbException {
         List<Resident> residents = new ArrayList<>();
-        boolean isPostgreSQL = isPostgreSQL();
+        String sql = findAllSql(isPostgreSQL());
         
-        System.out.println("DEBUG: ResidentRepository.findAll() - isPostgreSQL=" + isPostgreSQL);
+        // Dùng Set để loại bỏ duplicate households theo household_id
+        java.util.Set<Integer> seenHouseholdIds = new java.util.HashSet<>();
         
+        try (Connection conn = JdbcUtils.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            ResidentMapper mapper = new ResidentMapper(ResultColumns.of(rs));
+            while (rs.next()) {
+                Resident resident = mapper.map(rs);
+                // Chỉ thêm nếu chưa thấy household_id này
+                if (seenHouseholdIds.add(resident.getHouseholdId())) {
+                    residents.add(resident);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error finding all residents: " + e.getMessage(), e);
+        }
+        return residents;
+    }
+    
+    /**
+     * Stream household owners (cùng dữ liệu và thứ tự với findAll()) without building a list
+     * Mỗi hộ chỉ một dòng: các dòng trùng hộ (nếu có) liền nhau vì sắp theo h.id nên chỉ cần nhớ hộ trước đó
+     * @param fetchSize Rows fetched per round trip
+     * @param handler Called once per household
+     */
+    public void forEach(int fetchSize, RowHandler<Resident> handler) throws DbException {
+        try {
+            CursorQuery.stream(findAllSql(isPostgreSQL()), Collections.emptyList(), fetchSize, columns -> {
+                ResidentMapper mapper = new ResidentMapper(columns);
+                Integer[] lastHouseholdId = new Integer[1];
+                return rs -> {
+                    Resident resident = mapper.map(rs);
+                    if (!resident.getHouseholdId().equals(lastHouseholdId[0])) {
+                        lastHouseholdId[0] = resident.getHouseholdId();
+                        handler.handle(resident);
+                    }
+                };
+            });
+        } catch (SQLException e) {
+            throw new DbException("Error streaming residents: " + e.getMessage(), e);
+        }
+    }
+    
+    private String findAllSql(boolean isPostgreSQL) {
         // Lấy tất cả households có ít nhất 1 resident với relationship = 'Chủ hộ'
         // Ưu tiên resident có user_id (resident được liên kết với user account)
         String sql;
@@ -107,42 +158,7 @@ public class ResidentRepository {
                  "WHERE a.apartment_code NOT LIKE 'DEFAULT-%' " +
                  "ORDER BY h.id";
         }
-        
-        System.out.println("DEBUG: Executing SQL: " + sql);
-        
-        // Dùng Set để loại bỏ duplicate households theo household_id
-        java.util.Set<Integer> seenHouseholdIds = new java.util.HashSet<>();
-        
-        try (Connection conn = JdbcUtils.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            int count = 0;
-            int duplicateCount = 0;
-            while (rs.next()) {
-                Resident resident = mapResultSetToResident(rs);
-                Integer householdId = resident.getHouseholdId();
-                
-                // Chỉ thêm nếu chưa thấy household_id này
-                if (!seenHouseholdIds.contains(householdId)) {
-                    seenHouseholdIds.add(householdId);
-                    residents.add(resident);
-                    count++;
-                    System.out.println("DEBUG: Found household #" + count + ": " + resident.getFullName() + 
-                                     " (Resident ID: " + resident.getId() + ", Household ID: " + householdId + 
-                                     ", Apartment: " + resident.getApartmentCode() + ", Household Code: " + resident.getHouseholdCode() + ")");
-                } else {
-                    duplicateCount++;
-                    System.out.println("DEBUG: Skipping duplicate household ID: " + householdId + " (Resident: " + resident.getFullName() + ")");
-                }
-            }
-            System.out.println("DEBUG: Total unique households found: " + count + " (duplicates skipped: " + duplicateCount + ")");
-        } catch (SQLException e) {
-            System.err.println("DEBUG: SQL Error: " + e.getMessage());
-            e.printStackTrace();
-            throw new DbException("Error finding all residents: " + e.getMessage(), e);
-        }
-        return residents;
+        return sql;
     }
     
     /**
@@ -176,6 +192,7 @@ public class ResidentRepository {
                 "h.owner_name " +
                 "FROM households h " +
                 "JOIN apartments a ON h.apartment_id = a.id " +
+                "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                 "INNER JOIN LATERAL ( " +
                 "    SELECT r2.* FROM residents r2 " +
                 "    WHERE r2.household_id = h.id AND r2.relationship = 'Chủ hộ' " +
@@ -193,6 +210,7 @@ public class ResidentRepository {
                 "h.owner_name " +
                 "FROM households h " +
                 "JOIN apartments a ON h.apartment_id = a.id " +
+                "LEFT JOIN household_owners ho ON ho.household_id = h.id " +
                 "INNER JOIN residents r ON r.household_id = h.id " +
                 "AND r.relationship = 'Chủ hộ' " +
                 "AND r.id = (SELECT r2.id FROM residents r2 " +
@@ -207,32 +225,8 @@ public class ResidentRepository {
         
         List<Object> params = new ArrayList<>();
         
-        if (name != null && !name.trim().isEmpty()) {
-            if (isPostgreSQL) {
-                // Tìm trong cả r.full_name và h.owner_name
-                sql.append(" AND (COALESCE(r.full_name, h.owner_name) ILIKE ? OR h.owner_name ILIKE ?)");
-            } else {
-                sql.append(" AND (COALESCE(r.full_name, h.owner_name) LIKE ? OR h.owner_name LIKE ?)");
-            }
-            params.add("%" + name + "%");
-            params.add("%" + name + "%");
-        }
-        if (apartmentCode != null && !apartmentCode.trim().isEmpty()) {
-            if (isPostgreSQL) {
-                sql.append(" AND a.apartment_code ILIKE ?");
-            } else {
-                sql.append(" AND a.apartment_code LIKE ?");
-            }
-            params.add("%" + apartmentCode + "%");
-        }
-        if (householdCode != null && !householdCode.trim().isEmpty()) {
-            if (isPostgreSQL) {
-                sql.append(" AND h.household_code ILIKE ?");
-            } else {
-                sql.append(" AND h.household_code LIKE ?");
-            }
-            params.add("%" + householdCode + "%");
-        }
+        // Tên chủ hộ (household_owners), mã căn hộ, mã hộ: tìm không phân biệt dấu qua HouseholdSearch
+        HouseholdSearch.appendFilters(sql, params, name, apartmentCode, householdCode);
         
         if (isPostgreSQL) {
             sql.append(" ORDER BY h.id, r.user_id DESC NULLS LAST, r.created_at DESC");
@@ -240,10 +234,6 @@ public class ResidentRepository {
             sql.append(" ORDER BY h.id");
         }
         
-        System.out.println("DEBUG: ResidentRepository.search() - name=" + name + ", apartmentCode=" + apartmentCode + ", householdCode=" + householdCode);
-        System.out.println("DEBUG: SQL=" + sql.toString());
-        System.out.println("DEBUG: Params=" + params);
-        
         try (Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
             
@@ -252,19 +242,15 @@ public class ResidentRepository {
             }
             
             ResultSet rs = stmt.executeQuery();
-            int count = 0;
+            ResidentMapper mapper = new ResidentMapper(ResultColumns.of(rs));
             while (rs.next()) {
-                Resident resident = mapResultSetToResident(rs);
+                Resident resident = mapper.map(rs);
                 residents.add(resident);
-                count++;
-                System.out.println("DEBUG: Found resident #" + count + ": " + resident.getFullName() + 
-                                 " (Resident ID: " + resident.getId() + ", Household ID: " + resident.getHouseholdId() + 
-                                 ", User ID: " + resident.getUserId() + ", Apartment: " + resident.getApartmentCode() + ")");
+                AppLogger.debugSampled("Resident search row: residentId={}, householdId={}",
+                    resident.getId(), resident.getHouseholdId());
             }
-            System.out.println("DEBUG: Total residents found: " + count);
+            AppLogger.debug("Resident search found {} households", residents.size());
         } catch (SQLException e) {
-            System.err.println("DEBUG: SQL Error in search: " + e.getMessage());
-            e.printStackTrace();
             throw new DbException("Error searching residents: " + e.getMessage(), e);
         }
         return residents;
@@ -288,7 +274,7 @@ public class ResidentRepository {
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return mapResultSetToResident(rs);
+                return new ResidentMapper(ResultColumns.of(rs)).map(rs);
             }
             return null;
         } catch (SQLException e) {
@@ -314,7 +300,7 @@ public class ResidentRepository {
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return mapResultSetToResident(rs);
+                return new ResidentMapper(ResultColumns.of(rs)).map(rs);
             }
             return null;
         } catch (SQLException e) {
@@ -324,6 +310,7 @@ public class ResidentRepository {
     
     /**
      * Create new resident
+     * Ghi resident và cập nhật household_owners trong cùng một unit of work (một connection)
      */
     public Integer create(Resident resident) throws DbException {
         String sql = "INSERT INTO residents (household_id, user_id, full_name, id_card, date_of_birth, " +
@@ -331,7 +318,8 @@ public class ResidentRepository {
                      "temporary_resident_from, temporary_resident_to, temporary_absent_from, temporary_absent_to, temporary_reason) " +
                      "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
         
-        try (Connection conn = JdbcUtils.getConnection();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, resident.getHouseholdId());
@@ -383,7 +371,11 @@ public class ResidentRepository {
             
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                return rs.getInt(1);
+                int id = rs.getInt(1);
+                householdOwnerRepository.refresh(resident.getHouseholdId());
+                PopulationHistory.residentsChanged();
+                uow.commit();
+                return id;
             }
             throw new DbException("Failed to create resident");
         } catch (SQLException e) {
@@ -391,8 +383,49 @@ public class ResidentRepository {
         }
     }
     
+    /**
+     * Create residents in one JDBC batch (nhập hàng loạt)
+     * Không cập nhật household_owners, người gọi refresh các hộ liên quan một lần sau đó
+     */
+    public void createAll(List<Resident> residents) throws DbException {
+        if (residents.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO residents (household_id, full_name, id_card, date_of_birth, " +
+                     "gender, relationship, phone, email, occupation, permanent_address, temporary_address, status) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Resident resident : residents) {
+                stmt.setInt(1, resident.getHouseholdId());
+                stmt.setString(2, resident.getFullName());
+                stmt.setString(3, resident.getIdCard());
+                if (resident.getDateOfBirth() != null) {
+                    stmt.setDate(4, Date.valueOf(resident.getDateOfBirth()));
+                } else {
+                    stmt.setNull(4, Types.DATE);
+                }
+                stmt.setString(5, resident.getGender());
+                stmt.setString(6, resident.getRelationship());
+                stmt.setString(7, resident.getPhone());
+                stmt.setString(8, resident.getEmail());
+                stmt.setString(9, resident.getOccupation());
+                stmt.setString(10, resident.getPermanentAddress());
+                stmt.setString(11, resident.getTemporaryAddress());
+                stmt.setString(12, resident.getStatus() != null ? resident.getStatus() : "active");
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            PopulationHistory.residentsChanged();
+        } catch (SQLException e) {
+            throw new DbException("Error creating residents: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Update resident
+     * Ghi resident và cập nhật household_owners trong cùng một unit of work (một connection)
      */
     public void update(Resident resident) throws DbException {
         String sql = "UPDATE residents SET " +
@@ -404,7 +437,8 @@ public class ResidentRepository {
                      "updated_at = CURRENT_TIMESTAMP " +
                      "WHERE id = ?";
         
-        try (Connection conn = JdbcUtils.getConnection();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, resident.getHouseholdId());
@@ -451,7 +485,18 @@ public class ResidentRepository {
             
             stmt.setInt(18, resident.getId());
             
+            // Hộ cũ (nếu resident đang là chủ hộ) cũng phải tính lại chủ hộ
+            List<Integer> ownedHouseholds = householdOwnerRepository.findHouseholdsOwnedBy(resident.getId());
             stmt.executeUpdate();
+            householdOwnerRepository.refresh(resident.getHouseholdId());
+            for (Integer householdId : ownedHouseholds) {
+                if (!householdId.equals(resident.getHouseholdId())) {
+                    householdOwnerRepository.refresh(householdId);
+                }
+            }
+            // Đăng ký/hủy tạm trú, tạm vắng đều đi qua update
+            PopulationHistory.residentsChanged();
+            uow.commit();
         } catch (SQLException e) {
             throw new DbException("Error updating resident: " + e.getMessage(), e);
         }
@@ -463,10 +508,17 @@ public class ResidentRepository {
     public void delete(Integer residentId) throws DbException {
         String sql = "DELETE FROM residents WHERE id = ?";
         
-        try (Connection conn = JdbcUtils.getConnection();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             Connection conn = JdbcUtils.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
+            List<Integer> ownedHouseholds = householdOwnerRepository.findHouseholdsOwnedBy(residentId);
             stmt.setInt(1, residentId);
             stmt.executeUpdate();
+            for (Integer householdId : ownedHouseholds) {
+                householdOwnerRepository.refresh(householdId);
+            }
+            PopulationHistory.residentsChanged();
+            uow.commit();
         } catch (SQLException e) {
             throw new DbException("Error deleting resident: " + e.getMessage(), e);
         }
@@ -511,69 +563,99 @@ public class ResidentRepository {
         return 0;
     }
     
-    private Resident mapResultSetToResident(ResultSet rs) throws SQLException {
-        Resident resident = new Resident();
-        resident.setId(rs.getInt("id"));
-        resident.setHouseholdId(rs.getInt("household_id"));
-        
-        int userId = rs.getInt("user_id");
-        if (!rs.wasNull()) {
-            resident.setUserId(userId);
-        }
-        
-        resident.setFullName(rs.getString("full_name"));
-        resident.setIdCard(rs.getString("id_card"));
-        
-        Date dob = rs.getDate("date_of_birth");
-        if (dob != null) {
-            resident.setDateOfBirth(dob.toLocalDate());
-        }
-        
-        resident.setGender(rs.getString("gender"));
-        resident.setRelationship(rs.getString("relationship"));
-        resident.setPhone(rs.getString("phone"));
-        resident.setEmail(rs.getString("email"));
-        resident.setOccupation(rs.getString("occupation"));
-        resident.setPermanentAddress(rs.getString("permanent_address"));
-        resident.setTemporaryAddress(rs.getString("temporary_address"));
-        resident.setStatus(rs.getString("status"));
-        resident.setNotes(rs.getString("notes"));
-        
-        // Tạm trú/Tạm vắng
-        Date tempResFrom = rs.getDate("temporary_resident_from");
-        if (tempResFrom != null) {
-            resident.setTemporaryResidentFrom(tempResFrom.toLocalDate());
-        }
-        Date tempResTo = rs.getDate("temporary_resident_to");
-        if (tempResTo != null) {
-            resident.setTemporaryResidentTo(tempResTo.toLocalDate());
-        }
-        Date tempAbsFrom = rs.getDate("temporary_absent_from");
-        if (tempAbsFrom != null) {
-            resident.setTemporaryAbsentFrom(tempAbsFrom.toLocalDate());
-        }
-        Date tempAbsTo = rs.getDate("temporary_absent_to");
-        if (tempAbsTo != null) {
-            resident.setTemporaryAbsentTo(tempAbsTo.toLocalDate());
-        }
-        resident.setTemporaryReason(rs.getString("temporary_reason"));
-        
-        Timestamp createdAt = rs.getTimestamp("created_at");
-        if (createdAt != null) {
-            resident.setCreatedAt(createdAt.toLocalDateTime().toLocalDate());
+    /**
+     * Maps residents rows (r.* cùng apartment_code, household_code, owner_name)
+     * Vị trí các cột được tra một lần cho mỗi ResultSet thay vì theo tên ở từng dòng
+     */
+    private static final class ResidentMapper {
+        private final int id;
+        private final int householdId;
+        private final int userId;
+        private final int fullName;
+        private final int idCard;
+        private final int dateOfBirth;
+        private final int gender;
+        private final int relationship;
+        private final int phone;
+        private final int email;
+        private final int occupation;
+        private final int permanentAddress;
+        private final int temporaryAddress;
+        private final int status;
+        private final int notes;
+        private final int temporaryResidentFrom;
+        private final int temporaryResidentTo;
+        private final int temporaryAbsentFrom;
+        private final int temporaryAbsentTo;
+        private final int temporaryReason;
+        private final int createdAt;
+        private final int updatedAt;
+        private final int apartmentCode;
+        private final int householdCode;
+        private final int ownerName;
+
+        ResidentMapper(ResultColumns columns) {
+            id = columns.indexOf("id");
+            householdId = columns.indexOf("household_id");
+            userId = columns.indexOf("user_id");
+            fullName = columns.indexOf("full_name");
+            idCard = columns.indexOf("id_card");
+            dateOfBirth = columns.indexOf("date_of_birth");
+            gender = columns.indexOf("gender");
+            relationship = columns.indexOf("relationship");
+            phone = columns.indexOf("phone");
+            email = columns.indexOf("email");
+            occupation = columns.indexOf("occupation");
+            permanentAddress = columns.indexOf("permanent_address");
+            temporaryAddress = columns.indexOf("temporary_address");
+            status = columns.indexOf("status");
+            notes = columns.indexOf("notes");
+            temporaryResidentFrom = columns.indexOf("temporary_resident_from");
+            temporaryResidentTo = columns.indexOf("temporary_resident_to");
+            temporaryAbsentFrom = columns.indexOf("temporary_absent_from");
+            temporaryAbsentTo = columns.indexOf("temporary_absent_to");
+            temporaryReason = columns.indexOf("temporary_reason");
+            createdAt = columns.indexOf("created_at");
+            updatedAt = columns.indexOf("updated_at");
+            apartmentCode = columns.indexOf("apartment_code");
+            householdCode = columns.indexOf("household_code");
+            ownerName = columns.indexOf("owner_name");
         }
-        
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
-        if (updatedAt != null) {
-            resident.setUpdatedAt(updatedAt.toLocalDateTime().toLocalDate());
+
+        Resident map(ResultSet rs) throws SQLException {
+            Resident resident = new Resident();
+            resident.setId(rs.getInt(id));
+            resident.setHouseholdId(rs.getInt(householdId));
+            resident.setUserId(ResultColumns.getInteger(rs, userId));
+            resident.setFullName(ResultColumns.getString(rs, fullName));
+            resident.setIdCard(ResultColumns.getString(rs, idCard));
+            resident.setDateOfBirth(ResultColumns.getLocalDate(rs, dateOfBirth));
+            resident.setGender(ResultColumns.getString(rs, gender));
+            resident.setRelationship(ResultColumns.getString(rs, relationship));
+            resident.setPhone(ResultColumns.getString(rs, phone));
+            resident.setEmail(ResultColumns.getString(rs, email));
+            resident.setOccupation(ResultColumns.getString(rs, occupation));
+            resident.setPermanentAddress(ResultColumns.getString(rs, permanentAddress));
+            resident.setTemporaryAddress(ResultColumns.getString(rs, temporaryAddress));
+            resident.setStatus(ResultColumns.getString(rs, status));
+            resident.setNotes(ResultColumns.getString(rs, notes));
+            
+            // Tạm trú/Tạm vắng
+            resident.setTemporaryResidentFrom(ResultColumns.getLocalDate(rs, temporaryResidentFrom));
+            resident.setTemporaryResidentTo(ResultColumns.getLocalDate(rs, temporaryResidentTo));
+            resident.setTemporaryAbsentFrom(ResultColumns.getLocalDate(rs, temporaryAbsentFrom));
+            resident.setTemporaryAbsentTo(ResultColumns.getLocalDate(rs, temporaryAbsentTo));
+            resident.setTemporaryReason(ResultColumns.getString(rs, temporaryReason));
+            
+            resident.setCreatedAt(ResultColumns.getTimestampDate(rs, createdAt));
+            resident.setUpdatedAt(ResultColumns.getTimestampDate(rs, updatedAt));
+            
+            // Join fields
+            resident.setApartmentCode(ResultColumns.getString(rs, apartmentCode));
+            resident.setHouseholdCode(ResultColumns.getString(rs, householdCode));
+            resident.setOwnerName(ResultColumns.getString(rs, ownerName));
+            return resident;
         }
-        
-        // Join fields
-        resident.setApartmentCode(rs.getString("apartment_code"));
-        resident.setHouseholdCode(rs.getString("household_code"));
-        resident.setOwnerName(rs.getString("owner_name"));
-        
-        return resident;
     }
 }
 
@@ -2,11 +2,15 @@ package vn.bluemoon.repository;
 
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.Role;
+import vn.bluemoon.security.PermissionCache;
+import vn.bluemoon.security.PermissionSnapshot;
 import vn.bluemoon.util.JdbcUtils;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Repository for Role (user-group relationship)
@@ -26,6 +30,7 @@ public class RoleRepository {
         } catch (SQLException e) {
             throw new DbException("Error assigning role to user: " + e.getMessage(), e);
         }
+        PermissionCache.invalidateUser(userId);
     }
 
     /**
@@ -41,6 +46,7 @@ public class RoleRepository {
         } catch (SQLException e) {
             throw new DbException("Error removing role from user: " + e.getMessage(), e);
         }
+        PermissionCache.invalidateUser(userId);
     }
 
     /**
@@ -81,6 +87,36 @@ public class RoleRepository {
         }
     }
 
+    /**
+     * Load the groups and function boundary classes of a user in one query
+     * (thay cho findByUserId + findByGroupId cho từng nhóm)
+     */
+    public PermissionSnapshot loadPermissions(Integer userId) throws DbException {
+        Set<String> groupNames = new HashSet<>();
+        Set<String> boundaryClasses = new HashSet<>();
+        String sql = "SELECT g.name, f.boundary_class FROM user_roles ur " +
+                     "INNER JOIN groups g ON g.id = ur.group_id " +
+                     "LEFT JOIN group_functions gf ON gf.group_id = g.id " +
+                     "LEFT JOIN functions f ON f.id = gf.function_id " +
+                     "WHERE ur.user_id = ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    groupNames.add(rs.getString(1));
+                    String boundaryClass = rs.getString(2);
+                    if (boundaryClass != null) {
+                        boundaryClasses.add(boundaryClass);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error loading permissions for user: " + e.getMessage(), e);
+        }
+        return new PermissionSnapshot(groupNames, boundaryClasses);
+    }
+
     private Role mapResultSetToRole(ResultSet rs) throws SQLException {
         Role role = new Role();
         role.setId(rs.getInt("id"));
@@ -0,0 +1,11 @@
+package vn.bluemoon.repository;
+
+import vn.bluemoon.exception.DbException;
+
+/**
+ * Receives rows one at a time from a streaming repository query (cursor, không nạp cả danh sách)
+ * @param <T> Row type
+ */
+public interface RowHandler<T> {
+    void handle(T row) throws DbException;
+}
@@ -0,0 +1,149 @@
+package vn.bluemoon.repository;
+
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.UserSession;
+import vn.bluemoon.security.SessionStore;
+import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.SchemaCapabilities;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Repository for UserSession entity (bảng sessions), SessionStore dùng chung giữa các node
+ */
+public class SessionRepository implements SessionStore {
+
+    /**
+     * Create session
+     */
+    @Override
+    public void save(UserSession session) throws DbException {
+        String sql = "INSERT INTO sessions (user_id, session_token, expires_at) VALUES (?, ?, ?)";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, session.getUserId());
+            stmt.setString(2, session.getSessionToken());
+            stmt.setTimestamp(3, Timestamp.valueOf(session.getExpiresAt()));
+            stmt.executeUpdate();
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    session.setId(generatedKeys.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error creating session: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find session by token
+     */
+    @Override
+    public UserSession findByToken(String token) throws DbException {
+        String sql = "SELECT * FROM sessions WHERE session_token = ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, token);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToSession(rs);
+                }
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new DbException("Error finding session: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Update last_seen_at of many sessions in one JDBC batch
+     */
+    @Override
+    public void updateLastSeen(Map<String, LocalDateTime> lastSeen) throws DbException {
+        if (lastSeen.isEmpty() || !SchemaCapabilities.hasColumn("sessions", "last_seen_at")) {
+            return;
+        }
+        String sql = "UPDATE sessions SET last_seen_at = ? WHERE session_token = ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<String, LocalDateTime> entry : lastSeen.entrySet()) {
+                stmt.setTimestamp(1, Timestamp.valueOf(entry.getValue()));
+                stmt.setString(2, entry.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            throw new DbException("Error updating session last seen: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete session by token
+     */
+    @Override
+    public void delete(String token) throws DbException {
+        String sql = "DELETE FROM sessions WHERE session_token = ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, token);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error deleting session: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete all sessions of a user
+     */
+    @Override
+    public void deleteByUserId(Integer userId) throws DbException {
+        String sql = "DELETE FROM sessions WHERE user_id = ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error deleting user sessions: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete expired sessions (dùng index idx_sessions_expires_at)
+     */
+    @Override
+    public int deleteExpired() throws DbException {
+        String sql = "DELETE FROM sessions WHERE expires_at < ?";
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DbException("Error deleting expired sessions: " + e.getMessage(), e);
+        }
+    }
+
+    private UserSession mapResultSetToSession(ResultSet rs) throws SQLException {
+        UserSession session = new UserSession();
+        session.setId(rs.getInt("id"));
+        session.setUserId(rs.getInt("user_id"));
+        session.setSessionToken(rs.getString("session_token"));
+        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        if (expiresAt != null) {
+            session.setExpiresAt(expiresAt.toLocalDateTime());
+        }
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        if (createdAt != null) {
+            session.setCreatedAt(createdAt.toLocalDateTime());
+        }
+        if (SchemaCapabilities.hasColumn("sessions", "last_seen_at")) {
+            Timestamp lastSeenAt = rs.getTimestamp("last_seen_at");
+            if (lastSeenAt != null) {
+                session.setLastSeenAt(lastSeenAt.toLocalDateTime());
+            }
+        }
+        return session;
+    }
+}
@@ -2,6 +2,7 @@ package vn.bluemoon.repository;
 
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.PermissionCache;
 import vn.bluemoon.util.JdbcUtils;
 
 import java.sql.*;
@@ -184,8 +185,42 @@ public class UserRepository {
      */
     public List<User> search(String username, String email, String fullName, String phone) throws DbException {
         List<User> users = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT * FROM users WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        String sql = searchSql(params, username, email, fullName, phone);
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                users.add(mapResultSetToUser(rs));
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error searching users: " + e.getMessage(), e);
+        }
+        return users;
+    }
+
+    /**
+     * Stream users matching the filters (cùng bộ lọc và thứ tự với search()) without building a list
+     * @param fetchSize Rows fetched per round trip
+     * @param handler Called once per row
+     */
+    public void forEachMatching(String username, String email, String fullName, String phone, int fetchSize,
+                                RowHandler<User> handler) throws DbException {
+        List<Object> params = new ArrayList<>();
+        String sql = searchSql(params, username, email, fullName, phone);
+        try {
+            CursorQuery.stream(sql, params, fetchSize, columns -> rs -> handler.handle(mapResultSetToUser(rs)));
+        } catch (SQLException e) {
+            throw new DbException("Error streaming users: " + e.getMessage(), e);
+        }
+    }
+
+    private String searchSql(List<Object> params, String username, String email, String fullName, String phone) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM users WHERE 1=1");
         
         if (username != null && !username.trim().isEmpty()) {
             sql.append(" AND username LIKE ?");
@@ -205,20 +240,7 @@ public class UserRepository {
         }
         
         sql.append(" ORDER BY created_at DESC");
-        
-        try (Connection conn = JdbcUtils.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            for (int i = 0; i < params.size(); i++) {
-                stmt.setObject(i + 1, params.get(i));
-            }
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                users.add(mapResultSetToUser(rs));
-            }
-        } catch (SQLException e) {
-            throw new DbException("Error searching users: " + e.getMessage(), e);
-        }
-        return users;
+        return sql.toString();
     }
 
     /**
@@ -257,6 +279,24 @@ public class UserRepository {
         }
     }
     
+    /**
+     * Replace a password hash only if it has not changed in the meantime (dùng khi hash lại lúc đăng nhập)
+     * @return true if the hash was replaced
+     */
+    public boolean updatePasswordHash(Integer userId, String oldHash, String newHash) throws DbException {
+        String sql = "UPDATE users SET password_hash = ? WHERE id = ? AND password_hash = ?";
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, newHash);
+            stmt.setInt(2, userId);
+            stmt.setString(3, oldHash);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new DbException("Error updating password hash: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Delete user by ID
      */
@@ -270,6 +310,7 @@ public class UserRepository {
         } catch (SQLException e) {
             throw new DbException("Error deleting user: " + e.getMessage(), e);
         }
+        PermissionCache.invalidateUser(userId);
     }
 
     private User mapResultSetToUser(ResultSet rs) throws SQLException {
@@ -0,0 +1,271 @@
+package vn.bluemoon.search;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.util.AppLogger;
+import vn.bluemoon.util.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Diacritic-insensitive search over households: tên chủ hộ, mã hộ, mã căn hộ
+ * ("Nguyen" tìm được "Nguyễn"). Tên chủ hộ khớp với chủ hộ hiện tại (household_owners)
+ * hoặc tên chủ hộ đăng ký trên households.owner_name.
+ *
+ * Có hai cách:
+ * - PostgreSQL có pg_trgm + unaccent: lọc bằng f_unaccent(lower(...)) LIKE, dùng GIN trigram index
+ * - Còn lại (MySQL, hoặc không tạo được extension): trigram index trong bộ nhớ,
+ *   trả về danh sách household_id để lọc bằng h.id IN (...); index được cập nhật theo từng hộ
+ *   qua householdChanged() sau mỗi lần ghi households/household_owners của node này.
+ *   Khi chạy nhiều node, ghi ở node khác chỉ được thấy khi index được nạp lại toàn bộ
+ *   (sau search.memory-index-ttl-seconds); cần nhất quán ngay giữa các node thì dùng PostgreSQL + pg_trgm
+ *
+ * Hai cách chuẩn hóa giống nhau: VietnameseText.normalize tương ứng f_unaccent(lower(...)),
+ * từ khóa chỉ được bỏ khoảng trắng ở hai đầu (khoảng trắng bên trong giữ nguyên ở cả hai cách).
+ *
+ * Các truy vấn dùng appendFilters phải có alias h (households), a (apartments)
+ * và ho (household_owners, LEFT JOIN).
+ */
+public final class HouseholdSearch {
+    private static volatile boolean databaseIndex;
+
+    private static final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final NGramIndex ownerNames = new NGramIndex();
+    private static final NGramIndex registeredOwnerNames = new NGramIndex();
+    private static final NGramIndex householdCodes = new NGramIndex();
+    private static final NGramIndex apartmentCodes = new NGramIndex();
+    private static boolean loaded;
+    private static long loadedAtMillis;
+    // Quá số id này thì ghi id thẳng vào SQL thay vì bind, để không vượt giới hạn tham số của driver
+    private static final int MAX_BOUND_IDS = 2_000;
+
+    private HouseholdSearch() {
+    }
+
+    /**
+     * Select the search backend (DatabaseInitializer gọi sau khi tạo extension/index)
+     * @param available true if pg_trgm, unaccent and f_unaccent() exist
+     */
+    public static void useDatabaseIndex(boolean available) {
+        databaseIndex = available;
+        AppLogger.info("Household search uses {}", available ? "pg_trgm index" : "in-memory trigram index");
+    }
+
+    public static boolean isDatabaseIndex() {
+        return databaseIndex;
+    }
+
+    /**
+     * Append owner name / household code / apartment code filters to a query over h, a, ho
+     * @return false if the filters match nothing (có thể bỏ qua truy vấn)
+     */
+    public static boolean appendFilters(StringBuilder sql, List<Object> params,
+                                        String ownerName, String apartmentCode, String householdCode) throws DbException {
+        if (databaseIndex) {
+            if (ownerName != null && !ownerName.trim().isEmpty()) {
+                String pattern = "%" + escapeLike(VietnameseText.normalize(ownerName.trim())) + "%";
+                sql.append(" AND (f_unaccent(lower(ho.owner_name)) LIKE ? OR f_unaccent(lower(h.owner_name)) LIKE ?)");
+                params.add(pattern);
+                params.add(pattern);
+            }
+            appendDatabaseFilter(sql, params, "a.apartment_code", apartmentCode);
+            appendDatabaseFilter(sql, params, "h.household_code", householdCode);
+            return true;
+        }
+
+        Set<Integer> ids = null;
+        lock.readLock().lock();
+        try {
+            ensureLoaded();
+            ids = intersect(ids, ownerNames, registeredOwnerNames, ownerName);
+            ids = intersect(ids, apartmentCodes, null, apartmentCode);
+            ids = intersect(ids, householdCodes, null, householdCode);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (ids == null) {
+            return true;
+        }
+        if (ids.isEmpty()) {
+            sql.append(" AND 1 = 0");
+            return false;
+        }
+        // Tên phổ biến có thể khớp rất nhiều hộ: chia thành nhiều IN (...) ngắn nối bằng OR
+        boolean inline = ids.size() > MAX_BOUND_IDS;
+        sql.append(" AND (");
+        boolean firstChunk = true;
+        for (List<Integer> chunk : JdbcUtils.inChunks(ids)) {
+            sql.append(firstChunk ? "h.id IN (" : " OR h.id IN (");
+            if (inline) {
+                // id là số nguyên lấy từ index, ghi thẳng vào SQL là an toàn
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "" : ", ").append(chunk.get(i).intValue());
+                }
+            } else {
+                sql.append(JdbcUtils.placeholders(chunk.size()));
+                params.addAll(chunk);
+            }
+            sql.append(")");
+            firstChunk = false;
+        }
+        sql.append(")");
+        return true;
+    }
+
+    /**
+     * Re-read one household into the in-memory index
+     * Gọi (qua UnitOfWork.afterCommit) sau khi tạo/xóa hộ, đổi mã hộ/căn hộ hoặc chủ hộ thay đổi
+     */
+    public static void householdChanged(Integer householdId) {
+        if (databaseIndex || householdId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            String sql = SELECT + FROM + "WHERE h.id = ? AND " + INDEXED;
+            try (Connection conn = JdbcUtils.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, householdId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        index(rs);
+                    } else {
+                        ownerNames.remove(householdId);
+                        registeredOwnerNames.remove(householdId);
+                        householdCodes.remove(householdId);
+                        apartmentCodes.remove(householdId);
+                    }
+                }
+            } catch (SQLException | DbException e) {
+                // Không cập nhật được thì nạp lại toàn bộ ở lần tìm kiếm sau
+                AppLogger.warn("Error updating household search index: " + e.getMessage());
+                loaded = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the in-memory index, it is reloaded on the next search
+     */
+    public static void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final String SELECT =
+        "SELECT h.id, COALESCE(ho.owner_name, h.owner_name) AS owner_name, h.owner_name AS registered_owner_name, " +
+        "h.household_code, a.apartment_code ";
+
+    // Hộ thuộc căn hộ mặc định không được tìm kiếm
+    private static final String INDEXED = "a.apartment_code NOT LIKE 'DEFAULT-%'";
+
+    private static final String FROM =
+        "FROM households h " +
+        "JOIN apartments a ON h.apartment_id = a.id " +
+        "LEFT JOIN household_owners ho ON ho.household_id = h.id ";
+
+    private static void appendDatabaseFilter(StringBuilder sql, List<Object> params, String column, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        sql.append(" AND f_unaccent(lower(").append(column).append(")) LIKE ?");
+        params.add("%" + escapeLike(VietnameseText.normalize(value.trim())) + "%");
+    }
+
+    /**
+     * Intersect the current IDs with the matches of one filter (khớp index hoặc alternative nếu có)
+     */
+    private static Set<Integer> intersect(Set<Integer> current, NGramIndex index, NGramIndex alternative, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return current;
+        }
+        Set<Integer> matches = index.search(value.trim());
+        if (alternative != null) {
+            matches.addAll(alternative.search(value.trim()));
+        }
+        if (current == null) {
+            return matches;
+        }
+        Set<Integer> result = new HashSet<>(current);
+        result.retainAll(matches);
+        return result;
+    }
+
+    /**
+     * Load the in-memory index if needed or expired; called with the read lock held
+     */
+    private static void ensureLoaded() throws DbException {
+        if (isFresh()) {
+            return;
+        }
+        // Nâng lên write lock để nạp (read lock không nâng cấp được)
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            if (!isFresh()) {
+                load();
+            }
+        } finally {
+            lock.readLock().lock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index loaded and younger than search.memory-index-ttl-seconds (giới hạn độ trễ với ghi ở node khác)
+     */
+    private static boolean isFresh() {
+        long ttlMillis = Math.max(1, AppConfig.getInstance().getSearchMemoryIndexTtlSeconds()) * 1000L;
+        return loaded && System.currentTimeMillis() - loadedAtMillis < ttlMillis;
+    }
+
+    private static void load() throws DbException {
+        String sql = SELECT + FROM + "WHERE " + INDEXED;
+        ownerNames.clear();
+        registeredOwnerNames.clear();
+        householdCodes.clear();
+        apartmentCodes.clear();
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                index(rs);
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error loading household search index: " + e.getMessage(), e);
+        }
+        loaded = true;
+        loadedAtMillis = System.currentTimeMillis();
+        AppLogger.info("Household search index loaded ({} households)", ownerNames.size());
+    }
+
+    private static void index(ResultSet rs) throws SQLException {
+        int id = rs.getInt("id");
+        ownerNames.put(id, rs.getString("owner_name"));
+        registeredOwnerNames.put(id, rs.getString("registered_owner_name"));
+        householdCodes.put(id, rs.getString("household_code"));
+        apartmentCodes.put(id, rs.getString("apartment_code"));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,106 @@
+package vn.bluemoon.search;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory trigram index over normalized text, keyed by an integer ID
+ * Tìm chuỗi con: giao các posting list của trigram trong từ khóa rồi kiểm tra lại bằng contains(),
+ * nên thời gian tìm kiếm phụ thuộc số kết quả chứ không phụ thuộc tổng số dòng.
+ * Không thread-safe, HouseholdSearch đồng bộ hóa truy cập.
+ */
+class NGramIndex {
+    private static final int N = 3;
+
+    private final Map<String, Set<Integer>> postings = new HashMap<>();
+    private final Map<Integer, String> documents = new HashMap<>();
+
+    /**
+     * Add or replace the text of an ID
+     */
+    void put(int id, String text) {
+        remove(id);
+        String normalized = VietnameseText.normalize(text);
+        documents.put(id, normalized);
+        for (String gram : grams(normalized)) {
+            postings.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Remove an ID from the index
+     */
+    void remove(int id) {
+        String previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : grams(previous)) {
+            Set<Integer> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find IDs whose text contains the query (không phân biệt dấu, hoa thường)
+     */
+    Set<Integer> search(String query) {
+        String normalized = VietnameseText.normalize(query);
+        Set<Integer> result = new HashSet<>();
+        if (normalized.isEmpty()) {
+            return result;
+        }
+
+        if (normalized.length() < N) {
+            // Từ khóa quá ngắn để dùng trigram, quét toàn bộ
+            for (Map.Entry<Integer, String> entry : documents.entrySet()) {
+                if (entry.getValue().contains(normalized)) {
+                    result.add(entry.getKey());
+                }
+            }
+            return result;
+        }
+
+        // Bắt đầu từ posting list ngắn nhất để giao nhanh nhất
+        Set<Integer> smallest = null;
+        for (String gram : grams(normalized)) {
+            Set<Integer> ids = postings.get(gram);
+            if (ids == null) {
+                return result;
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        for (Integer id : smallest) {
+            if (documents.get(id).contains(normalized)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        postings.clear();
+        documents.clear();
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + N <= text.length(); i++) {
+            grams.add(text.substring(i, i + N));
+        }
+        return grams;
+    }
+}
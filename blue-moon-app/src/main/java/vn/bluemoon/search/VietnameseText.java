@@ -0,0 +1,33 @@
+package vn.bluemoon.search;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalization of Vietnamese text for search
+ * Bỏ dấu, chữ thường, "đ" thành "d": "Nguyễn Văn Đức" -> "nguyen van duc"
+ * Kết quả trùng với f_unaccent(lower(...)) của PostgreSQL để dùng chung cho cả hai cách tìm kiếm,
+ * nên không gộp hay cắt khoảng trắng (SQL không làm việc đó với giá trị trong cột)
+ */
+public final class VietnameseText {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private VietnameseText() {
+    }
+
+    /**
+     * Normalize text for diacritic-insensitive matching
+     * @return Normalized text, or empty string for null
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("")
+            .replace('đ', 'd')
+            .replace('Đ', 'D');
+        return stripped.toLowerCase(Locale.ROOT);
+    }
+}
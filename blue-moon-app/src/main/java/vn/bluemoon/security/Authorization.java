@@ -1,19 +1,15 @@
 package vn.bluemoon.security;
 
 import vn.bluemoon.exception.DbException;
-import vn.bluemoon.model.entity.Group;
 import vn.bluemoon.model.entity.User;
-import vn.bluemoon.repository.FunctionRepository;
-import vn.bluemoon.repository.GroupRepository;
-
-import java.util.List;
 
 /**
  * Authorization utility class
+ * Quyền của mỗi user được nạp một lần vào PermissionSnapshot (PermissionCache),
+ * các lần kiểm tra sau không query database
  */
 public class Authorization {
-    private static final GroupRepository groupRepository = new GroupRepository();
-    private static final FunctionRepository functionRepository = new FunctionRepository();
+    private static final String ADMIN_ROLE = "Quản trị viên";
 
     /**
      * Check if user has access to a function
@@ -26,25 +22,9 @@ public class Authorization {
             return false;
         }
 
+        PermissionSnapshot permissions = PermissionCache.get(user.getId());
         // Quản trị viên có toàn quyền
-        if (hasRole(user, "Quản trị viên")) {
-            return true;
-        }
-
-        // Get all groups for the user
-        List<Group> groups = groupRepository.findByUserId(user.getId());
-        
-        // Check if any group has access to the function
-        for (Group group : groups) {
-            List<vn.bluemoon.model.entity.Function> functions = functionRepository.findByGroupId(group.getId());
-            for (vn.bluemoon.model.entity.Function function : functions) {
-                if (boundaryClass.equals(function.getBoundaryClass())) {
-                    return true;
-                }
-            }
-        }
-        
-        return false;
+        return permissions.hasRole(ADMIN_ROLE) || permissions.hasFunction(boundaryClass);
     }
 
     /**
@@ -57,14 +37,7 @@ public class Authorization {
         if (user == null) {
             return false;
         }
-
-        List<Group> groups = groupRepository.findByUserId(user.getId());
-        for (Group group : groups) {
-            if (groupName.equals(group.getName())) {
-                return true;
-            }
-        }
-        return false;
+        return PermissionCache.get(user.getId()).hasRole(groupName);
     }
     
     /**
@@ -72,7 +45,7 @@ public class Authorization {
      * Admin has all permissions
      */
     public static boolean isAdmin(User user) throws DbException {
-        return hasRole(user, "Quản trị viên");
+        return hasRole(user, ADMIN_ROLE);
     }
     
     /**
@@ -0,0 +1,33 @@
+package vn.bluemoon.security;
+
+import vn.bluemoon.model.entity.User;
+
+/**
+ * User authenticated for the current request
+ * SessionAuthFilter gán user đọc từ SessionManager (theo cookie token) vào thread xử lý request,
+ * controller đọc lại bằng get() thay cho HttpSession nên request đến node nào cũng được
+ */
+public final class CurrentUser {
+    private static final ThreadLocal<User> user = new ThreadLocal<>();
+
+    private CurrentUser() {
+    }
+
+    /**
+     * @return User of the current request, null if not logged in
+     */
+    public static User get() {
+        return user.get();
+    }
+
+    /**
+     * Bind the user to the current thread (gọi đầu mỗi request, xóa bằng clear)
+     */
+    public static void set(User current) {
+        user.set(current);
+    }
+
+    public static void clear() {
+        user.remove();
+    }
+}
@@ -0,0 +1,52 @@
+package vn.bluemoon.security;
+
+import vn.bluemoon.model.entity.UserSession;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process SessionStore (session.store=memory)
+ * Không chia sẻ giữa các node, session mất khi khởi động lại
+ */
+public class LocalSessionStore implements SessionStore {
+    private final Map<String, UserSession> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(UserSession session) {
+        sessions.put(session.getSessionToken(), session);
+    }
+
+    @Override
+    public UserSession findByToken(String token) {
+        return sessions.get(token);
+    }
+
+    @Override
+    public void updateLastSeen(Map<String, LocalDateTime> lastSeen) {
+        for (Map.Entry<String, LocalDateTime> entry : lastSeen.entrySet()) {
+            UserSession session = sessions.get(entry.getKey());
+            if (session != null) {
+                session.setLastSeenAt(entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void delete(String token) {
+        sessions.remove(token);
+    }
+
+    @Override
+    public void deleteByUserId(Integer userId) {
+        sessions.values().removeIf(session -> userId.equals(session.getUserId()));
+    }
+
+    @Override
+    public int deleteExpired() {
+        int before = sessions.size();
+        sessions.values().removeIf(UserSession::isExpired);
+        return before - sessions.size();
+    }
+}
@@ -0,0 +1,190 @@
+package vn.bluemoon.security;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.AuthException;
+import vn.bluemoon.util.AppLogger;
+import vn.bluemoon.util.PasswordHasher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for BCrypt work during login
+ * BCrypt chạy trên một pool riêng có giới hạn, nên đợt đăng nhập dồn dập không băm đồng thời quá số
+ * thread của pool (thread xử lý request vẫn chờ kết quả, có timeout); khi hàng đợi đầy thì từ chối ngay
+ * (back-pressure) thay vì xếp hàng vô hạn.
+ */
+public class LoginExecutor {
+    // Upper bounds (milliseconds) of the verify-latency histogram buckets
+    private static final long[] BUCKET_BOUNDS_MILLIS = { 10, 25, 50, 100, 250, 500, 1_000, 2_500 };
+    private static final String[] BUCKET_LABELS = {
+        "<=10ms", "<=25ms", "<=50ms", "<=100ms", "<=250ms", "<=500ms", "<=1s", "<=2.5s", ">2.5s"
+    };
+
+    private static final ThreadPoolExecutor executor;
+    private static final long timeoutMs;
+    private static final int queueCapacity;
+
+    private static final LongAdder[] buckets = new LongAdder[BUCKET_LABELS.length];
+    private static final LongAdder verifyCount = new LongAdder();
+    private static final LongAdder verifyNanosTotal = new LongAdder();
+    private static final LongAdder queueWaitNanosTotal = new LongAdder();
+    private static final LongAdder successCount = new LongAdder();
+    private static final LongAdder failureCount = new LongAdder();
+    private static final LongAdder rejectedCount = new LongAdder();
+    private static final LongAdder timeoutCount = new LongAdder();
+    private static final LongAdder rehashCount = new LongAdder();
+
+    static {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+        AppConfig config = AppConfig.getInstance();
+        int threads = Math.max(1, config.getLoginThreads());
+        queueCapacity = Math.max(1, config.getLoginQueueCapacity());
+        timeoutMs = config.getLoginTimeoutMs();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            r -> {
+                Thread thread = new Thread(r, "login-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        AppLogger.info("Login executor started (threads={}, queue={}, bcrypt cost={})",
+            threads, queueCapacity, PasswordHasher.getCost());
+    }
+
+    private LoginExecutor() {
+    }
+
+    /**
+     * Verify a password on the login executor
+     * @param password Plain text password
+     * @param hash Stored BCrypt hash
+     * @return true if password matches hash
+     * @throws AuthException if the executor is saturated or verification times out
+     */
+    public static boolean verify(String password, String hash) throws AuthException {
+        long submittedAt = System.nanoTime();
+        Future<Boolean> result;
+        try {
+            result = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitNanosTotal.add(startedAt - submittedAt);
+                boolean matches = PasswordHasher.verify(password, hash);
+                record(System.nanoTime() - startedAt);
+                return matches;
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw new AuthException("Hệ thống đang bận, vui lòng thử lại sau giây lát");
+        }
+
+        try {
+            boolean matches = result.get(timeoutMs, TimeUnit.MILLISECONDS);
+            if (matches) {
+                successCount.increment();
+            } else {
+                failureCount.increment();
+            }
+            return matches;
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            timeoutCount.increment();
+            throw new AuthException("Hệ thống đang bận, vui lòng thử lại sau giây lát");
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthException("Đăng nhập bị gián đoạn", e);
+        } catch (ExecutionException e) {
+            failureCount.increment();
+            AppLogger.error("Error verifying password", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Rehash a password in the background if the stored hash uses another cost
+     * Bỏ qua nếu executor đang bận, lần đăng nhập sau sẽ thử lại
+     * @param password Plain text password (đã được xác thực)
+     * @param hash Stored hash
+     * @param store Callback that saves the new hash
+     */
+    public static void rehashIfNeeded(String password, String hash, RehashCallback store) {
+        if (!PasswordHasher.needsRehash(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    store.save(PasswordHasher.hash(password));
+                    rehashCount.increment();
+                } catch (Exception e) {
+                    AppLogger.warn("Error rehashing password: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Không ưu tiên bằng đăng nhập
+        }
+    }
+
+    /**
+     * Live login statistics: throughput counters, queue depth and verify-latency histogram
+     * @return Map of metric name to value
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("bcryptCost", PasswordHasher.getCost());
+
+        long count = verifyCount.sum();
+        stats.put("verifications", count);
+        stats.put("succeeded", successCount.sum());
+        stats.put("failed", failureCount.sum());
+        stats.put("rejected", rejectedCount.sum());
+        stats.put("timeouts", timeoutCount.sum());
+        stats.put("rehashed", rehashCount.sum());
+        stats.put("verifyAvgMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(verifyNanosTotal.sum() / count));
+        stats.put("queueWaitAvgMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(queueWaitNanosTotal.sum() / count));
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            histogram.put(BUCKET_LABELS[i], buckets[i].sum());
+        }
+        stats.put("verifyLatencyHistogram", histogram);
+        return stats;
+    }
+
+    private static void record(long elapsedNanos) {
+        verifyCount.increment();
+        verifyNanosTotal.add(elapsedNanos);
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        int index = 0;
+        while (index < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+    }
+
+    /**
+     * Saves a rehashed password
+     */
+    public interface RehashCallback {
+        void save(String newHash) throws Exception;
+    }
+}
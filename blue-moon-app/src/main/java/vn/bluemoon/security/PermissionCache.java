@@ -0,0 +1,94 @@
+package vn.bluemoon.security;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.repository.RoleRepository;
+import vn.bluemoon.util.UnitOfWork;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user cache of PermissionSnapshot
+ *
+ * Invalidation:
+ * - user_roles của một user thay đổi (gán/bỏ role, xóa user): {@link #invalidateUser(Integer)}
+ * - groups/functions/group_functions thay đổi (ảnh hưởng nhiều user): {@link #invalidateAll()}
+ * Việc xóa cache chạy sau khi transaction commit để không nạp lại dữ liệu chưa commit.
+ * Invalidation chỉ có hiệu lực trên node hiện tại; mỗi snapshot hết hạn sau
+ * security.permission-cache-ttl-seconds nên thay đổi từ node khác hoặc sửa trực tiếp database
+ * có hiệu lực sau tối đa một TTL.
+ */
+public class PermissionCache {
+    private static final RoleRepository roleRepository = new RoleRepository();
+    private static final Map<Integer, Entry> snapshots = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate, snapshot nạp trong lúc đó bị bỏ (tránh ghi đè bằng dữ liệu cũ)
+    private static final AtomicLong generation = new AtomicLong();
+    private static final long ttlMillis =
+        TimeUnit.SECONDS.toMillis(Math.max(0, AppConfig.getInstance().getPermissionCacheTtlSeconds()));
+
+    private PermissionCache() {
+    }
+
+    /**
+     * Get the permission snapshot of a user, loading it with one query on a cache miss or after the TTL
+     * @param userId User ID
+     * @return Snapshot, EMPTY if userId is null
+     */
+    public static PermissionSnapshot get(Integer userId) throws DbException {
+        if (userId == null) {
+            return PermissionSnapshot.EMPTY;
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = snapshots.get(userId);
+        if (entry != null && now < entry.expiresAt) {
+            return entry.snapshot;
+        }
+
+        long loadedAt = generation.get();
+        PermissionSnapshot snapshot = roleRepository.loadPermissions(userId);
+        Entry loaded = new Entry(snapshot, now + ttlMillis);
+        // Kiểm tra generation bên trong compute: invalidate tăng generation trước khi xóa entry,
+        // nên hoặc snapshot này không được ghi, hoặc được ghi rồi bị invalidate xóa ngay sau đó
+        snapshots.compute(userId, (id, existing) -> generation.get() == loadedAt ? loaded : existing);
+        return snapshot;
+    }
+
+    /**
+     * Drop the snapshot of one user after the current transaction commits
+     */
+    public static void invalidateUser(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        UnitOfWork.afterCommit(() -> {
+            generation.incrementAndGet();
+            snapshots.remove(userId);
+        });
+    }
+
+    /**
+     * Drop all snapshots after the current transaction commits
+     */
+    public static void invalidateAll() {
+        UnitOfWork.afterCommit(() -> {
+            generation.incrementAndGet();
+            snapshots.clear();
+        });
+    }
+
+    /**
+     * One cached snapshot and when it must be reloaded
+     */
+    private static final class Entry {
+        private final PermissionSnapshot snapshot;
+        private final long expiresAt;
+
+        private Entry(PermissionSnapshot snapshot, long expiresAt) {
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
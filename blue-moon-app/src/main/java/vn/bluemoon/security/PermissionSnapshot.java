@@ -0,0 +1,37 @@
+package vn.bluemoon.security;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable permissions of one user: tên các nhóm (role) và boundary class của các chức năng được phép
+ * Được PermissionCache tính một lần cho mỗi user, kiểm tra quyền sau đó không cần query database
+ */
+public final class PermissionSnapshot {
+    public static final PermissionSnapshot EMPTY = new PermissionSnapshot(Collections.emptySet(), Collections.emptySet());
+
+    private final Set<String> groupNames;
+    private final Set<String> boundaryClasses;
+
+    public PermissionSnapshot(Set<String> groupNames, Set<String> boundaryClasses) {
+        this.groupNames = Collections.unmodifiableSet(new HashSet<>(groupNames));
+        this.boundaryClasses = Collections.unmodifiableSet(new HashSet<>(boundaryClasses));
+    }
+
+    public boolean hasRole(String groupName) {
+        return groupNames.contains(groupName);
+    }
+
+    public boolean hasFunction(String boundaryClass) {
+        return boundaryClasses.contains(boundaryClass);
+    }
+
+    public Set<String> getGroupNames() {
+        return groupNames;
+    }
+
+    public Set<String> getBoundaryClasses() {
+        return boundaryClasses;
+    }
+}
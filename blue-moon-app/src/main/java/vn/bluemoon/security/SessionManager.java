@@ -1,39 +1,100 @@
 package vn.bluemoon.security;
 
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.model.entity.UserSession;
+import vn.bluemoon.repository.SessionRepository;
+import vn.bluemoon.repository.UserRepository;
+import vn.bluemoon.util.AppLogger;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Session manager for user sessions
+ *
+ * Session được lưu trong SessionStore (mặc định bảng sessions, nên nhiều node dùng chung được
+ * mà không cần sticky session), phía trước là near cache trong bộ nhớ:
+ * - Near cache thread-safe, giới hạn số entry, entry được kiểm tra lại với store sau session.near-cache-ttl-seconds
+ *   (để logout trên node khác có hiệu lực)
+ * - last_seen_at được gom lại và ghi theo batch định kỳ thay vì mỗi request
+ * - Thread nền dọn session hết hạn trong cache và xóa dòng hết hạn trong store
  */
 public class SessionManager {
-    private static SessionManager instance;
-    private Map<String, User> sessions = new HashMap<>();
-    private Map<String, Long> sessionTimestamps = new HashMap<>();
-    private static final long SESSION_TIMEOUT = 8 * 60 * 60 * 1000; // 8 hours
+    private static final SessionManager instance = new SessionManager();
+
+    private final SessionStore store;
+    private final UserRepository userRepository = new UserRepository();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Per-user index: userId -> tokens, để hủy mọi session của một user không phải quét toàn bộ
+    private final Map<Integer, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    // Token -> thời điểm request gần nhất, chờ ghi xuống store
+    private final Map<String, LocalDateTime> pendingLastSeen = new ConcurrentHashMap<>();
+    private final long sessionTimeoutMillis;
+    private final long nearCacheTtlMillis;
+    private final int maxSessions;
+
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder invalidatedCount = new LongAdder();
+    private final LongAdder cacheHitCount = new LongAdder();
+    private final LongAdder storeLookupCount = new LongAdder();
+    private final LongAdder storeErrorCount = new LongAdder();
+    private final LongAdder purgedCount = new LongAdder();
 
     private SessionManager() {
+        AppConfig config = AppConfig.getInstance();
+        this.sessionTimeoutMillis = TimeUnit.HOURS.toMillis(config.getSessionExpiryHours());
+        this.nearCacheTtlMillis = TimeUnit.SECONDS.toMillis(config.getSessionNearCacheTtlSeconds());
+        this.maxSessions = config.getSessionMaxActive();
+        this.store = "memory".equalsIgnoreCase(config.getSessionStore())
+            ? new LocalSessionStore()
+            : new SessionRepository();
+
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getSessionSweepIntervalSeconds();
+        sweeper.scheduleWithFixedDelay(this::sweepExpired, interval, interval, TimeUnit.SECONDS);
+        long flushInterval = config.getSessionLastSeenFlushSeconds();
+        sweeper.scheduleWithFixedDelay(this::flushLastSeen, flushInterval, flushInterval, TimeUnit.SECONDS);
     }
 
     public static SessionManager getInstance() {
-        if (instance == null) {
-            instance = new SessionManager();
-        }
         return instance;
     }
 
     /**
      * Create a new session
+     * Nếu near cache đã đủ số session tối đa, entry cũ nhất bị loại khỏi cache (vẫn còn trong store)
      * @param user User to create session for
      * @return Session token
+     * @throws DbException if the session cannot be stored
      */
-    public String createSession(User user) {
+    public String createSession(User user) throws DbException {
         String token = UUID.randomUUID().toString();
-        sessions.put(token, user);
-        sessionTimestamps.put(token, System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+        if (user != null && user.getId() != null) {
+            store.save(new UserSession(user.getId(), token, toLocalDateTime(now + sessionTimeoutMillis)));
+        }
+        Session session = new Session(token, user, now + sessionTimeoutMillis, now);
+        cache(session);
+        createdCount.increment();
         return token;
     }
 
@@ -43,17 +104,51 @@ public class SessionManager {
      * @return User if session is valid, null otherwise
      */
     public User getUser(String token) {
-        if (token == null || !sessions.containsKey(token)) {
+        if (token == null) {
             return null;
         }
-        
-        Long timestamp = sessionTimestamps.get(token);
-        if (timestamp == null || System.currentTimeMillis() - timestamp > SESSION_TIMEOUT) {
-            invalidateSession(token);
-            return null;
+        long now = System.currentTimeMillis();
+        Session cached = sessions.get(token);
+        if (cached != null) {
+            if (cached.isExpired(now)) {
+                expire(token);
+                return null;
+            }
+            if (cached.user == null || now - cached.verifiedAt < nearCacheTtlMillis) {
+                cacheHitCount.increment();
+                touch(token, now);
+                return cached.user;
+            }
+        }
+
+        // Cache miss hoặc entry đã quá TTL: kiểm tra lại với store
+        storeLookupCount.increment();
+        try {
+            UserSession stored = store.findByToken(token);
+            if (stored == null) {
+                removeCached(token);
+                return null;
+            }
+            long expiresAt = toEpochMillis(stored.getExpiresAt());
+            if (now > expiresAt) {
+                expire(token);
+                return null;
+            }
+            // Đọc lại user để tài khoản bị vô hiệu hóa/xóa (kể cả từ node khác) mất session sau tối đa một TTL
+            User user = userRepository.findById(stored.getUserId());
+            if (user == null || Boolean.FALSE.equals(user.getIsActive())) {
+                removeCached(token);
+                return null;
+            }
+            cache(new Session(token, user, expiresAt, now));
+            touch(token, now);
+            return user;
+        } catch (DbException e) {
+            // Store tạm thời lỗi: tin entry trong cache nếu có, không thì coi như chưa đăng nhập
+            storeErrorCount.increment();
+            AppLogger.warn("Error reading session store: " + e.getMessage());
+            return cached != null ? cached.user : null;
         }
-        
-        return sessions.get(token);
     }
 
     /**
@@ -61,8 +156,42 @@ public class SessionManager {
      * @param token Session token
      */
     public void invalidateSession(String token) {
-        sessions.remove(token);
-        sessionTimestamps.remove(token);
+        if (token == null) {
+            return;
+        }
+        removeCached(token);
+        pendingLastSeen.remove(token);
+        invalidatedCount.increment();
+        try {
+            store.delete(token);
+        } catch (DbException e) {
+            storeErrorCount.increment();
+            AppLogger.warn("Error deleting session: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Invalidate every session of a user (khi user bị vô hiệu hóa hoặc bị xóa)
+     * @param userId User ID
+     */
+    public void invalidateUserSessions(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        Set<String> tokens = sessionsByUser.get(userId);
+        if (tokens != null) {
+            for (String token : tokens.toArray(new String[0])) {
+                removeCached(token);
+                pendingLastSeen.remove(token);
+                invalidatedCount.increment();
+            }
+        }
+        try {
+            store.deleteByUserId(userId);
+        } catch (DbException e) {
+            storeErrorCount.increment();
+            AppLogger.warn("Error deleting user sessions: " + e.getMessage());
+        }
     }
 
     /**
@@ -73,31 +202,178 @@ public class SessionManager {
     public boolean isValidSession(String token) {
         return getUser(token) != null;
     }
-    
+
     /**
-     * Clear all sessions (logout)
+     * Clear the near cache of this node (session trong store vẫn còn)
      */
     public void clearSession() {
         sessions.clear();
-        sessionTimestamps.clear();
+        sessionsByUser.clear();
     }
-    
+
     /**
-     * Get current user from any active session
-     * @return Current user if any session exists, null otherwise
+     * Live session statistics
+     * @return Map of metric name to value
      */
-    public User getCurrentUser() {
-        if (sessions.isEmpty()) {
-            return null;
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", store.getClass().getSimpleName());
+        stats.put("active", sessions.size());
+        stats.put("users", sessionsByUser.size());
+        stats.put("maxSessions", maxSessions);
+        stats.put("timeoutSeconds", TimeUnit.MILLISECONDS.toSeconds(sessionTimeoutMillis));
+        stats.put("nearCacheTtlSeconds", TimeUnit.MILLISECONDS.toSeconds(nearCacheTtlMillis));
+        stats.put("created", createdCount.sum());
+        stats.put("expired", expiredCount.sum());
+        stats.put("evicted", evictedCount.sum());
+        stats.put("invalidated", invalidatedCount.sum());
+        stats.put("cacheHits", cacheHitCount.sum());
+        stats.put("storeLookups", storeLookupCount.sum());
+        stats.put("storeErrors", storeErrorCount.sum());
+        stats.put("pendingLastSeen", pendingLastSeen.size());
+        stats.put("purged", purgedCount.sum());
+        return stats;
+    }
+
+    /**
+     * Remove expired sessions from the near cache and the store (chạy định kỳ trên thread session-sweeper)
+     */
+    void sweepExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            int removed = 0;
+            for (Session session : sessions.values()) {
+                if (session.isExpired(now) && removeCached(session.token) != null) {
+                    pendingLastSeen.remove(session.token);
+                    expiredCount.increment();
+                    removed++;
+                }
+            }
+            int purged = store.deleteExpired();
+            purgedCount.add(purged);
+            if (removed > 0 || purged > 0) {
+                AppLogger.info("Expired {} cached sessions, purged {} stored sessions ({} active)",
+                    removed, purged, sessions.size());
+            }
+        } catch (DbException e) {
+            storeErrorCount.increment();
+            AppLogger.warn("Error purging expired sessions: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Không để lỗi làm dừng lịch dọn session
+            AppLogger.error("Error sweeping expired sessions", e);
+        }
+    }
+
+    /**
+     * Write pending last_seen updates to the store in one batch
+     */
+    void flushLastSeen() {
+        if (pendingLastSeen.isEmpty()) {
+            return;
         }
-        // Return first valid user from sessions
-        for (Map.Entry<String, User> entry : sessions.entrySet()) {
-            if (isValidSession(entry.getKey())) {
-                return entry.getValue();
+        Map<String, LocalDateTime> batch = new HashMap<>();
+        for (String token : pendingLastSeen.keySet()) {
+            LocalDateTime seenAt = pendingLastSeen.remove(token);
+            if (seenAt != null) {
+                batch.put(token, seenAt);
             }
         }
-        return null;
+        try {
+            store.updateLastSeen(batch);
+        } catch (DbException e) {
+            // last_seen chỉ mang tính thống kê, bỏ qua lần ghi này
+            storeErrorCount.increment();
+            AppLogger.warn("Error flushing session last seen: " + e.getMessage());
+        } catch (RuntimeException e) {
+            AppLogger.error("Error flushing session last seen", e);
+        }
+    }
+
+    private void touch(String token, long now) {
+        pendingLastSeen.put(token, toLocalDateTime(now));
+    }
+
+    private void expire(String token) {
+        if (removeCached(token) != null) {
+            expiredCount.increment();
+        }
+        pendingLastSeen.remove(token);
     }
-}
 
+    private void cache(Session session) {
+        if (!sessions.containsKey(session.token) && sessions.size() >= maxSessions) {
+            long now = System.currentTimeMillis();
+            for (Session existing : sessions.values()) {
+                if (existing.isExpired(now) && removeCached(existing.token) != null) {
+                    expiredCount.increment();
+                }
+            }
+            while (sessions.size() >= maxSessions && evictOldest()) {
+                evictedCount.increment();
+            }
+        }
+        sessions.put(session.token, session);
+        if (session.user != null && session.user.getId() != null) {
+            sessionsByUser.compute(session.user.getId(), (userId, tokens) -> {
+                Set<String> result = tokens != null ? tokens : ConcurrentHashMap.newKeySet();
+                result.add(session.token);
+                return result;
+            });
+        }
+    }
 
+    /**
+     * Remove the least recently verified session from the near cache
+     * @return false if there was nothing to remove
+     */
+    private boolean evictOldest() {
+        Session oldest = null;
+        for (Session session : sessions.values()) {
+            if (oldest == null || session.verifiedAt < oldest.verifiedAt) {
+                oldest = session;
+            }
+        }
+        return oldest != null && removeCached(oldest.token) != null;
+    }
+
+    private Session removeCached(String token) {
+        Session session = sessions.remove(token);
+        if (session != null && session.user != null && session.user.getId() != null) {
+            sessionsByUser.computeIfPresent(session.user.getId(), (userId, tokens) -> {
+                tokens.remove(token);
+                return tokens.isEmpty() ? null : tokens;
+            });
+        }
+        return session;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime == null ? 0 : dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * One near-cache entry (immutable)
+     */
+    private static final class Session {
+        private final String token;
+        private final User user;
+        private final long expiresAt;
+        // Lần cuối đối chiếu với store
+        private final long verifiedAt;
+
+        private Session(String token, User user, long expiresAt, long verifiedAt) {
+            this.token = token;
+            this.user = user;
+            this.expiresAt = expiresAt;
+            this.verifiedAt = verifiedAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now > expiresAt;
+        }
+    }
+}
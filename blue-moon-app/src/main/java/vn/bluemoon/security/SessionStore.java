@@ -0,0 +1,38 @@
+package vn.bluemoon.security;
+
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.UserSession;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Backing store of login sessions behind SessionManager's near cache
+ * - SessionRepository: bảng sessions, dùng chung giữa nhiều node (không cần sticky session)
+ * - LocalSessionStore: lưu trong bộ nhớ của process (một node, hoặc khi chưa có bảng sessions)
+ */
+public interface SessionStore {
+
+    void save(UserSession session) throws DbException;
+
+    /**
+     * @return Session, or null if the token is unknown
+     */
+    UserSession findByToken(String token) throws DbException;
+
+    /**
+     * Record last activity of many sessions at once
+     * @param lastSeen Token -> last request time
+     */
+    void updateLastSeen(Map<String, LocalDateTime> lastSeen) throws DbException;
+
+    void delete(String token) throws DbException;
+
+    void deleteByUserId(Integer userId) throws DbException;
+
+    /**
+     * Delete expired sessions
+     * @return Number of sessions deleted
+     */
+    int deleteExpired() throws DbException;
+}
@@ -5,8 +5,8 @@ import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.dto.LoginRequest;
 import vn.bluemoon.model.entity.User;
 import vn.bluemoon.repository.UserRepository;
+import vn.bluemoon.security.LoginExecutor;
 import vn.bluemoon.security.SessionManager;
-import vn.bluemoon.util.PasswordHasher;
 import vn.bluemoon.validation.ValidationException;
 import vn.bluemoon.validation.Validators;
 
@@ -45,7 +45,9 @@ public class AuthService {
                 throw new AuthException("Tên đăng nhập hoặc mật khẩu không đúng");
             }
             
-            if (!PasswordHasher.verify(request.getPassword(), user.getPasswordHash())) {
+            // BCrypt chạy trên LoginExecutor: giới hạn số phép băm đồng thời, hàng đợi đầy hoặc
+            // quá thời gian chờ thì từ chối ngay (thread xử lý request vẫn chờ kết quả)
+            if (!LoginExecutor.verify(request.getPassword(), user.getPasswordHash())) {
                 throw new AuthException("Tên đăng nhập hoặc mật khẩu không đúng");
             }
         }
@@ -55,6 +57,14 @@ public class AuthService {
             throw new AuthException("Tài khoản đã bị vô hiệu hóa");
         }
         
+        if (!request.isFacebookLogin()) {
+            // Hash cũ khác cost đang cấu hình: hash lại trong nền (chỉ với tài khoản đang hoạt động)
+            Integer userId = user.getId();
+            String oldHash = user.getPasswordHash();
+            LoginExecutor.rehashIfNeeded(request.getPassword(), oldHash,
+                newHash -> userRepository.updatePasswordHash(userId, oldHash, newHash));
+        }
+        
         // Check if user needs to change password
         if (passwordChangeService.needsPasswordChange(user)) {
             // Set flag để UI biết cần đổi mật khẩu
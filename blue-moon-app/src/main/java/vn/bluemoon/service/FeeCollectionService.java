@@ -1,12 +1,26 @@
 package vn.bluemoon.service;
 
+import vn.bluemoon.config.AppConfig;
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.FeeAggregate;
+import vn.bluemoon.model.dto.FeeCursor;
+import vn.bluemoon.model.dto.FeeGroupBy;
+import vn.bluemoon.model.dto.FeePage;
+import vn.bluemoon.model.dto.FeeSearchRequest;
+import vn.bluemoon.model.dto.FeeSummary;
 import vn.bluemoon.model.entity.FeeCollection;
 import vn.bluemoon.repository.FeeCollectionRepository;
+import vn.bluemoon.repository.FeeRevenueRollupRepository;
+import vn.bluemoon.util.CsvWriter;
+import vn.bluemoon.util.SchemaCapabilities;
 import vn.bluemoon.validation.ValidationException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -14,6 +28,7 @@ import java.util.List;
  */
 public class FeeCollectionService {
     private final FeeCollectionRepository feeRepository = new FeeCollectionRepository();
+    private final FeeRevenueRollupRepository rollupRepository = new FeeRevenueRollupRepository();
     
     /**
      * Get all fee collections
@@ -31,6 +46,97 @@ public class FeeCollectionService {
         return feeRepository.search(apartmentCode, householdCode, ownerName, month, year, status);
     }
     
+    /**
+     * Get one page of fee collections (keyset pagination, mới nhất trước)
+     * @param filter Search filters
+     * @param after Cursor of the last row of the previous page (trang tiếp)
+     * @param before Cursor of the first row of the next page (trang trước)
+     * @param size Requested page size, clamped to fees.page.max-size
+     */
+    public FeePage getFeePage(FeeSearchRequest filter, String after, String before, Integer size) throws DbException {
+        AppConfig config = AppConfig.getInstance();
+        int pageSize = size != null && size > 0 ? Math.min(size, config.getFeePageMaxSize()) : config.getFeePageDefaultSize();
+        
+        FeeCursor beforeCursor = FeeCursor.parse(before);
+        FeeCursor afterCursor = beforeCursor == null ? FeeCursor.parse(after) : null;
+        boolean backward = beforeCursor != null;
+        
+        // Lấy thêm 1 dòng để biết còn trang nữa hay không
+        List<FeeCollection> rows = feeRepository.findPage(
+            filter, backward ? beforeCursor : afterCursor, backward, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = backward ? rows.subList(1, rows.size()) : rows.subList(0, pageSize);
+        }
+        
+        String nextCursor = null;
+        String prevCursor = null;
+        if (!rows.isEmpty()) {
+            FeeCursor first = FeeCursor.of(rows.get(0));
+            FeeCursor last = FeeCursor.of(rows.get(rows.size() - 1));
+            if (backward) {
+                nextCursor = last.toString();
+                prevCursor = hasMore ? first.toString() : null;
+            } else {
+                nextCursor = hasMore ? last.toString() : null;
+                prevCursor = afterCursor != null ? first.toString() : null;
+            }
+        }
+        return new FeePage(new ArrayList<>(rows), pageSize, nextCursor, prevCursor);
+    }
+    
+    /**
+     * Totals for the fee collections matching the filters (count, paid count, amounts)
+     */
+    public FeeSummary summarizeFeeCollections(FeeSearchRequest filter) throws DbException {
+        return feeRepository.summarize(filter);
+    }
+    
+    /**
+     * Recompute the monthly revenue rollup from fee_collections (sửa sai lệch nếu có)
+     * @return Number of rollup rows
+     */
+    public int rebuildRevenueRollup() throws DbException {
+        return rollupRepository.rebuild();
+    }
+    
+    /**
+     * Write fee collections matching the filters as CSV, row by row (bộ nhớ không phụ thuộc số dòng)
+     * @param filter Search filters (cùng bộ lọc với danh sách)
+     * @param out Destination, e.g. the servlet response writer
+     * @throws IOException if writing fails (client ngắt kết nối)
+     */
+    public void exportFeeCollectionsCsv(FeeSearchRequest filter, Writer out) throws DbException, IOException {
+        CsvWriter csv = new CsvWriter(out);
+        csv.writeBom();
+        csv.writeRow("ID", "Mã căn hộ", "Mã hộ", "Chủ hộ", "Tháng", "Năm", "Loại thu", "Khoản thu", "Lý do",
+            "Số tiền", "Đã nộp", "Còn lại", "Trạng thái", "Ngày nộp", "Hạn nộp", "Hình thức", "Ghi chú");
+        try {
+            feeRepository.streamSearch(filter, Math.max(1, AppConfig.getInstance().getFeeExportFetchSize()), row -> {
+                FeeCollection fee = row.getFee();
+                try {
+                    csv.writeRow(fee.getId(), fee.getApartmentCode(), fee.getHouseholdCode(), fee.getOwnerName(),
+                        fee.getMonth(), fee.getYear(), fee.getFeeTypeDisplay(), row.getFeeTypeName(), fee.getReason(),
+                        fee.getAmount(), fee.getPaidAmount(), fee.getRemainingAmount(),
+                        fee.getStatusDisplay(), fee.getPaymentDate(), fee.getPaymentDeadline(),
+                        fee.getPaymentMethod(), fee.getNotes());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        csv.flush();
+    }
+    
+    /**
+     * Totals grouped by status, month or fee type (tính bằng SQL)
+     */
+    public List<FeeAggregate> aggregateFeeCollections(FeeSearchRequest filter, FeeGroupBy groupBy) throws DbException {
+        return feeRepository.aggregate(filter, groupBy);
+    }
+    
     /**
      * Get fee collections by household
      */
@@ -51,17 +157,16 @@ public class FeeCollectionService {
      * Nếu không có feeTypeId hoặc database chưa có cột fee_type_id, không kiểm tra duplicate (cho phép thêm nhiều phí cùng tháng/năm)
      */
     public boolean feeCollectionExists(Integer householdId, Integer month, Integer year, Integer feeTypeId) throws DbException {
+        // Kiểm tra xem có cột fee_type_id không
+        boolean hasFeeTypeIdColumn = SchemaCapabilities.hasColumn("fee_collections", "fee_type_id");
+        
+        // Chỉ kiểm tra duplicate nếu có cột fee_type_id VÀ feeTypeId không null
+        // Nếu không có cột hoặc feeTypeId null, cho phép thêm nhiều phí cùng tháng/năm
+        if (!hasFeeTypeIdColumn || feeTypeId == null) {
+            return false; // Không kiểm tra duplicate, cho phép thêm
+        }
+        
         try (java.sql.Connection conn = vn.bluemoon.util.JdbcUtils.getConnection()) {
-            // Kiểm tra xem có cột fee_type_id không
-            boolean hasFeeTypeIdColumn = checkColumnExists(conn, "fee_collections", "fee_type_id");
-            
-            // Chỉ kiểm tra duplicate nếu có cột fee_type_id VÀ feeTypeId không null
-            // Nếu không có cột hoặc feeTypeId null, cho phép thêm nhiều phí cùng tháng/năm
-            if (!hasFeeTypeIdColumn || feeTypeId == null) {
-                System.out.println("DEBUG: feeCollectionExists - hasFeeTypeIdColumn=" + hasFeeTypeIdColumn + ", feeTypeId=" + feeTypeId + " -> Không kiểm tra duplicate (cho phép thêm nhiều phí)");
-                return false; // Không kiểm tra duplicate, cho phép thêm
-            }
-            
             // Kiểm tra duplicate cho cùng fee_type_id
             String sql = "SELECT COUNT(*) FROM fee_collections " +
                         "WHERE household_id = ? AND month = ? AND year = ? AND fee_type_id = ?";
@@ -73,9 +178,7 @@ public class FeeCollectionService {
                 stmt.setInt(4, feeTypeId);
                 java.sql.ResultSet rs = stmt.executeQuery();
                 if (rs.next()) {
-                    int count = rs.getInt(1);
-                    System.out.println("DEBUG: feeCollectionExists - householdId=" + householdId + ", month=" + month + ", year=" + year + ", feeTypeId=" + feeTypeId + " -> count=" + count);
-                    return count > 0;
+                    return rs.getInt(1) > 0;
                 }
             }
         } catch (java.sql.SQLException e) {
@@ -91,19 +194,6 @@ public class FeeCollectionService {
         return feeCollectionExists(householdId, month, year, null);
     }
     
-    /**
-     * Helper method to check if a column exists in a table
-     */
-    private boolean checkColumnExists(java.sql.Connection conn, String tableName, String columnName) {
-        try {
-            java.sql.DatabaseMetaData meta = conn.getMetaData();
-            java.sql.ResultSet rs = meta.getColumns(null, null, tableName, columnName);
-            return rs.next();
-        } catch (java.sql.SQLException e) {
-            return false;
-        }
-    }
-    
     /**
      * Create fee collection for a household
      * Kiểm tra duplicate trước khi tạo để tránh lỗi unique constraint
@@ -156,7 +246,8 @@ public class FeeCollectionService {
     }
     
     /**
-     * Update fee collection
+     * Update fee collection (fee phải mang version đã đọc, xem FeeCollectionRepository.update)
+     * @throws DbException if someone else changed the fee collection since it was read
      */
     public void updateFeeCollection(FeeCollection fee) throws DbException {
         feeRepository.update(fee);
@@ -169,5 +260,3 @@ public class FeeCollectionService {
         feeRepository.delete(id);
     }
 }
-
-
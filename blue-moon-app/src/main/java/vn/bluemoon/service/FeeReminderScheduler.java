@@ -0,0 +1,88 @@
+package vn.bluemoon.service;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.FeeReminderResult;
+import vn.bluemoon.util.AppLogger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs FeeReminderService periodically on a background thread (fees.reminder.interval-hours)
+ */
+public class FeeReminderScheduler {
+    private static final AppConfig config = AppConfig.getInstance();
+    private static final FeeReminderService reminderService = new FeeReminderService();
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "fee-reminder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final LongAdder runCount = new LongAdder();
+    private static final LongAdder failureCount = new LongAdder();
+    private static volatile FeeReminderResult lastResult;
+
+    private FeeReminderScheduler() {
+    }
+
+    /**
+     * Start the reminder schedule (gọi một lần khi ứng dụng khởi động)
+     */
+    public static void start() {
+        if (!config.getFeeReminderEnabled() || !started.compareAndSet(false, true)) {
+            return;
+        }
+        long interval = Math.max(1, config.getFeeReminderIntervalHours());
+        // Chạy lần đầu sau một phút để không tranh tài nguyên lúc khởi động
+        executor.scheduleWithFixedDelay(FeeReminderScheduler::runOnce,
+            TimeUnit.MINUTES.toSeconds(1), TimeUnit.HOURS.toSeconds(interval), TimeUnit.SECONDS);
+        AppLogger.info("Fee reminder scheduler started (interval={}h, batch={})", interval, config.getFeeReminderBatchSize());
+    }
+
+    /**
+     * Reminder statistics and the result of the last run
+     * @return Map of metric name to value
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.getFeeReminderEnabled());
+        stats.put("runs", runCount.sum());
+        stats.put("failures", failureCount.sum());
+        FeeReminderResult result = lastResult;
+        if (result != null) {
+            stats.put("lastFinishedAt", String.valueOf(result.getFinishedAt()));
+            stats.put("lastOwners", result.getOwnerCount());
+            stats.put("lastFees", result.getFeeCount());
+            stats.put("lastSkippedFees", result.getSkippedFeeCount());
+            stats.put("lastClaimedElsewhereFees", result.getClaimedElsewhereFeeCount());
+            stats.put("lastBatches", result.getBatchCount());
+            stats.put("lastDurationMillis", result.getDurationMillis());
+        }
+        return stats;
+    }
+
+    private static void runOnce() {
+        try {
+            FeeReminderResult result = reminderService.run();
+            lastResult = result;
+            runCount.increment();
+            AppLogger.info("Fee reminders queued for {} owners ({} fees, {} skipped without email) in {}ms",
+                result.getOwnerCount(), result.getFeeCount(), result.getSkippedFeeCount(), result.getDurationMillis());
+        } catch (DbException e) {
+            failureCount.increment();
+            AppLogger.warn("Error sending fee reminders: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Không để lỗi làm dừng lịch nhắc phí
+            failureCount.increment();
+            AppLogger.error("Error sending fee reminders", e);
+        }
+    }
+}
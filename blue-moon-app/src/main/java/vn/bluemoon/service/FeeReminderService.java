@@ -0,0 +1,203 @@
+package vn.bluemoon.service;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.FeeReminderResult;
+import vn.bluemoon.model.dto.FeeReminderRow;
+import vn.bluemoon.model.entity.FeeCollection;
+import vn.bluemoon.model.entity.OutboxEmail;
+import vn.bluemoon.repository.FeeCollectionRepository;
+import vn.bluemoon.util.EmailSender;
+import vn.bluemoon.util.UnitOfWork;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Service that sends payment reminders for unpaid/partially paid fees near or past their deadline
+ * Các khoản phí được đọc bằng cursor (đã sắp theo email chủ hộ), gom thành một email cho mỗi chủ hộ
+ * và ghi vào outbox theo batch; bộ nhớ chỉ phụ thuộc batch-size, không phụ thuộc số dòng trong bảng.
+ * Mỗi batch nhận (claim) các khoản phí trước khi ghi email, nên khi nhiều node cùng chạy lịch nhắc phí
+ * thì mỗi khoản chỉ được nhắc một lần.
+ */
+public class FeeReminderService {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final FeeCollectionRepository feeRepository = new FeeCollectionRepository();
+    private final AppConfig config = AppConfig.getInstance();
+
+    /**
+     * Queue reminder emails for every owner with fees due within fees.reminder.days-before days
+     * @return Summary of the run
+     * @throws DbException if database error occurs
+     */
+    public FeeReminderResult run() throws DbException {
+        long startedAt = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        LocalDate dueOnOrBefore = today.plusDays(Math.max(0, config.getFeeReminderDaysBefore()));
+        LocalDateTime remindedBefore = LocalDateTime.now().minusDays(Math.max(0, config.getFeeReminderRepeatDays()));
+
+        Run run = new Run(today, remindedBefore, Math.max(1, config.getFeeReminderBatchSize()));
+        feeRepository.streamDueForReminder(dueOnOrBefore, remindedBefore,
+            Math.max(1, config.getFeeReminderFetchSize()), run::accept);
+        run.finish();
+
+        FeeReminderResult result = run.result;
+        result.setDurationMillis(System.currentTimeMillis() - startedAt);
+        result.setFinishedAt(LocalDateTime.now());
+        return result;
+    }
+
+    /**
+     * State of one run: the owner being collected and the owners waiting to be queued
+     */
+    private class Run {
+        private final LocalDate today;
+        private final LocalDateTime remindedBefore;
+        private final int batchSize;
+        private final FeeReminderResult result = new FeeReminderResult();
+        private final List<List<FeeReminderRow>> pendingOwners = new ArrayList<>();
+        private final List<FeeReminderRow> ownerRows = new ArrayList<>();
+        private String ownerEmail;
+
+        Run(LocalDate today, LocalDateTime remindedBefore, int batchSize) {
+            this.today = today;
+            this.remindedBefore = remindedBefore;
+            this.batchSize = batchSize;
+        }
+
+        void accept(FeeReminderRow row) throws DbException {
+            String email = row.getOwnerEmail();
+            if (email == null || email.trim().isEmpty()) {
+                // Chủ hộ chưa có email, không nhắc được
+                result.setSkippedFeeCount(result.getSkippedFeeCount() + 1);
+                return;
+            }
+            if (ownerEmail != null && !ownerEmail.equals(email)) {
+                closeOwner();
+            }
+            ownerEmail = email;
+            ownerRows.add(row);
+        }
+
+        void finish() throws DbException {
+            closeOwner();
+            flush();
+        }
+
+        private void closeOwner() throws DbException {
+            if (ownerRows.isEmpty()) {
+                return;
+            }
+            pendingOwners.add(new ArrayList<>(ownerRows));
+            ownerRows.clear();
+            if (pendingOwners.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Claim the batch's fees and queue emails for the claimed ones in one transaction
+         * Khoản phí đã được node khác nhận (nhắc) thì bỏ khỏi email; chủ hộ không còn khoản nào thì không gửi
+         */
+        private void flush() throws DbException {
+            if (pendingOwners.isEmpty()) {
+                return;
+            }
+            List<Integer> feeIds = new ArrayList<>();
+            for (List<FeeReminderRow> rows : pendingOwners) {
+                for (FeeReminderRow row : rows) {
+                    feeIds.add(row.getFee().getId());
+                }
+            }
+            int owners = 0;
+            int fees = 0;
+            try (UnitOfWork uow = UnitOfWork.begin()) {
+                Set<Integer> claimed = feeRepository.claimForReminder(feeIds, LocalDateTime.now(), remindedBefore);
+                List<OutboxEmail> emails = new ArrayList<>();
+                for (List<FeeReminderRow> rows : pendingOwners) {
+                    List<FeeReminderRow> claimedRows = new ArrayList<>();
+                    for (FeeReminderRow row : rows) {
+                        if (claimed.contains(row.getFee().getId())) {
+                            claimedRows.add(row);
+                        }
+                    }
+                    if (!claimedRows.isEmpty()) {
+                        String email = claimedRows.get(0).getOwnerEmail().trim();
+                        emails.add(new OutboxEmail(email, "Nhắc nộp phí - Blue Moon", buildBody(claimedRows)));
+                        owners++;
+                        fees += claimedRows.size();
+                    }
+                }
+                if (!emails.isEmpty()) {
+                    EmailSender.enqueueAll(emails);
+                }
+                uow.commit();
+            }
+            result.setOwnerCount(result.getOwnerCount() + owners);
+            result.setFeeCount(result.getFeeCount() + fees);
+            result.setClaimedElsewhereFeeCount(result.getClaimedElsewhereFeeCount() + feeIds.size() - fees);
+            result.setBatchCount(result.getBatchCount() + 1);
+            pendingOwners.clear();
+        }
+
+        private String buildBody(List<FeeReminderRow> rows) {
+            FeeCollection first = rows.get(0).getFee();
+            // Một email có thể là chủ của nhiều hộ: khi đó ghi căn hộ trên từng dòng phí
+            boolean oneApartment = rows.stream()
+                .allMatch(row -> Objects.equals(row.getFee().getApartmentCode(), first.getApartmentCode()));
+            StringBuilder body = new StringBuilder();
+            body.append("Xin chào ")
+                .append(first.getOwnerName() != null ? first.getOwnerName() : "quý cư dân")
+                .append(",\n\n");
+            if (oneApartment) {
+                body.append("Các khoản phí sau của căn hộ ")
+                    .append(first.getApartmentCode())
+                    .append(" chưa được nộp đủ:\n\n");
+            } else {
+                body.append("Các khoản phí sau chưa được nộp đủ:\n\n");
+            }
+
+            BigDecimal total = BigDecimal.ZERO;
+            for (FeeReminderRow row : rows) {
+                FeeCollection fee = row.getFee();
+                BigDecimal remaining = fee.getRemainingAmount();
+                total = total.add(remaining);
+                body.append("- ");
+                if (!oneApartment) {
+                    body.append("Căn hộ ").append(fee.getApartmentCode()).append(" - ");
+                }
+                body.append(label(row))
+                    .append(": còn ").append(String.format("%,.0f", remaining)).append(" VNĐ")
+                    .append(", hạn nộp ").append(fee.getPaymentDeadline().format(DATE_FORMAT));
+                if (fee.getPaymentDeadline().isBefore(today)) {
+                    body.append(" (đã quá hạn)");
+                }
+                body.append("\n");
+            }
+
+            body.append("\nTổng cộng: ").append(String.format("%,.0f", total)).append(" VNĐ\n\n")
+                .append("Vui lòng nộp phí tại ban quản lý trước hạn. Nếu bạn đã nộp, vui lòng bỏ qua email này.\n\n")
+                .append("Trân trọng,\n")
+                .append("Hệ thống Blue Moon");
+            return body.toString();
+        }
+
+        private String label(FeeReminderRow row) {
+            FeeCollection fee = row.getFee();
+            if (row.getFeeTypeName() != null) {
+                return fee.getMonth() != null ? row.getFeeTypeName() + " " + fee.getMonthYearDisplay() : row.getFeeTypeName();
+            }
+            if (fee.getReason() != null && !fee.getReason().isEmpty()) {
+                return fee.getReason();
+            }
+            return "Phí " + fee.getMonthYearDisplay();
+        }
+    }
+}
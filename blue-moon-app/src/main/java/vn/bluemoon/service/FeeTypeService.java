@@ -1,23 +1,24 @@
 package vn.bluemoon.service;
 
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.BulkFeeResult;
 import vn.bluemoon.model.entity.FeeType;
-import vn.bluemoon.model.entity.Resident;
+import vn.bluemoon.repository.FeeCollectionRepository;
 import vn.bluemoon.repository.FeeTypeRepository;
-import vn.bluemoon.repository.ResidentRepository;
-import vn.bluemoon.service.FeeCollectionService;
+import vn.bluemoon.util.AppLogger;
+import vn.bluemoon.util.UnitOfWork;
 import vn.bluemoon.validation.ValidationException;
 import vn.bluemoon.validation.Validators;
 
 import java.math.BigDecimal;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service for Fee Type management
  */
 public class FeeTypeService {
     private final FeeTypeRepository feeTypeRepository = new FeeTypeRepository();
+    private final FeeCollectionRepository feeCollectionRepository = new FeeCollectionRepository();
     
     /**
      * Get all fee types
@@ -97,47 +98,40 @@ public class FeeTypeService {
      * Delete fee type (hard delete - chỉ xóa nếu không có fee collection nào đang sử dụng)
      */
     public void deleteFeeType(Integer id) throws DbException, ValidationException {
-        System.out.println("=== DEBUG: FeeTypeService.deleteFeeType called ===");
-        System.out.println("DEBUG: id=" + id);
-        
-        System.out.println("DEBUG: Finding fee type by id...");
         FeeType feeType = feeTypeRepository.findById(id);
         if (feeType == null) {
-            System.out.println("DEBUG: Fee type not found with id=" + id);
             throw new ValidationException("Không tìm thấy khoản thu");
         }
-        System.out.println("DEBUG: Found fee type: " + feeType.getName() + " (ID: " + feeType.getId() + ")");
         
         // Kiểm tra xem có fee collection nào đang sử dụng fee type này không
         // (thông qua fee_collection_details nếu có, hoặc kiểm tra trong notes/description)
         // Vì hiện tại fee_collections không có trường fee_type_id trực tiếp,
         // nên chúng ta có thể hard delete an toàn
         
-        // Hard delete
-        System.out.println("DEBUG: Executing DELETE FROM fee_types WHERE id = " + id);
+        // Hard delete; fee_type_id của các khoản thu bị đặt NULL (ON DELETE SET NULL),
+        // rollup được chuyển sang nhóm "không có loại phí" trong cùng transaction
         String sql = "DELETE FROM fee_types WHERE id = ?";
-        try (java.sql.Connection conn = vn.bluemoon.util.JdbcUtils.getConnection();
+        try (UnitOfWork uow = UnitOfWork.begin();
+             java.sql.Connection conn = vn.bluemoon.util.JdbcUtils.getConnection();
              java.sql.PreparedStatement stmt = conn.prepareStatement(sql)) {
+            feeCollectionRepository.detachFeeType(id);
             stmt.setInt(1, id);
-            System.out.println("DEBUG: Executing update...");
             int rowsAffected = stmt.executeUpdate();
-            System.out.println("DEBUG: Rows affected: " + rowsAffected);
             if (rowsAffected == 0) {
-                System.out.println("DEBUG: No rows affected, fee type may not exist");
                 throw new ValidationException("Không thể xóa khoản thu");
             }
-            System.out.println("DEBUG: Fee type deleted successfully");
+            uow.commit();
+            AppLogger.debug("Deleted fee type {} ({})", id, feeType.getName());
         } catch (java.sql.SQLException e) {
-            System.out.println("DEBUG: SQLException occurred: " + e.getMessage());
-            e.printStackTrace();
             throw new DbException("Error deleting fee type: " + e.getMessage(), e);
         }
     }
     
     /**
      * Tạo fee collection cho tất cả hộ dân với khoản thu này
+     * Tạo toàn bộ trong một câu INSERT ... SELECT, bỏ qua các hộ đã có khoản thu này trong tháng/năm
      */
-    public int collectFeeForAllHouseholds(Integer feeTypeId, Integer month, Integer year, java.time.LocalDate paymentDeadline) 
+    public BulkFeeResult collectFeeForAllHouseholds(Integer feeTypeId, Integer month, Integer year, java.time.LocalDate paymentDeadline) 
             throws DbException, ValidationException {
         FeeType feeType = feeTypeRepository.findById(feeTypeId);
         if (feeType == null) {
@@ -148,55 +142,35 @@ public class FeeTypeService {
             throw new ValidationException("Khoản thu đã bị ngừng áp dụng");
         }
         
-        // Lấy tất cả các hộ dân (chủ hộ)
-        ResidentRepository residentRepository = new ResidentRepository();
-        List<Resident> households = residentRepository.findAll().stream()
-            .filter(r -> "Chủ hộ".equals(r.getRelationship()))
-            .collect(Collectors.toList());
-        
-        if (households.isEmpty()) {
-            throw new ValidationException("Không có hộ dân nào để thu phí");
-        }
-        
-        // Tạo fee collection cho mỗi hộ dân
-        FeeCollectionService feeCollectionService = new FeeCollectionService();
-        int successCount = 0;
-        int failCount = 0;
-        
-        for (Resident resident : households) {
-            try {
-                // Kiểm tra xem đã có fee collection cho hộ này trong tháng/năm này với cùng fee_type_id chưa
-                // Cho phép thu phí cùng tháng/năm nhưng khác loại phí dịch vụ
-                if (!feeCollectionService.feeCollectionExists(resident.getHouseholdId(), month, year, feeTypeId)) {
-                    feeCollectionService.createFeeCollection(
-                        resident.getHouseholdId(), 
-                        month, 
-                        year, 
-                        feeType.getDefaultAmount(),
-                        feeTypeId,
-                        paymentDeadline
-                    );
-                    successCount++;
-                } else {
-                    failCount++; // Đã tồn tại cùng fee_type_id
-                }
-            } catch (Exception e) {
-                failCount++;
-                System.err.println("Lỗi khi tạo thu phí cho hộ " + resident.getHouseholdCode() + ": " + e.getMessage());
+        BulkFeeResult result;
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            // Lấy số hộ dân (có chủ hộ) để tính số hộ bị bỏ qua
+            int householdCount = feeCollectionRepository.countBillableHouseholds();
+            if (householdCount == 0) {
+                throw new ValidationException("Không có hộ dân nào để thu phí");
             }
+            
+            // Cho phép thu phí cùng tháng/năm nhưng khác loại phí dịch vụ
+            int createdCount = feeCollectionRepository.createForAllHouseholds(
+                feeTypeId, month, year, feeType.getDefaultAmount(), paymentDeadline);
+            uow.commit();
+            result = new BulkFeeResult(householdCount, createdCount);
         }
         
-        if (successCount == 0 && failCount > 0) {
+        AppLogger.info("Bulk fee for fee type {} ({}/{}): created={}, skipped={}",
+            feeTypeId, month, year, result.getCreatedCount(), result.getSkippedCount());
+        
+        if (result.getCreatedCount() == 0) {
             throw new ValidationException("Tất cả các hộ dân đã có thu phí cho tháng/năm này");
         }
         
-        return successCount;
+        return result;
     }
     
     /**
      * Backward compatibility: Collect fee for all households without payment deadline
      */
-    public int collectFeeForAllHouseholds(Integer feeTypeId, Integer month, Integer year) 
+    public BulkFeeResult collectFeeForAllHouseholds(Integer feeTypeId, Integer month, Integer year) 
             throws DbException, ValidationException {
         return collectFeeForAllHouseholds(feeTypeId, month, year, null);
     }
@@ -9,6 +9,7 @@ import vn.bluemoon.repository.UserRepository;
 import vn.bluemoon.util.EmailSender;
 import vn.bluemoon.util.PasswordHasher;
 import vn.bluemoon.util.TokenGenerator;
+import vn.bluemoon.util.UnitOfWork;
 import vn.bluemoon.validation.ValidationException;
 import vn.bluemoon.validation.Validators;
 
@@ -42,12 +43,15 @@ public class PasswordResetService {
         LocalDateTime expiresAt = LocalDateTime.now()
             .plusHours(appConfig.getPasswordResetTokenExpiryHours());
 
-        // Create token record
-        PasswordResetToken resetToken = new PasswordResetToken(user.getId(), token, expiresAt);
-        tokenRepository.create(resetToken);
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            // Create token record
+            PasswordResetToken resetToken = new PasswordResetToken(user.getId(), token, expiresAt);
+            tokenRepository.create(resetToken);
 
-        // Send email
-        EmailSender.sendPasswordResetEmail(user.getEmail(), token);
+            // Queue email, gửi trong nền sau khi commit
+            EmailSender.sendPasswordResetEmail(user.getEmail(), token);
+            uow.commit();
+        }
     }
 
     /**
@@ -1,11 +1,13 @@
 package vn.bluemoon.service;
 
+import vn.bluemoon.config.AppConfig;
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.FeeCollection;
 import vn.bluemoon.repository.FeeCollectionRepository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,66 +20,45 @@ public class PaymentService {
      * Get all unpaid fee collections for a user
      */
     public List<FeeCollection> getUnpaidFeesForUser(Integer userId) throws DbException {
-        List<FeeCollection> allFees = feeRepository.findByUserId(userId);
         // Lọc các fee chưa thanh toán đủ (unpaid, partial_paid, hoặc overpaid để hiển thị)
-        java.util.List<FeeCollection> result = new java.util.ArrayList<>();
-        for (FeeCollection fee : allFees) {
-            String status = fee.getStatus();
-            if ("unpaid".equals(status) || "partial_paid".equals(status) || "overpaid".equals(status)) {
+        List<FeeCollection> result = new ArrayList<>();
+        feeRepository.forEachByUserId(userId, AppConfig.getInstance().getStreamFetchSize(), fee -> {
+            if (isOutstanding(fee)) {
                 result.add(fee);
             }
-        }
+        });
         return result;
     }
     
     /**
      * Get total remaining amount for a user
+     * Cộng dồn khi duyệt từng dòng, không giữ danh sách các khoản thu
      */
     public BigDecimal getTotalRemainingAmount(Integer userId) throws DbException {
-        List<FeeCollection> unpaidFees = getUnpaidFeesForUser(userId);
-        return unpaidFees.stream()
-            .map(FeeCollection::getRemainingAmount)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal[] total = {BigDecimal.ZERO};
+        feeRepository.forEachByUserId(userId, AppConfig.getInstance().getStreamFetchSize(), fee -> {
+            if (isOutstanding(fee)) {
+                total[0] = total[0].add(fee.getRemainingAmount());
+            }
+        });
+        return total[0];
     }
     
     /**
      * Process payment for a fee collection
+     * Cộng tiền và tính trạng thái (paid, partial_paid, overpaid) trong một câu UPDATE,
+     * nên các lần nộp đồng thời cho cùng một khoản không ghi đè lên nhau
      * @param feeId Fee collection ID
      * @param paymentAmount Amount to pay
      * @param paymentMethod Payment method
-     * @return Updated fee collection
+     * @return Updated fee collection (số tiền, trạng thái, ngày/phương thức nộp)
      */
     public FeeCollection processPayment(Integer feeId, BigDecimal paymentAmount, String paymentMethod) 
             throws DbException {
-        
-        FeeCollection fee = feeRepository.findById(feeId);
+        FeeCollection fee = feeRepository.addPayment(feeId, paymentAmount, LocalDate.now(), paymentMethod);
         if (fee == null) {
             throw new DbException("Không tìm thấy bản ghi thu phí");
         }
-        
-        BigDecimal currentPaid = fee.getPaidAmount();
-        BigDecimal newPaidAmount = currentPaid.add(paymentAmount);
-        BigDecimal totalAmount = fee.getAmount();
-        BigDecimal remaining = totalAmount.subtract(newPaidAmount);
-        
-        // Cập nhật số tiền đã nộp
-        fee.setPaidAmount(newPaidAmount);
-        fee.setPaymentDate(LocalDate.now());
-        fee.setPaymentMethod(paymentMethod);
-        
-        // Xác định trạng thái dựa trên số tiền
-        if (remaining.compareTo(BigDecimal.ZERO) == 0) {
-            // Đã thanh toán đủ
-            fee.setStatus("paid");
-        } else if (remaining.compareTo(BigDecimal.ZERO) > 0) {
-            // Còn thiếu
-            fee.setStatus("partial_paid");
-        } else {
-            // Nộp dư (remaining < 0)
-            fee.setStatus("overpaid");
-        }
-        
-        feeRepository.update(fee);
         return fee;
     }
     
@@ -87,5 +68,9 @@ public class PaymentService {
     public FeeCollection getFeeById(Integer feeId) throws DbException {
         return feeRepository.findById(feeId);
     }
+    
+    private boolean isOutstanding(FeeCollection fee) {
+        String status = fee.getStatus();
+        return "unpaid".equals(status) || "partial_paid".equals(status) || "overpaid".equals(status);
+    }
 }
-
@@ -8,7 +8,9 @@ import vn.bluemoon.model.entity.User;
 import vn.bluemoon.repository.FeeCollectionRepository;
 import vn.bluemoon.repository.ResidentRepository;
 import vn.bluemoon.repository.UserRepository;
+import vn.bluemoon.search.HouseholdSearch;
 import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.UnitOfWork;
 import vn.bluemoon.validation.ValidationException;
 import vn.bluemoon.validation.Validators;
 
@@ -26,9 +28,18 @@ public class PersonalInfoService {
     
     /**
      * Register or update personal information for a user
+     * Toàn bộ thao tác (household, resident, fee_collection, user) chạy trong một transaction
      */
     public void registerOrUpdatePersonalInfo(Integer userId, PersonalInfoRequest request) 
             throws DbException, ValidationException {
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            doRegisterOrUpdatePersonalInfo(userId, request);
+            uow.commit();
+        }
+    }
+    
+    private void doRegisterOrUpdatePersonalInfo(Integer userId, PersonalInfoRequest request) 
+            throws DbException, ValidationException {
         
         System.out.println("=== DEBUG: registerOrUpdatePersonalInfo START ===");
         System.out.println("DEBUG: userId = " + userId);
@@ -403,6 +414,7 @@ public class PersonalInfoService {
             if (rowsAffected == 0) {
                 throw new DbException("Household not found for update");
             }
+            UnitOfWork.afterCommit(() -> HouseholdSearch.householdChanged(householdId));
             // Verify update
             String verifySql = "SELECT household_code FROM households WHERE id = ?";
             try (PreparedStatement verifyStmt = conn.prepareStatement(verifySql)) {
@@ -463,9 +475,10 @@ public class PersonalInfoService {
             stmt.setDate(6, Date.valueOf(LocalDate.now()));
             stmt.setString(7, "active");
             
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
+            Integer id = insertReturningId(conn, stmt);
+            if (id != null) {
+                UnitOfWork.afterCommit(() -> HouseholdSearch.householdChanged(id));
+                return id;
             }
             throw new DbException("Failed to create household");
         } catch (SQLException e) {
@@ -482,6 +495,29 @@ public class PersonalInfoService {
         }
     }
     
+    /**
+     * Run an INSERT ... RETURNING id, under a savepoint when a transaction is open
+     * PostgreSQL hủy cả transaction khi một câu lệnh lỗi (vd. trùng mã); quay về savepoint để
+     * transaction đăng ký vẫn dùng được cho câu SELECT tìm lại dòng đã tồn tại
+     * @return Generated ID, or null if the INSERT returned no row
+     */
+    private static Integer insertReturningId(Connection conn, PreparedStatement stmt) throws SQLException {
+        Savepoint savepoint = conn.getAutoCommit() ? null : conn.setSavepoint();
+        Integer id;
+        try (ResultSet rs = stmt.executeQuery()) {
+            id = rs.next() ? rs.getInt(1) : null;
+        } catch (SQLException e) {
+            if (savepoint != null) {
+                conn.rollback(savepoint);
+            }
+            throw e;
+        }
+        if (savepoint != null) {
+            conn.releaseSavepoint(savepoint);
+        }
+        return id;
+    }
+    
     /**
      * Get apartment_code by household ID
      */
@@ -540,9 +576,8 @@ public class PersonalInfoService {
             stmt.setInt(6, 2);
             stmt.setString(7, "occupied");
             
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                int id = rs.getInt("id");
+            Integer id = insertReturningId(conn, stmt);
+            if (id != null) {
                 System.out.println("DEBUG: findOrCreateApartment - CREATED, id = " + id);
                 return id;
             }
@@ -584,6 +619,7 @@ public class PersonalInfoService {
             if (rowsAffected == 0) {
                 throw new DbException("Household not found for update");
             }
+            UnitOfWork.afterCommit(() -> HouseholdSearch.householdChanged(householdId));
             // Verify update
             String verifySql = "SELECT a.apartment_code FROM households h " +
                               "JOIN apartments a ON h.apartment_id = a.id " +
@@ -644,9 +680,9 @@ public class PersonalInfoService {
             stmt.setInt(6, 2);
             stmt.setString(7, "occupied");
             
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
+            Integer id = insertReturningId(conn, stmt);
+            if (id != null) {
+                return id;
             }
             throw new DbException("Failed to create apartment");
         } catch (SQLException e) {
@@ -0,0 +1,391 @@
+package vn.bluemoon.service;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.ResidentImportError;
+import vn.bluemoon.model.dto.ResidentImportResult;
+import vn.bluemoon.model.entity.Resident;
+import vn.bluemoon.repository.ApartmentRepository;
+import vn.bluemoon.repository.HouseholdOwnerRepository;
+import vn.bluemoon.repository.HouseholdRepository;
+import vn.bluemoon.repository.ResidentRepository;
+import vn.bluemoon.util.AppLogger;
+import vn.bluemoon.util.CsvReader;
+import vn.bluemoon.util.UnitOfWork;
+import vn.bluemoon.validation.ValidationException;
+import vn.bluemoon.validation.Validators;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk import of households and residents from a CSV file
+ * Quy tắc giống khi thêm từng nhân khẩu ở /residents/add: dòng "Chủ hộ" tạo hộ mới (và căn hộ nếu chưa có),
+ * các dòng khác thêm vào hộ theo mã hộ (đã có trong database hoặc được tạo ở dòng khác trong file).
+ * Căn hộ/hộ được tra cứu theo lô (IN), dữ liệu được ghi bằng JDBC batch trong từng transaction
+ * residents.import.chunk-size dòng; dòng lỗi được ghi vào báo cáo, không làm hỏng các dòng khác.
+ */
+public class ResidentImportService {
+    private static final String OWNER = "Chủ hộ";
+    private static final DateTimeFormatter VN_DATE = DateTimeFormatter.ofPattern("d/M/yyyy");
+
+    // Tên cột chấp nhận trong dòng tiêu đề (tiếng Anh hoặc tiêu đề bảng nhân khẩu)
+    private static final Map<String, String> COLUMN_ALIASES = new HashMap<>();
+    static {
+        alias("apartment_code", "mã căn hộ");
+        alias("household_code", "mã hộ");
+        alias("full_name", "họ và tên");
+        alias("id_card", "cmnd/cccd");
+        alias("date_of_birth", "ngày sinh");
+        alias("gender", "giới tính");
+        alias("relationship", "quan hệ");
+        alias("phone", "số điện thoại");
+        alias("email", "email");
+        alias("occupation", "nghề nghiệp");
+        alias("permanent_address", "địa chỉ thường trú");
+        alias("temporary_address", "địa chỉ tạm trú");
+        alias("status", "trạng thái");
+    }
+
+    private final ApartmentRepository apartmentRepository = new ApartmentRepository();
+    private final HouseholdRepository householdRepository = new HouseholdRepository();
+    private final ResidentRepository residentRepository = new ResidentRepository();
+    private final HouseholdOwnerRepository householdOwnerRepository = new HouseholdOwnerRepository();
+    private final AppConfig config = AppConfig.getInstance();
+
+    /**
+     * Import residents from CSV (dòng đầu là tiêu đề cột)
+     * @param input CSV content
+     * @return Counts and the per-row error report
+     * @throws ValidationException if the header is invalid or the file has too many rows
+     * @throws IOException if the input cannot be read
+     * @throws DbException if the bulk lookups fail
+     */
+    public ResidentImportResult importCsv(Reader input) throws ValidationException, IOException, DbException {
+        long startedAt = System.currentTimeMillis();
+        ResidentImportResult result = new ResidentImportResult();
+        CsvReader csv = new CsvReader(input);
+
+        List<String> header = csv.readRow();
+        if (header == null) {
+            throw new ValidationException("File CSV không có dữ liệu");
+        }
+        Map<String, Integer> columns = mapColumns(header);
+
+        // 1. Đọc và kiểm tra từng dòng
+        int maxRows = config.getResidentImportMaxRows();
+        List<ImportRow> rows = new ArrayList<>();
+        List<String> cells;
+        while ((cells = csv.readRow()) != null) {
+            if (isBlank(cells)) {
+                continue;
+            }
+            result.setTotalRows(result.getTotalRows() + 1);
+            if (result.getTotalRows() > maxRows) {
+                throw new ValidationException("File có quá nhiều dòng (tối đa " + maxRows + " dòng mỗi lần nhập)");
+            }
+            try {
+                rows.add(new ImportRow(csv.getRecordLine(), parseRow(cells, columns)));
+            } catch (ValidationException e) {
+                result.addError(csv.getRecordLine(), e.getMessage());
+            }
+        }
+
+        // 2. Tra cứu hộ/căn hộ đã có theo lô và kiểm tra quy tắc chủ hộ
+        List<ImportRow> accepted = resolve(rows, result);
+
+        // 3. Ghi theo từng chunk, mỗi chunk một transaction
+        int chunkSize = Math.max(1, config.getResidentImportChunkSize());
+        for (int from = 0; from < accepted.size(); from += chunkSize) {
+            List<ImportRow> chunk = accepted.subList(from, Math.min(accepted.size(), from + chunkSize));
+            try {
+                writeChunk(chunk, result);
+            } catch (DbException e) {
+                AppLogger.warn("Error importing residents (lines " + chunk.get(0).line + "-" +
+                    chunk.get(chunk.size() - 1).line + "): " + e.getMessage());
+                for (ImportRow row : chunk) {
+                    result.addError(row.line, "Lỗi khi lưu dữ liệu: " + e.getMessage());
+                }
+            }
+        }
+
+        result.getErrors().sort(Comparator.comparingInt(ResidentImportError::getLineNumber));
+        result.setDurationMillis(System.currentTimeMillis() - startedAt);
+        AppLogger.info("Imported {} of {} residents ({} households, {} apartments created) in {}ms",
+            result.getImportedCount(), result.getTotalRows(), result.getHouseholdsCreated(),
+            result.getApartmentsCreated(), result.getDurationMillis());
+        return result;
+    }
+
+    /**
+     * Apply the owner/household rules to all rows at once
+     * @return Rows to insert, owners first so their households exist before members are added
+     */
+    private List<ImportRow> resolve(List<ImportRow> rows, ResidentImportResult result) throws DbException {
+        Set<String> householdCodes = new HashSet<>();
+        Set<String> ownerApartmentCodes = new HashSet<>();
+        for (ImportRow row : rows) {
+            householdCodes.add(row.resident.getHouseholdCode());
+            if (row.isOwner()) {
+                ownerApartmentCodes.add(row.resident.getApartmentCode());
+            }
+        }
+        Set<String> existingHouseholds = householdRepository.findIdsByCodes(householdCodes).keySet();
+        Set<String> occupiedApartments = new HashSet<>(householdRepository.findApartmentCodesWithOwner(ownerApartmentCodes));
+
+        List<ImportRow> owners = new ArrayList<>();
+        Set<String> newHouseholds = new HashSet<>();
+        for (ImportRow row : rows) {
+            if (!row.isOwner()) {
+                continue;
+            }
+            String householdCode = row.resident.getHouseholdCode();
+            if (existingHouseholds.contains(householdCode) || newHouseholds.contains(householdCode)) {
+                result.addError(row.line, "Mã hộ " + householdCode + " đã tồn tại");
+            } else if (!occupiedApartments.add(row.resident.getApartmentCode())) {
+                result.addError(row.line, "Mã căn hộ " + row.resident.getApartmentCode() + " đã có chủ hộ");
+            } else {
+                newHouseholds.add(householdCode);
+                owners.add(row);
+            }
+        }
+
+        List<ImportRow> members = new ArrayList<>();
+        for (ImportRow row : rows) {
+            if (row.isOwner()) {
+                continue;
+            }
+            String householdCode = row.resident.getHouseholdCode();
+            if (existingHouseholds.contains(householdCode) || newHouseholds.contains(householdCode)) {
+                members.add(row);
+            } else {
+                result.addError(row.line, "Không tìm thấy hộ có mã " + householdCode +
+                    " (cần có trong hệ thống hoặc có dòng Chủ hộ trong file)");
+            }
+        }
+
+        List<ImportRow> accepted = new ArrayList<>(owners);
+        accepted.addAll(members);
+        return accepted;
+    }
+
+    /**
+     * Insert one chunk: apartments, households, residents, then refresh household owners
+     */
+    private void writeChunk(List<ImportRow> chunk, ResidentImportResult result) throws DbException {
+        List<Resident> owners = new ArrayList<>();
+        Set<String> apartmentCodes = new LinkedHashSet<>();
+        Set<String> householdCodes = new LinkedHashSet<>();
+        for (ImportRow row : chunk) {
+            householdCodes.add(row.resident.getHouseholdCode());
+            if (row.isOwner()) {
+                owners.add(row.resident);
+                apartmentCodes.add(row.resident.getApartmentCode());
+            }
+        }
+
+        int apartmentsCreated = 0;
+        List<ImportRow> saved = new ArrayList<>();
+        Set<Integer> householdIds = new HashSet<>();
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            if (!owners.isEmpty()) {
+                Map<String, Integer> apartmentIds = apartmentRepository.findIdsByCodes(apartmentCodes);
+                Set<String> missing = new LinkedHashSet<>(apartmentCodes);
+                missing.removeAll(apartmentIds.keySet());
+                if (!missing.isEmpty()) {
+                    apartmentsCreated = apartmentRepository.createDefaults(missing);
+                    apartmentIds = apartmentRepository.findIdsByCodes(apartmentCodes);
+                }
+                householdRepository.createAll(owners, apartmentIds);
+            }
+
+            Map<String, Integer> resolved = householdRepository.findIdsByCodes(householdCodes);
+            List<Resident> residents = new ArrayList<>();
+            Map<Integer, String> missingHouseholds = new LinkedHashMap<>();
+            for (ImportRow row : chunk) {
+                Integer householdId = resolved.get(row.resident.getHouseholdCode());
+                if (householdId == null) {
+                    // Hộ thuộc một chunk trước đã lỗi
+                    missingHouseholds.put(row.line, row.resident.getHouseholdCode());
+                    continue;
+                }
+                row.resident.setHouseholdId(householdId);
+                residents.add(row.resident);
+                householdIds.add(householdId);
+                saved.add(row);
+            }
+            residentRepository.createAll(residents);
+            householdOwnerRepository.refreshAll(householdIds);
+            uow.commit();
+
+            for (Map.Entry<Integer, String> missing : missingHouseholds.entrySet()) {
+                result.addError(missing.getKey(), "Không tạo được hộ có mã " + missing.getValue());
+            }
+        }
+
+        result.setApartmentsCreated(result.getApartmentsCreated() + apartmentsCreated);
+        result.setHouseholdsCreated(result.getHouseholdsCreated() + owners.size());
+        result.setImportedCount(result.getImportedCount() + saved.size());
+    }
+
+    private Resident parseRow(List<String> cells, Map<String, Integer> columns) throws ValidationException {
+        String fullName = cell(cells, columns, "full_name");
+        String idCard = cell(cells, columns, "id_card");
+        String householdCode = cell(cells, columns, "household_code");
+        String apartmentCode = cell(cells, columns, "apartment_code");
+        String relationship = cell(cells, columns, "relationship");
+        String phone = cell(cells, columns, "phone");
+        String email = cell(cells, columns, "email");
+
+        Validators.validateRequired(fullName, "Họ và tên");
+        Validators.validateRequired(idCard, "CMND/CCCD");
+        Validators.validateRequired(householdCode, "Mã hộ");
+        if (relationship == null) {
+            relationship = "Thành viên";
+        }
+        if (OWNER.equalsIgnoreCase(relationship)) {
+            relationship = OWNER;
+            Validators.validateRequired(apartmentCode, "Mã căn hộ");
+        }
+        Validators.validateMaxLength(fullName, 255, "Họ và tên");
+        Validators.validateMaxLength(idCard, 20, "CMND/CCCD");
+        Validators.validateMaxLength(householdCode, 50, "Mã hộ");
+        Validators.validateMaxLength(apartmentCode, 50, "Mã căn hộ");
+        Validators.validateMaxLength(relationship, 50, "Quan hệ");
+        Validators.validateMaxLength(phone, 20, "Số điện thoại");
+        if (email != null) {
+            Validators.validateEmail(email);
+            Validators.validateMaxLength(email, 255, "Email");
+        }
+
+        Resident resident = new Resident();
+        resident.setApartmentCode(apartmentCode);
+        resident.setHouseholdCode(householdCode);
+        resident.setFullName(fullName);
+        resident.setIdCard(idCard);
+        resident.setDateOfBirth(parseDate(cell(cells, columns, "date_of_birth")));
+        resident.setGender(parseGender(cell(cells, columns, "gender")));
+        resident.setRelationship(relationship);
+        resident.setPhone(phone);
+        resident.setEmail(email);
+        resident.setOccupation(cell(cells, columns, "occupation"));
+        resident.setPermanentAddress(cell(cells, columns, "permanent_address"));
+        resident.setTemporaryAddress(cell(cells, columns, "temporary_address"));
+        resident.setStatus(parseStatus(cell(cells, columns, "status")));
+        return resident;
+    }
+
+    private Map<String, Integer> mapColumns(List<String> header) throws ValidationException {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String key = COLUMN_ALIASES.get(header.get(i).trim().toLowerCase());
+            if (key != null) {
+                columns.putIfAbsent(key, i);
+            }
+        }
+        for (String required : new String[] { "household_code", "full_name", "id_card" }) {
+            if (!columns.containsKey(required)) {
+                throw new ValidationException("Thiếu cột " + required + " trong dòng tiêu đề của file CSV");
+            }
+        }
+        return columns;
+    }
+
+    private static String cell(List<String> cells, Map<String, Integer> columns, String key) {
+        Integer index = columns.get(key);
+        if (index == null || index >= cells.size()) {
+            return null;
+        }
+        String value = cells.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static LocalDate parseDate(String value) throws ValidationException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return value.contains("/") ? LocalDate.parse(value, VN_DATE) : LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Ngày sinh không hợp lệ: " + value + " (định dạng YYYY-MM-DD hoặc DD/MM/YYYY)");
+        }
+    }
+
+    private static String parseGender(String value) throws ValidationException {
+        if (value == null) {
+            return null;
+        }
+        switch (value.toLowerCase()) {
+            case "male":
+            case "nam":
+                return "male";
+            case "female":
+            case "nữ":
+                return "female";
+            default:
+                throw new ValidationException("Giới tính không hợp lệ: " + value);
+        }
+    }
+
+    private static String parseStatus(String value) throws ValidationException {
+        if (value == null) {
+            return "active";
+        }
+        switch (value.toLowerCase()) {
+            case "active":
+            case "hoạt động":
+                return "active";
+            case "temporary_resident":
+            case "tạm trú":
+                return "temporary_resident";
+            case "temporary_absent":
+            case "tạm vắng":
+                return "temporary_absent";
+            default:
+                throw new ValidationException("Trạng thái không hợp lệ: " + value);
+        }
+    }
+
+    private static boolean isBlank(List<String> cells) {
+        for (String cell : cells) {
+            if (!cell.trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void alias(String key, String label) {
+        COLUMN_ALIASES.put(key, key);
+        COLUMN_ALIASES.put(label, key);
+    }
+
+    /**
+     * One valid CSV row and its line number
+     */
+    private static class ImportRow {
+        private final int line;
+        private final Resident resident;
+
+        ImportRow(int line, Resident resident) {
+            this.line = line;
+            this.resident = resident;
+        }
+
+        boolean isOwner() {
+            return OWNER.equals(resident.getRelationship());
+        }
+    }
+}
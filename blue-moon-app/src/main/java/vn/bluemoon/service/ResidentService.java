@@ -4,6 +4,9 @@ import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.Resident;
 import vn.bluemoon.repository.ResidentRepository;
 import vn.bluemoon.repository.FeeCollectionRepository;
+import vn.bluemoon.repository.HouseholdOwnerRepository;
+import vn.bluemoon.search.HouseholdSearch;
+import vn.bluemoon.util.UnitOfWork;
 import vn.bluemoon.validation.ValidationException;
 import vn.bluemoon.validation.Validators;
 
@@ -16,6 +19,7 @@ import java.util.List;
 public class ResidentService {
     private final ResidentRepository residentRepository = new ResidentRepository();
     private final FeeCollectionRepository feeCollectionRepository = new FeeCollectionRepository();
+    private final HouseholdOwnerRepository householdOwnerRepository = new HouseholdOwnerRepository();
     
     /**
      * Get all residents
@@ -45,36 +49,43 @@ public class ResidentService {
      * - If household has no other residents, delete the household
      */
     public void deleteResident(Integer residentId) throws DbException {
-        // Get resident info before deleting
-        Resident resident = residentRepository.findById(residentId);
-        if (resident == null) {
-            throw new DbException("Không tìm thấy nhân khẩu");
-        }
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            // Get resident info before deleting
+            Resident resident = residentRepository.findById(residentId);
+            if (resident == null) {
+                throw new DbException("Không tìm thấy nhân khẩu");
+            }
         
-        Integer householdId = resident.getHouseholdId();
-        boolean isChuHo = "Chủ hộ".equals(resident.getRelationship());
+            Integer householdId = resident.getHouseholdId();
+            boolean isChuHo = "Chủ hộ".equals(resident.getRelationship());
         
-        // If resident is "Chủ hộ", delete all fee collections for the household
-        if (isChuHo) {
-            feeCollectionRepository.deleteByHouseholdId(householdId);
-        }
+            // If resident is "Chủ hộ", delete all fee collections for the household
+            if (isChuHo) {
+                feeCollectionRepository.deleteByHouseholdId(householdId);
+            }
         
-        // Delete the resident
-        residentRepository.delete(residentId);
+            // Delete the resident
+            residentRepository.delete(residentId);
         
-        // Check if household has any other residents
-        boolean hasOtherResidents = residentRepository.hasOtherResidents(householdId, residentId);
+            // Check if household has any other residents
+            boolean hasOtherResidents = residentRepository.hasOtherResidents(householdId, residentId);
         
-        // If no other residents, delete the household
-        if (!hasOtherResidents) {
-            deleteHousehold(householdId);
+            // If no other residents, delete the household
+            if (!hasOtherResidents) {
+                deleteHousehold(householdId);
+            }
+            
+            uow.commit();
         }
     }
     
     /**
      * Delete household by ID
+     * Xóa thu phí của hộ trước (cập nhật fee_revenue_rollup và dashboard) thay vì để ON DELETE CASCADE
+     * xóa ngầm; gọi trong unit of work của người gọi
      */
     private void deleteHousehold(Integer householdId) throws DbException {
+        feeCollectionRepository.deleteByHouseholdId(householdId);
         String sql = "DELETE FROM households WHERE id = ?";
         try (java.sql.Connection conn = vn.bluemoon.util.JdbcUtils.getConnection();
              java.sql.PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -83,6 +94,7 @@ public class ResidentService {
         } catch (java.sql.SQLException e) {
             throw new DbException("Error deleting household: " + e.getMessage(), e);
         }
+        UnitOfWork.afterCommit(() -> HouseholdSearch.householdChanged(householdId));
     }
     
     /**
@@ -264,6 +276,7 @@ public class ResidentService {
         String sql = "INSERT INTO households (apartment_id, household_code, owner_name, owner_phone, owner_email, " +
                      "registration_date, status) VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING id";
         
+        int householdId;
         try (java.sql.Connection conn = vn.bluemoon.util.JdbcUtils.getConnection();
              java.sql.PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -276,10 +289,10 @@ public class ResidentService {
             stmt.setString(7, "active");
             
             java.sql.ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
+            if (!rs.next()) {
+                throw new DbException("Failed to create household");
             }
-            throw new DbException("Failed to create household");
+            householdId = rs.getInt("id");
         } catch (java.sql.SQLException e) {
             // If error due to duplicate household_code, try to find it
             if (e.getMessage() != null && (e.getMessage().contains("duplicate key") || 
@@ -292,6 +305,9 @@ public class ResidentService {
             }
             throw new DbException("Error creating household: " + e.getMessage(), e);
         }
+        // Refresh sau khi trả connection INSERT về pool, không giữ hai connection cùng lúc
+        householdOwnerRepository.refresh(householdId);
+        return householdId;
     }
     
     /**
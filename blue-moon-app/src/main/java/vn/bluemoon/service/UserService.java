@@ -8,7 +8,10 @@ import vn.bluemoon.model.entity.Resident;
 import vn.bluemoon.repository.UserRepository;
 import vn.bluemoon.repository.ResidentRepository;
 import vn.bluemoon.repository.FeeCollectionRepository;
+import vn.bluemoon.search.HouseholdSearch;
+import vn.bluemoon.security.SessionManager;
 import vn.bluemoon.util.PasswordHasher;
+import vn.bluemoon.util.UnitOfWork;
 import vn.bluemoon.validation.ValidationException;
 import vn.bluemoon.validation.Validators;
 
@@ -94,6 +97,7 @@ public class UserService {
         if (user != null) {
             user.setIsActive(false);
             userRepository.update(user);
+            SessionManager.getInstance().invalidateUserSessions(userId);
         }
     }
 
@@ -160,39 +164,47 @@ public class UserService {
      * - Delete the user
      */
     public void deleteUser(Integer userId) throws DbException {
-        // Find resident linked to this user
-        Resident resident = residentRepository.findByUserId(userId);
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            // Find resident linked to this user
+            Resident resident = residentRepository.findByUserId(userId);
         
-        if (resident != null) {
-            Integer householdId = resident.getHouseholdId();
-            Integer residentId = resident.getId();
-            boolean isChuHo = "Chủ hộ".equals(resident.getRelationship());
+            if (resident != null) {
+                Integer householdId = resident.getHouseholdId();
+                Integer residentId = resident.getId();
+                boolean isChuHo = "Chủ hộ".equals(resident.getRelationship());
             
-            // If resident is "Chủ hộ", delete all fee collections for the household
-            if (isChuHo) {
-                feeCollectionRepository.deleteByHouseholdId(householdId);
-            }
+                // If resident is "Chủ hộ", delete all fee collections for the household
+                if (isChuHo) {
+                    feeCollectionRepository.deleteByHouseholdId(householdId);
+                }
             
-            // Check if household has any other residents BEFORE deleting
-            boolean hasOtherResidents = residentRepository.hasOtherResidents(householdId, residentId);
+                // Check if household has any other residents BEFORE deleting
+                boolean hasOtherResidents = residentRepository.hasOtherResidents(householdId, residentId);
             
-            // Delete the resident
-            residentRepository.delete(residentId);
+                // Delete the resident
+                residentRepository.delete(residentId);
             
-            // If no other residents, delete the household
-            if (!hasOtherResidents) {
-                deleteHousehold(householdId);
+                // If no other residents, delete the household
+                if (!hasOtherResidents) {
+                    deleteHousehold(householdId);
+                }
             }
-        }
         
-        // Delete the user
-        userRepository.delete(userId);
+            // Delete the user
+            userRepository.delete(userId);
+            UnitOfWork.afterCommit(() -> SessionManager.getInstance().invalidateUserSessions(userId));
+            
+            uow.commit();
+        }
     }
     
     /**
      * Delete household by ID
+     * Xóa thu phí của hộ trước (cập nhật fee_revenue_rollup và dashboard) thay vì để ON DELETE CASCADE
+     * xóa ngầm; gọi trong unit of work của người gọi
      */
     private void deleteHousehold(Integer householdId) throws DbException {
+        feeCollectionRepository.deleteByHouseholdId(householdId);
         String sql = "DELETE FROM households WHERE id = ?";
         try (java.sql.Connection conn = vn.bluemoon.util.JdbcUtils.getConnection();
              java.sql.PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -201,6 +213,7 @@ public class UserService {
         } catch (java.sql.SQLException e) {
             throw new DbException("Error deleting household: " + e.getMessage(), e);
         }
+        UnitOfWork.afterCommit(() -> HouseholdSearch.householdChanged(householdId));
     }
 }
 
@@ -0,0 +1,225 @@
+package vn.bluemoon.stats;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.DashboardSnapshot;
+import vn.bluemoon.model.dto.FeeSummary;
+import vn.bluemoon.model.entity.FeeCollection;
+import vn.bluemoon.repository.ApartmentRepository;
+import vn.bluemoon.repository.FeeCollectionRepository;
+import vn.bluemoon.repository.HouseholdRepository;
+import vn.bluemoon.repository.ResidentRepository;
+import vn.bluemoon.util.AppLogger;
+import vn.bluemoon.util.UnitOfWork;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Dashboard statistics kept in memory and updated incrementally
+ *
+ * - Ghi thu phí (thêm/sửa/nộp/xóa một khoản): cộng delta vào tổng số khoản/tổng tiền sau khi commit
+ * - Tạo thu phí hàng loạt: cộng delta; xóa thu phí theo hộ: đếm lại tổng thu phí trong nền
+ * - Ghi nhân khẩu/hộ: đếm lại căn hộ/hộ/chủ hộ trong nền (ba truy vấn COUNT, gộp nhiều lần ghi liên tiếp)
+ * - Định kỳ (stats.dashboard.reconcile-minutes) đếm lại toàn bộ để sửa sai lệch nếu có
+ *   (tổng thu phí đọc thẳng từ fee_collections, không qua fee_revenue_rollup)
+ *
+ * Trang dashboard chỉ đọc snapshot hiện tại, không chạy truy vấn nào.
+ */
+public final class DashboardStatistics {
+    private static final int RECENT_FEE_COUNT = 3;
+
+    private static final ApartmentRepository apartmentRepository = new ApartmentRepository();
+    private static final HouseholdRepository householdRepository = new HouseholdRepository();
+    private static final ResidentRepository residentRepository = new ResidentRepository();
+    private static final FeeCollectionRepository feeRepository = new FeeCollectionRepository();
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dashboard-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicReference<DashboardSnapshot> current = new AtomicReference<>();
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final AtomicBoolean countsPending = new AtomicBoolean();
+    private static final AtomicBoolean feesPending = new AtomicBoolean();
+    private static final AtomicBoolean recentPending = new AtomicBoolean();
+
+    private static final LongAdder deltaCount = new LongAdder();
+    private static final LongAdder refreshCount = new LongAdder();
+    private static final LongAdder reconcileCount = new LongAdder();
+
+    private DashboardStatistics() {
+    }
+
+    /**
+     * Current statistics; the first call loads them from the database
+     * @throws DbException if the first load fails
+     */
+    public static DashboardSnapshot snapshot() throws DbException {
+        DashboardSnapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (DashboardStatistics.class) {
+            snapshot = current.get();
+            if (snapshot == null) {
+                snapshot = reconcile();
+                startReconciling();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Record a change to one fee collection, applied when the current transaction commits
+     * @param before Amount, paid amount and status before the change (null nếu thêm mới)
+     * @param after Amount, paid amount and status after the change (null nếu xóa)
+     */
+    public static void feeChanged(FeeCollection before, FeeCollection after) {
+        feeDelta((after != null ? 1 : 0) - (before != null ? 1 : 0),
+            (isPaid(after) ? 1 : 0) - (isPaid(before) ? 1 : 0),
+            amount(after).subtract(amount(before)),
+            paidAmount(after).subtract(paidAmount(before)));
+    }
+
+    /**
+     * Add a delta to the fee totals when the current transaction commits
+     * @param feeCount Change in the number of fee collections
+     * @param paidCount Change in the number of paid fee collections
+     * @param amount Change in the total amount
+     * @param paid Change in the total paid amount
+     */
+    public static void feeDelta(long feeCount, long paidCount, BigDecimal amount, BigDecimal paid) {
+        UnitOfWork.afterCommit(() -> {
+            if (current.updateAndGet(s -> s != null ? s.withFeeDelta(feeCount, paidCount, amount, paid) : null) != null) {
+                deltaCount.increment();
+            }
+            schedule(recentPending, DashboardStatistics::refreshRecentFees);
+        });
+    }
+
+    /**
+     * Record a bulk change to fee collections (tổng được đếm lại trong nền)
+     */
+    public static void feesChanged() {
+        UnitOfWork.afterCommit(() -> {
+            schedule(feesPending, DashboardStatistics::refreshFees);
+            schedule(recentPending, DashboardStatistics::refreshRecentFees);
+        });
+    }
+
+    /**
+     * Record a change to residents, households or apartments (các số đếm được tính lại trong nền)
+     */
+    public static void householdsChanged() {
+        UnitOfWork.afterCommit(() -> schedule(countsPending, DashboardStatistics::refreshCounts));
+    }
+
+    /**
+     * Snapshot age and update counters
+     * @return Map of metric name to value
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        DashboardSnapshot snapshot = current.get();
+        stats.put("loaded", snapshot != null);
+        stats.put("reconciledAt", snapshot != null ? String.valueOf(snapshot.getReconciledAt()) : null);
+        stats.put("deltasApplied", deltaCount.sum());
+        stats.put("partialRefreshes", refreshCount.sum());
+        stats.put("reconciliations", reconcileCount.sum());
+        return stats;
+    }
+
+    private static DashboardSnapshot reconcile() throws DbException {
+        DashboardSnapshot snapshot = new DashboardSnapshot(
+            apartmentRepository.countAll(),
+            householdRepository.countAll(),
+            residentRepository.countAll(),
+            feeRepository.summarizeFromTable(null),
+            feeRepository.findRecentlyUpdated(RECENT_FEE_COUNT),
+            LocalDateTime.now());
+        current.set(snapshot);
+        reconcileCount.increment();
+        return snapshot;
+    }
+
+    private static void startReconciling() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        long interval = Math.max(1, AppConfig.getInstance().getDashboardReconcileMinutes());
+        executor.scheduleWithFixedDelay(() -> run(DashboardStatistics::reconcile), interval, interval, TimeUnit.MINUTES);
+    }
+
+    private static void refreshCounts() throws DbException {
+        int apartments = apartmentRepository.countAll();
+        int households = householdRepository.countAll();
+        int residents = residentRepository.countAll();
+        update(s -> s.withCounts(apartments, households, residents));
+    }
+
+    private static void refreshFees() throws DbException {
+        FeeSummary summary = feeRepository.summarizeFromTable(null);
+        update(s -> s.withFeeSummary(summary));
+    }
+
+    private static void refreshRecentFees() throws DbException {
+        List<FeeCollection> fees = feeRepository.findRecentlyUpdated(RECENT_FEE_COUNT);
+        update(s -> s.withRecentFees(fees));
+    }
+
+    private static void update(UnaryOperator<DashboardSnapshot> change) {
+        current.updateAndGet(s -> s != null ? change.apply(s) : null);
+        refreshCount.increment();
+    }
+
+    /**
+     * Queue a refresh unless one is already waiting (gộp nhiều lần ghi liên tiếp thành một lần)
+     */
+    private static void schedule(AtomicBoolean pending, Refresh refresh) {
+        if (current.get() == null || !pending.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            pending.set(false);
+            run(refresh);
+        });
+    }
+
+    private static void run(Refresh refresh) {
+        try {
+            refresh.run();
+        } catch (DbException e) {
+            AppLogger.warn("Error refreshing dashboard statistics: " + e.getMessage());
+        } catch (RuntimeException e) {
+            AppLogger.error("Error refreshing dashboard statistics", e);
+        }
+    }
+
+    private static boolean isPaid(FeeCollection fee) {
+        return fee != null && "paid".equals(fee.getStatus());
+    }
+
+    private static BigDecimal amount(FeeCollection fee) {
+        return fee != null && fee.getAmount() != null ? fee.getAmount() : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal paidAmount(FeeCollection fee) {
+        return fee != null && fee.getPaidAmount() != null ? fee.getPaidAmount() : BigDecimal.ZERO;
+    }
+
+    private interface Refresh {
+        void run() throws DbException;
+    }
+}
@@ -0,0 +1,123 @@
+package vn.bluemoon.stats;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.PopulationPoint;
+import vn.bluemoon.repository.PopulationHistoryRepository;
+import vn.bluemoon.util.AppLogger;
+import vn.bluemoon.util.UnitOfWork;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Population time series for the dashboard chart
+ *
+ * - Ghi nhân khẩu (thêm/sửa/xóa, đăng ký tạm trú/tạm vắng): ghi lại dòng của hôm nay trong nền (gộp nhiều lần ghi)
+ * - Mỗi giờ ghi lại dòng của hôm nay, để ngày không có thay đổi nào vẫn có số liệu
+ * - Chuỗi theo tháng (ngày cuối cùng có số liệu của mỗi tháng) được giữ trong bộ nhớ, đọc lại sau mỗi lần ghi
+ */
+public final class PopulationHistory {
+    private static final long RECORD_INTERVAL_MINUTES = 60;
+
+    private static final PopulationHistoryRepository historyRepository = new PopulationHistoryRepository();
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "population-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicReference<List<PopulationPoint>> monthly = new AtomicReference<>();
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final AtomicBoolean recordPending = new AtomicBoolean();
+
+    private PopulationHistory() {
+    }
+
+    /**
+     * Start recording (gọi một lần khi ứng dụng khởi động)
+     * Ghi dòng của hôm nay ngay trong nền rồi mỗi giờ một lần; từ đó residentsChanged() cũng ghi lại,
+     * không phải chờ lần xem dashboard đầu tiên
+     */
+    public static void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(PopulationHistory::recordQuietly,
+            0, RECORD_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        AppLogger.info("Population history recorder started (interval={}m)", RECORD_INTERVAL_MINUTES);
+    }
+
+    /**
+     * One point per month for the last stats.population.months months, oldest first
+     * @throws DbException if the first load fails
+     */
+    public static List<PopulationPoint> monthlySeries() throws DbException {
+        List<PopulationPoint> series = monthly.get();
+        if (series != null) {
+            return series;
+        }
+        synchronized (PopulationHistory.class) {
+            series = monthly.get();
+            if (series == null) {
+                series = recordAndReload();
+                start();
+            }
+            return series;
+        }
+    }
+
+    /**
+     * Record a change to residents (cập nhật dòng hôm nay trong nền sau khi commit)
+     */
+    public static void residentsChanged() {
+        UnitOfWork.afterCommit(() -> {
+            if (!started.get() || !recordPending.compareAndSet(false, true)) {
+                return;
+            }
+            executor.execute(() -> {
+                recordPending.set(false);
+                recordQuietly();
+            });
+        });
+    }
+
+    private static List<PopulationPoint> recordAndReload() throws DbException {
+        LocalDate today = LocalDate.now();
+        historyRepository.record(today);
+
+        int months = Math.max(1, AppConfig.getInstance().getPopulationHistoryMonths());
+        LocalDate from = YearMonth.from(today).minusMonths(months - 1).atDay(1);
+        List<PopulationPoint> series = new ArrayList<>();
+        for (PopulationPoint point : historyRepository.findBetween(from, today)) {
+            // Giữ ngày cuối cùng của mỗi tháng (các dòng đã sắp theo ngày)
+            int last = series.size() - 1;
+            if (last >= 0 && YearMonth.from(series.get(last).getDate()).equals(YearMonth.from(point.getDate()))) {
+                series.set(last, point);
+            } else {
+                series.add(point);
+            }
+        }
+        series = Collections.unmodifiableList(series);
+        monthly.set(series);
+        return series;
+    }
+
+    private static void recordQuietly() {
+        try {
+            recordAndReload();
+        } catch (DbException e) {
+            AppLogger.warn("Error recording population history: " + e.getMessage());
+        } catch (RuntimeException e) {
+            AppLogger.error("Error recording population history", e);
+        }
+    }
+}
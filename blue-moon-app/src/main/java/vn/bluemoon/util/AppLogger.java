@@ -2,51 +2,248 @@ package vn.bluemoon.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import vn.bluemoon.config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Application logger utility
+ *
+ * Ghi log bất đồng bộ: thread gọi chỉ kiểm tra level rồi đưa sự kiện (message mẫu + tham số) vào
+ * một hàng đợi có giới hạn; thread "app-logger" mới định dạng chuỗi và ghi qua SLF4J.
+ * - Level tắt: không tạo sự kiện, không định dạng chuỗi
+ * - Hàng đợi đầy: bỏ DEBUG/INFO (đếm số bị bỏ), WARN/ERROR ghi trực tiếp để không mất lỗi
+ * - Mỗi sự kiện mang request id của thread gọi (MDC "requestId" khi ghi ra)
+ * - debugSampled(): chỉ ghi 1 trong logging.async.debug-sample-rate sự kiện, dùng cho log theo từng dòng
+ * Tham số truyền vào nên là giá trị bất biến (String, số, id) vì chúng được đọc sau trên thread khác.
  */
 public class AppLogger {
     private static final Logger logger = LoggerFactory.getLogger(AppLogger.class);
+    private static final String REQUEST_ID = "requestId";
+    private static final int DRAIN_BATCH = 256;
+
+    private static final AppConfig config = AppConfig.getInstance();
+    private static final boolean async = Boolean.parseBoolean(config.getProperty("logging.async.enabled", "true"));
+    private static final int sampleRate = Math.max(1,
+        Integer.parseInt(config.getProperty("logging.async.debug-sample-rate", "100")));
+    private static final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(Math.max(1,
+        Integer.parseInt(config.getProperty("logging.async.queue-capacity", "8192"))));
+    private static final ThreadLocal<String> requestId = new ThreadLocal<>();
+    private static final AtomicLong sampleCounter = new AtomicLong();
+    private static final LongAdder writtenCount = new LongAdder();
+    private static final LongAdder droppedCount = new LongAdder();
+    private static final LongAdder overflowCount = new LongAdder();
+
+    static {
+        if (async) {
+            Thread writer = new Thread(AppLogger::drain, "app-logger");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(AppLogger::flush, "app-logger-flush"));
+        }
+    }
 
     public static void info(String message) {
-        logger.info(message);
+        if (logger.isInfoEnabled()) {
+            enqueue(Level.INFO, message, null, null);
+        }
     }
 
     public static void info(String message, Object... args) {
-        logger.info(message, args);
+        if (logger.isInfoEnabled()) {
+            enqueue(Level.INFO, message, args, null);
+        }
     }
 
     public static void error(String message) {
-        logger.error(message);
+        if (logger.isErrorEnabled()) {
+            enqueue(Level.ERROR, message, null, null);
+        }
     }
 
     public static void error(String message, Throwable throwable) {
-        logger.error(message, throwable);
+        if (logger.isErrorEnabled()) {
+            enqueue(Level.ERROR, message, null, throwable);
+        }
     }
 
     public static void warn(String message) {
-        logger.warn(message);
+        if (logger.isWarnEnabled()) {
+            enqueue(Level.WARN, message, null, null);
+        }
     }
 
-    public static void debug(String message) {
-        logger.debug(message);
+    public static void warn(String message, Object... args) {
+        if (logger.isWarnEnabled()) {
+            enqueue(Level.WARN, message, args, null);
+        }
     }
-}
-
-
-
-
 
+    public static void debug(String message) {
+        if (logger.isDebugEnabled()) {
+            enqueue(Level.DEBUG, message, null, null);
+        }
+    }
 
+    public static void debug(String message, Object... args) {
+        if (logger.isDebugEnabled()) {
+            enqueue(Level.DEBUG, message, args, null);
+        }
+    }
 
+    /**
+     * Debug event emitted once per row or loop step: chỉ ghi 1 trong debug-sample-rate lần gọi
+     */
+    public static void debugSampled(String message, Object... args) {
+        if (logger.isDebugEnabled() && sampleCounter.getAndIncrement() % sampleRate == 0) {
+            enqueue(Level.DEBUG, message, args, null);
+        }
+    }
 
+    public static boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
 
+    /**
+     * Bind a correlation id to the current thread (gọi đầu mỗi request, xóa bằng clearRequestId)
+     */
+    public static void setRequestId(String id) {
+        requestId.set(id);
+        MDC.put(REQUEST_ID, id);
+    }
 
+    public static void clearRequestId() {
+        requestId.remove();
+        MDC.remove(REQUEST_ID);
+    }
 
+    /**
+     * Queue depth and written/dropped counters
+     * @return Map of metric name to value
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("async", async);
+        stats.put("queued", queue.size());
+        stats.put("capacity", queue.size() + queue.remainingCapacity());
+        stats.put("written", writtenCount.sum());
+        stats.put("dropped", droppedCount.sum());
+        stats.put("writtenInline", overflowCount.sum());
+        stats.put("debugSampleRate", sampleRate);
+        return stats;
+    }
 
+    private static void enqueue(Level level, String message, Object[] args, Throwable throwable) {
+        Event event = new Event(level, message, args, throwable, requestId.get());
+        if (!async) {
+            write(event);
+            return;
+        }
+        if (queue.offer(event)) {
+            return;
+        }
+        if (level == Level.WARN || level == Level.ERROR) {
+            // Không bỏ cảnh báo/lỗi: ghi ngay trên thread gọi
+            overflowCount.increment();
+            write(event);
+        } else {
+            droppedCount.increment();
+        }
+    }
 
+    private static void drain() {
+        List<Event> batch = new ArrayList<>(DRAIN_BATCH);
+        while (true) {
+            try {
+                Event first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, DRAIN_BATCH - 1);
+                for (Event event : batch) {
+                    write(event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Không để lỗi của appender làm dừng thread ghi log
+                logger.error("Error writing log event", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
 
+    private static void flush() {
+        List<Event> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (Event event : remaining) {
+            write(event);
+        }
+    }
 
+    private static void write(Event event) {
+        String previous = MDC.get(REQUEST_ID);
+        if (event.requestId != null) {
+            MDC.put(REQUEST_ID, event.requestId);
+        }
+        try {
+            switch (event.level) {
+                case ERROR:
+                    if (event.throwable != null) {
+                        logger.error(event.message, event.throwable);
+                    } else {
+                        logger.error(event.message, event.args);
+                    }
+                    break;
+                case WARN:
+                    logger.warn(event.message, event.args);
+                    break;
+                case INFO:
+                    logger.info(event.message, event.args);
+                    break;
+                default:
+                    logger.debug(event.message, event.args);
+                    break;
+            }
+            writtenCount.increment();
+        } finally {
+            if (previous != null) {
+                MDC.put(REQUEST_ID, previous);
+            } else {
+                MDC.remove(REQUEST_ID);
+            }
+        }
+    }
 
+    private enum Level {
+        ERROR, WARN, INFO, DEBUG
+    }
 
+    private static final class Event {
+        private final Level level;
+        private final String message;
+        private final Object[] args;
+        private final Throwable throwable;
+        private final String requestId;
+
+        private Event(Level level, String message, Object[] args, Throwable throwable, String requestId) {
+            this.level = level;
+            this.message = message;
+            this.args = args;
+            this.throwable = throwable;
+            this.requestId = requestId;
+        }
+    }
+}
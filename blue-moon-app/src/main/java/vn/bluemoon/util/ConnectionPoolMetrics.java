@@ -0,0 +1,95 @@
+package vn.bluemoon.util;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics for the JDBC connection pool
+ * Hikari gọi tracker này mỗi lần mượn connection, ta ghi lại thời gian chờ vào histogram
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory, IMetricsTracker {
+    // Upper bounds (microseconds) of the acquire-latency histogram buckets
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+        100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000
+    };
+    private static final String[] BUCKET_LABELS = {
+        "<=100us", "<=500us", "<=1ms", "<=5ms", "<=10ms", "<=50ms", "<=100ms", "<=500ms", "<=1s", ">1s"
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_LABELS.length];
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanosTotal = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private volatile PoolStats poolStats;
+
+    public ConnectionPoolMetrics() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquireCount.increment();
+        acquireNanosTotal.add(elapsedAcquiredNanos);
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos);
+        int index = 0;
+        while (index < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        createdCount.increment();
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeoutCount.increment();
+    }
+
+    /**
+     * Snapshot of the current pool state and acquire-latency histogram
+     * @return Map of metric name to value
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        PoolStats current = poolStats;
+        if (current != null) {
+            stats.put("active", current.getActiveConnections());
+            stats.put("idle", current.getIdleConnections());
+            stats.put("waiting", current.getPendingThreads());
+            stats.put("total", current.getTotalConnections());
+            stats.put("maxSize", current.getMaxConnections());
+            stats.put("minIdle", current.getMinConnections());
+        }
+
+        long count = acquireCount.sum();
+        stats.put("acquireCount", count);
+        stats.put("acquireTimeouts", timeoutCount.sum());
+        stats.put("connectionsCreated", createdCount.sum());
+        stats.put("acquireAvgMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(acquireNanosTotal.sum() / count));
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            histogram.put(BUCKET_LABELS[i], buckets[i].sum());
+        }
+        stats.put("acquireLatencyHistogram", histogram);
+        return stats;
+    }
+}
@@ -0,0 +1,101 @@
+package vn.bluemoon.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 CSV reader that reads one record at a time (đọc lần lượt, không nạp cả file)
+ * Hỗ trợ ô trong nháy kép chứa dấu phẩy/xuống dòng, bỏ qua BOM UTF-8 ở đầu file
+ */
+public class CsvReader {
+    private final Reader reader;
+    private int peeked = -2;
+    private int line = 1;
+    private int recordLine;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next record
+     * @return Cell values, or null at end of input
+     */
+    public List<String> readRow() throws IOException {
+        int c = read();
+        if (c == '\uFEFF' && recordLine == 0) {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    break;
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        cell.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    cell.append((char) c);
+                }
+            } else if (c == '"' && cell.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                if (c != -1) {
+                    line++;
+                }
+                break;
+            } else {
+                cell.append((char) c);
+            }
+            c = read();
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    /**
+     * Line number (1-based) where the last record returned by readRow started
+     */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+}
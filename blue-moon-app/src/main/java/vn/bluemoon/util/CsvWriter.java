@@ -0,0 +1,59 @@
+package vn.bluemoon.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+/**
+ * Minimal RFC 4180 CSV writer that writes each row straight to the underlying writer
+ * Ô chứa dấu phẩy, dấu nháy kép hoặc xuống dòng được đặt trong nháy kép;
+ * ô văn bản bắt đầu bằng = + - @ được thêm dấu ' để Excel không hiểu thành công thức
+ */
+public class CsvWriter {
+    private final Writer writer;
+
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Write the UTF-8 byte order mark so Excel opens Vietnamese text correctly
+     */
+    public void writeBom() throws IOException {
+        writer.write('\uFEFF');
+    }
+
+    /**
+     * Write one row; null values are written as empty cells, numbers without exponent
+     */
+    public void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCell(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeCell(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        if (value instanceof String && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(text);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package vn.bluemoon.util;
 
 import vn.bluemoon.config.DbConfig;
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.repository.FeeRevenueRollupRepository;
+import vn.bluemoon.repository.HouseholdOwnerRepository;
+import vn.bluemoon.search.HouseholdSearch;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
@@ -32,8 +35,14 @@ public class DatabaseInitializer {
         try {
             // First, try to connect to the database
             testConnection();
+            SchemaCapabilities.refresh();
             // Remove old unique constraint to allow multiple fees per month/year
             removeOldUniqueConstraint();
+            createSupportTables();
+            createSearchIndexes();
+            // Reload schema capabilities after migrations
+            SchemaCapabilities.refresh();
+            rebuildProjections();
             initialized = true;
             AppLogger.info("Database connection successful");
         } catch (DbException e) {
@@ -44,6 +53,10 @@ public class DatabaseInitializer {
                 try {
                     // Try to create tables
                     createTablesIfNotExists();
+                    createSupportTables();
+                    createSearchIndexes();
+                    SchemaCapabilities.refresh();
+                    rebuildProjections();
                     initialized = true;
                     AppLogger.info("Database initialized successfully");
                 } catch (Exception ex) {
@@ -262,29 +275,31 @@ public class DatabaseInitializer {
                     }
                     
                     // Check if fee_type_id column exists and create new unique constraint if it does
+                    // Index cho keyset pagination của danh sách thu phí
                     try {
-                        java.sql.ResultSet rs = stmt.executeQuery(
-                            "SELECT COUNT(*) FROM information_schema.columns " +
-                            "WHERE table_name = 'fee_collections' AND column_name = 'fee_type_id'"
+                        stmt.executeUpdate(
+                            "CREATE INDEX IF NOT EXISTS idx_fee_collections_keyset " +
+                            "ON fee_collections((COALESCE(year, 0)), (COALESCE(month, 0)), id)"
                         );
-                        if (rs.next() && rs.getInt(1) > 0) {
-                            // Create new unique constraint with fee_type_id
-                            try {
-                                stmt.executeUpdate(
-                                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_fee_collections_household_month_year_fee_type " +
-                                    "ON fee_collections(household_id, month, year, fee_type_id) " +
-                                    "WHERE month IS NOT NULL AND year IS NOT NULL AND fee_type_id IS NOT NULL"
-                                );
-                                AppLogger.info("Created unique index with fee_type_id");
-                            } catch (SQLException e) {
-                                // Ignore if already exists
-                                if (!e.getMessage().contains("already exists")) {
-                                    AppLogger.warn("Error creating new unique index: " + e.getMessage());
-                                }
+                    } catch (SQLException e) {
+                        AppLogger.warn("Error creating keyset index: " + e.getMessage());
+                    }
+                    
+                    if (SchemaCapabilities.hasColumn("fee_collections", "fee_type_id")) {
+                        // Create new unique constraint with fee_type_id
+                        try {
+                            stmt.executeUpdate(
+                                "CREATE UNIQUE INDEX IF NOT EXISTS idx_fee_collections_household_month_year_fee_type " +
+                                "ON fee_collections(household_id, month, year, fee_type_id) " +
+                                "WHERE month IS NOT NULL AND year IS NOT NULL AND fee_type_id IS NOT NULL"
+                            );
+                            AppLogger.info("Created unique index with fee_type_id");
+                        } catch (SQLException e) {
+                            // Ignore if already exists
+                            if (!e.getMessage().contains("already exists")) {
+                                AppLogger.warn("Error creating new unique index: " + e.getMessage());
                             }
                         }
-                    } catch (SQLException e) {
-                        AppLogger.warn("Error checking for fee_type_id column: " + e.getMessage());
                     }
                 } else {
                     // MySQL: Drop index
@@ -312,6 +327,181 @@ public class DatabaseInitializer {
         }
     }
     
+    /**
+     * Create tables/columns maintained by the application itself (projection, cache...) if missing
+     * Không throw exception, chỉ log warning giống removeOldUniqueConstraint
+     */
+    private static void createSupportTables() {
+        boolean isPostgreSQL = dbConfig.getDriver().contains("postgresql");
+        String[] statements;
+        if (isPostgreSQL) {
+            statements = new String[] {
+                "CREATE TABLE IF NOT EXISTS household_owners (" +
+                "household_id INT PRIMARY KEY, " +
+                "resident_id INT, " +
+                "owner_name VARCHAR(255), " +
+                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY (household_id) REFERENCES households(id) ON DELETE CASCADE)",
+                "CREATE INDEX IF NOT EXISTS idx_household_owners_owner_name ON household_owners(owner_name)",
+                "CREATE INDEX IF NOT EXISTS idx_household_owners_resident_id ON household_owners(resident_id)",
+                "CREATE TABLE IF NOT EXISTS email_outbox (" +
+                "id BIGSERIAL PRIMARY KEY, " +
+                "to_email VARCHAR(255) NOT NULL, " +
+                "subject VARCHAR(500) NOT NULL, " +
+                "body TEXT NOT NULL, " +
+                "status VARCHAR(20) NOT NULL DEFAULT 'PENDING', " +
+                "attempts INT NOT NULL DEFAULT 0, " +
+                "next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "last_error TEXT, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "sent_at TIMESTAMP)",
+                "CREATE INDEX IF NOT EXISTS idx_email_outbox_due ON email_outbox(status, next_attempt_at)",
+                "ALTER TABLE sessions ADD COLUMN IF NOT EXISTS last_seen_at TIMESTAMP",
+                "ALTER TABLE fee_collections ADD COLUMN IF NOT EXISTS reminder_sent_at TIMESTAMP",
+                "ALTER TABLE fee_collections ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0",
+                "CREATE INDEX IF NOT EXISTS idx_fee_collections_reminder_due ON fee_collections(payment_deadline) " +
+                "WHERE status IN ('unpaid', 'partial_paid')",
+                "CREATE TABLE IF NOT EXISTS population_history (" +
+                "snapshot_date DATE PRIMARY KEY, " +
+                "household_count INT NOT NULL, " +
+                "resident_count INT NOT NULL, " +
+                "temporary_resident_count INT NOT NULL, " +
+                "temporary_absent_count INT NOT NULL, " +
+                "recorded_at TIMESTAMP NOT NULL)",
+                "CREATE TABLE IF NOT EXISTS fee_revenue_rollup (" +
+                "year INT NOT NULL, " +
+                "month INT NOT NULL, " +
+                "fee_type_id INT NOT NULL, " +
+                "status VARCHAR(20) NOT NULL, " +
+                "fee_count BIGINT NOT NULL DEFAULT 0, " +
+                "total_amount DECIMAL(18, 2) NOT NULL DEFAULT 0, " +
+                "paid_amount DECIMAL(18, 2) NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (year, month, fee_type_id, status))"
+            };
+        } else {
+            statements = new String[] {
+                "CREATE TABLE IF NOT EXISTS household_owners (" +
+                "household_id INT PRIMARY KEY, " +
+                "resident_id INT, " +
+                "owner_name VARCHAR(255), " +
+                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY (household_id) REFERENCES households(id) ON DELETE CASCADE, " +
+                "INDEX idx_household_owners_owner_name (owner_name), " +
+                "INDEX idx_household_owners_resident_id (resident_id)" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci",
+                "CREATE TABLE IF NOT EXISTS email_outbox (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "to_email VARCHAR(255) NOT NULL, " +
+                "subject VARCHAR(500) NOT NULL, " +
+                "body TEXT NOT NULL, " +
+                "status VARCHAR(20) NOT NULL DEFAULT 'PENDING', " +
+                "attempts INT NOT NULL DEFAULT 0, " +
+                "next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                "last_error TEXT, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "sent_at TIMESTAMP NULL, " +
+                "INDEX idx_email_outbox_due (status, next_attempt_at)" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci",
+                "ALTER TABLE sessions ADD COLUMN last_seen_at TIMESTAMP NULL",
+                "ALTER TABLE fee_collections ADD COLUMN reminder_sent_at TIMESTAMP NULL",
+                "ALTER TABLE fee_collections ADD COLUMN version INT NOT NULL DEFAULT 0",
+                "CREATE TABLE IF NOT EXISTS population_history (" +
+                "snapshot_date DATE PRIMARY KEY, " +
+                "household_count INT NOT NULL, " +
+                "resident_count INT NOT NULL, " +
+                "temporary_resident_count INT NOT NULL, " +
+                "temporary_absent_count INT NOT NULL, " +
+                "recorded_at TIMESTAMP NOT NULL" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci",
+                "CREATE TABLE IF NOT EXISTS fee_revenue_rollup (" +
+                "year INT NOT NULL, " +
+                "month INT NOT NULL, " +
+                "fee_type_id INT NOT NULL, " +
+                "status VARCHAR(20) NOT NULL, " +
+                "fee_count BIGINT NOT NULL DEFAULT 0, " +
+                "total_amount DECIMAL(18, 2) NOT NULL DEFAULT 0, " +
+                "paid_amount DECIMAL(18, 2) NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (year, month, fee_type_id, status)" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci"
+            };
+        }
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                try {
+                    stmt.executeUpdate(sql);
+                } catch (SQLException e) {
+                    if (!e.getMessage().contains("already exists") && !e.getMessage().contains("Duplicate column")) {
+                        AppLogger.warn("Error executing SQL: " + sql.substring(0, Math.min(50, sql.length())) + "... - " + e.getMessage());
+                    }
+                }
+            }
+        } catch (SQLException | DbException e) {
+            AppLogger.warn("Error creating support tables: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Set up diacritic-insensitive search (pg_trgm + unaccent) on PostgreSQL
+     * Nếu không tạo được extension (thiếu quyền, MySQL...) thì HouseholdSearch dùng trigram index trong bộ nhớ
+     */
+    private static void createSearchIndexes() {
+        if (!dbConfig.getDriver().contains("postgresql")) {
+            HouseholdSearch.useDatabaseIndex(false);
+            return;
+        }
+        String[] statements = {
+            "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+            "CREATE EXTENSION IF NOT EXISTS unaccent",
+            // unaccent() chỉ là STABLE, bọc lại thành IMMUTABLE để dùng được trong index
+            "CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text AS " +
+            "$$ SELECT public.unaccent('public.unaccent', $1) $$ LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT",
+            "CREATE INDEX IF NOT EXISTS idx_household_owners_owner_name_trgm " +
+            "ON household_owners USING gin (f_unaccent(lower(owner_name)) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_households_owner_name_trgm " +
+            "ON households USING gin (f_unaccent(lower(owner_name)) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_households_household_code_trgm " +
+            "ON households USING gin (f_unaccent(lower(household_code)) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_apartments_apartment_code_trgm " +
+            "ON apartments USING gin (f_unaccent(lower(apartment_code)) gin_trgm_ops)"
+        };
+        
+        try (Connection conn = JdbcUtils.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.executeUpdate(sql);
+            }
+            HouseholdSearch.useDatabaseIndex(true);
+        } catch (SQLException | DbException e) {
+            AppLogger.warn("pg_trgm/unaccent not available, using in-memory search index: " + e.getMessage());
+            HouseholdSearch.useDatabaseIndex(false);
+        }
+    }
+    
+    /**
+     * Rebuild projections from the source tables so they match rows written outside the application
+     */
+    private static void rebuildProjections() {
+        if (SchemaCapabilities.hasTable("household_owners")) {
+            try {
+                int count = new HouseholdOwnerRepository().rebuildAll();
+                AppLogger.info("Household owner projection rebuilt ({} households)", count);
+            } catch (DbException e) {
+                AppLogger.warn("Error rebuilding household owner projection: " + e.getMessage());
+            }
+        }
+        FeeRevenueRollupRepository rollupRepository = new FeeRevenueRollupRepository();
+        if (rollupRepository.isAvailable()) {
+            try {
+                int count = rollupRepository.rebuild();
+                AppLogger.info("Fee revenue rollup rebuilt ({} rows)", count);
+            } catch (DbException e) {
+                AppLogger.warn("Error rebuilding fee revenue rollup: " + e.getMessage());
+            }
+        }
+    }
+    
     /**
      * Check if database is initialized
      */
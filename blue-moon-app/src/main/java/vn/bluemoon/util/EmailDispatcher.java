@@ -0,0 +1,188 @@
+package vn.bluemoon.util;
+
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.OutboxEmail;
+import vn.bluemoon.repository.EmailOutboxRepository;
+
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background sender for the email outbox
+ * Một thread nền nhận các email đến hạn theo batch, gửi qua một kết nối SMTP dùng chung,
+ * email lỗi được thử lại với backoff tăng dần (retry-base * 2^(lần thử - 1), tối đa 1 giờ)
+ */
+public class EmailDispatcher {
+    private static final AppConfig config = AppConfig.getInstance();
+    private static final EmailOutboxRepository outboxRepository = new EmailOutboxRepository();
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+    private static final long CLEANUP_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "email-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicBoolean started = new AtomicBoolean();
+    private static final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private static volatile long lastCleanupAt;
+
+    private static final LongAdder sentCount = new LongAdder();
+    private static final LongAdder failedAttemptCount = new LongAdder();
+    private static final LongAdder gaveUpCount = new LongAdder();
+    private static final LongAdder connectionCount = new LongAdder();
+    private static final LongAdder batchCount = new LongAdder();
+    private static final LongAdder outboxErrorCount = new LongAdder();
+
+    private EmailDispatcher() {
+    }
+
+    /**
+     * Start polling the outbox (gọi một lần khi ứng dụng khởi động)
+     */
+    public static void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        long interval = config.getEmailOutboxPollSeconds();
+        executor.scheduleWithFixedDelay(EmailDispatcher::dispatch, interval, interval, TimeUnit.SECONDS);
+        AppLogger.info("Email dispatcher started (poll={}s, batch={})", interval, config.getEmailOutboxBatchSize());
+    }
+
+    /**
+     * Send queued emails now instead of waiting for the next poll
+     */
+    public static void wakeUp() {
+        start();
+        if (wakeUpPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                wakeUpPending.set(false);
+                dispatch();
+            });
+        }
+    }
+
+    /**
+     * Live outbox statistics
+     * @return Map of metric name to value
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sent", sentCount.sum());
+        stats.put("failedAttempts", failedAttemptCount.sum());
+        stats.put("gaveUp", gaveUpCount.sum());
+        stats.put("smtpConnections", connectionCount.sum());
+        stats.put("batches", batchCount.sum());
+        stats.put("outboxErrors", outboxErrorCount.sum());
+        try {
+            stats.put("outbox", outboxRepository.countByStatus());
+        } catch (DbException e) {
+            stats.put("outbox", "unavailable: " + e.getMessage());
+        }
+        return stats;
+    }
+
+    /**
+     * Send due emails batch by batch until the outbox has nothing due
+     */
+    private static void dispatch() {
+        try {
+            int batchSize = Math.max(1, config.getEmailOutboxBatchSize());
+            List<OutboxEmail> batch;
+            do {
+                LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(config.getEmailSmtpTimeoutMs() / 1000 * batchSize + 60);
+                batch = outboxRepository.claimDue(batchSize, leaseUntil);
+                if (!batch.isEmpty()) {
+                    batchCount.increment();
+                    sendBatch(batch);
+                }
+            } while (batch.size() == batchSize);
+            cleanup();
+        } catch (DbException e) {
+            AppLogger.warn("Error reading email outbox: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Không để lỗi làm dừng lịch gửi email
+            AppLogger.error("Error dispatching emails", e);
+        }
+    }
+
+    private static void sendBatch(List<OutboxEmail> batch) {
+        Transport transport = null;
+        try {
+            for (OutboxEmail email : batch) {
+                try {
+                    try {
+                        if (transport == null || !transport.isConnected()) {
+                            closeQuietly(transport);
+                            transport = EmailSender.openTransport();
+                            connectionCount.increment();
+                        }
+                        EmailSender.send(transport, email);
+                        sentCount.increment();
+                        outboxRepository.markSent(email.getId());
+                    } catch (MessagingException e) {
+                        failedAttemptCount.increment();
+                        scheduleRetry(email, e);
+                    }
+                } catch (DbException e) {
+                    // Không ghi được trạng thái của email này: email ở lại SENDING đến hết lease,
+                    // các email còn lại của batch vẫn được gửi (bỏ dở batch sẽ gửi lại cả các email đã gửi)
+                    outboxErrorCount.increment();
+                    AppLogger.warn("Error updating outbox email " + email.getId() + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            closeQuietly(transport);
+        }
+    }
+
+    private static void scheduleRetry(OutboxEmail email, MessagingException error) throws DbException {
+        int attempts = (email.getAttempts() != null ? email.getAttempts() : 0) + 1;
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        if (attempts >= config.getEmailOutboxMaxAttempts()) {
+            gaveUpCount.increment();
+            AppLogger.error("Giving up sending email " + email.getId() + " to " + email.getToEmail() +
+                " after " + attempts + " attempts: " + message);
+            outboxRepository.markAttemptFailed(email.getId(), message, null);
+            return;
+        }
+        long backoff = Math.min(MAX_BACKOFF_SECONDS,
+            config.getEmailOutboxRetryBaseSeconds() * (1L << Math.min(attempts - 1, 20)));
+        AppLogger.warn("Error sending email " + email.getId() + " (attempt " + attempts + "), retrying in " +
+            backoff + "s: " + message);
+        outboxRepository.markAttemptFailed(email.getId(), message, LocalDateTime.now().plusSeconds(backoff));
+    }
+
+    private static void cleanup() throws DbException {
+        long now = System.currentTimeMillis();
+        if (now - lastCleanupAt < CLEANUP_INTERVAL_MILLIS) {
+            return;
+        }
+        lastCleanupAt = now;
+        int deleted = outboxRepository.deleteSentBefore(
+            LocalDateTime.now().minusDays(config.getEmailOutboxRetentionDays()));
+        if (deleted > 0) {
+            AppLogger.info("Deleted {} sent emails from outbox", deleted);
+        }
+    }
+
+    private static void closeQuietly(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -1,101 +1,124 @@
 package vn.bluemoon.util;
 
 import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.OutboxEmail;
+import vn.bluemoon.repository.EmailOutboxRepository;
 
 import javax.mail.*;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
+import java.util.List;
 import java.util.Properties;
 
 /**
  * Utility class for sending emails
+ * Request chỉ ghi email vào outbox (email_outbox); EmailDispatcher gửi trong nền,
+ * dùng chung một kết nối SMTP cho nhiều email
  */
 public class EmailSender {
     private static final AppConfig config = AppConfig.getInstance();
+    private static final EmailOutboxRepository outboxRepository = new EmailOutboxRepository();
+    private static volatile Session mailSession;
 
     /**
-     * Send password reset email
+     * Queue password reset email
      * @param toEmail Recipient email
      * @param token Reset token
-     * @return true if sent successfully
+     * @throws DbException if the email cannot be queued
      */
-    public static boolean sendPasswordResetEmail(String toEmail, String token) {
-        try {
-            String resetUrl = "http://localhost:8080/reset-password?token=" + token;
-            String subject = "Đặt lại mật khẩu - Blue Moon";
-            String body = String.format(
-                "Xin chào,\n\n" +
-                "Bạn đã yêu cầu đặt lại mật khẩu cho tài khoản của mình.\n\n" +
-                "Vui lòng click vào liên kết sau để đặt lại mật khẩu:\n" +
-                "%s\n\n" +
-                "Liên kết này sẽ hết hạn sau 24 giờ.\n\n" +
-                "Nếu bạn không yêu cầu đặt lại mật khẩu, vui lòng bỏ qua email này.\n\n" +
-                "Trân trọng,\n" +
-                "Hệ thống Blue Moon",
-                resetUrl
-            );
-
-            return sendEmail(toEmail, subject, body);
-        } catch (Exception e) {
-            AppLogger.error("Error sending password reset email", e);
-            return false;
-        }
+    public static void sendPasswordResetEmail(String toEmail, String token) throws DbException {
+        String resetUrl = "http://localhost:8080/reset-password?token=" + token;
+        String subject = "Đặt lại mật khẩu - Blue Moon";
+        String body = String.format(
+            "Xin chào,\n\n" +
+            "Bạn đã yêu cầu đặt lại mật khẩu cho tài khoản của mình.\n\n" +
+            "Vui lòng click vào liên kết sau để đặt lại mật khẩu:\n" +
+            "%s\n\n" +
+            "Liên kết này sẽ hết hạn sau 24 giờ.\n\n" +
+            "Nếu bạn không yêu cầu đặt lại mật khẩu, vui lòng bỏ qua email này.\n\n" +
+            "Trân trọng,\n" +
+            "Hệ thống Blue Moon",
+            resetUrl
+        );
+
+        enqueue(toEmail, subject, body);
     }
 
     /**
-     * Send email
+     * Queue an email in the outbox; it is sent by EmailDispatcher after the current transaction commits
      * @param toEmail Recipient email
      * @param subject Email subject
      * @param body Email body
-     * @return true if sent successfully
+     * @throws DbException if the email cannot be queued
      */
-    private static boolean sendEmail(String toEmail, String subject, String body) {
-        try {
-            Properties props = new Properties();
-            props.put("mail.smtp.host", config.getEmailSmtpHost());
-            props.put("mail.smtp.port", config.getEmailSmtpPort());
-            props.put("mail.smtp.auth", config.getEmailSmtpAuth());
-            props.put("mail.smtp.starttls.enable", config.getEmailSmtpStartTls());
-
-            Session session = Session.getInstance(props, new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(
-                        config.getEmailFrom(),
-                        config.getEmailPassword()
-                    );
-                }
-            });
+    public static void enqueue(String toEmail, String subject, String body) throws DbException {
+        outboxRepository.enqueue(new OutboxEmail(toEmail, subject, body));
+        UnitOfWork.afterCommit(EmailDispatcher::wakeUp);
+    }
 
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(config.getEmailFrom()));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail));
-            message.setSubject(subject);
-            message.setText(body);
+    /**
+     * Queue several emails in one batch; sent by EmailDispatcher after the current transaction commits
+     * @param emails Emails to queue
+     * @throws DbException if the emails cannot be queued
+     */
+    public static void enqueueAll(List<OutboxEmail> emails) throws DbException {
+        outboxRepository.enqueueAll(emails);
+        UnitOfWork.afterCommit(EmailDispatcher::wakeUp);
+    }
 
-            Transport.send(message);
-            AppLogger.info("Email sent successfully to: " + toEmail);
-            return true;
-        } catch (Exception e) {
-            AppLogger.error("Error sending email to: " + toEmail, e);
-            return false;
+    /**
+     * Open one SMTP connection, reused for a batch of emails
+     * @return Connected transport, must be closed
+     * @throws MessagingException if the SMTP server cannot be reached
+     */
+    static Transport openTransport() throws MessagingException {
+        Transport transport = session().getTransport("smtp");
+        if (config.getEmailSmtpAuth()) {
+            transport.connect(config.getEmailSmtpHost(), Integer.parseInt(config.getEmailSmtpPort()),
+                config.getEmailFrom(), config.getEmailPassword());
+        } else {
+            transport.connect();
         }
+        return transport;
     }
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 
+    /**
+     * Send an email over an open transport
+     * @throws MessagingException if sending fails
+     */
+    static void send(Transport transport, OutboxEmail email) throws MessagingException {
+        Message message = new MimeMessage(session());
+        message.setFrom(new InternetAddress(config.getEmailFrom()));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.getToEmail()));
+        message.setSubject(email.getSubject());
+        message.setText(email.getBody());
+        message.saveChanges();
+        transport.sendMessage(message, message.getAllRecipients());
+    }
 
+    /**
+     * Mail session built once from application.properties
+     * (email.smtp.host/port trỏ tới SMTP server giả lập trên máy local khi phát triển, email.smtp.auth=false)
+     */
+    private static Session session() {
+        Session current = mailSession;
+        if (current == null) {
+            synchronized (EmailSender.class) {
+                current = mailSession;
+                if (current == null) {
+                    Properties props = new Properties();
+                    props.put("mail.smtp.host", config.getEmailSmtpHost());
+                    props.put("mail.smtp.port", config.getEmailSmtpPort());
+                    props.put("mail.smtp.auth", String.valueOf(config.getEmailSmtpAuth()));
+                    props.put("mail.smtp.starttls.enable", String.valueOf(config.getEmailSmtpStartTls()));
+                    props.put("mail.smtp.connectiontimeout", String.valueOf(config.getEmailSmtpTimeoutMs()));
+                    props.put("mail.smtp.timeout", String.valueOf(config.getEmailSmtpTimeoutMs()));
+                    current = Session.getInstance(props);
+                    mailSession = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,138 @@
+package vn.bluemoon.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Wraps pooled connections so every statement execution is timed and counted in {@link QueryMetrics}
+ *
+ * Connection, Statement và ResultSet được bọc bằng dynamic proxy (giống connection của UnitOfWork):
+ * - execute*: đo thời gian, ghi số dòng cập nhật, ghi log nếu chậm
+ * - ResultSet.next(): mỗi dòng đọc được cộng ngay vào thống kê (nhiều repository không đóng ResultSet,
+ *   chỉ đóng statement/connection thật, nên không thể chờ đến close của proxy)
+ * Các phương thức khác (kể cả unwrap) chuyển thẳng cho đối tượng thật.
+ */
+final class InstrumentedConnection {
+    private InstrumentedConnection() {
+    }
+
+    /**
+     * Wrap a connection borrowed from the pool
+     */
+    static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                switch (method.getName()) {
+                    case "createStatement":
+                        return wrapStatement((Statement) result, Statement.class, null);
+                    case "prepareStatement":
+                        return wrapStatement((Statement) result, PreparedStatement.class, (String) args[0]);
+                    case "prepareCall":
+                        return wrapStatement((Statement) result, CallableStatement.class, (String) args[0]);
+                    default:
+                        return result;
+                }
+            });
+    }
+
+    private static Statement wrapStatement(Statement statement, Class<? extends Statement> type, String preparedSql) {
+        StatementState state = new StatementState(preparedSql);
+        return (Statement) Proxy.newProxyInstance(
+            Statement.class.getClassLoader(),
+            new Class<?>[] { type },
+            (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("execute")) {
+                    return execute(statement, method, args, state);
+                }
+                if (name.startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer
+                        && method.getDeclaringClass() != Statement.class) {
+                    // setXxx(parameterIndex, value): chỉ nhớ số tham số, không giữ giá trị
+                    state.parameterCount = Math.max(state.parameterCount, (Integer) args[0]);
+                } else if ("clearParameters".equals(name)) {
+                    state.parameterCount = 0;
+                } else if ("getResultSet".equals(name) && state.stats != null) {
+                    ResultSet rs = (ResultSet) invoke(statement, method, args);
+                    return rs != null ? wrapResultSet(rs, state.stats) : null;
+                }
+                return invoke(statement, method, args);
+            });
+    }
+
+    private static Object execute(Statement statement, Method method, Object[] args, StatementState state)
+            throws Throwable {
+        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : state.sql;
+        String queryName = QueryMetrics.currentQueryName();
+        QueryMetrics.QueryStats stats = QueryMetrics.stats(queryName);
+        state.stats = stats;
+        long startedAt = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = invoke(statement, method, args);
+            failed = false;
+            if (result instanceof ResultSet) {
+                return wrapResultSet((ResultSet) result, stats);
+            }
+            if (result instanceof Integer) {
+                stats.addRows((Integer) result);
+            } else if (result instanceof Long) {
+                stats.addRows((Long) result);
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    stats.addRows(count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    stats.addRows(count);
+                }
+            }
+            return result;
+        } finally {
+            QueryMetrics.recordExecution(queryName, stats, System.nanoTime() - startedAt, failed,
+                sql, state.parameterCount);
+        }
+    }
+
+    private static ResultSet wrapResultSet(ResultSet resultSet, QueryMetrics.QueryStats stats) {
+        return (ResultSet) Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] { ResultSet.class },
+            (proxy, method, args) -> {
+                Object result = invoke(resultSet, method, args);
+                if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                    stats.addRows(1);
+                }
+                return result;
+            });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * SQL and bound-parameter count of one statement (một statement chỉ dùng trên một thread)
+     */
+    private static final class StatementState {
+        private final String sql;
+        private int parameterCount;
+        private QueryMetrics.QueryStats stats;
+
+        private StatementState(String sql) {
+            this.sql = sql;
+        }
+    }
+}
@@ -1,55 +1,134 @@
 package vn.bluemoon.util;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import vn.bluemoon.config.DbConfig;
 import vn.bluemoon.exception.DbException;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Utility class for JDBC operations
+ * Connection được mượn từ pool (HikariCP), close() trả connection về pool
  */
 public class JdbcUtils {
     private static final DbConfig dbConfig = DbConfig.getInstance();
+    private static final ConnectionPoolMetrics poolMetrics = new ConnectionPoolMetrics();
+    private static final boolean queryMetricsEnabled = dbConfig.getQueryMetricsEnabled();
+    private static volatile HikariDataSource dataSource;
+    // Số tham số tối đa trong một mệnh đề IN
+    private static final int MAX_IN_PARAMETERS = 500;
 
     /**
      * Get database connection
+     * Nếu đang trong một UnitOfWork, trả về connection của unit of work đó
+     * Khi bật db.metrics.enabled, connection được bọc để đo thời gian từng truy vấn (QueryMetrics)
      * @return Connection object
      * @throws DbException if connection fails
      */
     public static Connection getConnection() throws DbException {
+        Connection bound = UnitOfWork.currentConnection();
+        if (bound != null) {
+            return bound;
+        }
         try {
-            Class.forName(dbConfig.getDriver());
-            return DriverManager.getConnection(
-                dbConfig.getUrl(),
-                dbConfig.getUsername(),
-                dbConfig.getPassword()
-            );
-        } catch (ClassNotFoundException e) {
-            throw new DbException("Database driver not found: " + dbConfig.getDriver(), e);
+            long startedAt = System.nanoTime();
+            Connection connection = getDataSource().getConnection();
+            if (!queryMetricsEnabled) {
+                return connection;
+            }
+            QueryMetrics.recordConnectionWait(System.nanoTime() - startedAt);
+            return InstrumentedConnection.wrap(connection);
         } catch (SQLException e) {
-            String errorMsg = "Failed to connect to database: " + e.getMessage();
+            String message = describe(e);
+            String errorMsg = "Failed to connect to database: " + message;
             // Add helpful message for common errors
             String driver = dbConfig.getDriver();
             boolean isPostgreSQL = driver.contains("postgresql");
             String dbType = isPostgreSQL ? "PostgreSQL" : "MySQL";
             String defaultPort = isPostgreSQL ? "5432" : "3306";
-            
-            if (e.getMessage().contains("Communications link failure") || 
-                e.getMessage().contains("Connection refused")) {
+
+            if (message.contains("Communications link failure") ||
+                message.contains("Connection refused")) {
                 errorMsg += "\n\nVui lòng kiểm tra:\n" +
                            "1. " + dbType + " service đang chạy\n" +
                            "2. Port " + defaultPort + " không bị chặn\n" +
                            "3. Xem file HUONG-DAN-" + (isPostgreSQL ? "POSTGRESQL" : "THIET-LAP-DATABASE") + ".md để biết chi tiết";
-            } else if (e.getMessage().contains("Unknown database") || 
-                       e.getMessage().contains("does not exist")) {
+            } else if (message.contains("Unknown database") ||
+                       message.contains("does not exist")) {
                 errorMsg += "\n\nDatabase chưa được tạo. Ứng dụng sẽ tự động tạo database khi khởi động.";
             }
             throw new DbException(errorMsg, e);
         }
     }
 
+    /**
+     * Get the pooled DataSource, creating it on first use
+     * @return DataSource backed by the connection pool
+     * @throws DbException if the driver cannot be loaded
+     */
+    public static DataSource getDataSource() throws DbException {
+        HikariDataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (JdbcUtils.class) {
+                ds = dataSource;
+                if (ds == null) {
+                    ds = createDataSource();
+                    dataSource = ds;
+                }
+            }
+        }
+        return ds;
+    }
+
+    /**
+     * Live pool statistics: active, idle, waiting and acquire-latency histogram
+     * @return Map of metric name to value
+     */
+    public static Map<String, Object> getPoolStats() {
+        return poolMetrics.snapshot();
+    }
+
+    /**
+     * Close the pool and release all physical connections
+     */
+    public static synchronized void shutdown() {
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+    }
+
+    /**
+     * Split values into chunks small enough for one IN list each
+     */
+    public static <T> List<List<T>> inChunks(Collection<T> values) {
+        List<T> all = new ArrayList<>(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += MAX_IN_PARAMETERS) {
+            chunks.add(all.subList(from, Math.min(all.size(), from + MAX_IN_PARAMETERS)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Build "?, ?, ?" for an IN list of count parameters
+     * @param count Number of parameters, at least 1
+     */
+    public static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder("?");
+        for (int i = 1; i < count; i++) {
+            sb.append(", ?");
+        }
+        return sb.toString();
+    }
+
     /**
      * Close connection safely
      * @param connection Connection to close
@@ -63,4 +142,46 @@ public class JdbcUtils {
             }
         }
     }
+
+    private static HikariDataSource createDataSource() throws DbException {
+        try {
+            Class.forName(dbConfig.getDriver());
+        } catch (ClassNotFoundException e) {
+            throw new DbException("Database driver not found: " + dbConfig.getDriver(), e);
+        }
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("bluemoon-pool");
+        config.setDriverClassName(dbConfig.getDriver());
+        config.setJdbcUrl(dbConfig.getUrl());
+        config.setUsername(dbConfig.getUsername());
+        config.setPassword(dbConfig.getPassword());
+        config.setMinimumIdle(dbConfig.getPoolMinIdle());
+        config.setMaximumPoolSize(dbConfig.getPoolMaxSize());
+        config.setConnectionTimeout(dbConfig.getPoolAcquireTimeoutMs());
+        config.setIdleTimeout(dbConfig.getPoolIdleTimeoutMs());
+        config.setMaxLifetime(dbConfig.getPoolMaxLifetimeMs());
+        config.setLeakDetectionThreshold(dbConfig.getPoolLeakDetectionMs());
+        // Không fail khi khởi tạo pool nếu database chưa sẵn sàng, lỗi sẽ được báo khi getConnection()
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(poolMetrics);
+
+        HikariDataSource ds = new HikariDataSource(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(ds::close, "bluemoon-pool-shutdown"));
+        AppLogger.info("Connection pool started (min-idle={}, max-size={})",
+            dbConfig.getPoolMinIdle(), dbConfig.getPoolMaxSize());
+        return ds;
+    }
+
+    /**
+     * Pool timeouts wrap the real driver error, so include the cause message
+     */
+    private static String describe(SQLException e) {
+        String message = e.getMessage() != null ? e.getMessage() : "";
+        Throwable cause = e.getCause();
+        if (cause != null && cause.getMessage() != null && !message.contains(cause.getMessage())) {
+            message += " (" + cause.getMessage() + ")";
+        }
+        return message;
+    }
 }
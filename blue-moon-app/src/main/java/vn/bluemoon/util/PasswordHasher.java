@@ -1,19 +1,54 @@
 package vn.bluemoon.util;
 
 import org.mindrot.jbcrypt.BCrypt;
+import vn.bluemoon.config.AppConfig;
 
 /**
  * Utility class for password hashing using BCrypt
+ * Cost (log2 số vòng) cấu hình bằng security.bcrypt.cost
  */
 public class PasswordHasher {
+    private static final int MIN_COST = 4;
+    private static final int MAX_COST = 31;
+    private static final int cost = Math.max(MIN_COST, Math.min(MAX_COST, AppConfig.getInstance().getBcryptCost()));
     
     /**
-     * Hash a password
+     * Hash a password with the configured cost
      * @param password Plain text password
      * @return Hashed password
      */
     public static String hash(String password) {
-        return BCrypt.hashpw(password, BCrypt.gensalt());
+        return BCrypt.hashpw(password, BCrypt.gensalt(cost));
+    }
+    
+    /**
+     * Check if a hash was made with a different cost than the configured one
+     * (đăng nhập thành công thì hash lại với cost mới)
+     * @param hash Hashed password ($2a$10$...)
+     * @return true if the hash should be replaced
+     */
+    public static boolean needsRehash(String hash) {
+        Integer hashCost = costOf(hash);
+        return hashCost != null && hashCost != cost;
+    }
+    
+    /**
+     * Configured BCrypt cost
+     */
+    public static int getCost() {
+        return cost;
+    }
+    
+    private static Integer costOf(String hash) {
+        // Định dạng: $2a$NN$<salt+hash>
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') {
+            return null;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
     
     /**
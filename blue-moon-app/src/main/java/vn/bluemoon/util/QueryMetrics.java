@@ -0,0 +1,234 @@
+package vn.bluemoon.util;
+
+import vn.bluemoon.config.DbConfig;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-query latency, row counts and connection wait time recorded by the instrumented JDBC layer
+ *
+ * Tên truy vấn là phương thức repository đã chạy nó (vd. FeeCollectionRepository.search), lấy từ stack
+ * lúc thực thi nên không phải sửa từng câu SQL. Truy vấn chậm hơn db.metrics.slow-query-ms được ghi log
+ * cùng câu SQL, giá trị tham số không bao giờ được ghi (chuỗi hằng trong SQL cũng bị che).
+ */
+public final class QueryMetrics {
+    // Upper bounds (microseconds) of the latency histogram buckets
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+        1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000, 5_000_000
+    };
+    private static final String[] BUCKET_LABELS = {
+        "<=1ms", "<=5ms", "<=10ms", "<=50ms", "<=100ms", "<=500ms", "<=1s", "<=5s", ">5s"
+    };
+    private static final int MAX_SLOW_QUERIES = 50;
+    private static final int MAX_SQL_LENGTH = 1000;
+    private static final String UNKNOWN = "unknown";
+    // Các lớp của chính tầng JDBC, bỏ qua khi tìm phương thức đã chạy truy vấn
+    private static final Set<String> INFRASTRUCTURE_CLASSES = Set.of(
+        QueryMetrics.class.getName(),
+        InstrumentedConnection.class.getName(),
+        JdbcUtils.class.getName(),
+        UnitOfWork.class.getName(),
+        "vn.bluemoon.repository.CursorQuery");
+    private static final StackWalker walker = StackWalker.getInstance();
+
+    private static final Map<String, QueryStats> queries = new ConcurrentHashMap<>();
+    private static final Deque<Map<String, Object>> slowQueries = new ConcurrentLinkedDeque<>();
+    private static final Timing connectionWait = new Timing();
+    private static final long slowQueryNanos =
+        TimeUnit.MILLISECONDS.toNanos(DbConfig.getInstance().getSlowQueryMs());
+
+    private QueryMetrics() {
+    }
+
+    /**
+     * Name of the query being run by the current thread (Class.method của repository gọi JDBC)
+     */
+    static String currentQueryName() {
+        Optional<String> name = walker.walk(frames -> frames
+            .filter(frame -> frame.getClassName().startsWith("vn.bluemoon.")
+                && !INFRASTRUCTURE_CLASSES.contains(frame.getClassName()))
+            .map(frame -> simpleName(frame.getClassName()) + "." + frame.getMethodName())
+            .findFirst());
+        return name.orElse(UNKNOWN);
+    }
+
+    /**
+     * Stats holder for a query name, created on first use
+     */
+    static QueryStats stats(String name) {
+        return queries.computeIfAbsent(name, key -> new QueryStats());
+    }
+
+    /**
+     * Record one statement execution and log it if slow
+     * @param parameterCount Number of bound parameters (chỉ ghi số lượng, không ghi giá trị)
+     */
+    static void recordExecution(String name, QueryStats stats, long elapsedNanos, boolean failed,
+                                String sql, int parameterCount) {
+        stats.timing.record(elapsedNanos);
+        if (failed) {
+            stats.errors.increment();
+        }
+        if (slowQueryNanos > 0 && elapsedNanos >= slowQueryNanos) {
+            stats.slow.increment();
+            logSlowQuery(name, elapsedNanos, sql, parameterCount);
+        }
+    }
+
+    /**
+     * Time spent waiting for a pooled connection (ghi bởi JdbcUtils.getConnection)
+     */
+    static void recordConnectionWait(long elapsedNanos) {
+        connectionWait.record(elapsedNanos);
+    }
+
+    /**
+     * Connection wait, per-query statistics (slowest total time first) and the latest slow queries
+     * @return Map of metric name to value
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", DbConfig.getInstance().getQueryMetricsEnabled());
+        stats.put("slowQueryMillis", TimeUnit.NANOSECONDS.toMillis(slowQueryNanos));
+        stats.put("connectionWait", connectionWait.snapshot());
+
+        List<Map.Entry<String, QueryStats>> entries = new ArrayList<>(queries.entrySet());
+        entries.sort(Comparator.comparingLong(
+            (Map.Entry<String, QueryStats> e) -> e.getValue().timing.totalNanos.sum()).reversed());
+        Map<String, Object> byName = new LinkedHashMap<>();
+        for (Map.Entry<String, QueryStats> entry : entries) {
+            QueryStats query = entry.getValue();
+            Map<String, Object> values = query.timing.snapshot();
+            values.put("rows", query.rows.sum());
+            values.put("errors", query.errors.sum());
+            values.put("slow", query.slow.sum());
+            byName.put(entry.getKey(), values);
+        }
+        stats.put("queries", byName);
+        stats.put("slowQueries", new ArrayList<>(slowQueries));
+        return stats;
+    }
+
+    /**
+     * Clear all recorded statistics
+     */
+    public static void reset() {
+        queries.clear();
+        slowQueries.clear();
+        connectionWait.reset();
+    }
+
+    private static void logSlowQuery(String name, long elapsedNanos, String sql, int parameterCount) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        String redacted = redact(sql);
+        AppLogger.warn("Slow query {} took {}ms ({} parameters redacted): {}", name, millis, parameterCount, redacted);
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("at", String.valueOf(LocalDateTime.now()));
+        entry.put("query", name);
+        entry.put("millis", millis);
+        entry.put("parameters", parameterCount);
+        entry.put("sql", redacted);
+        slowQueries.addFirst(entry);
+        while (slowQueries.size() > MAX_SLOW_QUERIES) {
+            slowQueries.pollLast();
+        }
+    }
+
+    /**
+     * SQL text for the slow-query log: gộp khoảng trắng, che chuỗi hằng, cắt bớt nếu quá dài
+     */
+    static String redact(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String text = sql.replaceAll("'(?:[^']|'')*'", "'?'").replaceAll("\\s+", " ").trim();
+        return text.length() > MAX_SQL_LENGTH ? text.substring(0, MAX_SQL_LENGTH) + "..." : text;
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Statistics of one query name
+     */
+    static final class QueryStats {
+        private final Timing timing = new Timing();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+
+        void addRows(long count) {
+            if (count > 0) {
+                rows.add(count);
+            }
+        }
+    }
+
+    /**
+     * Count, total, max and histogram of durations
+     */
+    private static final class Timing {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKET_LABELS.length];
+
+        private Timing() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long elapsedNanos) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulate(elapsedNanos);
+            long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+            int index = 0;
+            while (index < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[index]) {
+                index++;
+            }
+            buckets[index].increment();
+        }
+
+        private void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+
+        private Map<String, Object> snapshot() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long n = count.sum();
+            long total = totalNanos.sum();
+            stats.put("count", n);
+            stats.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(total));
+            stats.put("avgMicros", n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(total / n));
+            stats.put("maxMicros", TimeUnit.NANOSECONDS.toMicros(maxNanos.get()));
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < buckets.length; i++) {
+                histogram.put(BUCKET_LABELS[i], buckets[i].sum());
+            }
+            stats.put("histogram", histogram);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package vn.bluemoon.util;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Column positions of a ResultSet, resolved once from its metadata
+ *
+ * Row mapper đọc vị trí cột một lần cho cả kết quả rồi đọc từng dòng theo index:
+ * không tra tên cột lại ở mỗi dòng, và cột không có (database cũ) chỉ là index 0 thay vì một SQLException mỗi dòng.
+ * Các hàm get* trả về null khi index là 0 hoặc giá trị là NULL.
+ */
+public final class ResultColumns {
+    private final Map<String, Integer> indexes;
+
+    private ResultColumns(Map<String, Integer> indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * Resolve the columns of a result set
+     * Nếu nhiều cột trùng tên (vd. SELECT r.*, h.*), giữ cột đầu tiên giống ResultSet.getXxx(String)
+     */
+    public static ResultColumns of(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int count = metaData.getColumnCount();
+        Map<String, Integer> indexes = new HashMap<>(count * 2);
+        for (int i = 1; i <= count; i++) {
+            indexes.putIfAbsent(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        return new ResultColumns(indexes);
+    }
+
+    /**
+     * Position of a column (1-based), or 0 if the result has no such column
+     */
+    public int indexOf(String column) {
+        Integer index = indexes.get(column.toLowerCase(Locale.ROOT));
+        return index != null ? index : 0;
+    }
+
+    public static String getString(ResultSet rs, int index) throws SQLException {
+        return index > 0 ? rs.getString(index) : null;
+    }
+
+    public static Integer getInteger(ResultSet rs, int index) throws SQLException {
+        if (index == 0) {
+            return null;
+        }
+        int value = rs.getInt(index);
+        return rs.wasNull() ? null : value;
+    }
+
+    public static BigDecimal getBigDecimal(ResultSet rs, int index) throws SQLException {
+        return index > 0 ? rs.getBigDecimal(index) : null;
+    }
+
+    /**
+     * DATE column as LocalDate
+     */
+    public static LocalDate getLocalDate(ResultSet rs, int index) throws SQLException {
+        Date value = index > 0 ? rs.getDate(index) : null;
+        return value != null ? value.toLocalDate() : null;
+    }
+
+    /**
+     * TIMESTAMP column truncated to its date (created_at/updated_at của các entity)
+     */
+    public static LocalDate getTimestampDate(ResultSet rs, int index) throws SQLException {
+        Timestamp value = index > 0 ? rs.getTimestamp(index) : null;
+        return value != null ? value.toLocalDateTime().toLocalDate() : null;
+    }
+}
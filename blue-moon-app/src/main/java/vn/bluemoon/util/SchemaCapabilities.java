@@ -0,0 +1,113 @@
+package vn.bluemoon.util;
+
+import vn.bluemoon.config.DbConfig;
+import vn.bluemoon.exception.DbException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the tables/columns present in the connected database
+ * Được DatabaseInitializer nạp một lần khi khởi động và nạp lại sau mỗi lần migrate,
+ * repository hỏi trong bộ nhớ thay vì query information_schema mỗi lần insert/update
+ */
+public class SchemaCapabilities {
+    // Sau khi đọc schema thất bại, chờ chừng này trước khi thử lại
+    private static final long RETRY_BACKOFF_MILLIS = 10_000;
+
+    private static final DbConfig dbConfig = DbConfig.getInstance();
+    private static volatile Map<String, Set<String>> columnsByTable;
+    private static volatile long retryAtMillis;
+
+    /**
+     * Check if a column exists in a table
+     * @param tableName Table name (không phân biệt hoa thường)
+     * @param columnName Column name (không phân biệt hoa thường)
+     * @return true if the column exists; false if it does not or the schema cannot be read
+     */
+    public static boolean hasColumn(String tableName, String columnName) {
+        Set<String> columns = columns().get(normalize(tableName));
+        return columns != null && columns.contains(normalize(columnName));
+    }
+
+    /**
+     * Check if a table exists
+     */
+    public static boolean hasTable(String tableName) {
+        return columns().containsKey(normalize(tableName));
+    }
+
+    /**
+     * Reload the registry from information_schema (gọi sau khi chạy DDL)
+     * @throws DbException if the schema cannot be read
+     */
+    public static synchronized void refresh() throws DbException {
+        String schemaFunction = dbConfig.getDriver().contains("postgresql") ? "current_schema()" : "DATABASE()";
+        String sql = "SELECT table_name, column_name FROM information_schema.columns " +
+                     "WHERE table_schema = " + schemaFunction;
+
+        Map<String, Set<String>> loaded = new HashMap<>();
+        try (Connection conn = JdbcUtils.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                loaded.computeIfAbsent(normalize(rs.getString(1)), k -> new HashSet<>())
+                      .add(normalize(rs.getString(2)));
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error loading schema capabilities: " + e.getMessage(), e);
+        }
+
+        Map<String, Set<String>> snapshot = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : loaded.entrySet()) {
+            snapshot.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+        columnsByTable = Collections.unmodifiableMap(snapshot);
+        AppLogger.info("Schema capabilities loaded ({} tables)", snapshot.size());
+    }
+
+    /**
+     * Current registry, loaded lazily nếu DatabaseInitializer chưa chạy
+     * Nếu không đọc được schema thì coi như không có cột nào (như cách kiểm tra cũ); lỗi được nhớ
+     * trong RETRY_BACKOFF_MILLIS để mỗi lần hasColumn không quét lại information_schema khi database lỗi
+     */
+    private static Map<String, Set<String>> columns() {
+        Map<String, Set<String>> current = columnsByTable;
+        if (current != null) {
+            return current;
+        }
+        if (System.currentTimeMillis() < retryAtMillis) {
+            return Collections.emptyMap();
+        }
+        synchronized (SchemaCapabilities.class) {
+            // Thread khác có thể vừa nạp xong hoặc vừa thất bại trong lúc chờ khóa
+            if (columnsByTable != null) {
+                return columnsByTable;
+            }
+            if (System.currentTimeMillis() < retryAtMillis) {
+                return Collections.emptyMap();
+            }
+            try {
+                refresh();
+                return columnsByTable;
+            } catch (DbException e) {
+                retryAtMillis = System.currentTimeMillis() + RETRY_BACKOFF_MILLIS;
+                AppLogger.warn("Cannot read database schema, retrying in {}s: {}",
+                    RETRY_BACKOFF_MILLIS / 1000, e.getMessage());
+                return Collections.emptyMap();
+            }
+        }
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+}
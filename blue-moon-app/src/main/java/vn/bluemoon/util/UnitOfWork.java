@@ -0,0 +1,190 @@
+package vn.bluemoon.util;
+
+import vn.bluemoon.exception.DbException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-bound unit of work: một thao tác service dùng chung một connection và commit một lần
+ *
+ * Usage:
+ * <pre>
+ * try (UnitOfWork uow = UnitOfWork.begin()) {
+ *     repositoryA.delete(...);
+ *     repositoryB.delete(...);
+ *     uow.commit();
+ * }
+ * </pre>
+ * While a unit of work is open, {@link JdbcUtils#getConnection()} returns the bound connection,
+ * so repositories join the transaction without any change. Closing without commit rolls back.
+ * Nested begin() calls join the outer unit of work; only the outermost one commits.
+ */
+public class UnitOfWork implements AutoCloseable {
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+    private final Transaction transaction;
+    private final boolean owner;
+    private boolean completed;
+
+    private UnitOfWork(Transaction transaction, boolean owner) {
+        this.transaction = transaction;
+        this.owner = owner;
+    }
+
+    /**
+     * Begin a unit of work, or join the one already bound to this thread
+     * @return UnitOfWork handle, must be closed
+     * @throws DbException if connection fails
+     */
+    public static UnitOfWork begin() throws DbException {
+        Transaction current = CURRENT.get();
+        if (current != null) {
+            return new UnitOfWork(current, false);
+        }
+
+        Connection connection = JdbcUtils.getConnection();
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            JdbcUtils.closeConnection(connection);
+            throw new DbException("Error starting transaction: " + e.getMessage(), e);
+        }
+        Transaction transaction = new Transaction(connection);
+        CURRENT.set(transaction);
+        return new UnitOfWork(transaction, true);
+    }
+
+    /**
+     * Check if a unit of work is bound to the current thread
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Run an action once the current unit of work commits, or right away if none is active
+     * or it has already committed (gọi sau commit() nhưng trước close() vẫn không bị mất)
+     * (dùng để cập nhật cache/index trong bộ nhớ chỉ khi dữ liệu đã thật sự được ghi)
+     * @param action Action to run; bị bỏ qua nếu transaction rollback
+     */
+    public static void afterCommit(Runnable action) {
+        Transaction current = CURRENT.get();
+        if (current == null || current.committed) {
+            action.run();
+        } else {
+            current.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Connection of the current unit of work, wrapped so that close/commit/rollback
+     * from repositories do not end the transaction
+     * @return Connection, or null if no unit of work is active
+     */
+    static Connection currentConnection() {
+        Transaction current = CURRENT.get();
+        return current != null ? current.shared : null;
+    }
+
+    /**
+     * Commit the unit of work (chỉ unit of work ngoài cùng thực sự commit)
+     * @throws DbException if commit fails or an inner unit of work was not committed
+     */
+    public void commit() throws DbException {
+        if (!owner) {
+            completed = true;
+            return;
+        }
+        try {
+            if (transaction.rollbackOnly) {
+                transaction.connection.rollback();
+                throw new DbException("Transaction rolled back because an inner operation failed");
+            }
+            transaction.connection.commit();
+            // Chỉ đánh dấu sau khi commit thành công: commit lỗi thì close() vẫn rollback
+            completed = true;
+            transaction.committed = true;
+        } catch (SQLException e) {
+            throw new DbException("Error committing transaction: " + e.getMessage(), e);
+        }
+        for (Runnable action : transaction.afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                AppLogger.error("Error running after-commit action", e);
+            }
+        }
+    }
+
+    /**
+     * Roll back if not committed and release the connection
+     */
+    @Override
+    public void close() throws DbException {
+        if (!owner) {
+            if (!completed) {
+                transaction.rollbackOnly = true;
+            }
+            return;
+        }
+
+        CURRENT.remove();
+        Connection connection = transaction.connection;
+        try {
+            if (!completed) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new DbException("Error rolling back transaction: " + e.getMessage(), e);
+        } finally {
+            JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Connection state shared by the outer and nested handles
+     */
+    private static class Transaction {
+        private final Connection connection;
+        private final Connection shared;
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private boolean rollbackOnly;
+        private boolean committed;
+
+        private Transaction(Connection connection) {
+            this.connection = connection;
+            this.shared = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                        case "commit":
+                        case "setAutoCommit":
+                            // Transaction boundaries belong to the unit of work
+                            return null;
+                        case "rollback":
+                            if (args == null) {
+                                // Repository muốn hủy: không rollback giữa chừng, nhưng unit of work
+                                // không được commit phần đã ghi
+                                rollbackOnly = true;
+                                return null;
+                            }
+                            // rollback(Savepoint) vẫn được phép
+                        default:
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+        }
+    }
+}
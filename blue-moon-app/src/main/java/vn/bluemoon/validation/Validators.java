@@ -36,6 +36,19 @@ public class Validators {
         }
     }
 
+    /**
+     * Validate maximum length of an optional field
+     * @param value Field value (null is allowed)
+     * @param maxLength Maximum number of characters (độ dài cột trong database)
+     * @param fieldName Field name for error message
+     * @throws ValidationException if value is too long
+     */
+    public static void validateMaxLength(String value, int maxLength, String fieldName) throws ValidationException {
+        if (value != null && value.trim().length() > maxLength) {
+            throw new ValidationException(fieldName + " không được dài quá " + maxLength + " ký tự");
+        }
+    }
+
     /**
      * Validate password strength
      * @param password Password to validate
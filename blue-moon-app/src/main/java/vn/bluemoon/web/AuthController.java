@@ -10,11 +10,11 @@ import vn.bluemoon.exception.AuthException;
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.dto.LoginRequest;
 import vn.bluemoon.model.entity.User;
-import vn.bluemoon.security.SessionManager;
 import vn.bluemoon.service.AuthService;
 import vn.bluemoon.validation.ValidationException;
 
-import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 /**
  * Web controller for authentication (login, register, logout)
@@ -23,7 +23,6 @@ import javax.servlet.http.HttpSession;
 public class AuthController {
     
     private final AuthService authService = new AuthService();
-    private final SessionManager sessionManager = SessionManager.getInstance();
     
     @GetMapping("/")
     public String index() {
@@ -39,7 +38,8 @@ public class AuthController {
     public String handleLogin(
             @RequestParam String username,
             @RequestParam String password,
-            HttpSession session,
+            HttpServletRequest httpRequest,
+            HttpServletResponse response,
             RedirectAttributes redirectAttributes) {
         
         try {
@@ -52,12 +52,8 @@ public class AuthController {
                 return "redirect:/login";
             }
             
-            // Store user in Spring session
-            session.setAttribute("user", currentUser);
-            session.setAttribute("sessionToken", sessionToken);
-            
-            // Also store in SessionManager for compatibility
-            sessionManager.createSession(currentUser);
+            // Token đi theo cookie, mỗi request SessionAuthFilter tra lại user qua SessionManager
+            SessionAuthFilter.writeToken(httpRequest, response, sessionToken);
             
             // Check if user needs to change password
             if (Boolean.TRUE.equals(currentUser.getMustChangePassword())) {
@@ -126,13 +122,12 @@ public class AuthController {
     }
     
     @GetMapping("/logout")
-    public String logout(HttpSession session) {
-        String sessionToken = (String) session.getAttribute("sessionToken");
+    public String logout(HttpServletRequest request, HttpServletResponse response) {
+        String sessionToken = SessionAuthFilter.readToken(request);
         if (sessionToken != null) {
             authService.logout(sessionToken);
-            sessionManager.invalidateSession(sessionToken);
         }
-        session.invalidate();
+        SessionAuthFilter.clearToken(request, response);
         return "redirect:/login";
     }
     
@@ -6,16 +6,25 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import vn.bluemoon.config.AppConfig;
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.BulkFeeResult;
+import vn.bluemoon.model.dto.FeePage;
+import vn.bluemoon.model.dto.FeeSearchRequest;
+import vn.bluemoon.model.dto.FeeSummary;
 import vn.bluemoon.model.entity.FeeCollection;
 import vn.bluemoon.model.entity.Resident;
 import vn.bluemoon.model.entity.User;
 import vn.bluemoon.repository.ResidentRepository;
+import vn.bluemoon.security.CurrentUser;
 import vn.bluemoon.service.FeeCollectionService;
 import vn.bluemoon.service.FeeTypeService;
+import vn.bluemoon.util.AppLogger;
+import vn.bluemoon.util.CsvWriter;
 import vn.bluemoon.validation.ValidationException;
 
-import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -32,16 +41,18 @@ public class FeeController {
     
     @GetMapping("/fees")
     public String feesPage(
-            HttpSession session,
             Model model,
             @RequestParam(required = false) String apartmentCode,
             @RequestParam(required = false) String householdCode,
             @RequestParam(required = false) String ownerName,
             @RequestParam(required = false) Integer month,
             @RequestParam(required = false) Integer year,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer size) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -73,78 +84,23 @@ public class FeeController {
         // Lấy danh sách hộ dân (chủ hộ) để chọn thu phí theo hộ
         // findAll() đã filter relationship = 'Chủ hộ' rồi, không cần filter lại
         try {
-            System.out.println("DEBUG: FeeController - Loading households for dropdown...");
             List<Resident> households = residentRepository.findAll();
-            System.out.println("DEBUG: FeeController - Loaded " + households.size() + " households");
-            for (int i = 0; i < households.size(); i++) {
-                Resident h = households.get(i);
-                System.out.println("DEBUG: Household #" + (i+1) + ": " + h.getFullName() + 
-                                 " (ID: " + h.getId() + ", Household ID: " + h.getHouseholdId() + ")");
-            }
+            AppLogger.debug("Loaded {} households for the fee form", households.size());
             model.addAttribute("households", households);
         } catch (DbException e) {
-            System.err.println("DEBUG: Error loading households: " + e.getMessage());
-            e.printStackTrace();
+            AppLogger.warn("Error loading households for the fee form: {}", e.getMessage());
             // Log error but continue
             model.addAttribute("households", new java.util.ArrayList<>());
         }
         
         try {
-            List<FeeCollection> fees;
-            boolean hasSearchCriteria = (apartmentCode != null && !apartmentCode.trim().isEmpty()) ||
-                                       (householdCode != null && !householdCode.trim().isEmpty()) ||
-                                       (ownerName != null && !ownerName.trim().isEmpty()) ||
-                                       month != null ||
-                                       year != null ||
-                                       (status != null && !status.trim().isEmpty() && !status.equals("all"));
-            
-            if (!hasSearchCriteria) {
-                fees = feeService.getAllFeeCollections();
-            } else {
-                // Convert status display to database value
-                String statusValue = null;
-                if (status != null && !status.trim().isEmpty() && !status.equals("all")) {
-                    if (status.equals("paid")) {
-                        statusValue = "paid";
-                    } else if (status.equals("unpaid")) {
-                        statusValue = "unpaid";
-                    } else {
-                        statusValue = status;
-                    }
-                }
-                
-                // Debug log
-                System.out.println("DEBUG: FeeController.feesPage - Search parameters:");
-                System.out.println("  apartmentCode: " + apartmentCode);
-                System.out.println("  householdCode: " + householdCode);
-                System.out.println("  ownerName: " + ownerName);
-                System.out.println("  month: " + month);
-                System.out.println("  year: " + year);
-                System.out.println("  status (raw): " + status);
-                System.out.println("  statusValue (converted): " + statusValue);
-                
-                fees = feeService.searchFeeCollections(
-                    apartmentCode != null && !apartmentCode.trim().isEmpty() ? apartmentCode.trim() : null,
-                    householdCode != null && !householdCode.trim().isEmpty() ? householdCode.trim() : null,
-                    ownerName != null && !ownerName.trim().isEmpty() ? ownerName.trim() : null,
-                    month,
-                    year,
-                    statusValue
-                );
-                
-                System.out.println("DEBUG: FeeController.feesPage - Found " + fees.size() + " fee collections");
-            }
+            // Convert status display to database value ("all" = không lọc)
+            FeeSearchRequest filter = new FeeSearchRequest(apartmentCode, householdCode, ownerName, month, year, status);
             
-            // Calculate statistics
-            long total = fees.size();
-            long paid = fees.stream().filter(f -> "paid".equals(f.getStatus())).count();
-            long unpaid = total - paid;
-            BigDecimal totalAmount = fees.stream()
-                .map(f -> f.getAmount() != null ? f.getAmount() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-            BigDecimal totalPaidAmount = fees.stream()
-                .map(f -> f.getPaidAmount() != null ? f.getPaidAmount() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            // Chỉ load một trang, tổng số liệu lấy bằng truy vấn aggregate riêng
+            FeePage page = feeService.getFeePage(filter, after, before, size);
+            FeeSummary summary = feeService.summarizeFeeCollections(filter);
+            List<FeeCollection> fees = page.getItems();
             
             // households đã được load ở trên (dòng 77-84), không cần load lại
             // Không filter theo user_id vì có thể có households không có user_id nhưng vẫn cần thu phí
@@ -158,11 +114,12 @@ public class FeeController {
             model.addAttribute("searchMonth", month);
             model.addAttribute("searchYear", year); // Không set mặc định, để null nếu không chọn
             model.addAttribute("searchStatus", status != null ? status : "all");
-            model.addAttribute("totalCount", total);
-            model.addAttribute("paidCount", paid);
-            model.addAttribute("unpaidCount", unpaid);
-            model.addAttribute("totalAmount", totalAmount);
-            model.addAttribute("totalPaidAmount", totalPaidAmount);
+            model.addAttribute("totalCount", summary.getTotalCount());
+            model.addAttribute("paidCount", summary.getPaidCount());
+            model.addAttribute("unpaidCount", summary.getUnpaidCount());
+            model.addAttribute("totalAmount", summary.getTotalAmount());
+            model.addAttribute("totalPaidAmount", summary.getPaidAmount());
+            model.addAttribute("page", page);
             
             // Years for dropdown
             int currentYear = LocalDate.now().getYear();
@@ -180,6 +137,71 @@ public class FeeController {
         return "fees";
     }
     
+    /**
+     * Export fee collections matching the filters as CSV
+     * Ghi thẳng ra response theo từng dòng (cursor), không nạp cả danh sách vào bộ nhớ
+     */
+    @GetMapping("/fees/export")
+    public String exportFees(
+            HttpServletResponse response,
+            RedirectAttributes redirectAttributes,
+            @RequestParam(required = false) String apartmentCode,
+            @RequestParam(required = false) String householdCode,
+            @RequestParam(required = false) String ownerName,
+            @RequestParam(required = false) Integer month,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) String status) {
+        
+        User user = CurrentUser.get();
+        if (user == null) {
+            return "redirect:/login";
+        }
+        
+        // Admin, Tổ trưởng và Kế toán được xuất dữ liệu thu phí
+        try {
+            if (!vn.bluemoon.security.Authorization.canManageFeeTypes(user)
+                    && !vn.bluemoon.security.Authorization.canCollectFees(user)) {
+                redirectAttributes.addFlashAttribute("error", "Bạn không có quyền xuất dữ liệu thu phí");
+                return "redirect:/fees";
+            }
+        } catch (DbException e) {
+            redirectAttributes.addFlashAttribute("error", "Lỗi kiểm tra quyền: " + e.getMessage());
+            return "redirect:/fees";
+        }
+        
+        FeeSearchRequest filter = new FeeSearchRequest(apartmentCode, householdCode, ownerName, month, year, status);
+        response.setContentType("text/csv; charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"fee-collections-" + LocalDate.now() + ".csv\"");
+        try {
+            feeService.exportFeeCollectionsCsv(filter, response.getWriter());
+        } catch (DbException e) {
+            AppLogger.error("Error exporting fee collections", e);
+            failExport(response);
+        } catch (IOException e) {
+            AppLogger.warn("Fee export aborted: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Report a failed export so the client never receives a truncated CSV as if it were complete
+     * Chưa gửi gì thì trả mã lỗi 500; đã gửi một phần thì ghi thêm dòng báo lỗi ở cuối file
+     */
+    private void failExport(HttpServletResponse response) {
+        try {
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Lỗi xuất dữ liệu thu phí");
+            } else {
+                CsvWriter csv = new CsvWriter(response.getWriter());
+                csv.writeRow("LỖI: xuất dữ liệu bị gián đoạn, file không đầy đủ");
+                csv.flush();
+            }
+        } catch (IOException e) {
+            AppLogger.warn("Fee export aborted: " + e.getMessage());
+        }
+    }
+    
     @PostMapping("/fees/add")
     public String addFee(
             @RequestParam(required = false) Integer householdId,
@@ -187,10 +209,9 @@ public class FeeController {
             @RequestParam Integer month,
             @RequestParam Integer year,
             @RequestParam String amount,
-            HttpSession session,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -212,19 +233,18 @@ public class FeeController {
             if ("on".equals(selectAll)) {
                 // Create for all households
                 // Không filter theo user_id vì có thể có households không có user_id nhưng vẫn cần thu phí
-                List<Resident> households = residentRepository.findAll();
-                
-                int successCount = 0;
-                int failCount = 0;
-                
-                for (Resident resident : households) {
+                // Duyệt hộ bằng cursor thay vì nạp cả danh sách
+                int[] counts = new int[2];
+                residentRepository.forEach(AppConfig.getInstance().getStreamFetchSize(), resident -> {
                     try {
                         feeService.createFeeCollection(resident.getHouseholdId(), month, year, amountValue);
-                        successCount++;
+                        counts[0]++;
                     } catch (Exception e) {
-                        failCount++;
+                        counts[1]++;
                     }
-                }
+                });
+                int successCount = counts[0];
+                int failCount = counts[1];
                 
                 if (successCount > 0) {
                     redirectAttributes.addFlashAttribute("success", 
@@ -260,10 +280,9 @@ public class FeeController {
             @RequestParam Integer feeId,
             @RequestParam String paymentDate,
             @RequestParam String paymentMethod,
-            HttpSession session,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -295,14 +314,13 @@ public class FeeController {
     
     @PostMapping("/fees/create-revenue")
     public String createRevenue(
-            HttpSession session,
             @RequestParam String revenueCode,
             @RequestParam String revenueName,
             @RequestParam String revenueType,
             @RequestParam BigDecimal amount,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -324,7 +342,6 @@ public class FeeController {
     
     @PostMapping("/fees/collect-from-type")
     public String collectFeeFromType(
-            HttpSession session,
             @RequestParam Integer feeTypeId,
             @RequestParam(required = false) Integer residentId,
             @RequestParam(required = false) Integer householdId,
@@ -333,7 +350,7 @@ public class FeeController {
             @RequestParam(required = false) String paymentDeadline,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -358,20 +375,13 @@ public class FeeController {
             FeeTypeService feeTypeService = new FeeTypeService();
             int successCount = 0;
             
-            // Debug logs
-            System.out.println("DEBUG: collectFeeFromType - feeTypeId=" + feeTypeId);
-            System.out.println("DEBUG: collectFeeFromType - residentId=" + residentId);
-            System.out.println("DEBUG: collectFeeFromType - householdId=" + householdId);
-            System.out.println("DEBUG: collectFeeFromType - month=" + month + ", year=" + year);
-            
             // Kiểm tra xem có chọn hộ dân cụ thể không
             // residentId và householdId phải có giá trị hợp lệ (> 0) để thu phí cho một hộ
             boolean hasSpecificHousehold = (residentId != null && residentId > 0) || (householdId != null && householdId > 0);
-            
-            System.out.println("DEBUG: collectFeeFromType - hasSpecificHousehold=" + hasSpecificHousehold);
+            AppLogger.debug("collectFeeFromType feeTypeId={}, residentId={}, householdId={}, month={}, year={}, single={}",
+                feeTypeId, residentId, householdId, month, year, hasSpecificHousehold);
             
             if (hasSpecificHousehold) {
-                System.out.println("DEBUG: collectFeeFromType - Thu phí cho một hộ dân cụ thể");
                 // Thu phí cho một hộ dân cụ thể
                 vn.bluemoon.model.entity.FeeType feeType = feeTypeService.getFeeTypeById(feeTypeId);
                 if (feeType == null) {
@@ -387,12 +397,12 @@ public class FeeController {
                         vn.bluemoon.model.entity.Resident resident = residentRepo.findById(residentId);
                         if (resident != null) {
                             finalHouseholdId = resident.getHouseholdId();
-                            System.out.println("DEBUG: Creating fee for residentId=" + residentId + ", residentName=" + resident.getFullName() + ", householdId=" + finalHouseholdId);
+                            AppLogger.debug("Creating fee for residentId={}, householdId={}", residentId, finalHouseholdId);
                         } else {
                             // Nếu không tìm thấy resident, có thể residentId thực ra là householdId
                             // (khi không có resident record, template sẽ dùng householdId)
                             finalHouseholdId = residentId;
-                            System.out.println("DEBUG: Resident not found, treating residentId=" + residentId + " as householdId");
+                            AppLogger.debug("Resident not found, treating residentId={} as householdId", residentId);
                         }
                     } catch (vn.bluemoon.exception.DbException e) {
                         redirectAttributes.addFlashAttribute("error", "Lỗi khi lấy thông tin hộ dân: " + e.getMessage());
@@ -424,14 +434,12 @@ public class FeeController {
                     }
                 }
                 
-                System.out.println("DEBUG: collectFeeFromType - Creating fee for householdId=" + finalHouseholdId + 
-                                 ", amount=" + feeType.getDefaultAmount() + ", feeTypeId=" + feeTypeId);
+                AppLogger.debug("Creating fee for householdId={}, feeTypeId={}", finalHouseholdId, feeTypeId);
                 feeCollectionService.createFeeCollection(finalHouseholdId, currentMonth, currentYear, feeType.getDefaultAmount(), feeTypeId, deadline);
                 successCount = 1;
                 redirectAttributes.addFlashAttribute("success", "Đã tạo thu phí thành công");
             } else {
                 // Thu phí cho tất cả hộ dân
-                System.out.println("DEBUG: collectFeeFromType - Thu phí cho TẤT CẢ hộ dân");
                 // Parse payment deadline nếu có
                 java.time.LocalDate deadline = null;
                 if (paymentDeadline != null && !paymentDeadline.isEmpty()) {
@@ -441,9 +449,11 @@ public class FeeController {
                         // Ignore parse error, deadline sẽ là null
                     }
                 }
-                successCount = feeTypeService.collectFeeForAllHouseholds(feeTypeId, currentMonth, currentYear, deadline);
+                BulkFeeResult result = feeTypeService.collectFeeForAllHouseholds(feeTypeId, currentMonth, currentYear, deadline);
+                successCount = result.getCreatedCount();
                 redirectAttributes.addFlashAttribute("success", 
-                    String.format("Đã tạo thu phí cho %d hộ dân thành công", successCount));
+                    String.format("Đã tạo thu phí cho %d hộ dân thành công (bỏ qua %d hộ đã có khoản thu này)",
+                        result.getCreatedCount(), result.getSkippedCount()));
             }
             
             // Redirect với filter tháng/năm để xem kết quả
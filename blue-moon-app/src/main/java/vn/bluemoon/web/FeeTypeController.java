@@ -7,12 +7,14 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.BulkFeeResult;
 import vn.bluemoon.model.entity.User;
 import vn.bluemoon.security.Authorization;
+import vn.bluemoon.security.CurrentUser;
 import vn.bluemoon.service.FeeTypeService;
+import vn.bluemoon.util.AppLogger;
 import vn.bluemoon.validation.ValidationException;
 
-import javax.servlet.http.HttpSession;
 import java.math.BigDecimal;
 
 /**
@@ -24,8 +26,8 @@ public class FeeTypeController {
     private final FeeTypeService feeTypeService = new FeeTypeService();
     
     @GetMapping("/fee-types")
-    public String feeTypesPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+    public String feeTypesPage(Model model) {
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -53,14 +55,13 @@ public class FeeTypeController {
     
     @PostMapping("/fee-types/add")
     public String addFeeType(
-            HttpSession session,
             @RequestParam String name,
             @RequestParam(required = false) String description,
             @RequestParam(required = false) String defaultAmount,
             @RequestParam(required = false) Boolean isActive,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -95,7 +96,6 @@ public class FeeTypeController {
     
     @PostMapping("/fee-types/update")
     public String updateFeeType(
-            HttpSession session,
             @RequestParam Integer id,
             @RequestParam String name,
             @RequestParam(required = false) String description,
@@ -103,7 +103,7 @@ public class FeeTypeController {
             @RequestParam(required = false) Boolean isActive,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -138,64 +138,49 @@ public class FeeTypeController {
     
     @PostMapping("/fee-types/delete")
     public String deleteFeeType(
-            HttpSession session,
             @RequestParam Integer id,
             RedirectAttributes redirectAttributes) {
         
-        System.out.println("=== DEBUG: deleteFeeType endpoint called ===");
-        System.out.println("DEBUG: Received id=" + id);
-        
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
-            System.out.println("DEBUG: User is null, redirecting to login");
             return "redirect:/login";
         }
-        System.out.println("DEBUG: User=" + user.getUsername() + " (ID: " + user.getId() + ")");
         
         // Admin và Tổ trưởng có quyền
         try {
-            boolean canManage = Authorization.canManageFeeTypes(user);
-            System.out.println("DEBUG: canManageFeeTypes=" + canManage);
-            if (!canManage) {
-                System.out.println("DEBUG: User does not have permission");
+            if (!Authorization.canManageFeeTypes(user)) {
+                AppLogger.debug("User {} is not allowed to delete fee type {}", user.getId(), id);
                 redirectAttributes.addFlashAttribute("error", "Bạn không có quyền thực hiện chức năng này");
                 return "redirect:/main";
             }
         } catch (DbException e) {
-            System.out.println("DEBUG: Error checking permission: " + e.getMessage());
-            e.printStackTrace();
+            AppLogger.error("Error checking fee type permission for user " + user.getId(), e);
             redirectAttributes.addFlashAttribute("error", "Lỗi kiểm tra quyền: " + e.getMessage());
             return "redirect:/main";
         }
         
         try {
-            System.out.println("DEBUG: Calling feeTypeService.deleteFeeType(" + id + ")");
             feeTypeService.deleteFeeType(id);
-            System.out.println("DEBUG: Fee type deleted successfully");
             redirectAttributes.addFlashAttribute("success", "Đã xóa khoản thu thành công");
         } catch (ValidationException e) {
-            System.out.println("DEBUG: ValidationException: " + e.getMessage());
-            e.printStackTrace();
+            AppLogger.debug("Fee type {} not deleted: {}", id, e.getMessage());
             redirectAttributes.addFlashAttribute("error", e.getMessage());
         } catch (DbException e) {
-            System.out.println("DEBUG: DbException: " + e.getMessage());
-            e.printStackTrace();
+            AppLogger.error("Error deleting fee type " + id, e);
             redirectAttributes.addFlashAttribute("error", e.getMessage());
         }
         
-        System.out.println("DEBUG: Redirecting to /fee-types");
         return "redirect:/fee-types";
     }
     
     @PostMapping("/fee-types/collect")
     public String collectFeeForAllHouseholds(
-            HttpSession session,
             @RequestParam Integer feeTypeId,
             @RequestParam(required = false) Integer month,
             @RequestParam(required = false) Integer year,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -217,9 +202,10 @@ public class FeeTypeController {
         int currentYear = year != null ? year : now.getYear();
         
         try {
-            int successCount = feeTypeService.collectFeeForAllHouseholds(feeTypeId, currentMonth, currentYear);
+            BulkFeeResult result = feeTypeService.collectFeeForAllHouseholds(feeTypeId, currentMonth, currentYear);
             redirectAttributes.addFlashAttribute("success", 
-                String.format("Đã tạo thu phí cho %d hộ dân thành công. Vui lòng kiểm tra trong Quản lý thu phí.", successCount));
+                String.format("Đã tạo thu phí cho %d hộ dân thành công (bỏ qua %d hộ đã có khoản thu này). Vui lòng kiểm tra trong Quản lý thu phí.",
+                    result.getCreatedCount(), result.getSkippedCount()));
             // Redirect đến trang quản lý thu phí để xem kết quả
             return "redirect:/fees?month=" + currentMonth + "&year=" + currentYear;
         } catch (ValidationException | DbException e) {
@@ -5,9 +5,9 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.CurrentUser;
 import vn.bluemoon.service.FunctionService;
 
-import javax.servlet.http.HttpSession;
 import java.util.List;
 
 /**
@@ -19,8 +19,8 @@ public class FunctionController {
     private final FunctionService functionService = new FunctionService();
     
     @GetMapping("/functions")
-    public String functionsPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+    public String functionsPage(Model model) {
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -5,9 +5,9 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.CurrentUser;
 import vn.bluemoon.service.StatisticsService;
 
-import javax.servlet.http.HttpSession;
 import java.util.Map;
 import java.util.Set;
 
@@ -18,8 +18,8 @@ import java.util.Set;
 public class MainController {
     
     @GetMapping("/main")
-    public String mainPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+    public String mainPage(Model model) {
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -0,0 +1,148 @@
+package vn.bluemoon.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.CurrentUser;
+import vn.bluemoon.security.LoginExecutor;
+import vn.bluemoon.security.SessionManager;
+import vn.bluemoon.service.FeeCollectionService;
+import vn.bluemoon.service.FeeReminderScheduler;
+import vn.bluemoon.stats.DashboardStatistics;
+import vn.bluemoon.util.AppLogger;
+import vn.bluemoon.util.EmailDispatcher;
+import vn.bluemoon.util.JdbcUtils;
+import vn.bluemoon.util.QueryMetrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Controller exposing runtime metrics as JSON (chỉ Quản trị viên)
+ */
+@Controller
+public class MetricsController {
+
+    @GetMapping("/metrics/pool")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> poolMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(JdbcUtils.getPoolStats());
+    }
+
+    @GetMapping("/metrics/sessions")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> sessionMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(SessionManager.getInstance().getStats());
+    }
+
+    @GetMapping("/metrics/login")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> loginMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(LoginExecutor.getStats());
+    }
+
+    @GetMapping("/metrics/email")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> emailMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(EmailDispatcher.getStats());
+    }
+
+    @GetMapping("/metrics/reminders")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> reminderMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(FeeReminderScheduler.getStats());
+    }
+
+    @GetMapping("/metrics/dashboard")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> dashboardMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(DashboardStatistics.getStats());
+    }
+
+    @GetMapping("/metrics/logging")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> loggingMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(AppLogger.getStats());
+    }
+
+    /**
+     * Per-query latency histograms, row counts, connection wait and the latest slow queries
+     */
+    @GetMapping("/metrics/queries")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> queryMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(QueryMetrics.getStats());
+    }
+
+    @PostMapping("/metrics/queries/reset")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> resetQueryMetrics() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        QueryMetrics.reset();
+        return ResponseEntity.ok(QueryMetrics.getStats());
+    }
+
+    /**
+     * Rebuild the monthly revenue rollup on demand (sau khi sửa dữ liệu trực tiếp trong database)
+     */
+    @PostMapping("/metrics/fee-rollup/rebuild")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rebuildFeeRollup() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        long startedAt = System.currentTimeMillis();
+        try {
+            result.put("rows", new FeeCollectionService().rebuildRevenueRollup());
+            result.put("durationMillis", System.currentTimeMillis() - startedAt);
+            return ResponseEntity.ok(result);
+        } catch (DbException e) {
+            result.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
+        }
+    }
+
+    private boolean isAdmin() {
+        User user = CurrentUser.get();
+        if (user == null) {
+            return false;
+        }
+        try {
+            return vn.bluemoon.security.Authorization.isAdmin(user);
+        } catch (DbException e) {
+            return false;
+        }
+    }
+}
@@ -4,8 +4,8 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.CurrentUser;
 
-import javax.servlet.http.HttpSession;
 
 /**
  * Web controller for payment
@@ -14,8 +14,8 @@ import javax.servlet.http.HttpSession;
 public class PaymentController {
     
     @GetMapping("/payment")
-    public String paymentPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+    public String paymentPage(Model model) {
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
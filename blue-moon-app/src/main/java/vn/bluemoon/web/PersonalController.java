@@ -9,10 +9,10 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.entity.Resident;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.CurrentUser;
 import vn.bluemoon.service.PersonalInfoService;
 import vn.bluemoon.validation.ValidationException;
 
-import javax.servlet.http.HttpSession;
 import java.time.LocalDate;
 
 /**
@@ -24,8 +24,8 @@ public class PersonalController {
     private final PersonalInfoService personalInfoService = new PersonalInfoService();
     
     @GetMapping("/personal-info")
-    public String personalInfoPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+    public String personalInfoPage(Model model) {
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -48,7 +48,6 @@ public class PersonalController {
     
     @PostMapping("/personal-info/register")
     public String registerPersonalInfo(
-            HttpSession session,
             @RequestParam String fullName,
             @RequestParam String idCard,
             @RequestParam(required = false) String dateOfBirth,
@@ -60,7 +59,7 @@ public class PersonalController {
             @RequestParam(required = false) String householdCode,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -0,0 +1,39 @@
+package vn.bluemoon.web;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import vn.bluemoon.util.AppLogger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Gives every request a correlation id for its log lines (MDC "requestId", header X-Request-Id)
+ * Dùng id do client/proxy gửi lên nếu hợp lệ, nếu không thì tự sinh
+ */
+@Component
+public class RequestIdFilter extends OncePerRequestFilter {
+    private static final String HEADER = "X-Request-Id";
+    private static final int MAX_LENGTH = 64;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(HEADER);
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_LENGTH
+                || !requestId.matches("[A-Za-z0-9._-]+")) {
+            requestId = UUID.randomUUID().toString().substring(0, 8);
+        }
+        response.setHeader(HEADER, requestId);
+        AppLogger.setRequestId(requestId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            AppLogger.clearRequestId();
+        }
+    }
+}
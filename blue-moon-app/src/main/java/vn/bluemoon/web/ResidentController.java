@@ -5,13 +5,21 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.ResidentImportResult;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.CurrentUser;
+import vn.bluemoon.service.ResidentImportService;
 import vn.bluemoon.service.ResidentService;
 import vn.bluemoon.validation.ValidationException;
 
-import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -22,16 +30,16 @@ import java.util.List;
 public class ResidentController {
     
     private final ResidentService residentService = new ResidentService();
+    private final ResidentImportService residentImportService = new ResidentImportService();
     
     @GetMapping("/residents")
     public String residentsPage(
-            HttpSession session,
             Model model,
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String apartmentCode,
             @RequestParam(required = false) String householdCode) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -85,11 +93,10 @@ public class ResidentController {
     
     @GetMapping("/residents/detail")
     public String residentDetail(
-            HttpSession session,
             Model model,
             @RequestParam Integer id) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -124,14 +131,13 @@ public class ResidentController {
     
     @PostMapping("/residents/register-temporary-resident")
     public String registerTemporaryResident(
-            HttpSession session,
             @RequestParam Integer residentId,
             @RequestParam String fromDate,
             @RequestParam String toDate,
             @RequestParam(required = false) String reason,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -154,14 +160,13 @@ public class ResidentController {
     
     @PostMapping("/residents/register-temporary-absent")
     public String registerTemporaryAbsent(
-            HttpSession session,
             @RequestParam Integer residentId,
             @RequestParam String fromDate,
             @RequestParam String toDate,
             @RequestParam(required = false) String reason,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -184,11 +189,10 @@ public class ResidentController {
     
     @PostMapping("/residents/cancel-temporary")
     public String cancelTemporaryStatus(
-            HttpSession session,
             @RequestParam Integer residentId,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -205,11 +209,10 @@ public class ResidentController {
     
     @PostMapping("/residents/delete")
     public String deleteResident(
-            HttpSession session,
             @RequestParam Integer id,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -235,9 +238,52 @@ public class ResidentController {
         return "redirect:/residents";
     }
     
+    @PostMapping("/residents/import")
+    public String importResidents(
+            @RequestParam("file") MultipartFile file,
+            RedirectAttributes redirectAttributes) {
+        
+        User user = CurrentUser.get();
+        if (user == null) {
+            return "redirect:/login";
+        }
+        
+        // Admin và Tổ trưởng có quyền thêm nhân khẩu
+        try {
+            if (!vn.bluemoon.security.Authorization.canManageResidents(user)) {
+                redirectAttributes.addFlashAttribute("error", "Bạn không có quyền thực hiện chức năng này");
+                return "redirect:/residents";
+            }
+        } catch (DbException e) {
+            redirectAttributes.addFlashAttribute("error", "Lỗi kiểm tra quyền: " + e.getMessage());
+            return "redirect:/residents";
+        }
+        
+        if (file == null || file.isEmpty()) {
+            redirectAttributes.addFlashAttribute("error", "Vui lòng chọn file CSV");
+            return "redirect:/residents";
+        }
+        
+        try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            ResidentImportResult result = residentImportService.importCsv(reader);
+            redirectAttributes.addFlashAttribute("importResult", result);
+            if (result.getImportedCount() > 0) {
+                redirectAttributes.addFlashAttribute("success", "Đã nhập " + result.getImportedCount() + "/" +
+                    result.getTotalRows() + " nhân khẩu (" + result.getHouseholdsCreated() + " hộ mới)");
+            }
+        } catch (ValidationException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+        } catch (IOException e) {
+            redirectAttributes.addFlashAttribute("error", "Không đọc được file CSV: " + e.getMessage());
+        } catch (DbException e) {
+            redirectAttributes.addFlashAttribute("error", "Lỗi khi nhập nhân khẩu: " + e.getMessage());
+        }
+        
+        return "redirect:/residents";
+    }
+    
     @PostMapping("/residents/add")
     public String addResident(
-            HttpSession session,
             @RequestParam(required = false) Integer householdId,
             @RequestParam(required = false) String apartmentCode,
             @RequestParam(required = false) String householdCode,
@@ -254,7 +300,7 @@ public class ResidentController {
             @RequestParam(required = false) String status,
             RedirectAttributes redirectAttributes) {
         
-        User user = (User) session.getAttribute("user");
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -0,0 +1,90 @@
+package vn.bluemoon.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import vn.bluemoon.config.AppConfig;
+import vn.bluemoon.security.CurrentUser;
+import vn.bluemoon.security.SessionManager;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Authenticates every request from the session token cookie (BLUEMOON_AUTH)
+ * User được tra qua SessionManager (near cache + session store) rồi gán vào CurrentUser cho controller,
+ * không phụ thuộc HttpSession của Tomcat nên không cần sticky session. Logout hoặc vô hiệu hóa tài khoản
+ * có hiệu lực ngay trên node xử lý thao tác đó; các node khác còn dùng near cache nên chỉ thấy thay đổi
+ * sau tối đa session.near-cache-ttl-seconds
+ */
+@Component
+public class SessionAuthFilter extends OncePerRequestFilter {
+    static final String COOKIE = "BLUEMOON_AUTH";
+
+    private final SessionManager sessionManager = SessionManager.getInstance();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = readToken(request);
+        CurrentUser.set(token != null ? sessionManager.getUser(token) : null);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CurrentUser.clear();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/css/");
+    }
+
+    /**
+     * @return Session token from the request cookie, null if absent
+     */
+    static String readToken(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Send the session token cookie after login (sống cùng thời hạn session.expiry.hours)
+     */
+    static void writeToken(HttpServletRequest request, HttpServletResponse response, String token) {
+        Duration maxAge = Duration.ofHours(AppConfig.getInstance().getSessionExpiryHours());
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(request, token, maxAge).toString());
+    }
+
+    /**
+     * Remove the session token cookie (logout)
+     */
+    static void clearToken(HttpServletRequest request, HttpServletResponse response) {
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(request, "", Duration.ZERO).toString());
+    }
+
+    private static ResponseCookie cookie(HttpServletRequest request, String value, Duration maxAge) {
+        String path = request.getContextPath().isEmpty() ? "/" : request.getContextPath();
+        return ResponseCookie.from(COOKIE, value)
+            .httpOnly(true)
+            .secure(request.isSecure())
+            .sameSite("Lax")
+            .path(path)
+            .maxAge(maxAge)
+            .build();
+    }
+}
@@ -4,10 +4,14 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import vn.bluemoon.exception.DbException;
+import vn.bluemoon.model.dto.FeeGroupBy;
+import vn.bluemoon.model.dto.FeePage;
+import vn.bluemoon.model.dto.FeeSearchRequest;
+import vn.bluemoon.model.dto.FeeSummary;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.CurrentUser;
 import vn.bluemoon.service.FeeCollectionService;
 
-import javax.servlet.http.HttpSession;
 
 /**
  * Controller for Statistics page
@@ -16,8 +20,8 @@ import javax.servlet.http.HttpSession;
 public class StatisticsController {
     
     @GetMapping("/statistics")
-    public String statisticsPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+    public String statisticsPage(Model model) {
+        User user = CurrentUser.get();
         if (user == null) {
             return "redirect:/login";
         }
@@ -34,15 +38,22 @@ public class StatisticsController {
         
         try {
             FeeCollectionService feeService = new FeeCollectionService();
+            FeeSearchRequest allFees = new FeeSearchRequest();
             
-            // Get all fee collections for statistics table
-            var allFees = feeService.getAllFeeCollections();
+            // Tổng số liệu tính bằng SQL, bảng chỉ hiển thị trang thu phí mới nhất
+            FeeSummary summary = feeService.summarizeFeeCollections(allFees);
+            FeePage latestFees = feeService.getFeePage(allFees, null, null, null);
             
             model.addAttribute("user", user);
-            model.addAttribute("fees", allFees);
-            model.addAttribute("totalCount", allFees.size());
-            model.addAttribute("paidCount", allFees.stream().filter(f -> "paid".equals(f.getStatus())).count());
-            model.addAttribute("unpaidCount", allFees.stream().filter(f -> !"paid".equals(f.getStatus())).count());
+            model.addAttribute("fees", latestFees.getItems());
+            model.addAttribute("hasMoreFees", latestFees.isHasNext());
+            model.addAttribute("totalCount", summary.getTotalCount());
+            model.addAttribute("paidCount", summary.getPaidCount());
+            model.addAttribute("unpaidCount", summary.getUnpaidCount());
+            model.addAttribute("totalAmount", summary.getTotalAmount());
+            model.addAttribute("paidAmount", summary.getPaidAmount());
+            model.addAttribute("monthlyTotals", feeService.aggregateFeeCollections(allFees, FeeGroupBy.MONTH));
+            model.addAttribute("feeTypeTotals", feeService.aggregateFeeCollections(allFees, FeeGroupBy.FEE_TYPE));
             model.addAttribute("canViewFullStats", canViewFullStats);
             
         } catch (DbException e) {
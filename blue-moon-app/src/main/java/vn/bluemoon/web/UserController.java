@@ -9,9 +9,9 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import vn.bluemoon.exception.DbException;
 import vn.bluemoon.model.dto.UserSearchRequest;
 import vn.bluemoon.model.entity.User;
+import vn.bluemoon.security.CurrentUser;
 import vn.bluemoon.service.UserService;
 
-import javax.servlet.http.HttpSession;
 import java.util.List;
 
 /**
@@ -24,14 +24,13 @@ public class UserController {
     
     @GetMapping("/users")
     public String usersPage(
-            HttpSession session,
             Model model,
             @RequestParam(required = false) String username,
             @RequestParam(required = false) String email,
             @RequestParam(required = false) String fullName,
             @RequestParam(required = false) String phone) {
         
-        User currentUser = (User) session.getAttribute("user");
+        User currentUser = CurrentUser.get();
         if (currentUser == null) {
             return "redirect:/login";
         }
@@ -60,11 +59,10 @@ public class UserController {
     
     @PostMapping("/users/delete")
     public String deleteUser(
-            HttpSession session,
             @RequestParam Integer id,
             RedirectAttributes redirectAttributes) {
         
-        User currentUser = (User) session.getAttribute("user");
+        User currentUser = CurrentUser.get();
         if (currentUser == null) {
             return "redirect:/login";
         }
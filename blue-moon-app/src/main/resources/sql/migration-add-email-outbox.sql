@@ -0,0 +1,36 @@
+-- ============================================
+-- Migration: Add email_outbox
+-- ============================================
+-- Request chỉ ghi email vào outbox, EmailDispatcher gửi theo batch qua một kết nối SMTP
+-- và thử lại với backoff khi lỗi. Ứng dụng tự tạo bảng khi khởi động (DatabaseInitializer).
+
+-- PostgreSQL
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    to_email VARCHAR(255) NOT NULL,
+    subject VARCHAR(500) NOT NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_email_outbox_due ON email_outbox(status, next_attempt_at);
+
+-- MySQL
+-- CREATE TABLE IF NOT EXISTS email_outbox (
+--     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+--     to_email VARCHAR(255) NOT NULL,
+--     subject VARCHAR(500) NOT NULL,
+--     body TEXT NOT NULL,
+--     status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+--     attempts INT NOT NULL DEFAULT 0,
+--     next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+--     last_error TEXT,
+--     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+--     sent_at TIMESTAMP NULL,
+--     INDEX idx_email_outbox_due (status, next_attempt_at)
+-- ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,13 @@
+-- ============================================
+-- Migration: Add keyset pagination index to fee_collections
+-- ============================================
+-- Danh sách thu phí (/fees) phân trang theo (year, month, id) giảm dần,
+-- thu phí không định kỳ (year/month NULL) được xếp như năm 0, tháng 0
+
+-- PostgreSQL
+CREATE INDEX IF NOT EXISTS idx_fee_collections_keyset
+ON fee_collections((COALESCE(year, 0)), (COALESCE(month, 0)), id);
+
+-- MySQL (8.0.13+ hỗ trợ functional index)
+-- CREATE INDEX idx_fee_collections_keyset
+-- ON fee_collections((COALESCE(year, 0)), (COALESCE(month, 0)), id);
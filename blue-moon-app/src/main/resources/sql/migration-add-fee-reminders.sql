@@ -0,0 +1,14 @@
+-- ============================================
+-- Migration: Add reminder_sent_at to fee_collections
+-- ============================================
+-- FeeReminderService gửi email nhắc nộp phí cho các khoản unpaid/partial_paid sắp đến hoặc quá hạn,
+-- reminder_sent_at ghi lần nhắc gần nhất để không nhắc lại trước fees.reminder.repeat-days
+
+-- PostgreSQL
+ALTER TABLE fee_collections ADD COLUMN IF NOT EXISTS reminder_sent_at TIMESTAMP;
+CREATE INDEX IF NOT EXISTS idx_fee_collections_reminder_due ON fee_collections(payment_deadline)
+WHERE status IN ('unpaid', 'partial_paid');
+
+-- MySQL
+-- ALTER TABLE fee_collections ADD COLUMN reminder_sent_at TIMESTAMP NULL;
+-- CREATE INDEX idx_fee_collections_reminder_due ON fee_collections(status, payment_deadline);
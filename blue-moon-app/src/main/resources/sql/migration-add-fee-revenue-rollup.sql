@@ -0,0 +1,31 @@
+-- ============================================
+-- Migration: Add fee_revenue_rollup
+-- ============================================
+-- Tổng số khoản/tổng tiền/đã nộp theo (year, month, fee_type_id, status), cập nhật cùng transaction
+-- với mỗi lần ghi fee_collections. Thống kê không lọc theo hộ đọc vài trăm dòng ở đây thay vì quét
+-- toàn bộ fee_collections. Ứng dụng tự tạo bảng và tính lại toàn bộ khi khởi động (DatabaseInitializer),
+-- hoặc theo yêu cầu qua POST /metrics/fee-rollup/rebuild.
+
+-- PostgreSQL
+CREATE TABLE IF NOT EXISTS fee_revenue_rollup (
+    year INT NOT NULL,
+    month INT NOT NULL,
+    fee_type_id INT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    fee_count BIGINT NOT NULL DEFAULT 0,
+    total_amount DECIMAL(18, 2) NOT NULL DEFAULT 0,
+    paid_amount DECIMAL(18, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (year, month, fee_type_id, status)
+);
+
+-- MySQL
+-- CREATE TABLE IF NOT EXISTS fee_revenue_rollup (
+--     year INT NOT NULL,
+--     month INT NOT NULL,
+--     fee_type_id INT NOT NULL,
+--     status VARCHAR(20) NOT NULL,
+--     fee_count BIGINT NOT NULL DEFAULT 0,
+--     total_amount DECIMAL(18, 2) NOT NULL DEFAULT 0,
+--     paid_amount DECIMAL(18, 2) NOT NULL DEFAULT 0,
+--     PRIMARY KEY (year, month, fee_type_id, status)
+-- ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,11 @@
+-- ============================================
+-- Migration: Add version to fee_collections
+-- ============================================
+-- Nộp phí cộng paid_amount và tính status trong một câu UPDATE; version tăng sau mỗi lần ghi
+-- để FeeCollectionRepository.update() từ chối ghi đè một dòng đã bị người khác sửa.
+
+-- PostgreSQL
+ALTER TABLE fee_collections ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+
+-- MySQL
+-- ALTER TABLE fee_collections ADD COLUMN version INT NOT NULL DEFAULT 0;
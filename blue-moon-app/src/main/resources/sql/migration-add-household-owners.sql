@@ -0,0 +1,28 @@
+-- ============================================
+-- Migration: Add household_owners projection
+-- ============================================
+-- Chủ hộ hiện tại của mỗi hộ, thay cho subquery tìm 'Chủ hộ' trong từng truy vấn thu phí.
+-- Ứng dụng tự tạo bảng và dựng lại dữ liệu khi khởi động (DatabaseInitializer).
+
+-- PostgreSQL
+CREATE TABLE IF NOT EXISTS household_owners (
+    household_id INT PRIMARY KEY,
+    resident_id INT,
+    owner_name VARCHAR(255),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (household_id) REFERENCES households(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_household_owners_owner_name ON household_owners(owner_name);
+CREATE INDEX IF NOT EXISTS idx_household_owners_resident_id ON household_owners(resident_id);
+
+-- MySQL
+-- CREATE TABLE IF NOT EXISTS household_owners (
+--     household_id INT PRIMARY KEY,
+--     resident_id INT,
+--     owner_name VARCHAR(255),
+--     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+--     FOREIGN KEY (household_id) REFERENCES households(id) ON DELETE CASCADE,
+--     INDEX idx_household_owners_owner_name (owner_name),
+--     INDEX idx_household_owners_resident_id (resident_id)
+-- ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
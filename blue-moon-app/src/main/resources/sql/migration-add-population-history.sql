@@ -0,0 +1,26 @@
+-- ============================================
+-- Migration: Add population_history
+-- ============================================
+-- PopulationHistory ghi số hộ/nhân khẩu/tạm trú/tạm vắng của mỗi ngày (khi cư dân thay đổi và mỗi giờ),
+-- biểu đồ biến động dân cư trên dashboard đọc theo khoảng ngày thay vì đếm lại.
+-- Ứng dụng tự tạo bảng khi khởi động (DatabaseInitializer).
+
+-- PostgreSQL
+CREATE TABLE IF NOT EXISTS population_history (
+    snapshot_date DATE PRIMARY KEY,
+    household_count INT NOT NULL,
+    resident_count INT NOT NULL,
+    temporary_resident_count INT NOT NULL,
+    temporary_absent_count INT NOT NULL,
+    recorded_at TIMESTAMP NOT NULL
+);
+
+-- MySQL
+-- CREATE TABLE IF NOT EXISTS population_history (
+--     snapshot_date DATE PRIMARY KEY,
+--     household_count INT NOT NULL,
+--     resident_count INT NOT NULL,
+--     temporary_resident_count INT NOT NULL,
+--     temporary_absent_count INT NOT NULL,
+--     recorded_at TIMESTAMP NOT NULL
+-- ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
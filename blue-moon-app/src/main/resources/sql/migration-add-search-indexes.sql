@@ -0,0 +1,24 @@
+-- ============================================
+-- Migration: Diacritic-insensitive search indexes (tìm kiếm không dấu)
+-- ============================================
+-- Tìm theo tên chủ hộ, mã hộ, mã căn hộ không phân biệt dấu ("Nguyen" khớp "Nguyễn"),
+-- LIKE '%...%' dùng GIN trigram index nên không phải quét toàn bảng.
+-- Ứng dụng tự chạy các lệnh này khi khởi động (DatabaseInitializer); nếu user database
+-- không có quyền CREATE EXTENSION thì ứng dụng dùng trigram index trong bộ nhớ.
+
+-- PostgreSQL
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() chỉ là STABLE, bọc lại thành IMMUTABLE để dùng được trong index
+CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text AS
+$$ SELECT public.unaccent('public.unaccent', $1) $$ LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT;
+
+CREATE INDEX IF NOT EXISTS idx_household_owners_owner_name_trgm
+ON household_owners USING gin (f_unaccent(lower(owner_name)) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_households_household_code_trgm
+ON households USING gin (f_unaccent(lower(household_code)) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_apartments_apartment_code_trgm
+ON apartments USING gin (f_unaccent(lower(apartment_code)) gin_trgm_ops);
+
+-- MySQL: không có extension tương đương, ứng dụng dùng trigram index trong bộ nhớ
@@ -0,0 +1,11 @@
+-- ============================================
+-- Migration: Add last_seen_at to sessions
+-- ============================================
+-- Session được lưu trong bảng sessions (session.store=jdbc) để nhiều node dùng chung,
+-- last_seen_at được SessionManager ghi theo batch định kỳ
+
+-- PostgreSQL
+ALTER TABLE sessions ADD COLUMN IF NOT EXISTS last_seen_at TIMESTAMP;
+
+-- MySQL
+-- ALTER TABLE sessions ADD COLUMN last_seen_at TIMESTAMP NULL;
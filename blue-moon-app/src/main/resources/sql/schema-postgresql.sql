@@ -134,6 +134,7 @@ CREATE TABLE IF NOT EXISTS sessions (
     session_token VARCHAR(255) UNIQUE NOT NULL,
     expires_at TIMESTAMP NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_seen_at TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
@@ -141,6 +142,22 @@ CREATE INDEX IF NOT EXISTS idx_sessions_session_token ON sessions(session_token)
 CREATE INDEX IF NOT EXISTS idx_sessions_user_id ON sessions(user_id);
 CREATE INDEX IF NOT EXISTS idx_sessions_expires_at ON sessions(expires_at);
 
+-- Table: email_outbox - Email chờ gửi (EmailDispatcher gửi trong nền, có thử lại)
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    to_email VARCHAR(255) NOT NULL,
+    subject VARCHAR(500) NOT NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING, SENDING, SENT, FAILED
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_email_outbox_due ON email_outbox(status, next_attempt_at);
+
 -- ============================================
 -- HOUSEHOLD MANAGEMENT TABLES - Quản lý hộ dân
 -- ============================================
@@ -222,6 +239,30 @@ CREATE INDEX IF NOT EXISTS idx_residents_name ON residents(full_name);
 CREATE INDEX IF NOT EXISTS idx_residents_id_card ON residents(id_card);
 CREATE INDEX IF NOT EXISTS idx_residents_status ON residents(status);
 
+-- Table: household_owners - Chủ hộ hiện tại của mỗi hộ (projection từ residents/households)
+-- Được ResidentRepository cập nhật khi ghi residents, các truy vấn thu phí join trực tiếp bảng này
+CREATE TABLE IF NOT EXISTS household_owners (
+    household_id INT PRIMARY KEY,
+    resident_id INT, -- NULL nếu hộ chưa có resident 'Chủ hộ' (dùng households.owner_name)
+    owner_name VARCHAR(255),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (household_id) REFERENCES households(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_household_owners_owner_name ON household_owners(owner_name);
+CREATE INDEX IF NOT EXISTS idx_household_owners_resident_id ON household_owners(resident_id);
+
+-- Table: population_history - Số hộ/nhân khẩu/tạm trú/tạm vắng theo ngày (biểu đồ biến động dân cư)
+-- Mỗi ngày một dòng, chỉ dòng của ngày hiện tại được ghi lại
+CREATE TABLE IF NOT EXISTS population_history (
+    snapshot_date DATE PRIMARY KEY,
+    household_count INT NOT NULL,
+    resident_count INT NOT NULL,
+    temporary_resident_count INT NOT NULL,
+    temporary_absent_count INT NOT NULL,
+    recorded_at TIMESTAMP NOT NULL
+);
+
 -- ============================================
 -- FEE COLLECTION TABLES - Quản lý thu phí
 -- ============================================
@@ -240,6 +281,8 @@ CREATE TABLE IF NOT EXISTS fee_collections (
     reason TEXT, -- Lý do thu phí (chỉ cho thu phí không định kỳ)
     payment_date DATE,
     payment_deadline DATE, -- Hạn thu phí (deadline để nộp phí)
+    reminder_sent_at TIMESTAMP, -- Lần gửi email nhắc nộp phí gần nhất (FeeReminderService)
+    version INT NOT NULL DEFAULT 0, -- Tăng sau mỗi lần ghi (optimistic concurrency)
     payment_method VARCHAR(50), -- cash, bank_transfer, credit_card
     notes TEXT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -258,6 +301,24 @@ CREATE INDEX IF NOT EXISTS idx_fee_collections_household_id ON fee_collections(h
 CREATE INDEX IF NOT EXISTS idx_fee_collections_month_year ON fee_collections(year, month);
 CREATE INDEX IF NOT EXISTS idx_fee_collections_status ON fee_collections(status);
 CREATE INDEX IF NOT EXISTS idx_fee_collections_fee_type_id ON fee_collections(fee_type_id);
+-- Nhắc nộp phí: chỉ các khoản chưa nộp đủ, theo hạn thu
+CREATE INDEX IF NOT EXISTS idx_fee_collections_reminder_due ON fee_collections(payment_deadline)
+WHERE status IN ('unpaid', 'partial_paid');
+-- Keyset pagination của danh sách thu phí: ORDER BY (year, month, id), NULL coi như 0
+CREATE INDEX IF NOT EXISTS idx_fee_collections_keyset ON fee_collections((COALESCE(year, 0)), (COALESCE(month, 0)), id);
+
+-- Table: fee_revenue_rollup - Tổng thu phí theo tháng/loại phí/trạng thái (FeeRevenueRollupRepository)
+-- Cập nhật cùng transaction với fee_collections; 0 thay cho month/year/fee_type_id NULL
+CREATE TABLE IF NOT EXISTS fee_revenue_rollup (
+    year INT NOT NULL,
+    month INT NOT NULL,
+    fee_type_id INT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    fee_count BIGINT NOT NULL DEFAULT 0,
+    total_amount DECIMAL(18, 2) NOT NULL DEFAULT 0,
+    paid_amount DECIMAL(18, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (year, month, fee_type_id, status)
+);
 
 -- Table: fee_types - Loại phí (phí quản lý, phí dịch vụ, v.v.)
 CREATE TABLE IF NOT EXISTS fee_types (